@@ -0,0 +1,119 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.repository;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import org.junit.Test;
+import org.openlmis.integration.dhis2.domain.execution.ExecutionJob;
+import org.openlmis.integration.dhis2.repository.execution.ExecutionJobRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.repository.CrudRepository;
+
+public class ExecutionJobRepositoryIntegrationTest
+    extends BaseCrudRepositoryIntegrationTest<ExecutionJob> {
+
+  // later than any job created by the service, so the test jobs are the most recent ones
+  private static final ZonedDateTime CREATED_DATE =
+      ZonedDateTime.of(2100, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+  @Autowired
+  private ExecutionJobRepository executionJobRepository;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Override
+  public CrudRepository<ExecutionJob, UUID> getRepository() {
+    return executionJobRepository;
+  }
+
+  @Override
+  public ExecutionJob generateInstance() {
+    return new ExecutionJob(null, ZonedDateTime.now());
+  }
+
+  @Test
+  public void shouldDeleteFinishedJobsExceptLatest() {
+    ExecutionJob oldJob = executionJobRepository.save(finishedJob(CREATED_DATE));
+    ExecutionJob latestFinishedJob = executionJobRepository.save(
+        finishedJob(CREATED_DATE.plusDays(1)));
+    ExecutionJob runningJob = new ExecutionJob(null, CREATED_DATE.plusDays(2));
+    runningJob.start(CREATED_DATE.plusDays(2), 1);
+    runningJob = executionJobRepository.save(runningJob);
+    entityManager.flush();
+
+    executionJobRepository.deleteFinishedExceptLatest(2);
+
+    assertThat(executionJobRepository.existsById(oldJob.getId()), is(false));
+    assertThat(executionJobRepository.existsById(latestFinishedJob.getId()), is(true));
+    assertThat(executionJobRepository.existsById(runningJob.getId()), is(true));
+  }
+
+  @Test
+  public void shouldNotDeleteRunningJobs() {
+    ExecutionJob runningJob = new ExecutionJob(null, CREATED_DATE);
+    runningJob.start(CREATED_DATE, 1);
+    runningJob = executionJobRepository.save(runningJob);
+    entityManager.flush();
+
+    executionJobRepository.deleteFinishedExceptLatest(0);
+
+    assertThat(executionJobRepository.existsById(runningJob.getId()), is(true));
+  }
+
+  @Test
+  public void shouldFindUnfinishedJobsWithoutRecentHeartbeat() {
+    ExecutionJob staleJob = new ExecutionJob(null, CREATED_DATE);
+    staleJob.start(CREATED_DATE, 1);
+    staleJob = executionJobRepository.save(staleJob);
+    ExecutionJob activeJob = executionJobRepository.save(new ExecutionJob(null, CREATED_DATE));
+    ExecutionJob finishedJob = executionJobRepository.save(finishedJob(CREATED_DATE));
+    entityManager.flush();
+
+    executionJobRepository.updateHeartbeat(Collections.singleton(activeJob.getId()),
+        CREATED_DATE.plusHours(1));
+    List<UUID> staleJobIds = executionJobRepository
+        .findByFinishDateIsNullAndHeartbeatDateBefore(CREATED_DATE.plusMinutes(30))
+        .stream()
+        .map(ExecutionJob::getId)
+        .collect(Collectors.toList());
+
+    assertThat(staleJobIds, hasItem(staleJob.getId()));
+    assertThat(staleJobIds, not(hasItem(activeJob.getId())));
+    assertThat(staleJobIds, not(hasItem(finishedJob.getId())));
+  }
+
+  private ExecutionJob finishedJob(ZonedDateTime createdDate) {
+    ExecutionJob job = new ExecutionJob(null, createdDate);
+    job.start(createdDate, 1);
+    job.unitCompleted();
+    job.finish(createdDate.plusMinutes(1));
+    return job;
+  }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.repository;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openlmis.integration.dhis2.DatasetDataBuilder;
+import org.openlmis.integration.dhis2.ServerDataBuilder;
+import org.openlmis.integration.dhis2.domain.server.Server;
+import org.openlmis.integration.dhis2.repository.dataset.DatasetRepository;
+import org.openlmis.integration.dhis2.repository.execution.ExecutionLeaseRepository;
+import org.openlmis.integration.dhis2.repository.server.ServerRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+public class ExecutionLeaseRepositoryIntegrationTest {
+
+  private static final ZonedDateTime SCHEDULED_DATE =
+      ZonedDateTime.of(2023, 5, 1, 5, 0, 0, 0, ZoneOffset.UTC);
+  private static final String OWNER = "instance-1";
+  private static final String OTHER_OWNER = "instance-2";
+
+  @Autowired
+  private ExecutionLeaseRepository executionLeaseRepository;
+
+  @Autowired
+  private ServerRepository serverRepository;
+
+  @Autowired
+  private DatasetRepository datasetRepository;
+
+  private UUID datasetId;
+
+  @Before
+  public void setUp() {
+    Server server = serverRepository.saveAndFlush(new ServerDataBuilder().buildAsNew());
+    datasetId = datasetRepository.saveAndFlush(
+        new DatasetDataBuilder().withServer(server).buildAsNew()).getId();
+  }
+
+  @Test
+  public void shouldAcquireLease() {
+    assertThat(executionLeaseRepository.tryAcquire(datasetId, SCHEDULED_DATE, OWNER,
+        SCHEDULED_DATE), is(true));
+  }
+
+  @Test
+  public void shouldNotAcquireLeaseTakenByOtherOwner() {
+    executionLeaseRepository.tryAcquire(datasetId, SCHEDULED_DATE, OWNER, SCHEDULED_DATE);
+
+    assertThat(executionLeaseRepository.tryAcquire(datasetId, SCHEDULED_DATE, OTHER_OWNER,
+        SCHEDULED_DATE.plusSeconds(1)), is(false));
+  }
+
+  @Test
+  public void shouldAcquireLeaseOfOtherScheduledDate() {
+    executionLeaseRepository.tryAcquire(datasetId, SCHEDULED_DATE, OWNER, SCHEDULED_DATE);
+
+    assertThat(executionLeaseRepository.tryAcquire(datasetId, SCHEDULED_DATE.plusDays(1),
+        OTHER_OWNER, SCHEDULED_DATE.plusDays(1)), is(true));
+  }
+
+  @Test
+  public void shouldAcquireLeaseAgainAfterItWasDeleted() {
+    executionLeaseRepository.tryAcquire(datasetId, SCHEDULED_DATE, OWNER, SCHEDULED_DATE);
+    executionLeaseRepository.tryAcquire(datasetId, SCHEDULED_DATE.plusDays(1), OWNER,
+        SCHEDULED_DATE.plusDays(1));
+
+    assertThat(executionLeaseRepository.deleteScheduledBefore(SCHEDULED_DATE.plusHours(1)),
+        is(1));
+    assertThat(executionLeaseRepository.tryAcquire(datasetId, SCHEDULED_DATE, OTHER_OWNER,
+        SCHEDULED_DATE.plusHours(1)), is(true));
+    assertThat(executionLeaseRepository.tryAcquire(datasetId, SCHEDULED_DATE.plusDays(1),
+        OTHER_OWNER, SCHEDULED_DATE.plusHours(1)), is(false));
+  }
+
+  @Test
+  public void shouldAcquireLeaseAgainAfterItWasReleased() {
+    executionLeaseRepository.tryAcquire(datasetId, SCHEDULED_DATE, OWNER, SCHEDULED_DATE);
+
+    executionLeaseRepository.release(datasetId, SCHEDULED_DATE, OWNER);
+
+    assertThat(executionLeaseRepository.tryAcquire(datasetId, SCHEDULED_DATE, OTHER_OWNER,
+        SCHEDULED_DATE.plusSeconds(1)), is(true));
+  }
+
+  @Test
+  public void shouldNotReleaseLeaseOfOtherOwner() {
+    executionLeaseRepository.tryAcquire(datasetId, SCHEDULED_DATE, OWNER, SCHEDULED_DATE);
+
+    executionLeaseRepository.release(datasetId, SCHEDULED_DATE, OTHER_OWNER);
+
+    assertThat(executionLeaseRepository.tryAcquire(datasetId, SCHEDULED_DATE, OTHER_OWNER,
+        SCHEDULED_DATE.plusSeconds(1)), is(false));
+  }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.repository;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigDecimal;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openlmis.integration.dhis2.DatasetDataBuilder;
+import org.openlmis.integration.dhis2.ServerDataBuilder;
+import org.openlmis.integration.dhis2.domain.dataset.Dataset;
+import org.openlmis.integration.dhis2.domain.server.Server;
+import org.openlmis.integration.dhis2.repository.dataset.DatasetRepository;
+import org.openlmis.integration.dhis2.repository.execution.PushedDataValueRepository;
+import org.openlmis.integration.dhis2.repository.server.ServerRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.util.Pair;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+public class PushedDataValueRepositoryIntegrationTest {
+
+  private static final String PERIOD = "202304";
+  private static final Pair<String, String> KEY = Pair.of("orgUnit", "dataElement");
+  private static final Pair<String, String> OTHER_KEY = Pair.of("orgUnit", "otherDataElement");
+
+  @Autowired
+  private PushedDataValueRepository pushedDataValueRepository;
+
+  @Autowired
+  private ServerRepository serverRepository;
+
+  @Autowired
+  private DatasetRepository datasetRepository;
+
+  private Server server;
+  private Dataset dataset;
+
+  @Before
+  public void setUp() {
+    server = serverRepository.saveAndFlush(new ServerDataBuilder().buildAsNew());
+    dataset = datasetRepository.saveAndFlush(
+        new DatasetDataBuilder().withServer(server).buildAsNew());
+  }
+
+  @Test
+  public void shouldSaveAndFindValues() {
+    Map<Pair<String, String>, BigDecimal> values = new HashMap<>();
+    values.put(KEY, new BigDecimal("1.5"));
+    values.put(OTHER_KEY, new BigDecimal(7));
+
+    pushedDataValueRepository.saveValues(server.getId(), dataset.getId(), PERIOD, values,
+        ZonedDateTime.now());
+
+    assertThat(pushedDataValueRepository.findValues(server.getId(), dataset.getId(), PERIOD),
+        is(values));
+  }
+
+  @Test
+  public void shouldReplaceValuesPushedBefore() {
+    pushedDataValueRepository.saveValues(server.getId(), dataset.getId(), PERIOD,
+        Collections.singletonMap(KEY, new BigDecimal(5)), ZonedDateTime.now().minusDays(1));
+    pushedDataValueRepository.saveValues(server.getId(), dataset.getId(), PERIOD,
+        Collections.singletonMap(KEY, new BigDecimal(8)), ZonedDateTime.now());
+
+    assertThat(pushedDataValueRepository.findValues(server.getId(), dataset.getId(), PERIOD),
+        is(Collections.singletonMap(KEY, new BigDecimal(8))));
+  }
+
+  @Test
+  public void shouldNotFindValuesOfOtherPeriods() {
+    pushedDataValueRepository.saveValues(server.getId(), dataset.getId(), PERIOD,
+        Collections.singletonMap(KEY, new BigDecimal(5)), ZonedDateTime.now());
+
+    assertThat(pushedDataValueRepository.findValues(server.getId(), dataset.getId(), "202305")
+        .isEmpty(), is(true));
+  }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.repository.indicator;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+public class ReferenceKeyRepositoryIntegrationTest {
+
+  private static final String PRODUCT_NAME = "Test \"product\", 10mg";
+  private static final String FACILITY_CODE = "TEST-HC01";
+
+  private final UUID orderableId = UUID.randomUUID();
+  private final UUID facilityId = UUID.randomUUID();
+
+  @Autowired
+  private ReferenceKeyRepository referenceKeyRepository;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+  @Before
+  public void setUp() {
+    // reference data is read from the reporting data source, which cannot see rows inserted in
+    // the test transaction, so the queries are run on the primary data source instead
+    ReflectionTestUtils.setField(AopTestUtils.getTargetObject(referenceKeyRepository),
+        "jdbcTemplate", namedParameterJdbcTemplate);
+
+    ReferencedataTables.create(jdbcTemplate);
+    jdbcTemplate.update("INSERT INTO referencedata.facilities (id, code) VALUES (?, ?)",
+        facilityId, FACILITY_CODE);
+  }
+
+  @Test
+  public void shouldFindOrderableIdsByNameOfLatestVersion() {
+    addOrderable(orderableId, 1, "Old name");
+    addOrderable(orderableId, 2, PRODUCT_NAME);
+
+    assertThat(referenceKeyRepository.findOrderableIds(Arrays.asList(PRODUCT_NAME, "Old name")),
+        is(Collections.singletonMap(orderableId, PRODUCT_NAME)));
+  }
+
+  @Test
+  public void shouldNotFindOrderableIdsByNameOfOlderVersion() {
+    addOrderable(orderableId, 1, "Old name");
+    addOrderable(orderableId, 2, PRODUCT_NAME);
+
+    assertThat(referenceKeyRepository.findOrderableIds(Collections.singletonList("Old name")),
+        is(Collections.emptyMap()));
+  }
+
+  @Test
+  public void shouldFindFacilityIdsByCode() {
+    assertThat(referenceKeyRepository.findFacilityIds(Arrays.asList(FACILITY_CODE, "unknown")),
+        is(Collections.singletonMap(facilityId, FACILITY_CODE)));
+  }
+
+  private void addOrderable(UUID id, long versionNumber, String fullProductName) {
+    jdbcTemplate.update("INSERT INTO referencedata.orderables (id, versionnumber, "
+        + "fullproductname) VALUES (?, ?, ?)", id, versionNumber, fullProductName);
+  }
+
+}
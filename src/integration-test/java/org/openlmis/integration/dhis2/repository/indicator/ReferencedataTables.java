@@ -0,0 +1,40 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.repository.indicator;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Creates the referencedata tables read by the indicator queries, with only the columns the
+ * queries use, when the database does not contain them. They are rolled back with the test
+ * transaction.
+ */
+final class ReferencedataTables {
+
+  private ReferencedataTables() {
+    throw new UnsupportedOperationException();
+  }
+
+  static void create(JdbcTemplate jdbcTemplate) {
+    jdbcTemplate.execute("CREATE SCHEMA IF NOT EXISTS referencedata");
+    jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS referencedata.orderables ("
+        + "id UUID NOT NULL, versionnumber BIGINT NOT NULL, fullproductname TEXT, "
+        + "PRIMARY KEY (id, versionnumber))");
+    jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS referencedata.facilities ("
+        + "id UUID PRIMARY KEY, code TEXT NOT NULL)");
+  }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.repository.indicator;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigDecimal;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.util.Pair;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+public class RequisitionRepositoryIntegrationTest {
+
+  private static final ZonedDateTime DATE =
+      ZonedDateTime.of(2023, 5, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+  private final UUID facilityId = UUID.randomUUID();
+  private final UUID otherFacilityId = UUID.randomUUID();
+  private final UUID orderableId = UUID.randomUUID();
+
+  @Autowired
+  private RequisitionRepository requisitionRepository;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+  @Before
+  public void setUp() {
+    // requisitions are read from the reporting data source, which cannot see rows inserted in
+    // the test transaction, so the queries are run on the primary data source instead
+    ReflectionTestUtils.setField(AopTestUtils.getTargetObject(requisitionRepository),
+        "jdbcTemplate", namedParameterJdbcTemplate);
+
+    RequisitionTables.create(jdbcTemplate);
+  }
+
+  @Test
+  public void shouldFindClosingBalancesOfLatestRequisitionsUntilGivenDate() {
+    addLineItem(facilityId, DATE.minusMonths(2), 10, 20, 30);
+    addLineItem(facilityId, DATE.minusMonths(1), 11, 21, 31);
+    addLineItem(facilityId, DATE.plusDays(1), 12, 22, 32);
+    addLineItem(otherFacilityId, DATE.minusMonths(1), 13, 23, 33);
+
+    Map<Pair<UUID, UUID>, LatestValue> balances = requisitionRepository.findClosingBalances(
+        DATE, Collections.singleton(orderableId), Arrays.asList(facilityId, otherFacilityId));
+
+    assertThat(balances.size(), is(2));
+    assertThat(balances.get(Pair.of(facilityId, orderableId)),
+        is(new LatestValue(new BigDecimal(21), DATE.minusMonths(1).toInstant())));
+    assertThat(balances.get(Pair.of(otherFacilityId, orderableId)).getValue(),
+        is(new BigDecimal(23)));
+  }
+
+  @Test
+  public void shouldFindOpeningBalancesOfLatestRequisitionsWithValue() {
+    addLineItem(facilityId, DATE.minusMonths(2), 10, 20, 30);
+    addLineItem(facilityId, DATE.minusMonths(1), null, 21, 31);
+
+    assertThat(requisitionRepository.findOpeningBalances(DATE,
+        Collections.singleton(orderableId), Collections.singleton(facilityId)),
+        is(Collections.singletonMap(Pair.of(facilityId, orderableId),
+            new LatestValue(new BigDecimal(10), DATE.minusMonths(2).toInstant()))));
+  }
+
+  @Test
+  public void shouldFindReceivedQuantitiesOfGivenFacilitiesOnly() {
+    addLineItem(facilityId, DATE.minusMonths(1), 10, 20, 30);
+    addLineItem(otherFacilityId, DATE.minusMonths(1), 11, 21, 31);
+
+    assertThat(requisitionRepository.findReceivedQuantities(DATE,
+        Collections.singleton(orderableId), Collections.singleton(facilityId)),
+        is(Collections.singletonMap(Pair.of(facilityId, orderableId),
+            new LatestValue(new BigDecimal(30), DATE.minusMonths(1).toInstant()))));
+  }
+
+  private void addLineItem(UUID facility, ZonedDateTime createdDate, Integer beginningBalance,
+      Integer stockOnHand, Integer totalReceivedQuantity) {
+    UUID requisitionId = UUID.randomUUID();
+    jdbcTemplate.update("INSERT INTO requisition.requisitions (id, facilityid, createddate) "
+        + "VALUES (?, ?, ?)", requisitionId, facility, createdDate.toOffsetDateTime());
+    jdbcTemplate.update("INSERT INTO requisition.requisition_line_items "
+            + "(id, requisitionid, orderableid, beginningbalance, stockonhand, "
+            + "totalreceivedquantity) VALUES (?, ?, ?, ?, ?, ?)", UUID.randomUUID(),
+        requisitionId, orderableId, beginningBalance, stockOnHand, totalReceivedQuantity);
+  }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.repository.indicator;
+
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+public class StockDailyTotalRepositoryIntegrationTest {
+
+  private static final ZonedDateTime PROCESSED_DATE =
+      ZonedDateTime.of(2023, 5, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+  private static final LocalDate OCCURRED_DATE = LocalDate.of(2023, 4, 28);
+
+  private final UUID facilityId = UUID.randomUUID();
+  private final UUID orderableId = UUID.randomUUID();
+  private final UUID stockCardId = UUID.randomUUID();
+  private final UUID reasonId = UUID.randomUUID();
+
+  @Autowired
+  private StockDailyTotalRepository stockDailyTotalRepository;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+  @Before
+  public void setUp() {
+    // line items are read from the reporting data source, which cannot see rows inserted in
+    // the test transaction, so the queries are run on the primary data source instead
+    ReflectionTestUtils.setField(AopTestUtils.getTargetObject(stockDailyTotalRepository),
+        "reportingJdbcTemplate", namedParameterJdbcTemplate);
+
+    StockmanagementTables.create(jdbcTemplate);
+    jdbcTemplate.update("UPDATE dhis2.aggregate_watermark SET processeddate = '-infinity'");
+    jdbcTemplate.update("DELETE FROM dhis2.stock_daily_total");
+
+    jdbcTemplate.update("INSERT INTO stockmanagement.stock_cards (id, facilityid, orderableid) "
+        + "VALUES (?, ?, ?)", stockCardId, facilityId, orderableId);
+    jdbcTemplate.update("INSERT INTO stockmanagement.stock_card_line_item_reasons "
+        + "(id, reasoncategory, reasontype) VALUES (?, 'ADJUSTMENT', 'CREDIT')", reasonId);
+  }
+
+  @Test
+  public void shouldLockWatermark() {
+    assertThat(stockDailyTotalRepository.tryLockWatermark(), is(true));
+  }
+
+  @Test
+  public void shouldLockWatermarkForCurrentTransaction() {
+    stockDailyTotalRepository.lockWatermark();
+
+    assertThat(stockDailyTotalRepository.tryLockWatermark(), is(true));
+  }
+
+  @Test
+  public void shouldNotFindWatermarkWhenNoLineItemsWereIncluded() {
+    assertThat(stockDailyTotalRepository.findWatermark(), is(Optional.empty()));
+  }
+
+  @Test
+  public void shouldFindFirstProcessedDate() {
+    addLineItem(OCCURRED_DATE, PROCESSED_DATE.plusHours(1), 5);
+    addLineItem(OCCURRED_DATE, PROCESSED_DATE, 7);
+
+    assertThat(stockDailyTotalRepository.findFirstProcessedDate().get().toInstant(),
+        is(PROCESSED_DATE.toInstant()));
+  }
+
+  @Test
+  public void shouldComputeCompleteTotalsOfDaysChangedInWindow() {
+    addLineItem(OCCURRED_DATE, PROCESSED_DATE.minusDays(1), 5);
+    addLineItem(OCCURRED_DATE, PROCESSED_DATE, 7);
+    addLineItem(OCCURRED_DATE.minusDays(1), PROCESSED_DATE.minusDays(1), 3);
+
+    List<Object[]> totals = stockDailyTotalRepository
+        .findTotals(PROCESSED_DATE.minusHours(1), PROCESSED_DATE);
+
+    assertThat(totals.size(), is(1));
+    assertThat(totals.get(0), arrayContaining(facilityId, orderableId, "ADJUSTMENT", "CREDIT",
+        Date.valueOf(OCCURRED_DATE), 12L));
+  }
+
+  @Test
+  public void shouldReplaceTotalsAndMoveWatermark() {
+    stockDailyTotalRepository.saveTotals(Collections.singletonList(total(5L)),
+        PROCESSED_DATE.minusHours(1));
+    stockDailyTotalRepository.saveTotals(Collections.singletonList(total(12L)),
+        PROCESSED_DATE);
+
+    assertThat(jdbcTemplate.queryForList("SELECT quantity FROM dhis2.stock_daily_total",
+        Long.class), contains(12L));
+    assertThat(stockDailyTotalRepository.findWatermark().get().toInstant(),
+        is(PROCESSED_DATE.toInstant()));
+  }
+
+  private Object[] total(long quantity) {
+    return new Object[] {facilityId, orderableId, "ADJUSTMENT", "CREDIT",
+        Date.valueOf(OCCURRED_DATE), quantity};
+  }
+
+  private void addLineItem(LocalDate occurredDate, ZonedDateTime processedDate, int quantity) {
+    jdbcTemplate.update("INSERT INTO stockmanagement.stock_card_line_items "
+            + "(id, stockcardid, reasonid, quantity, occurreddate, processeddate) "
+            + "VALUES (?, ?, ?, ?, ?, ?)", UUID.randomUUID(), stockCardId, reasonId, quantity,
+        Date.valueOf(occurredDate), processedDate.toOffsetDateTime());
+  }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.repository.indicator;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.util.Pair;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+public class StockmanagementRepositoryIntegrationTest {
+
+  private static final ZonedDateTime START_DATE =
+      ZonedDateTime.of(2023, 4, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+  private static final ZonedDateTime END_DATE = START_DATE.plusMonths(1);
+  private static final String ADJUSTMENT = "ADJUSTMENT";
+  private static final String CREDIT = "CREDIT";
+
+  private final UUID facilityId = UUID.randomUUID();
+  private final UUID orderableId = UUID.randomUUID();
+  private final UUID otherOrderableId = UUID.randomUUID();
+  private final UUID reasonId = UUID.randomUUID();
+
+  @Autowired
+  private StockmanagementRepository stockmanagementRepository;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+  @Before
+  public void setUp() {
+    // line items are read from the reporting data source, which cannot see rows inserted in
+    // the test transaction, so the queries are run on the primary data source instead
+    ReflectionTestUtils.setField(AopTestUtils.getTargetObject(stockmanagementRepository),
+        "jdbcTemplate", namedParameterJdbcTemplate);
+
+    StockmanagementTables.create(jdbcTemplate);
+    jdbcTemplate.update("INSERT INTO stockmanagement.stock_card_line_item_reasons "
+        + "(id, reasoncategory, reasontype) VALUES (?, ?, ?)", reasonId, ADJUSTMENT, CREDIT);
+  }
+
+  @Test
+  public void shouldFindBalancesOfGivenOrderablesAndFacilities() {
+    UUID stockCardId = addStockCard(orderableId, 15);
+    addLineItem(stockCardId, START_DATE.toLocalDate().minusDays(2));
+    addLineItem(stockCardId, START_DATE.toLocalDate().minusDays(1));
+    UUID otherStockCardId = addStockCard(otherOrderableId, 20);
+    addLineItem(otherStockCardId, START_DATE.toLocalDate().minusDays(1));
+
+    Map<Pair<UUID, UUID>, LatestValue> balances = stockmanagementRepository.findBalances(
+        START_DATE, Collections.singleton(orderableId), Collections.singleton(facilityId));
+
+    assertThat(balances.keySet(), is(Collections.singleton(Pair.of(facilityId, orderableId))));
+    assertThat(balances.get(Pair.of(facilityId, orderableId)).getValue(),
+        is(new BigDecimal(15)));
+    assertThat(balances.get(Pair.of(facilityId, orderableId)).getDate(),
+        is(START_DATE.toLocalDate().minusDays(1).atStartOfDay(ZoneId.systemDefault())
+            .toInstant()));
+  }
+
+  @Test
+  public void shouldNotFindBalancesOfStockCardsWithoutLineItemsUntilGivenDate() {
+    UUID stockCardId = addStockCard(orderableId, 15);
+    addLineItem(stockCardId, START_DATE.toLocalDate().plusDays(1));
+
+    assertThat(stockmanagementRepository.findBalances(START_DATE,
+        Collections.singleton(orderableId), Collections.singleton(facilityId)).isEmpty(),
+        is(true));
+  }
+
+  @Test
+  public void shouldSumDailyTotalsInGivenPeriod() {
+    addDailyTotal(orderableId, START_DATE.toLocalDate(), 5L);
+    addDailyTotal(orderableId, END_DATE.toLocalDate().minusDays(1), 7L);
+    addDailyTotal(orderableId, END_DATE.toLocalDate(), 11L);
+    addDailyTotal(otherOrderableId, START_DATE.toLocalDate(), 3L);
+
+    assertThat(stockmanagementRepository.findQuantities(ADJUSTMENT, CREDIT, START_DATE,
+        END_DATE, Arrays.asList(orderableId, otherOrderableId),
+        Collections.singleton(facilityId)).get(Pair.of(facilityId, orderableId)),
+        is(new BigDecimal(12)));
+  }
+
+  @Test
+  public void shouldReadDaysProcessedAfterWatermarkFromLineItems() {
+    setWatermark(START_DATE.minusDays(1));
+    addDailyTotal(orderableId, START_DATE.toLocalDate().plusDays(1), 5L);
+    addDailyTotal(orderableId, END_DATE.toLocalDate().minusDays(1), 7L);
+    UUID stockCardId = addStockCard(orderableId, 15);
+    addLineItem(stockCardId, START_DATE.toLocalDate().plusDays(1));
+    addLineItem(stockCardId, START_DATE.toLocalDate().plusDays(1));
+
+    assertThat(stockmanagementRepository.findQuantities(ADJUSTMENT, CREDIT, START_DATE,
+        END_DATE, Collections.singleton(orderableId), Collections.singleton(facilityId))
+        .get(Pair.of(facilityId, orderableId)), is(new BigDecimal(9)));
+  }
+
+  @Test
+  public void shouldNotReadDaysProcessedBeforeWatermarkFromLineItems() {
+    setWatermark(START_DATE.plusDays(1));
+    addDailyTotal(orderableId, START_DATE.toLocalDate().plusDays(1), 5L);
+    UUID stockCardId = addStockCard(orderableId, 15);
+    addLineItem(stockCardId, START_DATE.toLocalDate().plusDays(1));
+
+    assertThat(stockmanagementRepository.findQuantities(ADJUSTMENT, CREDIT, START_DATE,
+        END_DATE, Collections.singleton(orderableId), Collections.singleton(facilityId))
+        .get(Pair.of(facilityId, orderableId)), is(new BigDecimal(5)));
+  }
+
+  @Test
+  public void shouldNotSumDailyTotalsOfOtherReasons() {
+    addDailyTotal(orderableId, START_DATE.toLocalDate(), 5L);
+
+    assertThat(stockmanagementRepository.findQuantities(ADJUSTMENT, "DEBIT", START_DATE,
+        END_DATE, Collections.singleton(orderableId), Collections.singleton(facilityId))
+        .isEmpty(), is(true));
+  }
+
+  private UUID addStockCard(UUID orderable, int stockOnHand) {
+    UUID stockCardId = UUID.randomUUID();
+    jdbcTemplate.update("INSERT INTO stockmanagement.stock_cards (id, facilityid, orderableid) "
+        + "VALUES (?, ?, ?)", stockCardId, facilityId, orderable);
+    jdbcTemplate.update("INSERT INTO stockmanagement.calculated_stocks_on_hand "
+            + "(id, stockcardid, stockonhand, occurreddate) VALUES (?, ?, ?, ?)",
+        UUID.randomUUID(), stockCardId, stockOnHand, Date.valueOf(START_DATE.toLocalDate()));
+    return stockCardId;
+  }
+
+  private void addLineItem(UUID stockCardId, LocalDate occurredDate) {
+    jdbcTemplate.update("INSERT INTO stockmanagement.stock_card_line_items "
+            + "(id, stockcardid, reasonid, quantity, occurreddate, processeddate) "
+            + "VALUES (?, ?, ?, ?, ?, ?)", UUID.randomUUID(), stockCardId, reasonId, 1,
+        Date.valueOf(occurredDate), START_DATE.toOffsetDateTime());
+  }
+
+  private void setWatermark(ZonedDateTime date) {
+    jdbcTemplate.update("UPDATE dhis2.aggregate_watermark SET processeddate = ? "
+        + "WHERE name = 'stock_daily_total'", date.toOffsetDateTime());
+  }
+
+  private void addDailyTotal(UUID orderable, LocalDate occurredDate, long quantity) {
+    jdbcTemplate.update("INSERT INTO dhis2.stock_daily_total "
+            + "(facilityid, orderableid, reasoncategory, reasontype, occurreddate, quantity) "
+            + "VALUES (?, ?, ?, ?, ?, ?)", facilityId, orderable, ADJUSTMENT, CREDIT,
+        Date.valueOf(occurredDate), quantity);
+  }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.web;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+
+import guru.nidi.ramltester.junit.RamlMatchers;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import org.apache.http.HttpStatus;
+import org.junit.Test;
+import org.openlmis.integration.dhis2.domain.execution.ExecutionJob;
+import org.openlmis.integration.dhis2.dto.execution.BackfillRequestDto;
+import org.openlmis.integration.dhis2.exception.ValidationMessageException;
+import org.openlmis.integration.dhis2.i18n.MessageKeys;
+import org.openlmis.integration.dhis2.service.execution.ExecutionService;
+import org.openlmis.integration.dhis2.web.execution.ExecutionController;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+@SuppressWarnings("PMD.TooManyMethods")
+public class ExecutionControllerIntegrationTest extends BaseWebIntegrationTest {
+
+  private static final String RESOURCE_URL = ExecutionController.RESOURCE_PATH;
+  private static final String BACKFILL_URL = RESOURCE_URL + "/backfill";
+  private static final String JOB_URL = RESOURCE_URL + "/{jobId}";
+
+  private static final String JOB_ID = "jobId";
+  private static final String STATUS = "status";
+
+  private static final LocalDate START_DATE = LocalDate.of(2023, 1, 1);
+  private static final LocalDate END_DATE = LocalDate.of(2023, 3, 31);
+
+  @MockBean
+  private ExecutionService executionService;
+
+  private ExecutionJob job = new ExecutionJob(UUID.randomUUID(), ZonedDateTime.now());
+  private List<UUID> datasetIds = Collections.singletonList(UUID.randomUUID());
+  private BackfillRequestDto backfillRequest =
+      new BackfillRequestDto(datasetIds, START_DATE, END_DATE);
+
+  @Test
+  public void shouldSubmitExecution() {
+    given(executionService.submit()).willReturn(job);
+
+    restAssured
+        .given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .when()
+        .post(RESOURCE_URL)
+        .then()
+        .statusCode(HttpStatus.SC_ACCEPTED)
+        .body(ID, is(job.getId().toString()))
+        .body(STATUS, is(ExecutionJob.Status.QUEUED.name()));
+
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldReturnUnauthorizedForExecutionEndpointIfUserIsNotAuthorized() {
+    restAssured
+        .given()
+        .when()
+        .post(RESOURCE_URL)
+        .then()
+        .statusCode(HttpStatus.SC_UNAUTHORIZED);
+
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldSubmitBackfill() {
+    given(executionService.submitBackfill(datasetIds, START_DATE, END_DATE)).willReturn(job);
+
+    restAssured
+        .given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+        .body(backfillRequest)
+        .when()
+        .post(BACKFILL_URL)
+        .then()
+        .statusCode(HttpStatus.SC_ACCEPTED)
+        .body(ID, is(job.getId().toString()))
+        .body(STATUS, is(ExecutionJob.Status.QUEUED.name()));
+
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldReturnBadRequestMessageIfBackfillRangeIsInvalid() {
+    given(executionService.submitBackfill(datasetIds, START_DATE, END_DATE))
+        .willThrow(new ValidationMessageException(
+            MessageKeys.ERROR_EXECUTION_BACKFILL_RANGE_INVALID));
+
+    restAssured
+        .given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+        .body(backfillRequest)
+        .when()
+        .post(BACKFILL_URL)
+        .then()
+        .statusCode(HttpStatus.SC_BAD_REQUEST)
+        .body(MESSAGE_KEY, is(MessageKeys.ERROR_EXECUTION_BACKFILL_RANGE_INVALID));
+
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldReturnUnauthorizedForBackfillEndpointIfUserIsNotAuthorized() {
+    restAssured
+        .given()
+        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+        .body(backfillRequest)
+        .when()
+        .post(BACKFILL_URL)
+        .then()
+        .statusCode(HttpStatus.SC_UNAUTHORIZED);
+
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldReturnGivenExecution() {
+    given(executionService.findJob(job.getId())).willReturn(Optional.of(job));
+
+    restAssured
+        .given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .pathParam(JOB_ID, job.getId().toString())
+        .when()
+        .get(JOB_URL)
+        .then()
+        .statusCode(HttpStatus.SC_OK)
+        .body(ID, is(job.getId().toString()))
+        .body(STATUS, is(ExecutionJob.Status.QUEUED.name()));
+
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldReturnNotFoundMessageIfExecutionDoesNotExist() {
+    given(executionService.findJob(job.getId())).willReturn(Optional.empty());
+
+    restAssured
+        .given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .pathParam(JOB_ID, job.getId().toString())
+        .when()
+        .get(JOB_URL)
+        .then()
+        .statusCode(HttpStatus.SC_NOT_FOUND)
+        .body(MESSAGE_KEY, is(MessageKeys.ERROR_EXECUTION_JOB_NOT_FOUND));
+
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldReturnUnauthorizedForGetExecutionEndpointIfUserIsNotAuthorized() {
+    restAssured
+        .given()
+        .pathParam(JOB_ID, job.getId().toString())
+        .when()
+        .get(JOB_URL)
+        .then()
+        .statusCode(HttpStatus.SC_UNAUTHORIZED);
+
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.web;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import guru.nidi.ramltester.junit.RamlMatchers;
+import org.apache.http.HttpStatus;
+import org.junit.Test;
+import org.openlmis.integration.dhis2.web.httpclient.HttpClientController;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+
+public class HttpClientControllerIntegrationTest extends BaseWebIntegrationTest {
+
+  private static final String POOL_URL = HttpClientController.RESOURCE_PATH + "/pool";
+
+  @Value("${http.client.maxTotal}")
+  private int maxTotal;
+
+  @Test
+  public void shouldReturnConnectionPool() {
+    restAssured
+        .given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .when()
+        .get(POOL_URL)
+        .then()
+        .statusCode(HttpStatus.SC_OK)
+        .body("total.route", is(nullValue()))
+        .body("total.max", is(maxTotal))
+        .body("routes", is(notNullValue()));
+
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldReturnUnauthorizedForConnectionPoolEndpointIfUserIsNotAuthorized() {
+    restAssured
+        .given()
+        .when()
+        .get(POOL_URL)
+        .then()
+        .statusCode(HttpStatus.SC_UNAUTHORIZED);
+
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.web;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import guru.nidi.ramltester.junit.RamlMatchers;
+import java.util.Collections;
+import org.apache.http.HttpStatus;
+import org.junit.Test;
+import org.openlmis.integration.dhis2.dto.indicator.QueryPlanDto;
+import org.openlmis.integration.dhis2.service.indicator.QueryPlanService;
+import org.openlmis.integration.dhis2.web.indicator.QueryPlanController;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+
+public class QueryPlanControllerIntegrationTest extends BaseWebIntegrationTest {
+
+  private static final String RESOURCE_URL = QueryPlanController.RESOURCE_PATH;
+
+  @MockBean
+  private QueryPlanService queryPlanService;
+
+  private QueryPlanDto queryPlan = new QueryPlanDto("balances", 0.5, 12.5,
+      Collections.singletonList("Seq Scan on stock_card_line_items"),
+      JsonNodeFactory.instance.objectNode().put("Node Type", "Seq Scan"));
+
+  @Test
+  public void shouldReturnQueryPlans() {
+    given(queryPlanService.explainQueries()).willReturn(Collections.singletonList(queryPlan));
+
+    restAssured
+        .given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .when()
+        .get(RESOURCE_URL)
+        .then()
+        .statusCode(HttpStatus.SC_OK)
+        .body("", hasSize(1))
+        .body("[0].query", is(queryPlan.getQuery()))
+        .body("[0].warnings", is(queryPlan.getWarnings()))
+        .body("[0].plan.'Node Type'", is("Seq Scan"));
+
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldReturnUnauthorizedForQueryPlansEndpointIfUserIsNotAuthorized() {
+    restAssured
+        .given()
+        .when()
+        .get(RESOURCE_URL)
+        .then()
+        .statusCode(HttpStatus.SC_UNAUTHORIZED);
+
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+}
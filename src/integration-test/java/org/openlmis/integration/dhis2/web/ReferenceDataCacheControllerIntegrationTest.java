@@ -0,0 +1,64 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.web;
+
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import guru.nidi.ramltester.junit.RamlMatchers;
+import org.apache.http.HttpStatus;
+import org.junit.Test;
+import org.openlmis.integration.dhis2.service.ReferenceDataService;
+import org.openlmis.integration.dhis2.web.referencedata.ReferenceDataCacheController;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+
+public class ReferenceDataCacheControllerIntegrationTest extends BaseWebIntegrationTest {
+
+  private static final String RESOURCE_URL = ReferenceDataCacheController.RESOURCE_PATH;
+
+  @MockBean
+  private ReferenceDataService referenceDataService;
+
+  @Test
+  public void shouldEvictCache() {
+    restAssured
+        .given()
+        .header(HttpHeaders.AUTHORIZATION, getTokenHeader())
+        .when()
+        .delete(RESOURCE_URL)
+        .then()
+        .statusCode(HttpStatus.SC_NO_CONTENT);
+
+    verify(referenceDataService).evictCache();
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+  @Test
+  public void shouldReturnUnauthorizedForEvictCacheEndpointIfUserIsNotAuthorized() {
+    restAssured
+        .given()
+        .when()
+        .delete(RESOURCE_URL)
+        .then()
+        .statusCode(HttpStatus.SC_UNAUTHORIZED);
+
+    verify(referenceDataService, never()).evictCache();
+    assertThat(RAML_ASSERT_MESSAGE, restAssured.getLastReport(), RamlMatchers.hasNoViolations());
+  }
+
+}
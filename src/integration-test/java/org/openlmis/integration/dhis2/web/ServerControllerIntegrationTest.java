@@ -240,7 +240,7 @@ public class ServerControllerIntegrationTest extends BaseWebIntegrationTest {
 
   @Test
   public void shouldDeleteServer() {
-    given(serverRepository.existsById(serverDto.getId())).willReturn(true);
+    given(serverRepository.findById(serverDto.getId())).willReturn(Optional.of(server));
 
     restAssured
         .given()
@@ -256,7 +256,7 @@ public class ServerControllerIntegrationTest extends BaseWebIntegrationTest {
 
   @Test
   public void shouldReturnNotFoundMessageIfServerDoesNotExistForDeleteServerEndpoint() {
-    given(serverRepository.existsById(serverDto.getId())).willReturn(false);
+    given(serverRepository.findById(serverDto.getId())).willReturn(Optional.empty());
 
     restAssured
         .given()
@@ -0,0 +1,106 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2;
+
+import com.zaxxer.hikari.HikariDataSource;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+@Configuration
+public class DataSourceConfig {
+
+  public static final String REPORTING_DATA_SOURCE = "reportingDataSource";
+  public static final String REPORTING_JDBC_TEMPLATE = "reportingJdbcTemplate";
+
+  @Value("${reporting.datasource.url}")
+  private String reportingUrl;
+
+  @Value("${reporting.datasource.username}")
+  private String reportingUsername;
+
+  @Value("${reporting.datasource.password}")
+  private String reportingPassword;
+
+  @Value("${reporting.datasource.poolSize}")
+  private int reportingPoolSize;
+
+  @Value("${reporting.datasource.statementTimeout}")
+  private long reportingStatementTimeout;
+
+  /**
+   * Properties of the primary data source. It is declared here because Spring Boot only
+   * configures it when there is no other data source.
+   */
+  @Bean
+  @Primary
+  @ConfigurationProperties("spring.datasource")
+  public DataSourceProperties dataSourceProperties() {
+    return new DataSourceProperties();
+  }
+
+  /**
+   * Primary data source used by JPA, Flyway and JaVers.
+   */
+  @Bean
+  @Primary
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource dataSource(DataSourceProperties properties) {
+    return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+  }
+
+  /**
+   * Template with named parameters on the primary data source, used for tables this service
+   * writes to, so that they are read without the lag of a replica.
+   */
+  @Bean
+  @Primary
+  public NamedParameterJdbcTemplate namedParameterJdbcTemplate(DataSource dataSource) {
+    return new NamedParameterJdbcTemplate(dataSource);
+  }
+
+  /**
+   * Data source running the analytical indicator queries, with its own connection pool so that
+   * a large sync does not take connections from the API. It can point to a read replica.
+   * Connections are read-only and statements are cancelled after the configured timeout.
+   */
+  @Bean(name = REPORTING_DATA_SOURCE)
+  public HikariDataSource reportingDataSource() {
+    HikariDataSource dataSource = new HikariDataSource();
+    dataSource.setPoolName("reporting");
+    dataSource.setJdbcUrl(reportingUrl);
+    dataSource.setUsername(reportingUsername);
+    dataSource.setPassword(reportingPassword);
+    dataSource.setMaximumPoolSize(reportingPoolSize);
+    dataSource.setReadOnly(true);
+    dataSource.setConnectionInitSql("SET statement_timeout = " + reportingStatementTimeout
+        + "; SET default_transaction_read_only = on");
+    return dataSource;
+  }
+
+  @Bean(name = REPORTING_JDBC_TEMPLATE)
+  public NamedParameterJdbcTemplate reportingJdbcTemplate(
+      @Qualifier(REPORTING_DATA_SOURCE) DataSource dataSource) {
+    return new NamedParameterJdbcTemplate(dataSource);
+  }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+@Configuration
+@EnableScheduling
+public class ExecutionConfig implements SchedulingConfigurer {
+
+  public static final String EXECUTION_TASK_EXECUTOR = "executionTaskExecutor";
+  public static final String BACKGROUND_TASK_SCHEDULER = "backgroundTaskScheduler";
+  public static final String IMPORT_TASK_SCHEDULER = "importTaskScheduler";
+  public static final String STOCK_DAILY_TOTAL_TASK_SCHEDULER = "stockDailyTotalTaskScheduler";
+  public static final String BACKFILL_TASK_EXECUTOR = "backfillTaskExecutor";
+  public static final String DHIS_REQUEST_EXECUTOR = "dhisRequestExecutor";
+  public static final String REFERENCE_DATA_REQUEST_EXECUTOR = "referenceDataRequestExecutor";
+
+  @Value("${execution.pool.coreSize}")
+  private int corePoolSize;
+
+  @Value("${execution.pool.maxSize}")
+  private int maxPoolSize;
+
+  @Value("${execution.pool.queueCapacity}")
+  private int queueCapacity;
+
+  @Value("${execution.backfill.poolSize}")
+  private int backfillPoolSize;
+
+  @Value("${dhis2.client.poolSize}")
+  private int dhisRequestPoolSize;
+
+  @Value("${referencedata.client.poolSize}")
+  private int referenceDataRequestPoolSize;
+
+  @Value("${execution.background.poolSize}")
+  private int backgroundPoolSize;
+
+  @Value("${dhis2.asyncImport.poolSize}")
+  private int importPoolSize;
+
+  /**
+   * Executor running sync executions outside of the HTTP request threads.
+   */
+  @Bean(name = EXECUTION_TASK_EXECUTOR)
+  public ThreadPoolTaskExecutor executionTaskExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(corePoolSize);
+    executor.setMaxPoolSize(maxPoolSize);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setThreadNamePrefix("execution-");
+    executor.setWaitForTasksToCompleteOnShutdown(true);
+    return executor;
+  }
+
+  /**
+   * Executor running the periods of a backfill in parallel. The number of threads is fixed, so
+   * periods wait in the queue until a thread is free.
+   */
+  @Bean(name = BACKFILL_TASK_EXECUTOR)
+  public ThreadPoolTaskExecutor backfillTaskExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(backfillPoolSize);
+    executor.setMaxPoolSize(backfillPoolSize);
+    executor.setThreadNamePrefix("backfill-");
+    executor.setWaitForTasksToCompleteOnShutdown(true);
+    return executor;
+  }
+
+  /**
+   * Executor sending requests to DHIS2 servers, so that the threads computing data values do
+   * not wait for the responses. The number of requests in flight to a single server is limited
+   * by the service sending them.
+   */
+  @Bean(name = DHIS_REQUEST_EXECUTOR)
+  public ThreadPoolTaskExecutor dhisRequestExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(dhisRequestPoolSize);
+    executor.setMaxPoolSize(dhisRequestPoolSize);
+    executor.setThreadNamePrefix("dhis-request-");
+    executor.setWaitForTasksToCompleteOnShutdown(true);
+    return executor;
+  }
+
+  /**
+   * Executor fetching pages of referencedata resources in parallel. The number of threads
+   * limits how many pages are requested at the same time.
+   */
+  @Bean(name = REFERENCE_DATA_REQUEST_EXECUTOR)
+  public ThreadPoolTaskExecutor referenceDataRequestExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(referenceDataRequestPoolSize);
+    executor.setMaxPoolSize(referenceDataRequestPoolSize);
+    executor.setThreadNamePrefix("referencedata-request-");
+    executor.setWaitForTasksToCompleteOnShutdown(true);
+    return executor;
+  }
+
+  /**
+   * Scheduler running short background tasks, like refreshing access tokens. It is also used to
+   * run the scheduled methods of the service.
+   */
+  @Bean(name = BACKGROUND_TASK_SCHEDULER)
+  public ThreadPoolTaskScheduler backgroundTaskScheduler() {
+    ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    scheduler.setPoolSize(backgroundPoolSize);
+    scheduler.setThreadNamePrefix("background-");
+    return scheduler;
+  }
+
+  /**
+   * Scheduler polling DHIS2 for the state of asynchronous imports. Nothing else runs on it, so
+   * imports are tracked, and their requests released, even while other background tasks are
+   * slow.
+   */
+  @Bean(name = IMPORT_TASK_SCHEDULER)
+  public ThreadPoolTaskScheduler importTaskScheduler() {
+    ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    scheduler.setPoolSize(importPoolSize);
+    scheduler.setThreadNamePrefix("import-poll-");
+    return scheduler;
+  }
+
+  /**
+   * Scheduler refreshing the stock daily totals. A refresh can take minutes after a large
+   * backlog of line items, so it runs on its own thread.
+   */
+  @Bean(name = STOCK_DAILY_TOTAL_TASK_SCHEDULER)
+  public ThreadPoolTaskScheduler stockDailyTotalTaskScheduler() {
+    ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    scheduler.setPoolSize(1);
+    scheduler.setThreadNamePrefix("stock-daily-total-");
+    return scheduler;
+  }
+
+  /**
+   * Runs the scheduled methods on the background scheduler, as there is more than one scheduler
+   * to choose from.
+   */
+  @Override
+  public void configureTasks(ScheduledTaskRegistrar registrar) {
+    registrar.setTaskScheduler(backgroundTaskScheduler());
+  }
+
+}
@@ -15,15 +15,27 @@
 
 package org.openlmis.integration.dhis2;
 
+import java.net.URI;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
 import javax.net.ssl.SSLContext;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.TrustStrategy;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
@@ -32,11 +44,42 @@ import org.springframework.web.client.RestTemplate;
 @Configuration
 public class RestTemplateConfig {
 
+  private static final String HTTPS = "https";
+  private static final String MAX_PER_HOST_PROPERTY = "http.client.maxPerHost";
+
+  @Value("${http.client.maxTotal}")
+  private int maxTotal;
+
+  @Value("${http.client.maxPerRoute}")
+  private int maxPerRoute;
+
+  @Value("${http.client.maxPerHost}")
+  private String maxPerHost;
+
+  @Value("${http.client.connectTimeout}")
+  private int connectTimeout;
+
+  @Value("${http.client.readTimeout}")
+  private int readTimeout;
+
+  @Value("${http.client.connectionRequestTimeout}")
+  private int connectionRequestTimeout;
+
+  @Value("${http.client.keepAlive}")
+  private long keepAlive;
+
+  @Value("${http.client.idleTimeout}")
+  private long idleTimeout;
+
+  @Value("${http.client.validateAfterInactivity}")
+  private int validateAfterInactivity;
+
   /**
-   * RestTemplate configuration for Spring context.
+   * Connection pool shared by all outgoing requests. Limits of specific hosts can be set with
+   * a comma separated list of url=limit pairs, e.g. https://dhis2.example.org=20.
    */
   @Bean
-  public RestTemplate restTemplate() throws KeyStoreException,
+  public PoolingHttpClientConnectionManager connectionManager() throws KeyStoreException,
           NoSuchAlgorithmException, KeyManagementException {
     TrustStrategy acceptingTrustStrategy = (X509Certificate[] chain, String authType) -> true;
 
@@ -46,16 +89,98 @@ public class RestTemplateConfig {
 
     SSLConnectionSocketFactory csf = new SSLConnectionSocketFactory(sslContext);
 
-    CloseableHttpClient httpClient = HttpClients.custom()
-            .setSSLSocketFactory(csf)
+    PoolingHttpClientConnectionManager connectionManager =
+            new PoolingHttpClientConnectionManager(RegistryBuilder
+                    .<ConnectionSocketFactory>create()
+                    .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                    .register(HTTPS, csf)
+                    .build());
+
+    connectionManager.setMaxTotal(maxTotal);
+    connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+    connectionManager.setValidateAfterInactivity(validateAfterInactivity);
+
+    for (String hostLimit : StringUtils.split(maxPerHost, ',')) {
+      setMaxPerHost(connectionManager, hostLimit.trim());
+    }
+
+    return connectionManager;
+  }
+
+  /**
+   * HTTP client with pooled, kept alive connections. Idle and expired connections are evicted
+   * from the pool in the background.
+   */
+  @Bean
+  public CloseableHttpClient httpClient(PoolingHttpClientConnectionManager connectionManager) {
+    RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectTimeout(connectTimeout)
+            .setSocketTimeout(readTimeout)
+            .setConnectionRequestTimeout(connectionRequestTimeout)
+            .build();
+
+    return HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(requestConfig)
+            .setKeepAliveStrategy((response, context) -> {
+              long duration = DefaultConnectionKeepAliveStrategy.INSTANCE
+                      .getKeepAliveDuration(response, context);
+              return duration > 0 ? duration : keepAlive;
+            })
+            .evictExpiredConnections()
+            .evictIdleConnections(idleTimeout, TimeUnit.MILLISECONDS)
             .build();
+  }
 
+  /**
+   * RestTemplate configuration for Spring context.
+   */
+  @Bean
+  public RestTemplate restTemplate(CloseableHttpClient httpClient) {
     HttpComponentsClientHttpRequestFactory requestFactory =
             new HttpComponentsClientHttpRequestFactory();
 
     requestFactory.setHttpClient(httpClient);
+    requestFactory.setBufferRequestBody(false);
 
     return new RestTemplate(requestFactory);
   }
 
+  private void setMaxPerHost(PoolingHttpClientConnectionManager connectionManager,
+          String hostLimit) {
+    String url = StringUtils.substringBeforeLast(hostLimit, "=").trim();
+    String limit = StringUtils.substringAfterLast(hostLimit, "=").trim();
+
+    HttpRoute route;
+    int maxConnections;
+    try {
+      route = toRoute(url);
+      maxConnections = Integer.parseInt(limit);
+    } catch (IllegalArgumentException ex) {
+      throw invalidHostLimit(hostLimit, ex);
+    }
+
+    if (maxConnections <= 0) {
+      throw invalidHostLimit(hostLimit, null);
+    }
+
+    connectionManager.setMaxPerRoute(route, maxConnections);
+  }
+
+  private IllegalStateException invalidHostLimit(String hostLimit, Exception cause) {
+    return new IllegalStateException("Invalid " + MAX_PER_HOST_PROPERTY + " entry '"
+            + hostLimit + "', expected url=limit with a positive limit", cause);
+  }
+
+  private HttpRoute toRoute(String url) {
+    URI uri = URI.create(url);
+    if (null == uri.getHost()) {
+      throw new IllegalArgumentException("Url has no host: " + url);
+    }
+
+    boolean secure = HTTPS.equalsIgnoreCase(uri.getScheme());
+    int port = uri.getPort() > 0 ? uri.getPort() : (secure ? 443 : 80);
+    return new HttpRoute(new HttpHost(uri.getHost(), port, uri.getScheme()), null, secure);
+  }
+
 }
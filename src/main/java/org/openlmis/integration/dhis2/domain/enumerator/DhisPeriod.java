@@ -20,7 +20,11 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 import org.springframework.data.util.Pair;
 
@@ -54,8 +58,7 @@ public enum DhisPeriod {
     ZoneId zoneId = now.getZone();
     LocalDateTime startDate = now.with(TemporalAdjusters.previousOrSame(dayOfWeek))
             .toLocalDate().atStartOfDay();
-    LocalDateTime endDate = now.with(TemporalAdjusters.nextOrSame(dayOfWeek))
-            .toLocalDate().atStartOfDay();
+    LocalDateTime endDate = startDate.plusWeeks(1);
     return Pair.of(ZonedDateTime.of(startDate, zoneId), ZonedDateTime.of(endDate, zoneId));
   }
 
@@ -82,6 +85,28 @@ public enum DhisPeriod {
     return this.generator.apply(now);
   }
 
+  /**
+   * Generates date ranges of all periods that overlap with the given date range.
+   *
+   *<p>e.g. MONTHLY.generate(2023-01-15, 2023-03-01) will generate full January and February
+   *
+   * @param startDate Start of the date range (inclusive)
+   * @param endDate   End of the date range (exclusive)
+   * @return List of pairs containing starting date and end date, in chronological order
+   */
+  public List<Pair<ZonedDateTime, ZonedDateTime>> generate(ZonedDateTime startDate,
+      ZonedDateTime endDate) {
+    List<Pair<ZonedDateTime, ZonedDateTime>> ranges = new ArrayList<>();
+
+    Pair<ZonedDateTime, ZonedDateTime> range = generate(startDate);
+    while (range.getFirst().isBefore(endDate)) {
+      ranges.add(range);
+      range = generate(range.getSecond());
+    }
+
+    return ranges;
+  }
+
   /**
    * Returns ISO code for a given period enumerator.
    *
@@ -103,4 +128,24 @@ public enum DhisPeriod {
     return isoPatternMap.get(periodKey);
   }
 
+  /**
+   * Returns period enumerator for a given DHIS2 period type.
+   *
+   * @param periodType DHIS2 period type, e.g. Monthly or WeeklyWednesday
+   * @return Period enumerator or null if the period type is not supported
+   */
+  public static DhisPeriod fromPeriodType(String periodType) {
+    Map<String, DhisPeriod> periodTypeMap = new HashMap<>();
+    periodTypeMap.put("Daily", DAILY);
+    periodTypeMap.put("Weekly", WEEKLY_MONDAY);
+    periodTypeMap.put("WeeklyTuesday", WEEKLY_TUESDAY);
+    periodTypeMap.put("WeeklyWednesday", WEEKLY_WEDNESDAY);
+    periodTypeMap.put("WeeklyThursday", WEEKLY_THURSDAY);
+    periodTypeMap.put("WeeklyFriday", WEEKLY_FRIDAY);
+    periodTypeMap.put("WeeklySaturday", WEEKLY_SATURDAY);
+    periodTypeMap.put("WeeklySunday", WEEKLY_SUNDAY);
+    periodTypeMap.put("Monthly", MONTHLY);
+    return periodTypeMap.get(periodType);
+  }
+
 }
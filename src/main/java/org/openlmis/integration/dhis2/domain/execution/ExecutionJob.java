@@ -0,0 +1,177 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.domain.execution;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Table;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.openlmis.integration.dhis2.domain.BaseEntity;
+
+/**
+ * Objects of this class represent a single sync execution submitted to the execution service.
+ * The state of a job is stored in the database by the worker thread that runs it, so it can be
+ * retrieved from every service instance, also after a restart.
+ */
+@Entity
+@Table(name = "execution_job", schema = "dhis2")
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+@ToString(callSuper = true)
+public class ExecutionJob extends BaseEntity {
+
+  public enum Status {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+  }
+
+  @Column(nullable = false)
+  @Getter
+  private ZonedDateTime createdDate;
+
+  @Column(nullable = false)
+  @Enumerated(EnumType.STRING)
+  @Getter
+  private Status status = Status.QUEUED;
+
+  @Column
+  @Getter
+  private ZonedDateTime startDate;
+
+  @Column
+  @Getter
+  private ZonedDateTime finishDate;
+
+  @Column(nullable = false)
+  @Getter
+  private int totalUnits;
+
+  @Column(nullable = false)
+  @Getter
+  private int completedUnits;
+
+  @Column(nullable = false)
+  @Getter
+  private int failedUnits;
+
+  @Column
+  @Getter
+  private String errorMessage;
+
+  @Column(nullable = false)
+  @Getter
+  private ZonedDateTime heartbeatDate;
+
+  /**
+   * Creates a new queued job.
+   */
+  public ExecutionJob(UUID id, ZonedDateTime createdDate) {
+    setId(id);
+    this.createdDate = createdDate;
+    this.heartbeatDate = createdDate;
+  }
+
+  public boolean isFinished() {
+    return status == Status.COMPLETED || status == Status.FAILED;
+  }
+
+  /**
+   * Records that the service instance running the job was alive at the given date.
+   */
+  public void heartbeat(ZonedDateTime date) {
+    this.heartbeatDate = date;
+  }
+
+  /**
+   * Marks the job as running with the given number of units to process.
+   */
+  public void start(ZonedDateTime date, int units) {
+    this.totalUnits = units;
+    this.startDate = date;
+    this.status = Status.RUNNING;
+  }
+
+  public void unitCompleted() {
+    completedUnits++;
+  }
+
+  public void unitFailed(String message) {
+    failedUnits++;
+    this.errorMessage = message;
+  }
+
+  /**
+   * Marks the job as finished. The job is failed if any of its units failed.
+   */
+  public void finish(ZonedDateTime date) {
+    this.finishDate = date;
+    this.status = failedUnits > 0 ? Status.FAILED : Status.COMPLETED;
+  }
+
+  /**
+   * Marks the job as failed with the given message.
+   */
+  public void fail(ZonedDateTime date, String message) {
+    this.errorMessage = message;
+    this.finishDate = date;
+    this.status = Status.FAILED;
+  }
+
+  /**
+   * Exports data to the exporter.
+   */
+  public void export(Exporter exporter) {
+    exporter.setId(getId());
+    exporter.setStatus(status);
+    exporter.setCreatedDate(createdDate);
+    exporter.setStartDate(startDate);
+    exporter.setFinishDate(finishDate);
+    exporter.setTotalUnits(totalUnits);
+    exporter.setCompletedUnits(completedUnits);
+    exporter.setFailedUnits(failedUnits);
+    exporter.setErrorMessage(errorMessage);
+  }
+
+  public interface Exporter extends BaseExporter {
+
+    void setStatus(Status status);
+
+    void setCreatedDate(ZonedDateTime createdDate);
+
+    void setStartDate(ZonedDateTime startDate);
+
+    void setFinishDate(ZonedDateTime finishDate);
+
+    void setTotalUnits(int totalUnits);
+
+    void setCompletedUnits(int completedUnits);
+
+    void setFailedUnits(int failedUnits);
+
+    void setErrorMessage(String errorMessage);
+
+  }
+
+}
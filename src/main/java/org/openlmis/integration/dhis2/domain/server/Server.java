@@ -61,6 +61,41 @@ public class Server extends BaseEntity {
   @Setter
   private String password;
 
+  @Column
+  @Getter
+  @Setter
+  private Integer maxValuesPerRequest;
+
+  @Column
+  @Getter
+  @Setter
+  private Integer maxBytesPerRequest;
+
+  @Column(nullable = false)
+  @Getter
+  @Setter
+  private boolean compressRequests;
+
+  @Column(nullable = false)
+  @Getter
+  @Setter
+  private boolean asyncImport;
+
+  @Column
+  @Getter
+  @Setter
+  private Integer maxRequestsPerSecond;
+
+  @Column
+  @Getter
+  @Setter
+  private Integer maxConcurrentRequests;
+
+  @Column
+  @Getter
+  @Setter
+  private Integer maxValuesPerSecond;
+
   @Column
   @Getter
   @Setter
@@ -86,6 +121,13 @@ public class Server extends BaseEntity {
     url = importer.getUrl();
     username = importer.getUsername();
     password = importer.getPassword();
+    maxValuesPerRequest = importer.getMaxValuesPerRequest();
+    maxBytesPerRequest = importer.getMaxBytesPerRequest();
+    compressRequests = importer.isCompressRequests();
+    asyncImport = importer.isAsyncImport();
+    maxRequestsPerSecond = importer.getMaxRequestsPerSecond();
+    maxConcurrentRequests = importer.getMaxConcurrentRequests();
+    maxValuesPerSecond = importer.getMaxValuesPerSecond();
   }
 
   /**
@@ -97,6 +139,13 @@ public class Server extends BaseEntity {
     exporter.setUrl(url);
     exporter.setUsername(username);
     exporter.setPassword(password);
+    exporter.setMaxValuesPerRequest(maxValuesPerRequest);
+    exporter.setMaxBytesPerRequest(maxBytesPerRequest);
+    exporter.setCompressRequests(compressRequests);
+    exporter.setAsyncImport(asyncImport);
+    exporter.setMaxRequestsPerSecond(maxRequestsPerSecond);
+    exporter.setMaxConcurrentRequests(maxConcurrentRequests);
+    exporter.setMaxValuesPerSecond(maxValuesPerSecond);
   }
 
   public interface Exporter extends BaseExporter {
@@ -109,6 +158,20 @@ public class Server extends BaseEntity {
 
     void setPassword(String password);
 
+    void setMaxValuesPerRequest(Integer maxValuesPerRequest);
+
+    void setMaxBytesPerRequest(Integer maxBytesPerRequest);
+
+    void setCompressRequests(boolean compressRequests);
+
+    void setAsyncImport(boolean asyncImport);
+
+    void setMaxRequestsPerSecond(Integer maxRequestsPerSecond);
+
+    void setMaxConcurrentRequests(Integer maxConcurrentRequests);
+
+    void setMaxValuesPerSecond(Integer maxValuesPerSecond);
+
   }
 
   public interface Importer extends BaseImporter {
@@ -121,6 +184,20 @@ public class Server extends BaseEntity {
 
     String getPassword();
 
+    Integer getMaxValuesPerRequest();
+
+    Integer getMaxBytesPerRequest();
+
+    boolean isCompressRequests();
+
+    boolean isAsyncImport();
+
+    Integer getMaxRequestsPerSecond();
+
+    Integer getMaxConcurrentRequests();
+
+    Integer getMaxValuesPerSecond();
+
   }
 
 }
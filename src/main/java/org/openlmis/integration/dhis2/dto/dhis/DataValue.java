@@ -15,6 +15,7 @@
 
 package org.openlmis.integration.dhis2.dto.dhis;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import java.math.BigDecimal;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -28,6 +29,7 @@ import lombok.ToString;
  * dimensions: data element, organisation unit and period.
  * @see <a href="https://docs.dhis2.org/">DHIS2 Documentation</a>
  */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @AllArgsConstructor
 @NoArgsConstructor
 @Getter
@@ -36,6 +38,7 @@ import lombok.ToString;
 public class DataValue {
 
   private String dataElement;
+  private String orgUnit;
   private BigDecimal value;
 
 }
\ No newline at end of file
@@ -15,6 +15,7 @@
 
 package org.openlmis.integration.dhis2.dto.dhis;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import java.util.List;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -27,6 +28,7 @@ import lombok.ToString;
  * Data value set is the collection of {@link DataValue}.
  * @see <a href="https://docs.dhis2.org/">DHIS2 Documentation</a>
  */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @AllArgsConstructor
 @NoArgsConstructor
 @Getter
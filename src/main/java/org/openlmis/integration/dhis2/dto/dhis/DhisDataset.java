@@ -15,6 +15,7 @@
 
 package org.openlmis.integration.dhis2.dto.dhis;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -44,6 +45,10 @@ public class DhisDataset {
   @Setter
   private String periodType;
 
+  @Getter
+  @Setter
+  private String lastUpdated;
+
   @Setter
   private List<Map<Object, DhisDataElement>> dataSetElements;
 
@@ -57,6 +62,10 @@ public class DhisDataset {
    * @return list of data elements.
    */
   public List<DhisDataElement> getDataSetElements() {
+    if (null == dataSetElements) {
+      return Collections.emptyList();
+    }
+
     return dataSetElements.stream()
             .flatMap(e -> e.values().stream())
             .collect(Collectors.toList());
@@ -15,10 +15,16 @@
 
 package org.openlmis.integration.dhis2.dto.dhis;
 
+import java.util.List;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
 
+/**
+ * Contains the import summary of the response received from the DHIS2 API, or the reference
+ * to the import task of an asynchronous import.
+ * @see <a href="https://docs.dhis2.org/">DHIS2 Documentation</a>
+ */
 @Getter
 @Setter
 @ToString
@@ -26,5 +32,19 @@ public class DhisResponseBodyDetails {
 
   private String status;
   private String description;
+  private String id;
+  private String jobType;
+  private DhisImportCount importCount;
+  private List<DhisImportConflict> conflicts;
+  private List<Integer> rejectedIndexes;
+
+  /**
+   * Checks whether any of the data values was rejected by the import.
+   */
+  public boolean hasRejectedValues() {
+    return (null != importCount && importCount.getIgnored() > 0)
+        || (null != conflicts && !conflicts.isEmpty())
+        || (null != rejectedIndexes && !rejectedIndexes.isEmpty());
+  }
 
 }
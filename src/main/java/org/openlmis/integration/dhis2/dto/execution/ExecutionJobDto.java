@@ -0,0 +1,53 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.dto.execution;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.openlmis.integration.dhis2.domain.execution.ExecutionJob;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@EqualsAndHashCode
+@ToString
+public final class ExecutionJobDto implements ExecutionJob.Exporter {
+
+  private UUID id;
+  private ExecutionJob.Status status;
+  private ZonedDateTime createdDate;
+  private ZonedDateTime startDate;
+  private ZonedDateTime finishDate;
+  private int totalUnits;
+  private int completedUnits;
+  private int failedUnits;
+  private String errorMessage;
+
+  /**
+   * Creates new instance based on the execution job.
+   */
+  public static ExecutionJobDto newInstance(ExecutionJob job) {
+    ExecutionJobDto dto = new ExecutionJobDto();
+    job.export(dto);
+    return dto;
+  }
+
+}
@@ -36,6 +36,13 @@ public final class ServerDto extends BaseDto implements Server.Importer, Server.
   private String url;
   private String username;
   private String password;
+  private Integer maxValuesPerRequest;
+  private Integer maxBytesPerRequest;
+  private boolean compressRequests;
+  private boolean asyncImport;
+  private Integer maxRequestsPerSecond;
+  private Integer maxConcurrentRequests;
+  private Integer maxValuesPerSecond;
 
   /**
    * Creates new instance based on domain object.
@@ -15,6 +15,8 @@
 
 package org.openlmis.integration.dhis2.exception;
 
+import org.openlmis.integration.dhis2.util.Message;
+
 public class RestOperationException extends BaseMessageException {
   public RestOperationException(String messageKey, Throwable cause) {
     super(messageKey, cause);
@@ -24,4 +26,8 @@ public class RestOperationException extends BaseMessageException {
     super(messageKey);
   }
 
+  public RestOperationException(Message message) {
+    super(message);
+  }
+
 }
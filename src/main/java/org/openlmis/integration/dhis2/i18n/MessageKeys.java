@@ -28,6 +28,9 @@ public abstract class MessageKeys {
   private static final String DATASET = "dataset";
   private static final String ELEMENT = "element";
   private static final String JAVERS = "javers";
+  private static final String EXECUTION = "execution";
+  private static final String JOB = "job";
+  private static final String BACKFILL = "backfill";
 
   private static final String ID = "id";
   private static final String CODE = "code";
@@ -37,6 +40,7 @@ public abstract class MessageKeys {
   private static final String CONNECTION = "connection";
   private static final String BODY = "body";
   private static final String CLIENT = "client";
+  private static final String IMPORT = "import";
 
   private static final String MISMATCH = "mismatch";
   private static final String NOT_FOUND = "notFound";
@@ -46,6 +50,11 @@ public abstract class MessageKeys {
   private static final String UNABLE_TO_PARSE = "unableToParse";
   private static final String ENUMERATOR = "enumerator";
   private static final String NOT_EXIST = "notExist";
+  private static final String TIMEOUT = "timeout";
+  private static final String UNAVAILABLE = "unavailable";
+  private static final String REJECTED = "rejected";
+  private static final String RANGE = "range";
+  private static final String INVALID = "invalid";
 
   private static final String ERROR_PREFIX = join(SERVICE_PREFIX, ERROR);
 
@@ -60,6 +69,14 @@ public abstract class MessageKeys {
           join(ERROR_EXTERNAL_API, CONNECTION, FAILED);
   public static final String ERROR_EXTERNAL_API_CLIENT_REQUEST_FAILED =
           join(ERROR_EXTERNAL_API, CLIENT, REQUEST, FAILED);
+  public static final String ERROR_EXTERNAL_API_IMPORT_TIMEOUT =
+          join(ERROR_EXTERNAL_API, IMPORT, TIMEOUT);
+  public static final String ERROR_EXTERNAL_API_IMPORT_FAILED =
+          join(ERROR_EXTERNAL_API, IMPORT, FAILED);
+  public static final String ERROR_EXTERNAL_API_IMPORT_REJECTED =
+          join(ERROR_EXTERNAL_API, IMPORT, REJECTED);
+  public static final String ERROR_EXTERNAL_API_UNAVAILABLE =
+          join(ERROR_EXTERNAL_API, UNAVAILABLE);
 
   public static final String ERROR_DATASET_NOT_FOUND = join(ERROR_PREFIX, DATASET, NOT_FOUND);
   public static final String ERROR_DATASET_ID_MISMATCH = join(ERROR_PREFIX, DATASET, ID, MISMATCH);
@@ -76,6 +93,11 @@ public abstract class MessageKeys {
   public static final String ERROR_ENUMERATOR_NOT_EXIST =
           join(ERROR_PREFIX, ENUMERATOR, NOT_EXIST);
 
+  public static final String ERROR_EXECUTION_JOB_NOT_FOUND =
+          join(ERROR_PREFIX, EXECUTION, JOB, NOT_FOUND);
+  public static final String ERROR_EXECUTION_BACKFILL_RANGE_INVALID =
+          join(ERROR_PREFIX, EXECUTION, BACKFILL, RANGE, INVALID);
+
   public static final String ERROR_JAVERS_EXISTING_ENTRY =
           join(ERROR_PREFIX, JAVERS, "entryAlreadyExists");
 
@@ -15,6 +15,8 @@
 
 package org.openlmis.integration.dhis2.repository.dataset;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 import org.javers.spring.annotation.JaversSpringDataAuditable;
 import org.openlmis.integration.dhis2.domain.dataset.Dataset;
@@ -23,6 +25,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 
 @JaversSpringDataAuditable
 public interface DatasetRepository extends PagingAndSortingRepository<Dataset, UUID>,
@@ -45,4 +48,15 @@ public interface DatasetRepository extends PagingAndSortingRepository<Dataset, U
       nativeQuery = true)
   Page<Dataset> findAllWithoutSnapshots(Pageable pageable);
 
+  @Query("SELECT DISTINCT d FROM Dataset d"
+      + " JOIN FETCH d.server"
+      + " LEFT JOIN FETCH d.dataElementList")
+  List<Dataset> findAllWithServerAndDataElements();
+
+  @Query("SELECT DISTINCT d FROM Dataset d"
+      + " JOIN FETCH d.server"
+      + " LEFT JOIN FETCH d.dataElementList"
+      + " WHERE d.id IN :ids")
+  List<Dataset> findAllWithServerAndDataElementsByIdIn(@Param("ids") Collection<UUID> ids);
+
 }
@@ -0,0 +1,61 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.repository.execution;
+
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import org.openlmis.integration.dhis2.domain.execution.ExecutionJob;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface ExecutionJobRepository extends CrudRepository<ExecutionJob, UUID> {
+
+  /**
+   * Removes finished jobs, except for the given number of most recently created jobs.
+   *
+   * @return number of removed jobs.
+   */
+  @Modifying
+  @Transactional
+  @Query(value = "DELETE FROM dhis2.execution_job\n"
+      + "WHERE finishDate IS NOT NULL\n"
+      + "    AND id NOT IN (\n"
+      + "        SELECT id\n"
+      + "        FROM dhis2.execution_job\n"
+      + "        ORDER BY createdDate DESC\n"
+      + "        LIMIT :retained\n"
+      + "    )\n",
+      nativeQuery = true)
+  int deleteFinishedExceptLatest(@Param("retained") int retained);
+
+  /**
+   * Updates the heartbeat of the jobs with the given IDs.
+   *
+   * @return number of updated jobs.
+   */
+  @Modifying
+  @Transactional
+  @Query("UPDATE ExecutionJob SET heartbeatDate = :date WHERE id IN :ids")
+  int updateHeartbeat(@Param("ids") Collection<UUID> ids, @Param("date") ZonedDateTime date);
+
+  List<ExecutionJob> findByFinishDateIsNullAndHeartbeatDateBefore(ZonedDateTime date);
+
+}
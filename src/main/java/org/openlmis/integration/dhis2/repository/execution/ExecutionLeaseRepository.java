@@ -0,0 +1,89 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.repository.execution;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Leases of scheduled dataset executions. A lease can be acquired by exactly one service
+ * instance, so each scheduled execution runs once even if the service is scaled out.
+ */
+@Repository
+public class ExecutionLeaseRepository {
+
+  static final String DATASET_ID = "datasetId";
+  static final String SCHEDULED_DATE = "scheduledDate";
+  static final String OWNER = "owner";
+  static final String ACQUIRED_DATE = "acquiredDate";
+
+  @PersistenceContext
+  EntityManager entityManager;
+
+  /**
+   * Tries to acquire the lease of the given dataset execution.
+   *
+   * @return true if the lease was acquired by the given owner, false if it is already taken.
+   */
+  @Transactional
+  public boolean tryAcquire(UUID datasetId, ZonedDateTime scheduledDate, String owner,
+      ZonedDateTime acquiredDate) {
+    int inserted = entityManager.createNativeQuery(
+            "INSERT INTO dhis2.execution_lease "
+                + "(datasetid, scheduleddate, owner, acquireddate) "
+                + "VALUES (CAST(:datasetId AS uuid), :scheduledDate, :owner, :acquiredDate) "
+                + "ON CONFLICT DO NOTHING")
+        .setParameter(DATASET_ID, datasetId.toString())
+        .setParameter(SCHEDULED_DATE, scheduledDate)
+        .setParameter(OWNER, owner)
+        .setParameter(ACQUIRED_DATE, acquiredDate)
+        .executeUpdate();
+
+    return inserted == 1;
+  }
+
+  /**
+   * Releases the lease of the given dataset execution, if it is held by the given owner, so the
+   * execution can be acquired again.
+   */
+  @Transactional
+  public void release(UUID datasetId, ZonedDateTime scheduledDate, String owner) {
+    entityManager.createNativeQuery(
+            "DELETE FROM dhis2.execution_lease "
+                + "WHERE datasetid = CAST(:datasetId AS uuid) "
+                + "AND scheduleddate = :scheduledDate AND owner = :owner")
+        .setParameter(DATASET_ID, datasetId.toString())
+        .setParameter(SCHEDULED_DATE, scheduledDate)
+        .setParameter(OWNER, owner)
+        .executeUpdate();
+  }
+
+  /**
+   * Removes leases of executions scheduled before the given date.
+   */
+  @Transactional
+  public int deleteScheduledBefore(ZonedDateTime date) {
+    return entityManager.createNativeQuery(
+            "DELETE FROM dhis2.execution_lease WHERE scheduleddate < :scheduledDate")
+        .setParameter(SCHEDULED_DATE, date)
+        .executeUpdate();
+  }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.repository.execution;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.util.Pair;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Last data values successfully sent to DHIS2, used to only send values that changed.
+ */
+@Repository
+public class PushedDataValueRepository {
+
+  static final String SERVER_ID = "serverId";
+  static final String DATASET_ID = "datasetId";
+  static final String PERIOD = "period";
+
+  @PersistenceContext
+  EntityManager entityManager;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  /**
+   * Retrieves values of a dataset sent to a server for a given period, keyed by organisation
+   * unit and data element.
+   */
+  public Map<Pair<String, String>, BigDecimal> findValues(UUID serverId, UUID datasetId,
+      String period) {
+    Query query = entityManager.createNativeQuery(
+        "SELECT orgunit, dataelement, value "
+            + "FROM dhis2.pushed_data_value "
+            + "WHERE serverid = CAST(:serverId AS uuid) "
+            + "AND datasetid = CAST(:datasetId AS uuid) "
+            + "AND period = :period");
+
+    List<?> rows = query.setParameter(SERVER_ID, serverId.toString())
+        .setParameter(DATASET_ID, datasetId.toString())
+        .setParameter(PERIOD, period)
+        .getResultList();
+
+    Map<Pair<String, String>, BigDecimal> values = new HashMap<>();
+    for (Object row : rows) {
+      Object[] columns = (Object[]) row;
+      values.put(Pair.of(columns[0].toString(), columns[1].toString()),
+          new BigDecimal(columns[2].toString(), MathContext.DECIMAL64));
+    }
+
+    return values;
+  }
+
+  /**
+   * Records values of a dataset sent to a server for a given period. The values are written
+   * in a single JDBC batch.
+   *
+   * @param values Values keyed by organisation unit and data element.
+   */
+  @Transactional
+  public void saveValues(UUID serverId, UUID datasetId, String period,
+      Map<Pair<String, String>, BigDecimal> values, ZonedDateTime pushedDate) {
+    OffsetDateTime date = pushedDate.toOffsetDateTime();
+    List<Object[]> rows = values.entrySet()
+        .stream()
+        .map(entry -> new Object[]{serverId, datasetId, period, entry.getKey().getFirst(),
+            entry.getKey().getSecond(), entry.getValue(), date})
+        .collect(Collectors.toList());
+
+    jdbcTemplate.batchUpdate(
+        "INSERT INTO dhis2.pushed_data_value "
+            + "(serverid, datasetid, period, orgunit, dataelement, value, pusheddate) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?) "
+            + "ON CONFLICT (serverid, datasetid, period, orgunit, dataelement) "
+            + "DO UPDATE SET value = EXCLUDED.value, pusheddate = EXCLUDED.pusheddate",
+        rows);
+  }
+
+}
@@ -15,10 +15,12 @@
 
 package org.openlmis.integration.dhis2.repository.indicator;
 
-import javax.persistence.EntityManager;
-import javax.persistence.PersistenceContext;
-import javax.persistence.Query;
+import org.openlmis.integration.dhis2.DataSourceConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.repository.query.Param;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -27,33 +29,34 @@ public class CceRepository {
   static final String STATUS = "status";
   static final String UTILIZATION = "utilization";
 
-  @PersistenceContext
-  EntityManager entityManager;
+  static final String COUNT_BY_STATUS_QUERY =
+      "SELECT COUNT(inventory.functionalstatus) FROM "
+          + "cce.cce_inventory_items AS inventory "
+          + "WHERE functionalstatus = :status";
+
+  static final String COUNT_BY_UTILIZATION_QUERY =
+      "SELECT COUNT(inventory.utilization) FROM "
+          + "cce.cce_inventory_items AS inventory "
+          + "WHERE utilization = :utilization";
+
+  @Autowired
+  @Qualifier(DataSourceConfig.REPORTING_JDBC_TEMPLATE)
+  private NamedParameterJdbcTemplate jdbcTemplate;
 
   /**
    * Retrieves CCE count for a given status.
    */
   public Long findCceCountByStatus(@Param(STATUS) String status) {
-    Query query = entityManager.createNativeQuery(
-            "SELECT COUNT(inventory.functionalstatus) FROM "
-                    + "cce.cce_inventory_items AS inventory "
-                    + "WHERE functionalstatus = :status");
-
-    return Long.parseLong(query.setParameter(status, status)
-            .getSingleResult().toString());
+    return jdbcTemplate.queryForObject(COUNT_BY_STATUS_QUERY, new MapSqlParameterSource()
+            .addValue(STATUS, status), Long.class);
   }
 
   /**
    * Retrieves CCE count for a given utilization.
    */
   public Long findCceCountByUtilization(@Param(UTILIZATION) String utilization) {
-    Query query = entityManager.createNativeQuery(
-            "SELECT COUNT(inventory.utilization) FROM "
-                    + "cce.cce_inventory_items AS inventory "
-                    + "WHERE utilization = :utilization");
-
-    return Long.parseLong(query.setParameter(utilization, utilization)
-            .getSingleResult().toString());
+    return jdbcTemplate.queryForObject(COUNT_BY_UTILIZATION_QUERY, new MapSqlParameterSource()
+            .addValue(UTILIZATION, utilization), Long.class);
   }
 
 }
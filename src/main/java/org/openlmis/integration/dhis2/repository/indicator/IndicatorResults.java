@@ -0,0 +1,91 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.repository.indicator;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import org.springframework.data.util.Pair;
+
+final class IndicatorResults {
+
+  private IndicatorResults() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Converts rows of a bulk indicator query (facility ID, orderable ID, value) into values
+   * keyed by facility ID and orderable ID. Rows without a value are skipped.
+   */
+  static Map<Pair<UUID, UUID>, BigDecimal> toValues(ResultSet rows) throws SQLException {
+    Map<Pair<UUID, UUID>, BigDecimal> values = new HashMap<>();
+
+    while (rows.next()) {
+      String value = rows.getString(3);
+
+      if (null != value) {
+        values.put(Pair.of(toUuid(rows.getObject(1)), toUuid(rows.getObject(2))),
+            new BigDecimal(value, MathContext.DECIMAL64));
+      }
+    }
+
+    return values;
+  }
+
+  /**
+   * Converts rows of a bulk query of latest records (facility ID, orderable ID, value, date of
+   * the record) into values keyed by facility ID and orderable ID. Rows without a value are
+   * skipped.
+   */
+  static Map<Pair<UUID, UUID>, LatestValue> toLatestValues(ResultSet rows)
+      throws SQLException {
+    Map<Pair<UUID, UUID>, LatestValue> values = new HashMap<>();
+
+    while (rows.next()) {
+      String value = rows.getString(3);
+
+      if (null != value) {
+        values.put(Pair.of(toUuid(rows.getObject(1)), toUuid(rows.getObject(2))),
+            new LatestValue(new BigDecimal(value, MathContext.DECIMAL64),
+                rows.getTimestamp(4).toInstant()));
+      }
+    }
+
+    return values;
+  }
+
+  /**
+   * Converts rows of a key lookup query (ID, key) into keys by ID.
+   */
+  static Map<UUID, String> toKeys(ResultSet rows) throws SQLException {
+    Map<UUID, String> keys = new HashMap<>();
+
+    while (rows.next()) {
+      keys.put(toUuid(rows.getObject(1)), rows.getString(2));
+    }
+
+    return keys;
+  }
+
+  private static UUID toUuid(Object column) {
+    return column instanceof UUID ? (UUID) column : UUID.fromString(column.toString());
+  }
+
+}
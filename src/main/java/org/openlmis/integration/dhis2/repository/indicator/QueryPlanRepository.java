@@ -0,0 +1,140 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.repository.indicator;
+
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import javax.sql.DataSource;
+import org.openlmis.integration.dhis2.DataSourceConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.util.Pair;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Execution plans of the indicator queries and of the source query of the daily total
+ * refresh, used to find queries that no longer use the expected indexes.
+ */
+@Repository
+public class QueryPlanRepository {
+
+  static final String EXPLAIN = "EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) ";
+
+  static final String ADJUSTMENT = "ADJUSTMENT";
+  static final String CREDIT = "CREDIT";
+  static final String FUNCTIONING = "FUNCTIONING";
+  static final String ACTIVE = "ACTIVE";
+
+  private static final Map<String, String> QUERIES = createQueries();
+
+  @Autowired
+  @Qualifier(DataSourceConfig.REPORTING_JDBC_TEMPLATE)
+  private NamedParameterJdbcTemplate jdbcTemplate;
+
+  @Autowired
+  @Qualifier(DataSourceConfig.REPORTING_DATA_SOURCE)
+  private DataSource dataSource;
+
+  @Value("${reporting.queryPlans.statementTimeout}")
+  private long statementTimeout;
+
+  @Autowired
+  private ReferenceKeyRepository referenceKeyRepository;
+
+  /**
+   * Returns the indicator queries keyed by their names.
+   */
+  public Map<String, String> getQueries() {
+    return QUERIES;
+  }
+
+  /**
+   * Creates parameters for all indicator queries from the given period, orderable names and
+   * facility codes. Orderables and facilities are also resolved to their IDs.
+   */
+  public SqlParameterSource createParameters(Pair<ZonedDateTime, ZonedDateTime> period,
+      Collection<String> orderables, Collection<String> facilities) {
+    Set<UUID> orderableIds = referenceKeyRepository.findOrderableIds(orderables).keySet();
+    Set<UUID> facilityIds = referenceKeyRepository.findFacilityIds(facilities).keySet();
+
+    return new MapSqlParameterSource()
+        .addValue(StockmanagementRepository.DATE, period.getSecond().toOffsetDateTime())
+        .addValue(StockmanagementRepository.START_DATE, period.getFirst().toOffsetDateTime())
+        .addValue(StockmanagementRepository.END_DATE, period.getSecond().toOffsetDateTime())
+        .addValue(StockmanagementRepository.REASON_CATEGORY, ADJUSTMENT)
+        .addValue(StockmanagementRepository.REASON_TYPE, CREDIT)
+        .addValue(StockmanagementRepository.ORDERABLES, SqlArrays.toUuidArray(orderableIds))
+        .addValue(StockmanagementRepository.FACILITIES, SqlArrays.toUuidArray(facilityIds))
+        .addValue(StockmanagementRepository.WATERMARK, period.getFirst().toOffsetDateTime())
+        .addValue(StockmanagementRepository.CHANGED_FACILITIES,
+            SqlArrays.toUuidArray(Collections.emptyList()))
+        .addValue(StockmanagementRepository.CHANGED_ORDERABLES,
+            SqlArrays.toUuidArray(Collections.emptyList()))
+        .addValue(StockmanagementRepository.CHANGED_DATES,
+            SqlArrays.toDateArray(Collections.emptyList()))
+        .addValue(ReferenceKeyRepository.NAMES, SqlArrays.toTextArray(orderables))
+        .addValue(ReferenceKeyRepository.CODES, SqlArrays.toTextArray(facilities))
+        .addValue(CceRepository.STATUS, FUNCTIONING)
+        .addValue(CceRepository.UTILIZATION, ACTIVE)
+        .addValue(StockDailyTotalRepository.FROM_DATE, period.getFirst().toOffsetDateTime())
+        .addValue(StockDailyTotalRepository.TO_DATE, period.getSecond().toOffsetDateTime());
+  }
+
+  /**
+   * Executes the given query with EXPLAIN ANALYZE and returns its plan in JSON. The query is
+   * run on the reporting data source, in a read-only transaction with the shorter statement
+   * timeout of the diagnostics instead of the one of the indicator queries.
+   */
+  public String explain(String sql, SqlParameterSource parameters) {
+    TransactionTemplate transaction =
+        new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    transaction.setReadOnly(true);
+
+    return transaction.execute(status -> {
+      jdbcTemplate.getJdbcTemplate().execute("SET LOCAL statement_timeout = " + statementTimeout);
+      return jdbcTemplate.queryForObject(EXPLAIN + sql, parameters, String.class);
+    });
+  }
+
+  private static Map<String, String> createQueries() {
+    Map<String, String> queries = new LinkedHashMap<>();
+    queries.put("orderableIds", ReferenceKeyRepository.ORDERABLE_IDS_QUERY);
+    queries.put("facilityIds", ReferenceKeyRepository.FACILITY_IDS_QUERY);
+    queries.put("stockmanagementBalances", StockmanagementRepository.BALANCES_QUERY);
+    queries.put("stockmanagementQuantities", StockmanagementRepository.QUANTITIES_QUERY);
+    queries.put("stockmanagementChangedQuantities",
+        StockmanagementRepository.CHANGED_QUANTITIES_QUERY);
+    queries.put("requisitionOpeningBalances", RequisitionRepository.OPENING_BALANCES_QUERY);
+    queries.put("requisitionClosingBalances", RequisitionRepository.CLOSING_BALANCES_QUERY);
+    queries.put("requisitionReceived", RequisitionRepository.RECEIVED_QUERY);
+    queries.put("cceCountByStatus", CceRepository.COUNT_BY_STATUS_QUERY);
+    queries.put("cceCountByUtilization", CceRepository.COUNT_BY_UTILIZATION_QUERY);
+    queries.put("stockDailyTotalsRefresh", StockDailyTotalRepository.TOTALS_QUERY);
+    return Collections.unmodifiableMap(queries);
+  }
+
+}
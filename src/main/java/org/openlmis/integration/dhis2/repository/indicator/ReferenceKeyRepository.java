@@ -0,0 +1,87 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.repository.indicator;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import org.openlmis.integration.dhis2.DataSourceConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Resolves orderable names and facility codes used by data elements and DHIS2 organisation
+ * units to the IDs the indicator queries filter on.
+ */
+@Repository
+public class ReferenceKeyRepository {
+
+  static final String NAMES = "names";
+  static final String CODES = "codes";
+
+  /**
+   * Orderables whose latest version has one of the given names. Only the versions of orderables
+   * that ever had one of the names are sorted, so the cost does not depend on the version
+   * history of all other orderables.
+   */
+  static final String ORDERABLE_IDS_QUERY =
+      "SELECT products.id, products.fullproductname "
+          + "FROM (SELECT DISTINCT ON (orderables.id) orderables.id, orderables.fullproductname "
+          + "FROM referencedata.orderables AS orderables "
+          + "WHERE orderables.id IN (SELECT named.id FROM referencedata.orderables AS named "
+          + "WHERE named.fullproductname = ANY(CAST(:names AS text[]))) "
+          + "ORDER BY orderables.id, orderables.versionnumber DESC) AS products "
+          + "WHERE products.fullproductname = ANY(CAST(:names AS text[]))";
+
+  static final String FACILITY_IDS_QUERY =
+      "SELECT facilities.id, facilities.code "
+          + "FROM referencedata.facilities AS facilities "
+          + "WHERE facilities.code = ANY(CAST(:codes AS text[]))";
+
+  @Autowired
+  @Qualifier(DataSourceConfig.REPORTING_JDBC_TEMPLATE)
+  private NamedParameterJdbcTemplate jdbcTemplate;
+
+  /**
+   * Retrieves IDs of orderables whose latest version has one of the given names, together
+   * with that name.
+   */
+  public Map<UUID, String> findOrderableIds(Collection<String> names) {
+    return findKeys(ORDERABLE_IDS_QUERY, NAMES, names);
+  }
+
+  /**
+   * Retrieves IDs of facilities with the given codes, together with the code.
+   */
+  public Map<UUID, String> findFacilityIds(Collection<String> codes) {
+    return findKeys(FACILITY_IDS_QUERY, CODES, codes);
+  }
+
+  private Map<UUID, String> findKeys(String sql, String parameter, Collection<String> keys) {
+    if (keys.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    return jdbcTemplate.query(sql,
+        new MapSqlParameterSource(parameter, SqlArrays.toTextArray(keys)),
+        IndicatorResults::toKeys);
+  }
+
+}
@@ -16,108 +16,87 @@
 package org.openlmis.integration.dhis2.repository.indicator;
 
 import java.time.ZonedDateTime;
-import javax.persistence.EntityManager;
-import javax.persistence.PersistenceContext;
-import javax.persistence.Query;
-import org.springframework.data.repository.query.Param;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import org.openlmis.integration.dhis2.DataSourceConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.util.Pair;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public class RequisitionRepository {
 
-  static final String START_DATE = "startDate";
-  static final String END_DATE = "endDate";
-  static final String ORDERABLE = "orderable";
-  static final String FACILITY = "facility";
+  static final String DATE = "date";
+  static final String ORDERABLES = "orderables";
+  static final String FACILITIES = "facilities";
 
-  @PersistenceContext
-  EntityManager entityManager;
+  static final String BEGINNING_BALANCE = "beginningbalance";
+  static final String STOCK_ON_HAND = "stockonhand";
+  static final String TOTAL_RECEIVED_QUANTITY = "totalreceivedquantity";
+
+  static final String OPENING_BALANCES_QUERY = latestLineItemsQuery(BEGINNING_BALANCE);
+  static final String CLOSING_BALANCES_QUERY = latestLineItemsQuery(STOCK_ON_HAND);
+  static final String RECEIVED_QUERY = latestLineItemsQuery(TOTAL_RECEIVED_QUANTITY);
+
+  @Autowired
+  @Qualifier(DataSourceConfig.REPORTING_JDBC_TEMPLATE)
+  private NamedParameterJdbcTemplate jdbcTemplate;
 
   /**
-   * Retrieves opening balance from requisition for a given period.
+   * Retrieves beginning balances from the latest requisitions created until the given date,
+   * keyed by facility ID and orderable ID, with the creation date of the requisition.
    */
-  public Long findOpeningBalance(@Param(START_DATE) ZonedDateTime startDate,
-                                   @Param(ORDERABLE) String orderable,
-                                   @Param(FACILITY) String facility) {
-    Query query = entityManager.createNativeQuery(
-            "SELECT line_items.beginningbalance AS bb "
-                    + "FROM requisition.requisition_line_items AS line_items "
-                    + "JOIN referencedata.orderables AS products "
-                    + "ON line_items.orderableid = products.id "
-                    + "JOIN requisition.requisitions AS req ON line_items.requisitionid = req.id "
-                    + "JOIN referencedata.facilities AS facilities "
-                    + "ON facilities.id = req.facilityid "
-                    + "WHERE products.versionnumber = "
-                    + "(SELECT MAX(versionnumber) FROM referencedata.orderables o2 "
-                    + "WHERE o2.id = products.id) "
-                    + "AND line_items.beginningbalance NOTNULL "
-                    + "AND req.createddate <= :startDate "
-                    + "AND products.fullproductname = :orderable "
-                    + "AND facilities.code = :facility "
-                    + "ORDER BY req.createddate DESC LIMIT 1");
-
-    return Long.parseLong(query.setParameter(START_DATE, startDate)
-            .setParameter(ORDERABLE, orderable)
-            .setParameter(FACILITY, facility)
-            .getSingleResult().toString());
+  public Map<Pair<UUID, UUID>, LatestValue> findOpeningBalances(ZonedDateTime date,
+      Collection<UUID> orderables, Collection<UUID> facilities) {
+    return findLatestLineItems(OPENING_BALANCES_QUERY, date, orderables, facilities);
   }
 
   /**
-   * Retrieves closing balance from requisition for a given period.
+   * Retrieves stock on hand from the latest requisitions created until the given date,
+   * keyed by facility ID and orderable ID, with the creation date of the requisition.
    */
-  public Long findClosingBalance(@Param(END_DATE) ZonedDateTime endDate,
-                                   @Param(ORDERABLE) String orderable,
-                                   @Param(FACILITY) String facility) {
-    Query query = entityManager.createNativeQuery(
-            "SELECT line_items.stockonhand AS soh "
-                    + "FROM requisition.requisition_line_items AS line_items "
-                    + "JOIN referencedata.orderables AS products "
-                    + "ON line_items.orderableid = products.id "
-                    + "JOIN requisition.requisitions AS req ON line_items.requisitionid = req.id "
-                    + "JOIN referencedata.facilities AS facilities "
-                    + "ON facilities.id = req.facilityid "
-                    + "WHERE products.versionnumber = "
-                    + "(SELECT MAX(versionnumber) FROM referencedata.orderables o2 "
-                    + "WHERE o2.id = products.id) "
-                    + "AND line_items.stockonhand NOTNULL "
-                    + "AND req.createddate <= :endDate "
-                    + "AND products.fullproductname = :orderable "
-                    + "AND facilities.code = :facility "
-                    + "ORDER BY req.createddate DESC LIMIT 1");
-
-    return Long.parseLong(query.setParameter(END_DATE, endDate)
-            .setParameter(ORDERABLE, orderable)
-            .setParameter(FACILITY, facility)
-            .getSingleResult().toString());
+  public Map<Pair<UUID, UUID>, LatestValue> findClosingBalances(ZonedDateTime date,
+      Collection<UUID> orderables, Collection<UUID> facilities) {
+    return findLatestLineItems(CLOSING_BALANCES_QUERY, date, orderables, facilities);
   }
 
   /**
-   * Retrieves received amount of products from requisition for a given period.
+   * Retrieves received quantities from the latest requisitions created until the given date,
+   * keyed by facility ID and orderable ID, with the creation date of the requisition.
    */
-  public Double findReceived(@Param(END_DATE) ZonedDateTime endDate,
-                                   @Param(ORDERABLE) String orderable,
-                                   @Param(FACILITY) String facility) {
-    Query query = entityManager.createNativeQuery(
-            "SELECT line_items.totalreceivedquantity AS received "
-                    + "FROM requisition.requisition_line_items AS line_items "
-                    + "JOIN referencedata.orderables AS products "
-                    + "ON line_items.orderableid = products.id "
-                    + "JOIN requisition.requisitions AS req ON line_items.requisitionid = req.id "
-                    + "JOIN referencedata.facilities AS facilities "
-                    + "ON facilities.id = req.facilityid "
-                    + "WHERE products.versionnumber = "
-                    + "(SELECT MAX(versionnumber) FROM referencedata.orderables o2 "
-                    + "WHERE o2.id = products.id) "
-                    + "AND line_items.totalreceivedquantity NOTNULL "
-                    + "AND req.createddate <= :endDate "
-                    + "AND products.fullproductname = :orderable "
-                    + "AND facilities.code = :facility "
-                    + "ORDER BY req.createddate desc LIMIT 1");
+  public Map<Pair<UUID, UUID>, LatestValue> findReceivedQuantities(ZonedDateTime date,
+      Collection<UUID> orderables, Collection<UUID> facilities) {
+    return findLatestLineItems(RECEIVED_QUERY, date, orderables, facilities);
+  }
+
+  private Map<Pair<UUID, UUID>, LatestValue> findLatestLineItems(String sql,
+      ZonedDateTime date, Collection<UUID> orderables, Collection<UUID> facilities) {
+    if (orderables.isEmpty() || facilities.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    return jdbcTemplate.query(sql, new MapSqlParameterSource()
+        .addValue(DATE, date.toOffsetDateTime())
+        .addValue(ORDERABLES, SqlArrays.toUuidArray(orderables))
+        .addValue(FACILITIES, SqlArrays.toUuidArray(facilities)),
+        IndicatorResults::toLatestValues);
+  }
 
-    return Double.parseDouble(query.setParameter(END_DATE, endDate)
-            .setParameter(ORDERABLE, orderable)
-            .setParameter(FACILITY, facility)
-            .getSingleResult().toString());
+  private static String latestLineItemsQuery(String column) {
+    return "SELECT DISTINCT ON (req.facilityid, line_items.orderableid) "
+        + "req.facilityid, line_items.orderableid, line_items." + column + ", req.createddate "
+        + "FROM requisition.requisition_line_items AS line_items "
+        + "JOIN requisition.requisitions AS req ON line_items.requisitionid = req.id "
+        + "WHERE line_items." + column + " NOTNULL "
+        + "AND req.createddate <= :date "
+        + "AND line_items.orderableid = ANY(CAST(:orderables AS uuid[])) "
+        + "AND req.facilityid = ANY(CAST(:facilities AS uuid[])) "
+        + "ORDER BY req.facilityid, line_items.orderableid, req.createddate DESC";
   }
 
 }
@@ -0,0 +1,65 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.repository.indicator;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Builds PostgreSQL array literals, so that a list of keys is bound as a single parameter and
+ * cast in the query (e.g. {@code = ANY(CAST(:ids AS uuid[]))}) instead of one parameter per key.
+ * This keeps the bulk queries below the driver limit of bind parameters.
+ */
+final class SqlArrays {
+
+  private SqlArrays() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Converts the given IDs into a literal to be cast to {@code uuid[]}.
+   */
+  static String toUuidArray(Collection<UUID> ids) {
+    return ids
+        .stream()
+        .map(UUID::toString)
+        .collect(Collectors.joining(",", "{", "}"));
+  }
+
+  /**
+   * Converts the given dates into a literal to be cast to {@code date[]}.
+   */
+  static String toDateArray(Collection<LocalDate> dates) {
+    return dates
+        .stream()
+        .map(LocalDate::toString)
+        .collect(Collectors.joining(",", "{", "}"));
+  }
+
+  /**
+   * Converts the given keys into a literal to be cast to {@code text[]}. Every element is quoted,
+   * so keys may contain commas, braces, quotes and backslashes.
+   */
+  static String toTextArray(Collection<String> keys) {
+    return keys
+        .stream()
+        .map(key -> '"' + key.replace("\\", "\\\\").replace("\"", "\\\"") + '"')
+        .collect(Collectors.joining(",", "{", "}"));
+  }
+
+}
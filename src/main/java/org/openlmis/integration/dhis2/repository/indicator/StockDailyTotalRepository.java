@@ -0,0 +1,182 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.repository.indicator;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import org.openlmis.integration.dhis2.DataSourceConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Daily totals of stockmanagement line item quantities per facility, orderable and reason
+ * category and type. Totals are recomputed from the line items on the reporting data source
+ * and stored on the primary data source, together with the processed date of the line items
+ * they include (the watermark).
+ */
+@Repository
+public class StockDailyTotalRepository {
+
+  static final String WATERMARK_NAME = "stock_daily_total";
+  static final String FROM_DATE = "fromDate";
+  static final String TO_DATE = "toDate";
+
+  static final String LOCK_WATERMARK_QUERY =
+      "SELECT name FROM dhis2.aggregate_watermark WHERE name = ? FOR UPDATE SKIP LOCKED";
+
+  static final String WAIT_FOR_WATERMARK_QUERY =
+      "SELECT name FROM dhis2.aggregate_watermark WHERE name = ? FOR UPDATE";
+
+  static final String WATERMARK_QUERY =
+      "SELECT NULLIF(processeddate, '-infinity') FROM dhis2.aggregate_watermark WHERE name = ?";
+
+  static final String UPDATE_WATERMARK_QUERY =
+      "UPDATE dhis2.aggregate_watermark SET processeddate = ? WHERE name = ?";
+
+  static final String FIRST_PROCESSED_DATE_QUERY =
+      "SELECT MIN(line_items.processeddate) "
+          + "FROM stockmanagement.stock_card_line_items AS line_items";
+
+  /**
+   * Days of orderables in facilities with line items processed in the given window.
+   */
+  static final String CHANGED_DAYS_QUERY =
+      "SELECT DISTINCT cards.facilityid, cards.orderableid, line_items.occurreddate "
+          + "FROM stockmanagement.stock_card_line_items AS line_items "
+          + "JOIN stockmanagement.stock_cards AS cards "
+          + "ON line_items.stockcardid = cards.id "
+          + "WHERE line_items.processeddate > :fromDate "
+          + "AND line_items.processeddate <= :toDate";
+
+  /**
+   * Complete totals of the changed days, so that storing them again is idempotent.
+   */
+  static final String TOTALS_QUERY =
+      "SELECT cards.facilityid, cards.orderableid, reasons.reasoncategory, "
+          + "reasons.reasontype, line_items.occurreddate, "
+          + "CAST(SUM(line_items.quantity) AS bigint) "
+          + "FROM (" + CHANGED_DAYS_QUERY + ") AS changed "
+          + "JOIN stockmanagement.stock_cards AS cards "
+          + "ON cards.facilityid = changed.facilityid "
+          + "AND cards.orderableid = changed.orderableid "
+          + "JOIN stockmanagement.stock_card_line_items AS line_items "
+          + "ON line_items.stockcardid = cards.id "
+          + "AND line_items.occurreddate = changed.occurreddate "
+          + "JOIN stockmanagement.stock_card_line_item_reasons AS reasons "
+          + "ON reasons.id = line_items.reasonid "
+          + "GROUP BY cards.facilityid, cards.orderableid, reasons.reasoncategory, "
+          + "reasons.reasontype, line_items.occurreddate";
+
+  static final String SAVE_TOTAL_QUERY =
+      "INSERT INTO dhis2.stock_daily_total "
+          + "(facilityid, orderableid, reasoncategory, reasontype, occurreddate, quantity) "
+          + "VALUES (?, ?, ?, ?, ?, ?) "
+          + "ON CONFLICT (reasoncategory, reasontype, facilityid, orderableid, occurreddate) "
+          + "DO UPDATE SET quantity = EXCLUDED.quantity";
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  @Qualifier(DataSourceConfig.REPORTING_JDBC_TEMPLATE)
+  private NamedParameterJdbcTemplate reportingJdbcTemplate;
+
+  /**
+   * Tries to lock the watermark until the end of the current transaction.
+   *
+   * @return false if the watermark is locked by a refresh running elsewhere.
+   */
+  public boolean tryLockWatermark() {
+    return !jdbcTemplate.queryForList(LOCK_WATERMARK_QUERY, String.class, WATERMARK_NAME)
+        .isEmpty();
+  }
+
+  /**
+   * Locks the watermark until the end of the current transaction, waiting for a refresh running
+   * elsewhere to release it.
+   */
+  public void lockWatermark() {
+    jdbcTemplate.queryForList(WAIT_FOR_WATERMARK_QUERY, String.class, WATERMARK_NAME);
+  }
+
+  /**
+   * Retrieves the processed date until which line items are included in the daily totals.
+   *
+   * @return empty if no line items have been included yet.
+   */
+  public Optional<ZonedDateTime> findWatermark() {
+    return jdbcTemplate.query(WATERMARK_QUERY, StockDailyTotalRepository::toDate, WATERMARK_NAME);
+  }
+
+  /**
+   * Retrieves the processed date of the earliest line item on the reporting data source.
+   *
+   * @return empty if there are no line items.
+   */
+  public Optional<ZonedDateTime> findFirstProcessedDate() {
+    return reportingJdbcTemplate.query(FIRST_PROCESSED_DATE_QUERY,
+        StockDailyTotalRepository::toDate);
+  }
+
+  /**
+   * Computes, on the reporting data source, the complete daily totals of all days that have line
+   * items processed after the given start date and until the given end date.
+   *
+   * @return rows of facility ID, orderable ID, reason category, reason type, occurred date and
+   *     quantity.
+   */
+  public List<Object[]> findTotals(ZonedDateTime fromDate, ZonedDateTime toDate) {
+    return reportingJdbcTemplate.query(TOTALS_QUERY, new MapSqlParameterSource()
+        .addValue(FROM_DATE, fromDate.toOffsetDateTime())
+        .addValue(TO_DATE, toDate.toOffsetDateTime()), StockDailyTotalRepository::toRow);
+  }
+
+  /**
+   * Stores the given daily totals, replacing totals of the same days, and moves the watermark
+   * to the given date. It should be called in the transaction that locked the watermark.
+   *
+   * @return number of daily totals inserted or updated.
+   */
+  public int saveTotals(List<Object[]> totals, ZonedDateTime watermark) {
+    int saved = jdbcTemplate.batchUpdate(SAVE_TOTAL_QUERY, totals).length;
+    jdbcTemplate.update(UPDATE_WATERMARK_QUERY, watermark.toOffsetDateTime(), WATERMARK_NAME);
+
+    return saved;
+  }
+
+  private static Optional<ZonedDateTime> toDate(ResultSet rows) throws SQLException {
+    Timestamp date = rows.next() ? rows.getTimestamp(1) : null;
+
+    return Optional
+        .ofNullable(date)
+        .map(timestamp -> ZonedDateTime.ofInstant(timestamp.toInstant(), ZoneOffset.UTC));
+  }
+
+  private static Object[] toRow(ResultSet rows, int rowNum) throws SQLException {
+    return new Object[] {rows.getObject(1), rows.getObject(2), rows.getString(3),
+        rows.getString(4), rows.getDate(5), rows.getLong(6)};
+  }
+
+}
@@ -15,199 +15,210 @@
 
 package org.openlmis.integration.dhis2.repository.indicator;
 
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
-import javax.persistence.EntityManager;
-import javax.persistence.PersistenceContext;
-import javax.persistence.Query;
-import org.springframework.data.repository.query.Param;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.openlmis.integration.dhis2.DataSourceConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.util.Pair;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 
 @Repository
-@SuppressWarnings("PMD.AvoidDuplicateLiterals")
 public class StockmanagementRepository {
 
   static final String START_DATE = "startDate";
   static final String END_DATE = "endDate";
-  static final String ORDERABLE = "orderable";
-  static final String FACILITY = "facility";
-
-  @PersistenceContext
-  EntityManager entityManager;
+  static final String DATE = "date";
+  static final String ORDERABLES = "orderables";
+  static final String FACILITIES = "facilities";
+  static final String REASON_CATEGORY = "reasonCategory";
+  static final String REASON_TYPE = "reasonType";
+  static final String WATERMARK = "watermark";
+  static final String CHANGED_FACILITIES = "changedFacilities";
+  static final String CHANGED_ORDERABLES = "changedOrderables";
+  static final String CHANGED_DATES = "changedDates";
+
+  static final String BALANCES_QUERY =
+      "SELECT DISTINCT ON (cards.facilityid, cards.orderableid) "
+          + "cards.facilityid, cards.orderableid, cal.stockonhand, line_items.occurreddate "
+          + "FROM stockmanagement.stock_card_line_items AS line_items "
+          + "JOIN stockmanagement.stock_cards AS cards "
+          + "ON line_items.stockcardid = cards.id "
+          + "JOIN stockmanagement.stock_card_line_item_reasons AS reasons "
+          + "ON reasons.id = line_items.reasonid "
+          + "JOIN stockmanagement.calculated_stocks_on_hand AS cal "
+          + "ON cal.stockcardid = cards.id "
+          + "WHERE line_items.occurreddate <= :date "
+          + "AND cards.orderableid = ANY(CAST(:orderables AS uuid[])) "
+          + "AND cards.facilityid = ANY(CAST(:facilities AS uuid[])) "
+          + "ORDER BY cards.facilityid, cards.orderableid, line_items.occurreddate DESC";
 
   /**
-   * Retrieves opening balance from stockmanagement for a given period.
+   * Sums of daily totals in the period, except of the given days, which are read from the line
+   * items instead.
    */
-  public Long findOpeningBalance(@Param(START_DATE) ZonedDateTime startDate,
-                                   @Param(ORDERABLE) String orderable,
-                                   @Param(FACILITY) String facility) {
-    Query query = entityManager.createNativeQuery(
-            "SELECT cal.stockonhand "
-                    + "FROM stockmanagement.stock_card_line_items AS line_items  "
-                    + "JOIN stockmanagement.stock_cards AS cards "
-                    + "ON line_items.stockcardid = cards.id "
-                    + "JOIN stockmanagement.stock_card_line_item_reasons AS reasons "
-                    + "ON reasons.id = line_items.reasonid "
-                    + "JOIN stockmanagement.calculated_stocks_on_hand AS cal "
-                    + "ON cal.stockcardid = cards.id "
-                    + "JOIN referencedata.orderables AS products "
-                    + "ON cards.orderableid = products.id  "
-                    + "JOIN referencedata.facilities AS facilities "
-                    + "ON facilities.id = cards.facilityid  "
-                    + "WHERE products.versionnumber = ( "
-                    + "SELECT MAX(versionnumber) FROM referencedata.orderables o2 "
-                    + "WHERE o2.id = products.id "
-                    + ") "
-                    + "AND line_items.occurreddate <= :startDate "
-                    + "AND products.fullproductname = :orderable  "
-                    + "AND facilities.code = :facility  "
-                    + "ORDER BY line_items.occurreddate DESC LIMIT 1");
-
-    return Long.parseLong(query.setParameter(START_DATE, startDate)
-            .setParameter(ORDERABLE, orderable)
-            .setParameter(FACILITY, facility)
-            .getSingleResult().toString());
-  }
+  static final String QUANTITIES_QUERY =
+      "SELECT totals.facilityid, totals.orderableid, SUM(totals.quantity) "
+          + "FROM dhis2.stock_daily_total AS totals "
+          + "WHERE totals.reasoncategory = :reasonCategory "
+          + "AND totals.reasontype = :reasonType "
+          + "AND totals.occurreddate >= :startDate "
+          + "AND totals.occurreddate < :endDate "
+          + "AND totals.orderableid = ANY(CAST(:orderables AS uuid[])) "
+          + "AND totals.facilityid = ANY(CAST(:facilities AS uuid[])) "
+          + "AND NOT EXISTS ("
+          + "SELECT 1 FROM unnest(CAST(:changedFacilities AS uuid[]), "
+          + "CAST(:changedOrderables AS uuid[]), CAST(:changedDates AS date[])) "
+          + "AS changed (facilityid, orderableid, occurreddate) "
+          + "WHERE changed.facilityid = totals.facilityid "
+          + "AND changed.orderableid = totals.orderableid "
+          + "AND changed.occurreddate = totals.occurreddate) "
+          + "GROUP BY totals.facilityid, totals.orderableid";
 
   /**
-   * Retrieves closing balance from stockmanagement for a given period.
+   * Complete quantities of the days in the period that have line items processed after the
+   * watermark of the daily totals, like the totals a refresh would store for them.
    */
-  public Long findClosingBalance(@Param(END_DATE) ZonedDateTime endDate,
-                                   @Param(ORDERABLE) String orderable,
-                                   @Param(FACILITY) String facility) {
-    Query query = entityManager.createNativeQuery(
-            "SELECT cal.stockonhand "
-                    + "FROM stockmanagement.stock_card_line_items AS line_items  "
-                    + "JOIN stockmanagement.stock_cards AS cards "
-                    + "ON line_items.stockcardid = cards.id "
-                    + "JOIN stockmanagement.stock_card_line_item_reasons AS reasons "
-                    + "ON reasons.id = line_items.reasonid "
-                    + "JOIN stockmanagement.calculated_stocks_on_hand AS cal "
-                    + "ON cal.stockcardid = cards.id "
-                    + "JOIN referencedata.orderables AS products "
-                    + "ON cards.orderableid = products.id  "
-                    + "JOIN referencedata.facilities AS facilities "
-                    + "ON facilities.id = cards.facilityid  "
-                    + "WHERE products.versionnumber = ( "
-                    + "SELECT MAX(versionnumber) FROM referencedata.orderables o2 "
-                    + "WHERE o2.id = products.id "
-                    + ") "
-                    + "AND line_items.occurreddate <= :endDate "
-                    + "AND products.fullproductname = :orderable  "
-                    + "AND facilities.code = :facility  "
-                    + "ORDER BY line_items.occurreddate DESC LIMIT 1");
-
-    return Long.parseLong(query.setParameter(END_DATE, endDate)
-            .setParameter(ORDERABLE, orderable)
-            .setParameter(FACILITY, facility)
-            .getSingleResult().toString());
-  }
+  static final String CHANGED_QUANTITIES_QUERY =
+      "SELECT cards.facilityid, cards.orderableid, line_items.occurreddate, "
+          + "SUM(line_items.quantity) "
+          + "FROM (SELECT DISTINCT cards.facilityid, cards.orderableid, "
+          + "line_items.occurreddate "
+          + "FROM stockmanagement.stock_card_line_items AS line_items "
+          + "JOIN stockmanagement.stock_cards AS cards "
+          + "ON line_items.stockcardid = cards.id "
+          + "WHERE line_items.processeddate > :watermark "
+          + "AND line_items.occurreddate >= :startDate "
+          + "AND line_items.occurreddate < :endDate "
+          + "AND cards.orderableid = ANY(CAST(:orderables AS uuid[])) "
+          + "AND cards.facilityid = ANY(CAST(:facilities AS uuid[]))) AS changed "
+          + "JOIN stockmanagement.stock_cards AS cards "
+          + "ON cards.facilityid = changed.facilityid "
+          + "AND cards.orderableid = changed.orderableid "
+          + "JOIN stockmanagement.stock_card_line_items AS line_items "
+          + "ON line_items.stockcardid = cards.id "
+          + "AND line_items.occurreddate = changed.occurreddate "
+          + "JOIN stockmanagement.stock_card_line_item_reasons AS reasons "
+          + "ON reasons.id = line_items.reasonid "
+          + "WHERE reasons.reasoncategory = :reasonCategory "
+          + "AND reasons.reasontype = :reasonType "
+          + "GROUP BY cards.facilityid, cards.orderableid, line_items.occurreddate";
+
+  private static final ZonedDateTime NO_WATERMARK =
+      ZonedDateTime.ofInstant(Instant.EPOCH, ZoneOffset.UTC);
+
+  @Autowired
+  @Qualifier(DataSourceConfig.REPORTING_JDBC_TEMPLATE)
+  private NamedParameterJdbcTemplate jdbcTemplate;
 
   /**
-   * Retrieves received amount of products from stockmanagement for a given period.
+   * Daily totals are written on the primary data source, so they are read from it as well
+   * instead of from a replica that may not have caught up with the latest refresh yet.
    */
-  public Double findReceived(@Param(START_DATE) ZonedDateTime startDate,
-                             @Param(END_DATE) ZonedDateTime endDate,
-                             @Param(ORDERABLE) String orderable,
-                             @Param(FACILITY) String facility) {
-    Query query = entityManager.createNativeQuery(
-            "SELECT COALESCE(SUM(line_items.quantity), 0) AS quantity "
-                    + "FROM stockmanagement.stock_card_line_items AS line_items  "
-                    + "JOIN stockmanagement.stock_cards AS cards "
-                    + "ON line_items.stockcardid = cards.id "
-                    + "JOIN stockmanagement.stock_card_line_item_reasons AS reasons "
-                    + "ON reasons.id = line_items.reasonid "
-                    + "JOIN referencedata.orderables AS products "
-                    + "ON cards.orderableid = products.id  "
-                    + "JOIN referencedata.facilities AS facilities "
-                    + "ON facilities.id = cards.facilityid  "
-                    + "WHERE products.versionnumber = ( "
-                    + "SELECT MAX(versionnumber) FROM referencedata.orderables o2 "
-                    + "WHERE o2.id = products.id "
-                    + ") "
-                    + "AND reasons.reasoncategory = 'TRANSFER' "
-                    + "AND reasons.reasontype = 'CREDIT' "
-                    + "AND line_items.occurreddate >= :startDate "
-                    + "AND line_items.occurreddate < :endDate "
-                    + "AND products.fullproductname = :orderable  "
-                    + "AND facilities.code = :facility ");
-
-    return Double.parseDouble(query.setParameter(START_DATE, startDate)
-            .setParameter(END_DATE, endDate)
-            .setParameter(ORDERABLE, orderable)
-            .setParameter(FACILITY, facility)
-            .getSingleResult().toString());
-  }
+  @Autowired
+  private NamedParameterJdbcTemplate totalsJdbcTemplate;
+
+  @Autowired
+  private StockDailyTotalRepository stockDailyTotalRepository;
 
   /**
-   * Retrieves sum of all positive adjustments from stockmanagement for a given period.
+   * Retrieves stock on hand of the orderables with the given IDs in the facilities with the
+   * given IDs as of the given date, keyed by facility ID and orderable ID. Each balance comes
+   * with the date of the latest line item of its stock card.
    */
-  public Double findPositiveAdjustments(@Param(START_DATE) ZonedDateTime startDate,
-                                        @Param(END_DATE) ZonedDateTime endDate,
-                                        @Param(ORDERABLE) String orderable,
-                                        @Param(FACILITY) String facility) {
-    Query query = entityManager.createNativeQuery(
-            "SELECT COALESCE(SUM(line_items.quantity), 0) AS quantity "
-                    + "FROM stockmanagement.stock_card_line_items AS line_items  "
-                    + "JOIN stockmanagement.stock_cards AS cards "
-                    + "ON line_items.stockcardid = cards.id "
-                    + "JOIN stockmanagement.stock_card_line_item_reasons AS reasons "
-                    + "ON reasons.id = line_items.reasonid "
-                    + "JOIN referencedata.orderables AS products "
-                    + "ON cards.orderableid = products.id  "
-                    + "JOIN referencedata.facilities AS facilities "
-                    + "ON facilities.id = cards.facilityid  "
-                    + "WHERE products.versionnumber = ( "
-                    + "SELECT MAX(versionnumber) FROM referencedata.orderables o2 "
-                    + "WHERE o2.id = products.id "
-                    + ") "
-                    + "AND reasons.reasoncategory = 'ADJUSTMENT' "
-                    + "AND reasons.reasontype = 'CREDIT' "
-                    + "AND line_items.occurreddate >= :startDate "
-                    + "AND line_items.occurreddate < :endDate "
-                    + "AND products.fullproductname = :orderable  "
-                    + "AND facilities.code = :facility ");
-
-    return Double.parseDouble(query.setParameter(START_DATE, startDate)
-            .setParameter(END_DATE, endDate)
-            .setParameter(ORDERABLE, orderable)
-            .setParameter(FACILITY, facility)
-            .getSingleResult().toString());
+  public Map<Pair<UUID, UUID>, LatestValue> findBalances(ZonedDateTime date,
+      Collection<UUID> orderables, Collection<UUID> facilities) {
+    if (orderables.isEmpty() || facilities.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    return jdbcTemplate.query(BALANCES_QUERY, new MapSqlParameterSource()
+        .addValue(DATE, date.toOffsetDateTime())
+        .addValue(ORDERABLES, SqlArrays.toUuidArray(orderables))
+        .addValue(FACILITIES, SqlArrays.toUuidArray(facilities)),
+        IndicatorResults::toLatestValues);
   }
 
   /**
-   * Retrieves sum of all negative adjustments from stockmanagement for a given period.
+   * Retrieves sums of line item quantities with the given reason category and type of the
+   * orderables with the given IDs in the facilities with the given IDs for a given period,
+   * keyed by facility ID and orderable ID. The sums are read from the daily totals. Days with
+   * line items processed after the watermark of the totals, like those of the current period,
+   * are read from the line items instead, so the sums do not wait for the next refresh.
    */
-  public Double findNegativeAdjustments(@Param(START_DATE) ZonedDateTime startDate,
-                                        @Param(END_DATE) ZonedDateTime endDate,
-                                        @Param(ORDERABLE) String orderable,
-                                        @Param(FACILITY) String facility) {
-    Query query = entityManager.createNativeQuery(
-            "SELECT COALESCE(SUM(line_items.quantity), 0) AS quantity "
-                    + "FROM stockmanagement.stock_card_line_items AS line_items  "
-                    + "JOIN stockmanagement.stock_cards AS cards "
-                    + "ON line_items.stockcardid = cards.id "
-                    + "JOIN stockmanagement.stock_card_line_item_reasons AS reasons "
-                    + "ON reasons.id = line_items.reasonid "
-                    + "JOIN referencedata.orderables AS products "
-                    + "ON cards.orderableid = products.id  "
-                    + "JOIN referencedata.facilities AS facilities "
-                    + "ON facilities.id = cards.facilityid  "
-                    + "WHERE products.versionnumber = ( "
-                    + "SELECT MAX(versionnumber) FROM referencedata.orderables o2 "
-                    + "WHERE o2.id = products.id "
-                    + ") "
-                    + "AND reasons.reasoncategory = 'ADJUSTMENT' "
-                    + "AND reasons.reasontype = 'DEBIT' "
-                    + "AND line_items.occurreddate >= :startDate "
-                    + "AND line_items.occurreddate < :endDate "
-                    + "AND products.fullproductname = :orderable  "
-                    + "AND facilities.code = :facility ");
-
-    return Double.parseDouble(query.setParameter(START_DATE, startDate)
-            .setParameter(END_DATE, endDate)
-            .setParameter(ORDERABLE, orderable)
-            .setParameter(FACILITY, facility)
-            .getSingleResult().toString());
+  public Map<Pair<UUID, UUID>, BigDecimal> findQuantities(String reasonCategory,
+      String reasonType, ZonedDateTime startDate, ZonedDateTime endDate,
+      Collection<UUID> orderables, Collection<UUID> facilities) {
+    if (orderables.isEmpty() || facilities.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    MapSqlParameterSource parameters = new MapSqlParameterSource()
+        .addValue(REASON_CATEGORY, reasonCategory)
+        .addValue(REASON_TYPE, reasonType)
+        .addValue(START_DATE, startDate.toOffsetDateTime())
+        .addValue(END_DATE, endDate.toOffsetDateTime())
+        .addValue(ORDERABLES, SqlArrays.toUuidArray(orderables))
+        .addValue(FACILITIES, SqlArrays.toUuidArray(facilities));
+
+    // the watermark is read first, so days refreshed meanwhile are read from the line items
+    ZonedDateTime watermark = stockDailyTotalRepository.findWatermark().orElse(NO_WATERMARK);
+    List<ChangedQuantity> changed = watermark.isBefore(endDate)
+        ? jdbcTemplate.query(CHANGED_QUANTITIES_QUERY,
+            new MapSqlParameterSource(parameters.getValues())
+                .addValue(WATERMARK, watermark.toOffsetDateTime()),
+            StockmanagementRepository::toChangedQuantity)
+        : Collections.emptyList();
+
+    Map<Pair<UUID, UUID>, BigDecimal> quantities = totalsJdbcTemplate.query(QUANTITIES_QUERY,
+        parameters
+            .addValue(CHANGED_FACILITIES, SqlArrays.toUuidArray(changed.stream()
+                .map(quantity -> quantity.key.getFirst()).collect(Collectors.toList())))
+            .addValue(CHANGED_ORDERABLES, SqlArrays.toUuidArray(changed.stream()
+                .map(quantity -> quantity.key.getSecond()).collect(Collectors.toList())))
+            .addValue(CHANGED_DATES, SqlArrays.toDateArray(changed.stream()
+                .map(quantity -> quantity.date).collect(Collectors.toList()))),
+        IndicatorResults::toValues);
+
+    for (ChangedQuantity quantity : changed) {
+      quantities.merge(quantity.key, quantity.quantity, BigDecimal::add);
+    }
+
+    return quantities;
+  }
+
+  private static ChangedQuantity toChangedQuantity(ResultSet rows, int rowNum)
+      throws SQLException {
+    return new ChangedQuantity(
+        Pair.of(UUID.fromString(rows.getString(1)), UUID.fromString(rows.getString(2))),
+        rows.getDate(3).toLocalDate(), new BigDecimal(rows.getString(4)));
+  }
+
+  private static final class ChangedQuantity {
+
+    private final Pair<UUID, UUID> key;
+    private final LocalDate date;
+    private final BigDecimal quantity;
+
+    private ChangedQuantity(Pair<UUID, UUID> key, LocalDate date, BigDecimal quantity) {
+      this.key = key;
+      this.date = date;
+      this.quantity = quantity;
+    }
+
   }
 
 }
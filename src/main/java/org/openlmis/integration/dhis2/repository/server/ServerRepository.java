@@ -15,6 +15,7 @@
 
 package org.openlmis.integration.dhis2.repository.server;
 
+import java.util.List;
 import java.util.UUID;
 import org.javers.spring.annotation.JaversSpringDataAuditable;
 import org.openlmis.integration.dhis2.domain.server.Server;
@@ -28,6 +29,8 @@ import org.springframework.data.repository.PagingAndSortingRepository;
 public interface ServerRepository extends PagingAndSortingRepository<Server, UUID>,
         BaseAuditableRepository<Server, UUID> {
 
+  List<Server> findAllByUrl(String url);
+
   @Query(value = "SELECT\n"
       + "    s.*\n"
       + "FROM\n"
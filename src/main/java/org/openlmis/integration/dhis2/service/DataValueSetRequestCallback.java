@@ -0,0 +1,104 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.zip.GZIPOutputStream;
+import org.openlmis.integration.dhis2.dto.dhis.DataValue;
+import org.openlmis.integration.dhis2.dto.dhis.DataValueSet;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.web.client.RequestCallback;
+
+/**
+ * Writes a {@link DataValueSet} directly to the request body with the Jackson streaming API,
+ * value by value, so that the serialized payload is never buffered in memory as a whole. Only
+ * the body is streamed: the {@link DataValue} objects of the set, and of the other chunks of the
+ * same period, are already built by the sync. The body can optionally be compressed with gzip.
+ */
+class DataValueSetRequestCallback implements RequestCallback {
+
+  static final String GZIP = "gzip";
+
+  private final ObjectMapper objectMapper;
+  private final DataValueSet dataValueSet;
+  private final String authorization;
+  private final boolean compress;
+
+  DataValueSetRequestCallback(ObjectMapper objectMapper, DataValueSet dataValueSet,
+      String authorization, boolean compress) {
+    this.objectMapper = objectMapper;
+    this.dataValueSet = dataValueSet;
+    this.authorization = authorization;
+    this.compress = compress;
+  }
+
+  @Override
+  public void doWithRequest(ClientHttpRequest request) throws IOException {
+    HttpHeaders headers = request.getHeaders();
+    headers.set(HttpHeaders.AUTHORIZATION, authorization);
+    headers.setContentType(MediaType.APPLICATION_JSON);
+    headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+
+    if (compress) {
+      headers.set(HttpHeaders.CONTENT_ENCODING, GZIP);
+    }
+
+    if (request instanceof StreamingHttpOutputMessage) {
+      ((StreamingHttpOutputMessage) request).setBody(this::writeBody);
+    } else {
+      writeBody(request.getBody());
+    }
+  }
+
+  void writeBody(OutputStream body) throws IOException {
+    GZIPOutputStream gzip = compress ? new GZIPOutputStream(body) : null;
+
+    try (JsonGenerator generator = objectMapper.getFactory()
+        .createGenerator(null != gzip ? gzip : body)
+        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+      generator.writeStartObject();
+      writeStringField(generator, "dataSet", dataValueSet.getDataSet());
+      writeStringField(generator, "period", dataValueSet.getPeriod());
+      writeStringField(generator, "orgUnit", dataValueSet.getOrgUnit());
+
+      generator.writeArrayFieldStart("dataValues");
+      for (DataValue dataValue : dataValueSet.getDataValues()) {
+        generator.writeObject(dataValue);
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+    }
+
+    if (null != gzip) {
+      gzip.finish();
+    }
+  }
+
+  private void writeStringField(JsonGenerator generator, String name, String value)
+      throws IOException {
+    if (null != value) {
+      generator.writeStringField(name, value);
+    }
+  }
+
+}
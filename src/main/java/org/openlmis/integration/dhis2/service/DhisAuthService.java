@@ -15,13 +15,17 @@
 
 package org.openlmis.integration.dhis2.service;
 
+import java.time.Clock;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.codec.binary.Base64;
 import org.openlmis.integration.dhis2.exception.ResponseParsingException;
 import org.openlmis.integration.dhis2.exception.RestOperationException;
 import org.openlmis.integration.dhis2.i18n.MessageKeys;
+import org.openlmis.integration.dhis2.service.resilience.RateLimitService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -30,18 +34,41 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+/**
+ * Obtains API tokens of DHIS2 servers. Tokens are created with an expiry date and cached per
+ * server and user until shortly before they expire. Only one token is requested at a time for
+ * the same server and user, concurrent callers wait for it and share it.
+ */
 @Service
 public class DhisAuthService {
 
   public static final String API_AUTH_URL = "/api/apiToken";
   public static final String API_RESPONSE_DETAILS = "response";
   public static final String API_KEY = "key";
+  public static final String API_EXPIRE = "expire";
 
   @Autowired
   private RestTemplate restTemplate;
 
+  @Autowired
+  private Clock clock;
+
+  @Autowired
+  private RateLimitService rateLimitService;
+
+  @Value("${dhis2.apiToken.timeToLive}")
+  private long timeToLive;
+
+  @Value("${dhis2.apiToken.refreshMargin}")
+  private long refreshMargin;
+
+  private final Map<String, AccessToken> tokens = new ConcurrentHashMap<>();
+
+  private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
   /**
-   * Retrieves access token from the auth service.
+   * Retrieves access token from the cache, or from the auth service if there is no valid
+   * token in the cache.
    *
    * @param username  Name of the specific user.
    * @param password  User password.
@@ -49,35 +76,84 @@ public class DhisAuthService {
    * @return token.
    */
   public String obtainAccessToken(String username, String password, String serverUrl) {
+    String cacheKey = getCacheKey(username, serverUrl);
+
+    AccessToken token = tokens.get(cacheKey);
+    if (isValid(token)) {
+      return token.key;
+    }
+
+    synchronized (locks.computeIfAbsent(cacheKey, key -> new Object())) {
+      token = tokens.get(cacheKey);
+      if (!isValid(token)) {
+        token = requestAccessToken(username, password, serverUrl);
+        tokens.put(cacheKey, token);
+      }
+      return token.key;
+    }
+  }
+
+  /**
+   * Removes the given access token from the cache, e.g. when it was rejected by the server.
+   * A newer token obtained in the meantime is kept.
+   *
+   * @param username  Name of the specific user.
+   * @param serverUrl User's server address.
+   * @param token     Token to remove.
+   */
+  public void invalidateAccessToken(String username, String serverUrl, String token) {
+    tokens.computeIfPresent(getCacheKey(username, serverUrl),
+        (key, cached) -> cached.key.equals(token) ? null : cached);
+  }
+
+  private AccessToken requestAccessToken(String username, String password, String serverUrl) {
     String base64Creds = getEncodedUserCreds(username, password);
     String uri = serverUrl + API_AUTH_URL;
 
     HttpHeaders headers = new HttpHeaders();
     headers.add(HttpHeaders.AUTHORIZATION, "Basic " + base64Creds);
 
-    Map<String, String> emptyRequestBody = new HashMap<>();
+    long expire = clock.millis() + timeToLive;
+    Map<String, Object> requestBody = new HashMap<>();
+    requestBody.put(API_EXPIRE, expire);
 
-    HttpEntity<?> request = new HttpEntity<>(emptyRequestBody, headers);
+    HttpEntity<?> request = new HttpEntity<>(requestBody, headers);
 
     ResponseEntity<?> response;
 
     try {
-      response = restTemplate.exchange(
+      response = rateLimitService.execute(serverUrl, 0, () -> restTemplate.exchange(
               uri,
               HttpMethod.POST,
               request,
-              Object.class);
+              Object.class));
     } catch (RestClientException ex) {
       throw new RestOperationException(MessageKeys.ERROR_EXTERNAL_API_CONNECTION_FAILED, ex);
     }
 
+    String key;
     try {
-      return ((Map<String, Map<String, String>>) response.getBody()).get(API_RESPONSE_DETAILS)
+      key = ((Map<String, Map<String, String>>) response.getBody()).get(API_RESPONSE_DETAILS)
               .get(API_KEY);
     } catch (NullPointerException ex) {
       throw new ResponseParsingException(
               MessageKeys.ERROR_EXTERNAL_API_RESPONSE_BODY_UNABLE_TO_PARSE, ex);
     }
+
+    if (null == key) {
+      throw new ResponseParsingException(
+              MessageKeys.ERROR_EXTERNAL_API_RESPONSE_BODY_UNABLE_TO_PARSE);
+    }
+
+    return new AccessToken(key, expire - refreshMargin);
+  }
+
+  private boolean isValid(AccessToken token) {
+    return null != token && clock.millis() < token.refreshAt;
+  }
+
+  private String getCacheKey(String username, String serverUrl) {
+    return username + "@" + serverUrl;
   }
 
   private String getEncodedUserCreds(String username, String password) {
@@ -87,4 +163,16 @@ public class DhisAuthService {
     return new String(base64CredsBytes);
   }
 
+  private static final class AccessToken {
+
+    private final String key;
+    private final long refreshAt;
+
+    private AccessToken(String key, long refreshAt) {
+      this.key = key;
+      this.refreshAt = refreshAt;
+    }
+
+  }
+
 }
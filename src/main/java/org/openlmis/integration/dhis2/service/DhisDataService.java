@@ -18,21 +18,38 @@ package org.openlmis.integration.dhis2.service;
 import static org.openlmis.integration.dhis2.util.RequestHelper.createEntity;
 import static org.openlmis.integration.dhis2.util.RequestHelper.createUri;
 
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.openlmis.integration.dhis2.ExecutionConfig;
 import org.openlmis.integration.dhis2.dto.dhis.DataValueSet;
 import org.openlmis.integration.dhis2.dto.dhis.DhisDataset;
+import org.openlmis.integration.dhis2.dto.dhis.DhisDatasetPage;
+import org.openlmis.integration.dhis2.dto.dhis.DhisImportSummary;
 import org.openlmis.integration.dhis2.dto.dhis.DhisResponseBody;
+import org.openlmis.integration.dhis2.dto.dhis.DhisTaskNotification;
 import org.openlmis.integration.dhis2.exception.ResponseParsingException;
 import org.openlmis.integration.dhis2.exception.RestOperationException;
 import org.openlmis.integration.dhis2.i18n.MessageKeys;
+import org.openlmis.integration.dhis2.service.resilience.RateLimitService;
+import org.openlmis.integration.dhis2.service.resilience.ResilienceService;
+import org.openlmis.integration.dhis2.util.Pagination;
 import org.openlmis.integration.dhis2.util.RequestParameters;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpMessageConverterExtractor;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
@@ -41,6 +58,10 @@ public class DhisDataService {
 
   public static final String API_DATASETS_URL = "/api/dataSets";
   public static final String API_DATA_VALUE_SETS_URL = "/api/dataValueSets";
+  public static final String API_TASKS_URL = "/api/system/tasks";
+  public static final String API_TASK_SUMMARIES_URL = "/api/system/taskSummaries";
+
+  private static final String API_TOKEN = "ApiToken";
 
   @Autowired
   private DhisAuthService authService;
@@ -48,8 +69,26 @@ public class DhisDataService {
   @Autowired
   private RestTemplate restTemplate;
 
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private ResilienceService resilienceService;
+
+  @Autowired
+  private RateLimitService rateLimitService;
+
+  @Autowired
+  private DhisDatasetCache datasetCache;
+
+  @Autowired
+  @Qualifier(ExecutionConfig.DHIS_REQUEST_EXECUTOR)
+  private TaskExecutor requestExecutor;
+
   /**
-   * Get data set with specific ID from DHIS2 API.
+   * Get data set with specific ID from DHIS2 API. The dataset is cached, and the cached copy is
+   * used as long as the lastUpdated date of the dataset on the server does not change, so the
+   * large lists of organisation units and data elements are not downloaded on every run.
    *
    * @param id        ID of dataset to get.
    * @param serverUrl Url of the dhis2 server.
@@ -59,21 +98,38 @@ public class DhisDataService {
    */
   public DhisDataset getDhisDataSetById(String id, String serverUrl, String username,
                                         String password) {
-    String token = authService.obtainAccessToken(username, password, serverUrl);
+    DhisDataset cached = datasetCache.get(serverUrl, id);
 
-    RequestParameters params = RequestParameters
+    if (null != cached && null != cached.getLastUpdated()) {
+      DhisDataset current = requestDhisDataSet(id, serverUrl, username, password,
+          RequestParameters.init().set("fields", "lastUpdated"));
+
+      if (null != current && cached.getLastUpdated().equals(current.getLastUpdated())) {
+        return cached;
+      }
+    }
+
+    DhisDataset dataset = requestDhisDataSet(id, serverUrl, username, password,
+        RequestParameters
             .init()
-            .set("fields", "periodType,"
+            .set("fields", "periodType,lastUpdated,"
                     + "organisationUnits[id,code,name],"
-                    + "dataSetElements[dataElement[id,name]]");
+                    + "dataSetElements[dataElement[id,name]]"));
 
+    datasetCache.put(serverUrl, id, dataset);
+    return dataset;
+  }
+
+  private DhisDataset requestDhisDataSet(String id, String serverUrl, String username,
+                                         String password, RequestParameters params) {
     try {
-      ResponseEntity<DhisDataset> response = restTemplate.exchange(
+      ResponseEntity<DhisDataset> response = withAccessToken(serverUrl, username, password,
+          token -> restTemplate.exchange(
               createUri(serverUrl + API_DATASETS_URL + "/" + id, params),
               HttpMethod.GET,
-              createEntity(token, "ApiToken"),
+              createEntity(token, API_TOKEN),
               DhisDataset.class
-      );
+      ));
 
       return response.getBody();
     } catch (HttpClientErrorException ex) {
@@ -85,34 +141,37 @@ public class DhisDataService {
   }
 
   /**
-   * Get all datasets for a given server from DHIS2 API.
+   * Get a page of datasets for a given server from DHIS2 API. The page is selected by DHIS2,
+   * so only the requested datasets are transferred.
    *
    * @param serverUrl Url of the dhis2 server.
    * @param username  Name of the specific user.
    * @param password  User password.
-   * @return the {@link DhisDataset} list.
+   * @param name      Part of the name of the datasets, all datasets are returned if null.
+   * @param pageable  Page, size and order of the datasets.
+   * @return the {@link DhisDataset} page.
    */
-  public ArrayList<DhisDataset> getDhisDatasets(String serverUrl, String username,
-                                               String password) {
-    String token = authService.obtainAccessToken(username, password, serverUrl);
-
+  public Page<DhisDataset> getDhisDatasets(String serverUrl, String username,
+                                           String password, String name, Pageable pageable) {
     RequestParameters params = RequestParameters
             .init()
-            .set("paging", "false");
+            .set("fields", "id,displayName,periodType")
+            .set("page", pageable.getPageNumber() + 1)
+            .set("pageSize", pageable.getPageSize())
+            .set("order", getOrder(pageable.getSort()))
+            .set("filter", null == name ? null : "displayName:ilike:" + name);
 
-    ResponseEntity<LinkedHashMap<String, ArrayList<Object>>> datasetResponse;
     try {
-      datasetResponse = restTemplate.exchange(
+      ResponseEntity<DhisDatasetPage> response = withAccessToken(serverUrl, username, password,
+          token -> restTemplate.exchange(
               createUri(serverUrl + API_DATASETS_URL, params),
               HttpMethod.GET,
-              createEntity(token, "ApiToken"),
-              new ParameterizedTypeReference
-                      <LinkedHashMap<String, ArrayList<Object>>>() {}
-      );
-
-      ArrayList<?> datasets
-              = datasetResponse.getBody().get("dataSets");
-      return (ArrayList<DhisDataset>) datasets;
+              createEntity(token, API_TOKEN),
+              DhisDatasetPage.class
+      ));
+
+      DhisDatasetPage page = response.getBody();
+      return Pagination.getPage(page.getDataSets(), pageable, page.getPager().getTotal());
     } catch (HttpClientErrorException ex) {
       throw new RestOperationException(
               MessageKeys.ERROR_EXTERNAL_API_CLIENT_REQUEST_FAILED, ex);
@@ -122,7 +181,6 @@ public class DhisDataService {
       throw new ResponseParsingException(
               MessageKeys.ERROR_EXTERNAL_API_RESPONSE_BODY_UNABLE_TO_PARSE, ex);
     }
-
   }
 
   /**
@@ -136,29 +194,191 @@ public class DhisDataService {
    */
   public DhisResponseBody createDataValueSet(DataValueSet dataValueSet, String serverUrl,
                                              String username, String password) {
-    String token = authService.obtainAccessToken(username, password, serverUrl);
+    return createDataValueSet(dataValueSet, serverUrl, username, password, false, false);
+  }
 
+  /**
+   * Send {@link DataValueSet} to DHIS2 API. The payload is streamed to the server instead of
+   * being serialized into memory first. When the import is asynchronous, the response only
+   * references the import task, which has to be tracked with {@link #isTaskCompleted} and
+   * {@link #getTaskSummary}.
+   *
+   * @param dataValueSet Request's payload send to DHIS2 API.
+   * @param serverUrl    Url of the dhis2 server.
+   * @param username     Name of the specific user.
+   * @param password     User password.
+   * @param compress     Whether the payload should be compressed with gzip.
+   * @param async        Whether the server should import the payload as a background task.
+   * @return the {@link DhisResponseBody}
+   */
+  public DhisResponseBody createDataValueSet(DataValueSet dataValueSet, String serverUrl,
+                                             String username, String password,
+                                             boolean compress, boolean async) {
     RequestParameters params = RequestParameters
             .init()
             .set("orgUnitIdScheme", "code")
             .set("dataElementIdScheme", "name");
 
+    if (async) {
+      params.set("async", "true");
+    }
+
     try {
-      ResponseEntity<DhisResponseBody> response = restTemplate.exchange(
+      int values = null == dataValueSet.getDataValues()
+          ? 0
+          : dataValueSet.getDataValues().size();
+
+      return withAccessToken(serverUrl, username, password, values, false,
+          token -> restTemplate.execute(
               createUri(serverUrl + API_DATA_VALUE_SETS_URL, params),
               HttpMethod.POST,
-              createEntity(dataValueSet, token, "ApiToken"),
-              DhisResponseBody.class
-      );
+              new DataValueSetRequestCallback(objectMapper, dataValueSet,
+                      API_TOKEN + " " + token, compress),
+              new HttpMessageConverterExtractor<>(DhisResponseBody.class,
+                      restTemplate.getMessageConverters())
+      ));
+    } catch (HttpClientErrorException ex) {
+      throw new RestOperationException(
+              MessageKeys.ERROR_EXTERNAL_API_CLIENT_REQUEST_FAILED, ex);
+    } catch (RestClientException ex) {
+      throw new RestOperationException(MessageKeys.ERROR_EXTERNAL_API_CONNECTION_FAILED, ex);
+    }
 
-      return response.getBody();
+  }
+
+  /**
+   * Send {@link DataValueSet} to DHIS2 API without waiting for the response. The request is
+   * sent by the DHIS2 request executor, and the response is passed to the given completion,
+   * which finishes once the server imported the data values. The request counts towards the
+   * concurrency limit of the server until the completion finishes, also when the server imports
+   * the data values asynchronously. When the maximum number of requests is already in flight to
+   * the server, the caller waits until one of them finishes, so data values are never produced
+   * faster than the server imports them.
+   *
+   * @param dataValueSet Request's payload send to DHIS2 API.
+   * @param serverUrl    Url of the dhis2 server.
+   * @param username     Name of the specific user.
+   * @param password     User password.
+   * @param compress     Whether the payload should be compressed with gzip.
+   * @param async        Whether the server should import the payload as a background task.
+   * @param completion   Waits for the import to finish and returns its result.
+   * @return future result of the import.
+   */
+  public CompletableFuture<DhisResponseBody> createDataValueSetAsync(
+          DataValueSet dataValueSet, String serverUrl, String username, String password,
+          boolean compress, boolean async,
+          Function<DhisResponseBody, CompletionStage<DhisResponseBody>> completion) {
+    try {
+      return rateLimitService.executeAsync(serverUrl, () -> CompletableFuture
+          .supplyAsync(() -> createDataValueSet(dataValueSet, serverUrl, username, password,
+              compress, async), requestExecutor)
+          .thenCompose(completion));
+    } catch (RejectedExecutionException ex) {
+      throw new RestOperationException(MessageKeys.ERROR_EXTERNAL_API_CONNECTION_FAILED, ex);
+    }
+  }
+
+  /**
+   * Check whether the asynchronous task with specific ID has finished on DHIS2 server.
+   *
+   * @param jobType   Type of the task.
+   * @param taskId    ID of the task.
+   * @param serverUrl Url of the dhis2 server.
+   * @param username  Name of the specific user.
+   * @param password  User password.
+   * @return true if any of the task notifications is marked as completed.
+   */
+  public boolean isTaskCompleted(String jobType, String taskId, String serverUrl,
+                                 String username, String password) {
+    try {
+      ResponseEntity<DhisTaskNotification[]> response = withAccessToken(serverUrl, username,
+          password, token -> restTemplate.exchange(
+              createUri(serverUrl + API_TASKS_URL + "/" + jobType + "/" + taskId,
+                      RequestParameters.init()),
+              HttpMethod.GET,
+              createEntity(token, API_TOKEN),
+              DhisTaskNotification[].class
+      ));
+
+      return null != response.getBody() && Arrays.stream(response.getBody())
+              .anyMatch(DhisTaskNotification::isCompleted);
+    } catch (HttpClientErrorException ex) {
+      throw new RestOperationException(
+              MessageKeys.ERROR_EXTERNAL_API_CLIENT_REQUEST_FAILED, ex);
+    } catch (RestClientException ex) {
+      throw new RestOperationException(MessageKeys.ERROR_EXTERNAL_API_CONNECTION_FAILED, ex);
+    }
+  }
+
+  /**
+   * Get the summary of the finished asynchronous task with specific ID from DHIS2 API.
+   *
+   * @param jobType   Type of the task.
+   * @param taskId    ID of the task.
+   * @param serverUrl Url of the dhis2 server.
+   * @param username  Name of the specific user.
+   * @param password  User password.
+   * @return the {@link DhisResponseBody} built from the task summary.
+   */
+  public DhisResponseBody getTaskSummary(String jobType, String taskId, String serverUrl,
+                                         String username, String password) {
+    try {
+      ResponseEntity<DhisImportSummary> response = withAccessToken(serverUrl, username,
+          password, token -> restTemplate.exchange(
+              createUri(serverUrl + API_TASK_SUMMARIES_URL + "/" + jobType + "/" + taskId,
+                      RequestParameters.init()),
+              HttpMethod.GET,
+              createEntity(token, API_TOKEN),
+              DhisImportSummary.class
+      ));
+
+      return response.getBody().toResponseBody();
     } catch (HttpClientErrorException ex) {
       throw new RestOperationException(
               MessageKeys.ERROR_EXTERNAL_API_CLIENT_REQUEST_FAILED, ex);
     } catch (RestClientException ex) {
       throw new RestOperationException(MessageKeys.ERROR_EXTERNAL_API_CONNECTION_FAILED, ex);
+    } catch (NullPointerException ex) {
+      throw new ResponseParsingException(
+              MessageKeys.ERROR_EXTERNAL_API_RESPONSE_BODY_UNABLE_TO_PARSE, ex);
+    }
+  }
+
+  private String getOrder(Sort sort) {
+    if (sort.isUnsorted()) {
+      return null;
     }
 
+    return sort.stream()
+        .map(order -> order.getProperty() + ':' + order.getDirection().name().toLowerCase())
+        .collect(Collectors.joining(","));
+  }
+
+  /**
+   * Calls DHIS2 API with the cached access token of the user. If the token is rejected, it is
+   * invalidated and the call is retried once with a new token. Transient failures are retried
+   * and tracked by the circuit breaker of the server, and each request waits for the rate
+   * limits of the server. Calls that are not idempotent are only retried if the server did not
+   * receive the request.
+   */
+  private <T> T withAccessToken(String serverUrl, String username, String password,
+                                Function<String, T> call) {
+    return withAccessToken(serverUrl, username, password, 0, true, call);
+  }
+
+  private <T> T withAccessToken(String serverUrl, String username, String password,
+                                int values, boolean idempotent, Function<String, T> call) {
+    return resilienceService.execute(serverUrl, idempotent, () -> {
+      String token = authService.obtainAccessToken(username, password, serverUrl);
+
+      try {
+        return rateLimitService.execute(serverUrl, values, () -> call.apply(token));
+      } catch (HttpClientErrorException.Unauthorized ex) {
+        authService.invalidateAccessToken(username, serverUrl, token);
+        String newToken = authService.obtainAccessToken(username, password, serverUrl);
+        return rateLimitService.execute(serverUrl, values, () -> call.apply(newToken));
+      }
+    });
   }
 
 }
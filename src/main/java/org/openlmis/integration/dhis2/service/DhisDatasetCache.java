@@ -0,0 +1,120 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.openlmis.integration.dhis2.dto.dhis.DhisDataset;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cache of DHIS2 dataset metadata keyed by server url and dataset id. The size of the cache is
+ * bounded by the total weight of the datasets, which is the number of their organisation units
+ * and data elements. When the bound is exceeded, the least recently used datasets are evicted.
+ */
+@Component
+public class DhisDatasetCache {
+
+  @Value("${dhis2.datasetCache.maxWeight}")
+  private long maxWeight;
+
+  private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75F, true);
+
+  private long totalWeight;
+
+  /**
+   * Returns the cached dataset or null if it is not cached.
+   */
+  public synchronized DhisDataset get(String serverUrl, String datasetId) {
+    Entry entry = entries.get(getKey(serverUrl, datasetId));
+    return null == entry ? null : entry.dataset;
+  }
+
+  /**
+   * Caches the dataset, evicting the least recently used datasets if needed. A dataset heavier
+   * than the whole cache is not cached.
+   */
+  public synchronized void put(String serverUrl, String datasetId, DhisDataset dataset) {
+    remove(getKey(serverUrl, datasetId));
+
+    if (null == dataset) {
+      return;
+    }
+
+    long weight = getWeight(dataset);
+
+    if (weight > maxWeight) {
+      return;
+    }
+
+    Iterator<Entry> iterator = entries.values().iterator();
+
+    while (totalWeight + weight > maxWeight && iterator.hasNext()) {
+      totalWeight -= iterator.next().weight;
+      iterator.remove();
+    }
+
+    entries.put(getKey(serverUrl, datasetId), new Entry(dataset, weight));
+    totalWeight += weight;
+  }
+
+  /**
+   * Drops all cached datasets.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    totalWeight = 0;
+  }
+
+  synchronized long getTotalWeight() {
+    return totalWeight;
+  }
+
+  private void remove(String key) {
+    Entry entry = entries.remove(key);
+
+    if (null != entry) {
+      totalWeight -= entry.weight;
+    }
+  }
+
+  private long getWeight(DhisDataset dataset) {
+    long organisationUnits = null == dataset.getOrganisationUnits()
+        ? 0
+        : dataset.getOrganisationUnits().size();
+
+    return 1 + organisationUnits + dataset.getDataSetElements().size();
+  }
+
+  private String getKey(String serverUrl, String datasetId) {
+    return serverUrl + '|' + datasetId;
+  }
+
+  private static final class Entry {
+
+    private final DhisDataset dataset;
+    private final long weight;
+
+    private Entry(DhisDataset dataset, long weight) {
+      this.dataset = dataset;
+      this.weight = weight;
+    }
+
+  }
+
+}
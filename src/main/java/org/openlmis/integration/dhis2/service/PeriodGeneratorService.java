@@ -16,9 +16,15 @@
 package org.openlmis.integration.dhis2.service;
 
 import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
 import org.openlmis.integration.dhis2.domain.enumerator.DhisPeriod;
+import org.openlmis.integration.dhis2.exception.ValidationMessageException;
+import org.openlmis.integration.dhis2.i18n.MessageKeys;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.util.Pair;
 import org.springframework.stereotype.Service;
@@ -56,6 +62,22 @@ public class PeriodGeneratorService {
     return generateRange(fromString(periodName), offsetMinutes);
   }
 
+  /**
+   * Generates date ranges of all periods between the given dates based on given enumerator.
+   * Periods that are only partially covered by the dates are included as a whole.
+   *
+   * @param periodEnum Enumerator with period name
+   * @param startDate First day of the first period
+   * @param endDate Last day of the last period
+   * @return List of pairs of starting and end date, in chronological order
+   */
+  public List<Pair<ZonedDateTime, ZonedDateTime>> generateRanges(
+          DhisPeriod periodEnum, LocalDate startDate, LocalDate endDate) {
+    ZoneId zoneId = clock.getZone();
+    return periodEnum.generate(startDate.atStartOfDay(zoneId),
+            endDate.plusDays(1).atStartOfDay(zoneId));
+  }
+
   /**
    * Create enumerator from string.
    */
@@ -68,6 +90,35 @@ public class PeriodGeneratorService {
     }
   }
 
+  /**
+   * Resolves the period of a dataset. A dataset whose cron expression is a period name uses
+   * that period, otherwise the period type of the DHIS2 dataset is used.
+   *
+   * @param cronExpression Cron expression or period name of the dataset
+   * @param dhisPeriodType Period type of the DHIS2 dataset
+   * @return Period enumerator
+   */
+  public DhisPeriod resolvePeriod(String cronExpression, String dhisPeriodType) {
+    if (isPeriodName(cronExpression)) {
+      return fromString(cronExpression);
+    }
+
+    DhisPeriod period = DhisPeriod.fromPeriodType(dhisPeriodType);
+    if (null == period) {
+      throw new ValidationMessageException(MessageKeys.ERROR_ENUMERATOR_NOT_EXIST);
+    }
+
+    return period;
+  }
+
+  /**
+   * Checks if the given name is a name of a period enumerator.
+   */
+  public static boolean isPeriodName(String name) {
+    return Arrays.stream(DhisPeriod.values())
+            .anyMatch(period -> period.name().equals(name.replaceAll(" ", "_").toUpperCase()));
+  }
+
   /**
    * Format date to ISO format used by DHIS2.
    */
@@ -17,21 +17,42 @@ package org.openlmis.integration.dhis2.service;
 
 import static org.openlmis.integration.dhis2.util.RequestHelper.createUri;
 
+import java.time.Clock;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.commons.codec.binary.Base64;
+import org.openlmis.integration.dhis2.ExecutionConfig;
+import org.openlmis.integration.dhis2.exception.ResponseParsingException;
+import org.openlmis.integration.dhis2.exception.RestOperationException;
+import org.openlmis.integration.dhis2.i18n.MessageKeys;
 import org.openlmis.integration.dhis2.util.RequestParameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestOperations;
-import org.springframework.web.client.RestTemplate;
 
+/**
+ * Obtains access tokens of the service from the OpenLMIS auth server. The token is cached
+ * until it expires and is shared by all threads. Once the token gets close to its expiry, it
+ * is refreshed in the background while callers keep using the current one.
+ */
 @Service
 public class ReferenceDataAuthService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ReferenceDataAuthService.class);
+
   private static final String ACCESS_TOKEN = "access_token";
+  private static final String EXPIRES_IN = "expires_in";
 
   @Value("${auth.server.clientId}")
   private String clientId;
@@ -42,14 +63,95 @@ public class ReferenceDataAuthService {
   @Value("${auth.server.authorizationUrl}")
   private String authorizationUrl;
 
-  private RestOperations restTemplate = new RestTemplate();
+  @Value("${auth.server.tokenRefreshMargin}")
+  private long refreshMargin;
+
+  @Autowired
+  private RestOperations restTemplate;
+
+  @Autowired
+  private Clock clock;
+
+  @Autowired
+  @Qualifier(ExecutionConfig.BACKGROUND_TASK_SCHEDULER)
+  private TaskExecutor taskExecutor;
+
+  private volatile AccessToken token;
+
+  private final Object lock = new Object();
+
+  private final AtomicBoolean refreshing = new AtomicBoolean();
 
   /**
-   * Retrieves access token from the auth service.
+   * Retrieves access token from the cache, or from the auth service if there is no valid
+   * token in the cache.
    *
    * @return token.
    */
   public String obtainAccessToken() {
+    AccessToken current = token;
+    long now = clock.millis();
+
+    if (null != current && now < current.expiresAt) {
+      if (now >= current.refreshAt) {
+        refreshInBackground();
+      }
+      return current.value;
+    }
+
+    synchronized (lock) {
+      current = token;
+      if (null == current || clock.millis() >= current.expiresAt) {
+        current = requestAccessToken();
+        token = current;
+      }
+      return current.value;
+    }
+  }
+
+  /**
+   * Removes the given access token from the cache, e.g. when it was rejected by a service.
+   * A newer token obtained in the meantime is kept.
+   *
+   * @param value Token to remove.
+   */
+  public void invalidateAccessToken(String value) {
+    synchronized (lock) {
+      if (null != token && token.value.equals(value)) {
+        token = null;
+      }
+    }
+  }
+
+  void setRestTemplate(RestOperations restTemplate) {
+    this.restTemplate = restTemplate;
+  }
+
+  private void refreshInBackground() {
+    if (!refreshing.compareAndSet(false, true)) {
+      return;
+    }
+
+    try {
+      taskExecutor.execute(() -> {
+        try {
+          AccessToken refreshed = requestAccessToken();
+          synchronized (lock) {
+            token = refreshed;
+          }
+        } catch (RuntimeException ex) {
+          LOGGER.warn("Unable to refresh access token", ex);
+        } finally {
+          refreshing.set(false);
+        }
+      });
+    } catch (TaskRejectedException ex) {
+      LOGGER.warn("Unable to schedule refresh of access token", ex);
+      refreshing.set(false);
+    }
+  }
+
+  private AccessToken requestAccessToken() {
     String base64Creds = getEncodedUserCreds(clientId, clientSecret);
 
     HttpHeaders headers = new HttpHeaders();
@@ -61,15 +163,28 @@ public class ReferenceDataAuthService {
             .init()
             .set("grant_type", "client_credentials");
 
-    ResponseEntity<?> response = restTemplate.exchange(
-            createUri(authorizationUrl, params), HttpMethod.POST, request, Object.class
-    );
-
-    return ((Map<String, String>) response.getBody()).get(ACCESS_TOKEN);
-  }
-
-  void setRestTemplate(RestOperations restTemplate) {
-    this.restTemplate = restTemplate;
+    long issuedAt = clock.millis();
+    ResponseEntity<?> response;
+    try {
+      response = restTemplate.exchange(
+              createUri(authorizationUrl, params), HttpMethod.POST, request, Object.class
+      );
+    } catch (RestClientException ex) {
+      throw new RestOperationException(MessageKeys.ERROR_EXTERNAL_API_CONNECTION_FAILED, ex);
+    }
+
+    Map<String, Object> body = (Map<String, Object>) response.getBody();
+    if (null == body || null == body.get(ACCESS_TOKEN)) {
+      throw new ResponseParsingException(
+              MessageKeys.ERROR_EXTERNAL_API_RESPONSE_BODY_UNABLE_TO_PARSE);
+    }
+
+    long expiresAt = body.get(EXPIRES_IN) instanceof Number
+            ? issuedAt + ((Number) body.get(EXPIRES_IN)).longValue() * 1000
+            : issuedAt;
+
+    return new AccessToken((String) body.get(ACCESS_TOKEN), expiresAt - refreshMargin,
+            expiresAt);
   }
 
   private String getEncodedUserCreds(String clientId, String clientSecret) {
@@ -79,4 +194,18 @@ public class ReferenceDataAuthService {
     return new String(base64CredsBytes);
   }
 
+  private static final class AccessToken {
+
+    private final String value;
+    private final long refreshAt;
+    private final long expiresAt;
+
+    private AccessToken(String value, long refreshAt, long expiresAt) {
+      this.value = value;
+      this.refreshAt = refreshAt;
+      this.expiresAt = expiresAt;
+    }
+
+  }
+
 }
@@ -16,18 +16,34 @@
 package org.openlmis.integration.dhis2.service;
 
 import static org.openlmis.integration.dhis2.util.RequestHelper.createEntity;
+import static org.openlmis.integration.dhis2.util.RequestHelper.createUri;
 
-import java.net.URI;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.openlmis.integration.dhis2.ExecutionConfig;
 import org.openlmis.integration.dhis2.dto.referencedata.MinimalFacilityDto;
 import org.openlmis.integration.dhis2.dto.referencedata.OrderableDto;
 import org.openlmis.integration.dhis2.dto.referencedata.PageDto;
 import org.openlmis.integration.dhis2.exception.ResponseParsingException;
 import org.openlmis.integration.dhis2.exception.RestOperationException;
 import org.openlmis.integration.dhis2.i18n.MessageKeys;
+import org.openlmis.integration.dhis2.util.RequestParameters;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
@@ -44,45 +60,175 @@ public class ReferenceDataService {
   @Value("${service.url}")
   private String serviceUrl;
 
+  @Value("${referencedata.pageSize}")
+  private int pageSize;
+
+  @Value("${referencedata.cache.timeToLive}")
+  private long cacheTimeToLive;
+
+  @Autowired
+  private Clock clock;
+
   @Autowired
   private RestTemplate restTemplate;
 
   @Autowired
   private ReferenceDataAuthService authService;
 
+  @Autowired
+  @Qualifier(ExecutionConfig.REFERENCE_DATA_REQUEST_EXECUTOR)
+  private TaskExecutor requestExecutor;
+
+  private final CachedResource<MinimalFacilityDto> facilities = new CachedResource<>();
+
+  private final CachedResource<OrderableDto> orderables = new CachedResource<>();
+
   /**
-   * Retrieves {@link PageDto} of {@link MinimalFacilityDto} objects from referencedata service.
+   * Retrieves all {@link MinimalFacilityDto} objects from referencedata service or the cache.
    *
-   * @return page of MinimalFacilityDto objects.
+   * @return stream of MinimalFacilityDto objects.
    */
-  public PageDto<MinimalFacilityDto> findAllFacilities() {
-    return doRequest(FACILITIES_RESOUCE_PATH);
+  public Stream<MinimalFacilityDto> findAllFacilities() {
+    return findAll(FACILITIES_RESOUCE_PATH, facilities,
+        new ParameterizedTypeReference<PageDto<MinimalFacilityDto>>() {});
   }
 
   /**
-   * Retrieves {@link PageDto} of {@link OrderableDto} objects from referencedata service.
+   * Retrieves all {@link OrderableDto} objects from referencedata service or the cache.
    *
-   * @return page of OrderableDto objects.
+   * @return stream of OrderableDto objects.
    */
-  public PageDto<OrderableDto> findAllOrderables() {
-    return doRequest(ORDERABLES_RESOUCE_PATH);
+  public Stream<OrderableDto> findAllOrderables() {
+    return findAll(ORDERABLES_RESOUCE_PATH, orderables,
+        new ParameterizedTypeReference<PageDto<OrderableDto>>() {});
   }
 
-  private <T> PageDto<T> doRequest(String resourcePath) {
+  /**
+   * Drops the cached referencedata resources, so they are retrieved again on the next use.
+   */
+  public void evictCache() {
+    facilities.evict();
+    orderables.evict();
+  }
+
+  /**
+   * Retrieves all objects of the given resource. The objects are cached for the configured time.
+   * When that time has passed, every page but the last is requested again with the ETag it had
+   * before. Pages which referencedata answers were not modified are taken from the cache, so
+   * only changed pages are transferred, and the objects are cached for another period.
+   */
+  private <T> Stream<T> findAll(String resourcePath, CachedResource<T> resource,
+      ParameterizedTypeReference<PageDto<T>> type) {
+    synchronized (resource) {
+      if (null == resource.pages || clock.millis() >= resource.expiresAt) {
+        load(resourcePath, type, resource);
+      }
+
+      return resource.pages.stream().flatMap(page -> page.content.stream());
+    }
+  }
+
+  /**
+   * Retrieves all pages of the given resource. The first page tells how many pages there are,
+   * the remaining pages are requested in parallel by the referencedata request executor. If the
+   * first page was not modified, its cached page count may be outdated, so the count is taken
+   * from the last cached page, which is always requested without its ETag. When the count has
+   * changed, the cached pages are dropped and every remaining page is retrieved in full.
+   */
+  private <T> void load(String resourcePath, ParameterizedTypeReference<PageDto<T>> type,
+      CachedResource<T> resource) {
+    List<CachedPage<T>> cachedPages = null == resource.pages
+        ? Collections.emptyList()
+        : resource.pages;
+    int lastCachedPage = cachedPages.size() - 1;
+    CachedPage<T> firstPage = fetchPage(resourcePath, 0,
+        lastCachedPage > 0 ? cachedPages : Collections.emptyList(), type);
+    CachedPage<T> lastPage = null;
+
+    if (lastCachedPage > 0 && firstPage == cachedPages.get(0)) {
+      lastPage = fetchPage(resourcePath, lastCachedPage, Collections.emptyList(), type);
+      firstPage = new CachedPage<>(firstPage.content, firstPage.etag, lastPage.totalPages);
+    }
+
+    List<CachedPage<T>> reusablePages = firstPage.totalPages == cachedPages.size()
+        ? cachedPages
+        : Collections.emptyList();
+    CachedPage<T> freshLastPage = lastPage;
+
+    List<CompletableFuture<CachedPage<T>>> remainingPages = IntStream
+        .range(1, firstPage.totalPages)
+        .mapToObj(page -> null != freshLastPage && page == lastCachedPage
+            ? CompletableFuture.completedFuture(freshLastPage)
+            : CompletableFuture.supplyAsync(
+                () -> fetchPage(resourcePath, page, reusablePages, type), requestExecutor))
+        .collect(Collectors.toList());
+
+    List<CachedPage<T>> pages = new ArrayList<>();
+    pages.add(firstPage);
+    remainingPages.forEach(page -> pages.add(await(page)));
+
+    resource.pages = pages;
+    resource.expiresAt = clock.millis() + cacheTimeToLive;
+  }
+
+  private <T> CachedPage<T> fetchPage(String resourcePath, int page,
+      List<CachedPage<T>> cachedPages, ParameterizedTypeReference<PageDto<T>> type) {
+    CachedPage<T> cached = page < cachedPages.size() ? cachedPages.get(page) : null;
+    String etag = null == cached ? null : cached.etag;
+    ResponseEntity<PageDto<T>> response = doRequest(resourcePath, page, etag, type);
+
+    if (null != etag && response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+      return cached;
+    }
+
+    PageDto<T> body = getBody(response);
+    return new CachedPage<>(body.getContent(), response.getHeaders().getETag(),
+        body.getTotalPages());
+  }
+
+  private <T> CachedPage<T> await(CompletableFuture<CachedPage<T>> page) {
     try {
-      ResponseEntity<PageDto<T>> response = restTemplate.exchange(
-              URI.create(serviceUrl + API_URL + resourcePath),
-              HttpMethod.GET,
-              createEntity(authService.obtainAccessToken(), "Bearer"),
-              new ParameterizedTypeReference<PageDto<T>>() {}
-      );
-
-      try {
-        return response.getBody();
-      } catch (NullPointerException ex) {
-        throw new ResponseParsingException(
-                MessageKeys.ERROR_EXTERNAL_API_RESPONSE_BODY_UNABLE_TO_PARSE, ex);
+      return page.join();
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
       }
+
+      throw ex;
+    }
+  }
+
+  private <T> PageDto<T> getBody(ResponseEntity<PageDto<T>> response) {
+    if (null == response || null == response.getBody()) {
+      throw new ResponseParsingException(
+              MessageKeys.ERROR_EXTERNAL_API_RESPONSE_BODY_UNABLE_TO_PARSE);
+    }
+
+    return response.getBody();
+  }
+
+  private <T> ResponseEntity<PageDto<T>> doRequest(String resourcePath, int page, String etag,
+      ParameterizedTypeReference<PageDto<T>> type) {
+    RequestParameters params = RequestParameters
+        .init()
+        .set("page", page)
+        .set("size", pageSize);
+
+    try {
+      return withAccessToken(token -> {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(createEntity(token, "Bearer").getHeaders());
+
+        if (null != etag) {
+          headers.setIfNoneMatch(etag);
+        }
+
+        return restTemplate.exchange(
+                createUri(serviceUrl + API_URL + resourcePath, params),
+                HttpMethod.GET,
+                createEntity(null, headers),
+                type);
+      });
     } catch (HttpClientErrorException ex) {
       throw new RestOperationException(
               MessageKeys.ERROR_EXTERNAL_API_CLIENT_REQUEST_FAILED, ex);
@@ -91,4 +237,44 @@ public class ReferenceDataService {
     }
   }
 
+  /**
+   * Calls referencedata service with the cached access token. If the token is rejected, it is
+   * invalidated and the call is retried once with a new token.
+   */
+  private <T> T withAccessToken(Function<String, T> call) {
+    String token = authService.obtainAccessToken();
+
+    try {
+      return call.apply(token);
+    } catch (HttpClientErrorException.Unauthorized ex) {
+      authService.invalidateAccessToken(token);
+      return call.apply(authService.obtainAccessToken());
+    }
+  }
+
+  private static final class CachedResource<T> {
+
+    private List<CachedPage<T>> pages;
+    private long expiresAt;
+
+    private synchronized void evict() {
+      pages = null;
+    }
+
+  }
+
+  private static final class CachedPage<T> {
+
+    private final List<T> content;
+    private final String etag;
+    private final int totalPages;
+
+    private CachedPage(List<T> content, String etag, int totalPages) {
+      this.content = content;
+      this.etag = etag;
+      this.totalPages = totalPages;
+    }
+
+  }
+
 }
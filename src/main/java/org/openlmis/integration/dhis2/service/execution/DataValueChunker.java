@@ -0,0 +1,131 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.execution;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.openlmis.integration.dhis2.domain.server.Server;
+import org.openlmis.integration.dhis2.dto.dhis.DataValue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Splits data values into chunks that are sent to a DHIS2 server in separate requests. A chunk
+ * contains at most the configured number of values and its serialized values take at most the
+ * configured number of bytes. Limits of the server take precedence over the service defaults.
+ * The size of a value is estimated from the lengths of its fields, so the values are only
+ * serialized once, when they are streamed to the server.
+ */
+@Component
+public class DataValueChunker {
+
+  // {"dataElement":"","orgUnit":"","value":}
+  private static final int OBJECT_BYTES = 2;
+  private static final int DATA_ELEMENT_BYTES = 16;
+  private static final int ORG_UNIT_BYTES = 12;
+  private static final int VALUE_BYTES = 8;
+
+  @Value("${dhis2.dataValueSets.maxValuesPerRequest}")
+  private int defaultMaxValues;
+
+  @Value("${dhis2.dataValueSets.maxBytesPerRequest}")
+  private int defaultMaxBytes;
+
+  /**
+   * Splits the data values into chunks which can be sent to the given server.
+   */
+  public List<List<DataValue>> split(List<DataValue> dataValues, Server server) {
+    int maxValues = limit(server.getMaxValuesPerRequest(), defaultMaxValues);
+    int maxBytes = limit(server.getMaxBytesPerRequest(), defaultMaxBytes);
+
+    List<List<DataValue>> chunks = new ArrayList<>();
+    List<DataValue> chunk = new ArrayList<>();
+    long chunkBytes = 0;
+
+    for (DataValue dataValue : dataValues) {
+      int valueBytes = sizeOf(dataValue) + 1;
+
+      if (!chunk.isEmpty() && (chunk.size() >= maxValues || chunkBytes + valueBytes > maxBytes)) {
+        chunks.add(chunk);
+        chunk = new ArrayList<>();
+        chunkBytes = 0;
+      }
+
+      chunk.add(dataValue);
+      chunkBytes += valueBytes;
+    }
+
+    if (!chunk.isEmpty()) {
+      chunks.add(chunk);
+    }
+
+    return chunks;
+  }
+
+  /**
+   * Estimates the number of bytes of the data value serialized to JSON. The estimate is exact
+   * for ASCII text and never lower than the serialized size otherwise.
+   */
+  static int sizeOf(DataValue dataValue) {
+    int size = OBJECT_BYTES;
+    int fields = 0;
+
+    if (null != dataValue.getDataElement()) {
+      size += DATA_ELEMENT_BYTES + sizeOf(dataValue.getDataElement());
+      fields++;
+    }
+
+    if (null != dataValue.getOrgUnit()) {
+      size += ORG_UNIT_BYTES + sizeOf(dataValue.getOrgUnit());
+      fields++;
+    }
+
+    if (null != dataValue.getValue()) {
+      size += VALUE_BYTES + dataValue.getValue().toString().length();
+      fields++;
+    }
+
+    return size + Math.max(fields - 1, 0);
+  }
+
+  private static int sizeOf(String text) {
+    int size = 0;
+
+    for (int i = 0; i < text.length(); i++) {
+      char character = text.charAt(i);
+
+      if (character < 0x20) {
+        // control characters are escaped as six character unicode sequences
+        size += 6;
+      } else if (character == '"' || character == '\\') {
+        size += 2;
+      } else if (character < 0x80) {
+        size += 1;
+      } else if (character < 0x800) {
+        size += 2;
+      } else {
+        size += 3;
+      }
+    }
+
+    return size;
+  }
+
+  private int limit(Integer serverLimit, int defaultLimit) {
+    return null != serverLimit && serverLimit > 0 ? serverLimit : defaultLimit;
+  }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.execution;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.TimeZone;
+import lombok.Getter;
+import org.openlmis.integration.dhis2.service.PeriodGeneratorService;
+import org.springframework.scheduling.support.CronSequenceGenerator;
+
+/**
+ * Schedule of a dataset, based on its cron expression. Both Unix (5 fields) and Spring
+ * (6 fields, with seconds) cron expressions are supported. Datasets configured with a period
+ * name instead of a cron expression are synchronized every day shortly before midnight, so that
+ * the current period is sent when it is (nearly) complete.
+ */
+public final class DatasetSchedule {
+
+  static final String PERIOD_SCHEDULE = "0 55 23 * * *";
+
+  private static final int UNIX_CRON_FIELDS = 5;
+
+  @Getter
+  private final String expression;
+
+  private final CronSequenceGenerator generator;
+
+  private final ZoneId zoneId;
+
+  private DatasetSchedule(String expression, ZoneId zoneId) {
+    this.expression = expression;
+    this.generator = new CronSequenceGenerator(expression, TimeZone.getTimeZone(zoneId));
+    this.zoneId = zoneId;
+  }
+
+  /**
+   * Creates schedule of a dataset with the given cron expression or period name.
+   *
+   * @throws IllegalArgumentException if the expression is neither a valid cron expression nor
+   *                                  a period name.
+   */
+  public static DatasetSchedule of(String cronExpression, ZoneId zoneId) {
+    if (PeriodGeneratorService.isPeriodName(cronExpression)) {
+      return new DatasetSchedule(PERIOD_SCHEDULE, zoneId);
+    }
+
+    String expression = cronExpression.trim();
+    if (expression.split("\\s+").length == UNIX_CRON_FIELDS) {
+      expression = "0 " + expression;
+    }
+
+    return new DatasetSchedule(expression, zoneId);
+  }
+
+  /**
+   * Returns the first fire time of this schedule after the given date.
+   */
+  public ZonedDateTime next(ZonedDateTime date) {
+    Date next = generator.next(Date.from(date.toInstant()));
+    return ZonedDateTime.ofInstant(next.toInstant(), zoneId);
+  }
+
+}
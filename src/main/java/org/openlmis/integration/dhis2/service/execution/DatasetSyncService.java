@@ -0,0 +1,290 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.execution;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import org.openlmis.integration.dhis2.ExecutionConfig;
+import org.openlmis.integration.dhis2.domain.dataset.Dataset;
+import org.openlmis.integration.dhis2.domain.element.DataElement;
+import org.openlmis.integration.dhis2.domain.enumerator.DhisPeriod;
+import org.openlmis.integration.dhis2.domain.enumerator.IndicatorEnum;
+import org.openlmis.integration.dhis2.domain.server.Server;
+import org.openlmis.integration.dhis2.dto.dhis.DataValue;
+import org.openlmis.integration.dhis2.dto.dhis.DataValueSet;
+import org.openlmis.integration.dhis2.dto.dhis.DhisDataset;
+import org.openlmis.integration.dhis2.dto.dhis.DhisResponseBody;
+import org.openlmis.integration.dhis2.dto.dhis.OrganisationUnit;
+import org.openlmis.integration.dhis2.dto.referencedata.MinimalFacilityDto;
+import org.openlmis.integration.dhis2.repository.execution.PushedDataValueRepository;
+import org.openlmis.integration.dhis2.service.DhisDataService;
+import org.openlmis.integration.dhis2.service.PeriodGeneratorService;
+import org.openlmis.integration.dhis2.service.ReferenceDataService;
+import org.openlmis.integration.dhis2.service.indicator.IndicatorBatch;
+import org.openlmis.integration.dhis2.service.indicator.IndicatorKey;
+import org.openlmis.integration.dhis2.service.indicator.IndicatorService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.util.Pair;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Synchronizes a single dataset with a single DHIS2 server. Database work is done in short,
+ * read-only transactions so that no connection is held while waiting for DHIS2. Indicators are
+ * calculated on the reporting data source, outside of the transactions of the service. Only values
+ * that differ from the ones last sent to the server are sent again, with values of all
+ * organisation units combined into as few requests as the server limits allow. Servers with
+ * asynchronous import get the next request while the previous ones are still being imported.
+ * Requests are sent without blocking the computation of the next values, up to the limit of
+ * requests in flight to the server.
+ */
+@Service
+public class DatasetSyncService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DatasetSyncService.class);
+
+  @Autowired
+  private DhisDataService dhisDataService;
+
+  @Autowired
+  private PeriodGeneratorService periodGeneratorService;
+
+  @Autowired
+  private ReferenceDataService referenceDataService;
+
+  @Autowired
+  private IndicatorService indicatorService;
+
+  @Autowired
+  private PushedDataValueRepository pushedDataValueRepository;
+
+  @Autowired
+  private DataValueChunker dataValueChunker;
+
+  @Autowired
+  private ImportTaskPoller importTaskPoller;
+
+  @Autowired
+  private ImportedValueRecorder importedValueRecorder;
+
+  @Autowired
+  @Qualifier(ExecutionConfig.BACKFILL_TASK_EXECUTOR)
+  private TaskExecutor backfillTaskExecutor;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  /**
+   * Computes the data elements of the given unit for the period with the given offset and
+   * sends them to the server of the unit.
+   *
+   * @param unit   Unit of the execution plan to synchronize.
+   * @param offset Starting date offset in minutes.
+   */
+  public void synchronize(ExecutionUnit unit, Long offset) {
+    SyncContext context = prepare(unit);
+    synchronizePeriod(context, periodGeneratorService.generateRange(context.period, offset));
+  }
+
+  /**
+   * Computes the data elements of the given unit for all periods between the given dates and
+   * sends them to the server of the unit. Metadata of the dataset is retrieved once, and the
+   * periods are processed in parallel on the backfill executor.
+   *
+   * @param unit      Unit of the execution plan to synchronize.
+   * @param startDate First day of the first period.
+   * @param endDate   Last day of the last period.
+   */
+  public void backfill(ExecutionUnit unit, LocalDate startDate, LocalDate endDate) {
+    SyncContext context = prepare(unit);
+    List<Pair<ZonedDateTime, ZonedDateTime>> periodRanges =
+            periodGeneratorService.generateRanges(context.period, startDate, endDate);
+
+    LOGGER.debug("Backfilling {} periods of dataset {}", periodRanges.size(),
+            unit.getDataset().getName());
+
+    await(periodRanges.stream()
+        .map(periodRange -> CompletableFuture.runAsync(
+            () -> synchronizePeriod(context, periodRange), backfillTaskExecutor))
+        .collect(Collectors.toList()));
+  }
+
+  private SyncContext prepare(ExecutionUnit unit) {
+    Server server = unit.getServer();
+    Dataset dataset = unit.getDataset();
+
+    LOGGER.debug("Synchronizing dataset {} with server {}", dataset.getName(), server.getName());
+
+    DhisDataset dhisDataset = dhisDataService.getDhisDataSetById(dataset.getDhisDatasetId(),
+            server.getUrl(), server.getUsername(), server.getPassword());
+
+    DhisPeriod period = periodGeneratorService.resolvePeriod(dataset.getCronExpression(),
+            dhisDataset.getPeriodType());
+
+    List<String> dhisOrgUnitCodes = dhisDataset.getOrganisationUnits().stream()
+            .map(OrganisationUnit::getCode).collect(Collectors.toList());
+
+    Set<String> refDataFacilityCodes = referenceDataService.findAllFacilities()
+            .map(MinimalFacilityDto::getCode).collect(Collectors.toCollection(HashSet::new));
+
+    List<String> orgUnits = dhisOrgUnitCodes.stream()
+            .filter(refDataFacilityCodes::contains)
+            .collect(Collectors.toList());
+
+    return new SyncContext(unit, period, orgUnits);
+  }
+
+  private void synchronizePeriod(SyncContext context,
+      Pair<ZonedDateTime, ZonedDateTime> periodRange) {
+    Server server = context.unit.getServer();
+    Dataset dataset = context.unit.getDataset();
+    String formattedStartDate = periodGeneratorService.formatDate(periodRange.getFirst(),
+            context.period);
+
+    List<String> orgUnits = context.orgUnits;
+    Map<String, Map<IndicatorKey, BigDecimal>> values = calculateValues(context.unit,
+        periodRange, orgUnits);
+
+    Map<Pair<String, String>, BigDecimal> pushedValues = readOnlyTransaction().execute(
+        status -> pushedDataValueRepository.findValues(server.getId(), dataset.getId(),
+            formattedStartDate));
+
+    List<DataValue> changedValues = orgUnits.stream()
+        .flatMap(orgUnit -> toDataValues(context.unit, values, orgUnit).stream())
+        .filter(dataValue -> isChanged(dataValue, pushedValues.get(
+            Pair.of(dataValue.getOrgUnit(), dataValue.getDataElement()))))
+        .collect(Collectors.toList());
+
+    if (changedValues.isEmpty()) {
+      LOGGER.debug("No changed values of dataset {} for period {}", dataset.getName(),
+          formattedStartDate);
+      return;
+    }
+
+    List<CompletableFuture<Void>> imports = new ArrayList<>();
+    for (List<DataValue> chunk : dataValueChunker.split(changedValues, server)) {
+      DataValueSet dataValueSet = new DataValueSet();
+      dataValueSet.setDataSet(dataset.getDhisDatasetId());
+      dataValueSet.setPeriod(formattedStartDate);
+      dataValueSet.setDataValues(chunk);
+
+      CompletableFuture<DhisResponseBody> result = dhisDataService
+          .createDataValueSetAsync(dataValueSet, server.getUrl(), server.getUsername(),
+              server.getPassword(), server.isCompressRequests(), server.isAsyncImport(),
+              response -> server.isAsyncImport()
+                  ? importTaskPoller.track(response, server)
+                  : CompletableFuture.completedFuture(response));
+
+      imports.add(result.thenAccept(summary -> importedValueRecorder.record(context.unit,
+          formattedStartDate, chunk, summary)));
+    }
+
+    await(imports);
+  }
+
+  private void await(List<CompletableFuture<Void>> futures) {
+    try {
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
+      }
+      throw ex;
+    }
+  }
+
+  private boolean isChanged(DataValue dataValue, BigDecimal pushedValue) {
+    return null == pushedValue || pushedValue.compareTo(dataValue.getValue()) != 0;
+  }
+
+  private Map<String, Map<IndicatorKey, BigDecimal>> calculateValues(ExecutionUnit unit,
+      Pair<ZonedDateTime, ZonedDateTime> periodRange, List<String> orgUnits) {
+    Map<String, List<DataElement>> dataElementsBySource = unit.getDataElements().stream()
+        .collect(Collectors.groupingBy(DataElement::getSource));
+
+    Map<String, Map<IndicatorKey, BigDecimal>> values = new HashMap<>();
+    dataElementsBySource.forEach((source, dataElements) -> {
+      Set<String> orderables = dataElements.stream()
+          .map(DataElement::getOrderable)
+          .collect(Collectors.toSet());
+      Set<IndicatorEnum> indicators = dataElements.stream()
+          .map(unit::getIndicator)
+          .collect(Collectors.toSet());
+
+      IndicatorBatch batch = new IndicatorBatch(source, periodRange, new HashSet<>(orgUnits),
+          orderables, unit.getDictionary());
+      values.put(source, indicatorService.calculateValues(batch, indicators));
+    });
+
+    return values;
+  }
+
+  private List<DataValue> toDataValues(ExecutionUnit unit,
+      Map<String, Map<IndicatorKey, BigDecimal>> values, String orgUnit) {
+    List<DataValue> dataValues = new ArrayList<>();
+
+    for (DataElement dataElement : unit.getDataElements()) {
+      String orderable = dataElement.getOrderable();
+      IndicatorKey key = new IndicatorKey(orgUnit, orderable, unit.getIndicator(dataElement));
+      BigDecimal value = values.get(dataElement.getSource()).get(key);
+
+      if (null == value) {
+        LOGGER.debug("No value of {} for {}", dataElement.getName(), orgUnit);
+        continue;
+      }
+
+      dataValues.add(new DataValue(dataElement.getElement(), orgUnit, value));
+    }
+
+    return dataValues;
+  }
+
+  private TransactionTemplate readOnlyTransaction() {
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    transaction.setReadOnly(true);
+    return transaction;
+  }
+
+  private static final class SyncContext {
+
+    private final ExecutionUnit unit;
+    private final DhisPeriod period;
+    private final List<String> orgUnits;
+
+    private SyncContext(ExecutionUnit unit, DhisPeriod period, List<String> orgUnits) {
+      this.unit = unit;
+      this.period = period;
+      this.orgUnits = orgUnits;
+    }
+
+  }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.execution;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.openlmis.integration.dhis2.domain.dataset.Dataset;
+import org.openlmis.integration.dhis2.domain.element.DataElement;
+import org.openlmis.integration.dhis2.domain.enumerator.IndicatorEnum;
+import org.openlmis.integration.dhis2.repository.dataset.DatasetRepository;
+import org.openlmis.integration.dhis2.repository.indicator.ReferenceKeyRepository;
+import org.openlmis.integration.dhis2.service.indicator.IndicatorDictionary;
+import org.openlmis.integration.dhis2.service.indicator.IndicatorRegistry;
+import org.openlmis.integration.dhis2.service.indicator.IndicatorService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Builds an {@link ExecutionPlan} from the Server → Dataset → DataElement graph, which is
+ * loaded with a single fetch-join query. Each dataset is only sent to its own server and
+ * only computes its own data elements. Units of a plan share a single
+ * {@link IndicatorDictionary}, so facility and orderable IDs are looked up once per run.
+ * Orderables of all units are resolved with a single query while the plan is built.
+ */
+@Component
+public class ExecutionPlanBuilder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExecutionPlanBuilder.class);
+
+  @Autowired
+  private DatasetRepository datasetRepository;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private IndicatorService indicatorService;
+
+  @Autowired
+  private IndicatorRegistry indicatorRegistry;
+
+  @Autowired
+  private ReferenceKeyRepository referenceKeyRepository;
+
+  /**
+   * Builds the execution plan of all configured datasets.
+   */
+  public ExecutionPlan build() {
+    return build(datasetRepository::findAllWithServerAndDataElements);
+  }
+
+  /**
+   * Builds the execution plan of the datasets with the given IDs.
+   */
+  public ExecutionPlan build(Collection<UUID> datasetIds) {
+    return build(() -> datasetRepository.findAllWithServerAndDataElementsByIdIn(datasetIds));
+  }
+
+  private ExecutionPlan build(Supplier<List<Dataset>> datasetSupplier) {
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    transaction.setReadOnly(true);
+
+    List<Dataset> datasets = transaction.execute(status -> datasetSupplier.get());
+
+    IndicatorDictionary dictionary = new IndicatorDictionary(referenceKeyRepository);
+    List<ExecutionUnit> units = new ArrayList<>();
+    for (Dataset dataset : datasets) {
+      if (dataset.getDataElementList().isEmpty()) {
+        LOGGER.debug("Skipping dataset {} without data elements", dataset.getId());
+        continue;
+      }
+
+      Map<DataElement, IndicatorEnum> indicators = resolveIndicators(dataset);
+      List<DataElement> dataElements = dataset.getDataElementList().stream()
+          .filter(indicators::containsKey)
+          .collect(Collectors.toList());
+
+      if (dataElements.isEmpty()) {
+        LOGGER.warn("Skipping dataset {} without valid data elements", dataset.getName());
+        continue;
+      }
+
+      units.add(new ExecutionUnit(dataset.getServer(), dataset, dataElements, indicators,
+          dictionary));
+    }
+
+    dictionary.resolveOrderables(units.stream()
+        .flatMap(unit -> unit.getDataElements().stream())
+        .map(DataElement::getOrderable)
+        .collect(Collectors.toSet()));
+
+    return new ExecutionPlan(units);
+  }
+
+  /**
+   * Resolves the indicator of each data element of the dataset, so the names are parsed once
+   * per plan rather than once per calculated value. Data elements with an unknown indicator,
+   * or with an indicator that cannot be calculated, are left out of the plan, so no made up
+   * values are sent for them.
+   */
+  private Map<DataElement, IndicatorEnum> resolveIndicators(Dataset dataset) {
+    Map<DataElement, IndicatorEnum> indicators = new IdentityHashMap<>();
+
+    for (DataElement dataElement : dataset.getDataElementList()) {
+      try {
+        IndicatorEnum indicator = indicatorService.fromString(dataElement.getIndicator());
+
+        if (!indicatorRegistry.find(indicator).isPresent()) {
+          LOGGER.warn("Skipping data element {} of dataset {}, indicator {} cannot be calculated",
+              dataElement.getName(), dataset.getName(), indicator);
+          continue;
+        }
+
+        indicators.put(dataElement, indicator);
+      } catch (IllegalArgumentException ex) {
+        LOGGER.error("Skipping data element {} of dataset {}", dataElement.getName(),
+            dataset.getName(), ex);
+      }
+    }
+
+    return indicators;
+  }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.execution;
+
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import org.openlmis.integration.dhis2.domain.execution.ExecutionJob;
+import org.openlmis.integration.dhis2.repository.dataset.DatasetRepository;
+import org.openlmis.integration.dhis2.repository.execution.ExecutionLeaseRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.util.Pair;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Triggers executions of datasets according to their cron expressions. Every service instance
+ * checks the schedules periodically, but a scheduled execution is only run by the instance that
+ * acquires its lease.
+ */
+@Component
+@ConditionalOnProperty(name = "execution.scheduler.enabled", havingValue = "true")
+public class ExecutionScheduler {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExecutionScheduler.class);
+
+  @Autowired
+  private DatasetRepository datasetRepository;
+
+  @Autowired
+  private ExecutionLeaseRepository executionLeaseRepository;
+
+  @Autowired
+  private ExecutionService executionService;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private Clock clock;
+
+  @Value("${execution.scheduler.leaseRetentionDays}")
+  private long leaseRetentionDays;
+
+  private final String owner = UUID.randomUUID().toString();
+
+  private ZonedDateTime lastCheckDate;
+
+  /**
+   * Submits an execution of all datasets whose schedule fired since the previous check.
+   */
+  @Scheduled(fixedDelayString = "${execution.scheduler.checkInterval}")
+  public synchronized void checkSchedules() {
+    ZonedDateTime now = ZonedDateTime.now(clock);
+    if (null == lastCheckDate) {
+      lastCheckDate = now;
+    }
+
+    Map<UUID, ZonedDateTime> leases = new HashMap<>();
+    for (Pair<UUID, String> dataset : findSchedules()) {
+      ZonedDateTime scheduledDate = nextScheduledDate(dataset.getSecond(), now);
+
+      if (null != scheduledDate && !scheduledDate.isAfter(now)
+          && executionLeaseRepository.tryAcquire(dataset.getFirst(), scheduledDate, owner, now)) {
+        leases.put(dataset.getFirst(), scheduledDate);
+      }
+    }
+
+    if (leases.isEmpty() || submit(leases)) {
+      lastCheckDate = now;
+    }
+
+    executionLeaseRepository.deleteScheduledBefore(now.minusDays(leaseRetentionDays));
+  }
+
+  /**
+   * Submits an execution of the leased datasets. If the execution could not be submitted, the
+   * leases are released and the check date is kept, so the schedules fire again on the next
+   * check of any instance.
+   *
+   * @return true if the execution was submitted.
+   */
+  private boolean submit(Map<UUID, ZonedDateTime> leases) {
+    try {
+      ExecutionJob job = executionService.submit(leases.keySet());
+
+      if (!wasRejected(job)) {
+        LOGGER.info("Submitted scheduled execution {} of {} dataset(s)", job.getId(),
+            leases.size());
+        return true;
+      }
+
+      LOGGER.warn("Scheduled execution {} of {} dataset(s) was rejected, releasing leases",
+          job.getId(), leases.size());
+    } catch (RuntimeException ex) {
+      LOGGER.warn("Could not submit scheduled execution of {} dataset(s), releasing leases",
+          leases.size(), ex);
+    }
+
+    leases.forEach((datasetId, scheduledDate) ->
+        executionLeaseRepository.release(datasetId, scheduledDate, owner));
+    return false;
+  }
+
+  private boolean wasRejected(ExecutionJob job) {
+    // a job that finished without starting never synchronized anything, so it is safe to retry
+    return job.isFinished() && null == job.getStartDate();
+  }
+
+  private ZonedDateTime nextScheduledDate(String cronExpression, ZonedDateTime now) {
+    try {
+      return DatasetSchedule.of(cronExpression, now.getZone()).next(lastCheckDate);
+    } catch (IllegalArgumentException ex) {
+      LOGGER.warn("Invalid dataset schedule: {}", cronExpression, ex);
+      return null;
+    }
+  }
+
+  private List<Pair<UUID, String>> findSchedules() {
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    transaction.setReadOnly(true);
+
+    return transaction.execute(status -> StreamSupport
+        .stream(datasetRepository.findAll().spliterator(), false)
+        .map(dataset -> Pair.of(dataset.getId(), dataset.getCronExpression()))
+        .collect(Collectors.toList()));
+  }
+
+}
@@ -0,0 +1,231 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.execution;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.openlmis.integration.dhis2.ExecutionConfig;
+import org.openlmis.integration.dhis2.domain.execution.ExecutionJob;
+import org.openlmis.integration.dhis2.exception.ValidationMessageException;
+import org.openlmis.integration.dhis2.i18n.MessageKeys;
+import org.openlmis.integration.dhis2.repository.execution.ExecutionJobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Submits sync executions to the execution executor and keeps track of their state. The state
+ * of the jobs is stored in the database, so it is shared by all service instances. Every
+ * instance periodically records a heartbeat of the jobs it runs, and fails unfinished jobs whose
+ * heartbeat stopped, e.g. because their instance was restarted.
+ */
+@Service
+public class ExecutionService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExecutionService.class);
+
+  private static final Long CURRENT_PERIOD_OFFSET = 0L;
+
+  static final String ABANDONED_MESSAGE = "Execution was abandoned by its service instance";
+
+  @Autowired
+  private ExecutionPlanBuilder executionPlanBuilder;
+
+  @Autowired
+  private DatasetSyncService datasetSyncService;
+
+  @Autowired
+  private ExecutionJobRepository executionJobRepository;
+
+  @Autowired
+  @Qualifier(ExecutionConfig.EXECUTION_TASK_EXECUTOR)
+  private TaskExecutor taskExecutor;
+
+  @Autowired
+  private Clock clock;
+
+  @Value("${execution.maxRetainedJobs}")
+  private int maxRetainedJobs;
+
+  @Value("${execution.heartbeat.timeout}")
+  private long heartbeatTimeout;
+
+  private final Set<UUID> activeJobIds = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Submits a new execution of all datasets for the current period.
+   *
+   * @return the submitted {@link ExecutionJob}.
+   */
+  public ExecutionJob submit() {
+    return submit(executionPlanBuilder::build);
+  }
+
+  /**
+   * Submits a new execution of the datasets with the given IDs for the current period.
+   *
+   * @return the submitted {@link ExecutionJob}.
+   */
+  public ExecutionJob submit(Collection<UUID> datasetIds) {
+    return submit(() -> executionPlanBuilder.build(datasetIds));
+  }
+
+  private ExecutionJob submit(Supplier<ExecutionPlan> planSupplier) {
+    return submit(planSupplier,
+        unit -> datasetSyncService.synchronize(unit, CURRENT_PERIOD_OFFSET));
+  }
+
+  private ExecutionJob submit(Supplier<ExecutionPlan> planSupplier,
+      Consumer<ExecutionUnit> unitProcessor) {
+    ExecutionJob job = new ExecutionJob(UUID.randomUUID(), ZonedDateTime.now(clock));
+    register(job);
+
+    try {
+      taskExecutor.execute(() -> run(job, planSupplier, unitProcessor));
+    } catch (TaskRejectedException ex) {
+      LOGGER.warn("Execution {} rejected", job.getId(), ex);
+      job.fail(ZonedDateTime.now(clock), ex.getMessage());
+      save(job);
+      activeJobIds.remove(job.getId());
+    }
+
+    return job;
+  }
+
+  /**
+   * Submits a new backfill of all periods between the given dates. Datasets with the given
+   * IDs are backfilled, or all datasets if no IDs are given.
+   *
+   * @param datasetIds IDs of datasets to backfill, may be empty.
+   * @param startDate  First day of the first period.
+   * @param endDate    Last day of the last period.
+   * @return the submitted {@link ExecutionJob}.
+   */
+  public ExecutionJob submitBackfill(Collection<UUID> datasetIds, LocalDate startDate,
+      LocalDate endDate) {
+    if (null == startDate || null == endDate || startDate.isAfter(endDate)
+        || endDate.isAfter(LocalDate.now(clock))) {
+      throw new ValidationMessageException(MessageKeys.ERROR_EXECUTION_BACKFILL_RANGE_INVALID);
+    }
+
+    Supplier<ExecutionPlan> planSupplier = null == datasetIds || datasetIds.isEmpty()
+        ? executionPlanBuilder::build
+        : () -> executionPlanBuilder.build(datasetIds);
+
+    return submit(planSupplier,
+        unit -> datasetSyncService.backfill(unit, startDate, endDate));
+  }
+
+  /**
+   * Finds the execution job with the given ID.
+   */
+  public Optional<ExecutionJob> findJob(UUID jobId) {
+    return executionJobRepository.findById(jobId);
+  }
+
+  /**
+   * Records the heartbeat of the jobs queued or running on this instance, and fails unfinished
+   * jobs of any instance whose heartbeat is older than the timeout.
+   */
+  @Scheduled(fixedDelayString = "${execution.heartbeat.interval}")
+  public void heartbeat() {
+    ZonedDateTime now = ZonedDateTime.now(clock);
+    Set<UUID> jobIds = new HashSet<>(activeJobIds);
+
+    if (!jobIds.isEmpty()) {
+      executionJobRepository.updateHeartbeat(jobIds, now);
+    }
+
+    ZonedDateTime staleDate = now.minus(heartbeatTimeout, ChronoUnit.MILLIS);
+    for (ExecutionJob job : executionJobRepository
+        .findByFinishDateIsNullAndHeartbeatDateBefore(staleDate)) {
+      if (!jobIds.contains(job.getId())) {
+        LOGGER.warn("Execution {} has no heartbeat since {}, marking it as failed",
+            job.getId(), job.getHeartbeatDate());
+        job.fail(now, ABANDONED_MESSAGE);
+        save(job);
+      }
+    }
+  }
+
+  void run(ExecutionJob job, Supplier<ExecutionPlan> planSupplier,
+      Consumer<ExecutionUnit> unitProcessor) {
+    LOGGER.debug("Running execution {}", job.getId());
+
+    try {
+      ExecutionPlan plan = planSupplier.get();
+      job.start(ZonedDateTime.now(clock), plan.size());
+      save(job);
+
+      for (ExecutionUnit unit : plan.getUnits()) {
+        process(job, unit, unitProcessor);
+      }
+
+      job.finish(ZonedDateTime.now(clock));
+      LOGGER.debug("Execution {} finished with {} failed units", job.getId(),
+          job.getFailedUnits());
+    } catch (RuntimeException ex) {
+      LOGGER.error("Execution {} failed", job.getId(), ex);
+      job.fail(ZonedDateTime.now(clock), ex.getMessage());
+    }
+
+    save(job);
+    activeJobIds.remove(job.getId());
+  }
+
+  private void process(ExecutionJob job, ExecutionUnit unit,
+      Consumer<ExecutionUnit> unitProcessor) {
+    try {
+      unitProcessor.accept(unit);
+      job.unitCompleted();
+    } catch (RuntimeException ex) {
+      LOGGER.error("Execution {} failed to synchronize dataset {} with server {}",
+          job.getId(), unit.getDataset().getName(), unit.getServer().getName(), ex);
+      job.unitFailed(ex.getMessage());
+    }
+
+    save(job);
+  }
+
+  private void register(ExecutionJob job) {
+    activeJobIds.add(job.getId());
+    executionJobRepository.save(job);
+    executionJobRepository.deleteFinishedExceptLatest(maxRetainedJobs);
+  }
+
+  private void save(ExecutionJob job) {
+    // the whole job is written, so the heartbeat must not go back to an older date
+    job.heartbeat(ZonedDateTime.now(clock));
+    executionJobRepository.save(job);
+  }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.execution;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.openlmis.integration.dhis2.domain.dataset.Dataset;
+import org.openlmis.integration.dhis2.domain.element.DataElement;
+import org.openlmis.integration.dhis2.domain.enumerator.IndicatorEnum;
+import org.openlmis.integration.dhis2.domain.server.Server;
+import org.openlmis.integration.dhis2.service.indicator.IndicatorDictionary;
+
+/**
+ * A single unit of an {@link ExecutionPlan}: one dataset sent to the server it belongs to,
+ * together with the data elements mapped to that dataset and their resolved indicators. The
+ * entities are fully initialized and detached, so they can be used outside of a transaction.
+ * All units of a plan share the {@link IndicatorDictionary} of the run.
+ */
+@Getter
+public class ExecutionUnit {
+
+  private final Server server;
+  private final Dataset dataset;
+  private final List<DataElement> dataElements;
+
+  @Getter(AccessLevel.NONE)
+  private final Map<DataElement, IndicatorEnum> indicators;
+
+  private final IndicatorDictionary dictionary;
+
+  /**
+   * Creates new execution unit.
+   *
+   * @param indicators Indicator of each of the data elements.
+   * @param dictionary Facility and orderable IDs of the run.
+   */
+  public ExecutionUnit(Server server, Dataset dataset, List<DataElement> dataElements,
+      Map<DataElement, IndicatorEnum> indicators, IndicatorDictionary dictionary) {
+    this.server = server;
+    this.dataset = dataset;
+    this.dataElements = Collections.unmodifiableList(dataElements);
+    this.indicators = new IdentityHashMap<>(indicators);
+    this.dictionary = dictionary;
+  }
+
+  public IndicatorEnum getIndicator(DataElement dataElement) {
+    return indicators.get(dataElement);
+  }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.execution;
+
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import org.openlmis.integration.dhis2.ExecutionConfig;
+import org.openlmis.integration.dhis2.domain.server.Server;
+import org.openlmis.integration.dhis2.dto.dhis.DhisResponseBody;
+import org.openlmis.integration.dhis2.dto.dhis.DhisResponseBodyDetails;
+import org.openlmis.integration.dhis2.exception.RestOperationException;
+import org.openlmis.integration.dhis2.i18n.MessageKeys;
+import org.openlmis.integration.dhis2.service.DhisDataService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tracks asynchronous DHIS2 imports in the background. The state of each import task is
+ * polled on the import scheduler, so the caller can submit further requests while DHIS2 is
+ * still importing the previous ones.
+ */
+@Component
+public class ImportTaskPoller {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ImportTaskPoller.class);
+
+  @Autowired
+  private DhisDataService dhisDataService;
+
+  @Autowired
+  @Qualifier(ExecutionConfig.IMPORT_TASK_SCHEDULER)
+  private TaskScheduler taskScheduler;
+
+  @Autowired
+  private Clock clock;
+
+  @Value("${dhis2.asyncImport.pollInterval}")
+  private long pollInterval;
+
+  @Value("${dhis2.asyncImport.timeout}")
+  private long timeout;
+
+  /**
+   * Starts tracking the import task referenced by the given response of an asynchronous
+   * import. The returned future is completed with the task summary converted to the response
+   * of a synchronous import. Responses without a task reference are returned as they are.
+   *
+   * @param response Response of the asynchronous import request.
+   * @param server   Server running the import.
+   * @return future result of the import.
+   */
+  public CompletableFuture<DhisResponseBody> track(DhisResponseBody response, Server server) {
+    CompletableFuture<DhisResponseBody> result = new CompletableFuture<>();
+    DhisResponseBodyDetails task = null == response ? null : response.getResponse();
+
+    if (null == task || null == task.getId() || null == task.getJobType()) {
+      result.complete(response);
+      return result;
+    }
+
+    ZonedDateTime deadline = ZonedDateTime.now(clock).plus(timeout, ChronoUnit.MILLIS);
+    schedule(() -> poll(task, server, deadline, result));
+
+    return result;
+  }
+
+  private void poll(DhisResponseBodyDetails task, Server server, ZonedDateTime deadline,
+      CompletableFuture<DhisResponseBody> result) {
+    try {
+      if (dhisDataService.isTaskCompleted(task.getJobType(), task.getId(), server.getUrl(),
+          server.getUsername(), server.getPassword())) {
+        LOGGER.debug("Import task {} completed on server {}", task.getId(), server.getName());
+        result.complete(dhisDataService.getTaskSummary(task.getJobType(), task.getId(),
+            server.getUrl(), server.getUsername(), server.getPassword()));
+      } else if (ZonedDateTime.now(clock).isAfter(deadline)) {
+        result.completeExceptionally(
+            new RestOperationException(MessageKeys.ERROR_EXTERNAL_API_IMPORT_TIMEOUT));
+      } else {
+        schedule(() -> poll(task, server, deadline, result));
+      }
+    } catch (RuntimeException ex) {
+      result.completeExceptionally(ex);
+    }
+  }
+
+  private void schedule(Runnable poll) {
+    taskScheduler.schedule(poll, new Date(clock.millis() + pollInterval));
+  }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.execution;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.openlmis.integration.dhis2.dto.dhis.DataValue;
+import org.openlmis.integration.dhis2.dto.dhis.DhisResponseBody;
+import org.openlmis.integration.dhis2.dto.dhis.DhisResponseBodyDetails;
+import org.openlmis.integration.dhis2.exception.RestOperationException;
+import org.openlmis.integration.dhis2.i18n.MessageKeys;
+import org.openlmis.integration.dhis2.repository.execution.PushedDataValueRepository;
+import org.openlmis.integration.dhis2.util.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.util.Pair;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records the data values imported by DHIS2, so that they are not sent again by the next
+ * execution unless they change.
+ */
+@Component
+public class ImportedValueRecorder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ImportedValueRecorder.class);
+
+  private static final String IMPORT_STATUS_ERROR = "ERROR";
+
+  @Autowired
+  private PushedDataValueRepository pushedDataValueRepository;
+
+  @Autowired
+  private Clock clock;
+
+  /**
+   * Records the values of the chunk imported by DHIS2 according to the given import summary.
+   * If the import failed or rejected some of the values, the unit fails after the other values
+   * were recorded, and the rejected values are sent again by the next execution.
+   */
+  public void record(ExecutionUnit unit, String period, List<DataValue> chunk,
+      DhisResponseBody summary) {
+    if (null == summary || IMPORT_STATUS_ERROR.equalsIgnoreCase(summary.getStatus())) {
+      throw new RestOperationException(new Message(
+          MessageKeys.ERROR_EXTERNAL_API_IMPORT_FAILED,
+          null == summary ? null : summary.getMessage()));
+    }
+
+    DhisResponseBodyDetails details = summary.getResponse();
+    if (null == details || !details.hasRejectedValues()) {
+      save(unit, period, chunk);
+      return;
+    }
+
+    List<Integer> rejectedIndexes = details.getRejectedIndexes();
+    int rejected = null == rejectedIndexes || rejectedIndexes.isEmpty()
+        ? countRejectedValues(details)
+        : chunk.size() - saveAcceptedValues(unit, period, chunk, rejectedIndexes);
+
+    LOGGER.warn("Server {} rejected {} values of dataset {} for period {}: {}",
+        unit.getServer().getName(), rejected, unit.getDataset().getName(), period,
+        details.getConflicts());
+    throw new RestOperationException(new Message(
+        MessageKeys.ERROR_EXTERNAL_API_IMPORT_REJECTED, rejected, chunk.size()));
+  }
+
+  /**
+   * Counts the rejected values when DHIS2 does not report which ones they are. None of the
+   * values is recorded then.
+   */
+  private int countRejectedValues(DhisResponseBodyDetails details) {
+    return Math.max(null == details.getConflicts() ? 0 : details.getConflicts().size(),
+        null == details.getImportCount() ? 0 : details.getImportCount().getIgnored());
+  }
+
+  /**
+   * Records the values of the chunk that are not at the given rejected indexes.
+   *
+   * @return number of recorded values.
+   */
+  private int saveAcceptedValues(ExecutionUnit unit, String period, List<DataValue> chunk,
+      List<Integer> rejectedIndexes) {
+    Set<Integer> rejectedSet = new HashSet<>(rejectedIndexes);
+    List<DataValue> imported = IntStream.range(0, chunk.size())
+        .filter(index -> !rejectedSet.contains(index))
+        .mapToObj(chunk::get)
+        .collect(Collectors.toList());
+
+    if (!imported.isEmpty()) {
+      save(unit, period, imported);
+    }
+
+    return imported.size();
+  }
+
+  private void save(ExecutionUnit unit, String period, List<DataValue> dataValues) {
+    Map<Pair<String, String>, BigDecimal> values = dataValues.stream()
+        .collect(Collectors.toMap(
+            dataValue -> Pair.of(dataValue.getOrgUnit(), dataValue.getDataElement()),
+            DataValue::getValue, (first, second) -> second));
+
+    pushedDataValueRepository.saveValues(unit.getServer().getId(), unit.getDataset().getId(),
+        period, values, ZonedDateTime.now(clock));
+  }
+
+}
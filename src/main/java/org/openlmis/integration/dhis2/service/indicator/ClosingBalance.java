@@ -18,10 +18,11 @@ package org.openlmis.integration.dhis2.service.indicator;
 import static org.openlmis.integration.dhis2.i18n.MessageKeys.ERROR_ENUMERATOR_NOT_EXIST;
 
 import java.math.BigDecimal;
-import java.math.MathContext;
-import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.UUID;
 import org.openlmis.integration.dhis2.domain.enumerator.IndicatorEnum;
 import org.openlmis.integration.dhis2.exception.ValidationMessageException;
+import org.openlmis.integration.dhis2.repository.indicator.LatestValue;
 import org.openlmis.integration.dhis2.repository.indicator.RequisitionRepository;
 import org.openlmis.integration.dhis2.repository.indicator.StockmanagementRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,7 +32,7 @@ import org.springframework.stereotype.Component;
 @Component
 public class ClosingBalance implements IndicatorSupplier {
 
-  public static final String NAME = IndicatorEnum.CLOSING_BALANCE.toString();
+  public static final IndicatorEnum INDICATOR = IndicatorEnum.CLOSING_BALANCE;
 
   @Autowired
   private RequisitionRepository requisitionRepository;
@@ -39,27 +40,26 @@ public class ClosingBalance implements IndicatorSupplier {
   @Autowired
   private StockmanagementRepository stockmanagementRepository;
 
-  public String getIndicatorName() {
-    return NAME;
+  public IndicatorEnum getIndicator() {
+    return INDICATOR;
   }
 
   /**
-   * Calculate closing balance.
+   * Calculate closing balances of all facilities and orderables of the batch.
    */
-  public BigDecimal calculateValue(String source, Pair<ZonedDateTime, ZonedDateTime> period,
-                                   String orderable, String facility) {
-    Long calculatedIndicator;
-    if (source.equals(STOCKMANAGEMENT)) {
-      calculatedIndicator = stockmanagementRepository.findClosingBalance(
-      period.getSecond(), orderable, facility);
-    } else if (source.equals(REQUISITION)) {
-      calculatedIndicator = requisitionRepository.findClosingBalance(
-              period.getSecond(), orderable, facility);
+  public Map<IndicatorKey, BigDecimal> calculateValues(IndicatorBatch batch) {
+    Map<Pair<UUID, UUID>, LatestValue> values;
+    if (batch.getSource().equals(STOCKMANAGEMENT)) {
+      values = stockmanagementRepository.findBalances(batch.getPeriod().getSecond(),
+          batch.getOrderableIds(), batch.getFacilityIds());
+    } else if (batch.getSource().equals(REQUISITION)) {
+      values = requisitionRepository.findClosingBalances(batch.getPeriod().getSecond(),
+          batch.getOrderableIds(), batch.getFacilityIds());
     } else {
       throw new ValidationMessageException(ERROR_ENUMERATOR_NOT_EXIST);
     }
 
-    return new BigDecimal(calculatedIndicator.toString(), MathContext.DECIMAL64);
+    return batch.toLatestIndicatorValues(INDICATOR, values);
   }
 
 }
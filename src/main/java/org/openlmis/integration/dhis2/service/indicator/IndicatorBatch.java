@@ -0,0 +1,171 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.indicator;
+
+import java.math.BigDecimal;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+import org.openlmis.integration.dhis2.domain.enumerator.IndicatorEnum;
+import org.openlmis.integration.dhis2.repository.indicator.LatestValue;
+import org.springframework.data.util.Pair;
+
+/**
+ * Input of the bulk indicator path: all facilities and orderables of a single source for which
+ * indicators should be calculated in a given period. Facility codes and orderable names are
+ * translated to IDs through the {@link IndicatorDictionary} of the run.
+ */
+@Getter
+@ToString
+public final class IndicatorBatch {
+
+  private final String source;
+  private final Pair<ZonedDateTime, ZonedDateTime> period;
+  private final Set<String> facilities;
+  private final Set<String> orderables;
+
+  @ToString.Exclude
+  @Getter(AccessLevel.NONE)
+  private final IndicatorDictionary dictionary;
+
+  /**
+   * Creates new batch and resolves IDs of its facilities and orderables that are not yet known
+   * to the dictionary.
+   */
+  public IndicatorBatch(String source, Pair<ZonedDateTime, ZonedDateTime> period,
+      Set<String> facilities, Set<String> orderables, IndicatorDictionary dictionary) {
+    this.source = source;
+    this.period = period;
+    this.facilities = Collections.unmodifiableSet(facilities);
+    this.orderables = Collections.unmodifiableSet(orderables);
+    this.dictionary = dictionary;
+
+    if (!isEmpty()) {
+      dictionary.resolve(facilities, orderables);
+    }
+  }
+
+  public boolean isEmpty() {
+    return facilities.isEmpty() || orderables.isEmpty();
+  }
+
+  /**
+   * Returns IDs of all facilities of the batch that exist in referencedata.
+   */
+  public Set<UUID> getFacilityIds() {
+    return facilities.stream()
+        .flatMap(facility -> dictionary.getFacilityIds(facility).stream())
+        .collect(Collectors.toSet());
+  }
+
+  /**
+   * Returns IDs of all orderables of the batch that exist in referencedata.
+   */
+  public Set<UUID> getOrderableIds() {
+    return orderables.stream()
+        .flatMap(orderable -> dictionary.getOrderableIds(orderable).stream())
+        .collect(Collectors.toSet());
+  }
+
+  /**
+   * Converts values keyed by facility ID and orderable ID into the values of the given
+   * indicator. Values of orderables sharing a name are added up, so this is only meant for
+   * quantities flowing in a period. Facility and orderable combinations without a value get the
+   * default value, or are left out if the default value is {@code null}.
+   */
+  Map<IndicatorKey, BigDecimal> toIndicatorValues(IndicatorEnum indicator,
+      Map<Pair<UUID, UUID>, BigDecimal> values, BigDecimal defaultValue) {
+    return toIndicatorValues(indicator, defaultValue,
+        (facilityIds, orderableIds) -> sum(values, facilityIds, orderableIds));
+  }
+
+  /**
+   * Converts values of latest records keyed by facility ID and orderable ID into the values of
+   * the given indicator. Of orderables sharing a name, the value of the latest record is taken,
+   * like a balance of a single stock card. Facility and orderable combinations without a value
+   * are left out.
+   */
+  Map<IndicatorKey, BigDecimal> toLatestIndicatorValues(IndicatorEnum indicator,
+      Map<Pair<UUID, UUID>, LatestValue> values) {
+    return toIndicatorValues(indicator, null,
+        (facilityIds, orderableIds) -> latest(values, facilityIds, orderableIds));
+  }
+
+  private Map<IndicatorKey, BigDecimal> toIndicatorValues(IndicatorEnum indicator,
+      BigDecimal defaultValue, BiFunction<Set<UUID>, Set<UUID>, BigDecimal> valueFunction) {
+    Map<IndicatorKey, BigDecimal> result = new HashMap<>();
+
+    for (String facility : facilities) {
+      for (String orderable : orderables) {
+        BigDecimal value = valueFunction.apply(dictionary.getFacilityIds(facility),
+            dictionary.getOrderableIds(orderable));
+
+        if (null == value) {
+          value = defaultValue;
+        }
+
+        if (null != value) {
+          result.put(new IndicatorKey(facility, orderable, indicator), value);
+        }
+      }
+    }
+
+    return result;
+  }
+
+  private BigDecimal sum(Map<Pair<UUID, UUID>, BigDecimal> values, Set<UUID> facilityIds,
+      Set<UUID> orderableIds) {
+    BigDecimal sum = null;
+
+    for (UUID facilityId : facilityIds) {
+      for (UUID orderableId : orderableIds) {
+        BigDecimal value = values.get(Pair.of(facilityId, orderableId));
+
+        if (null != value) {
+          sum = null == sum ? value : sum.add(value);
+        }
+      }
+    }
+
+    return sum;
+  }
+
+  private BigDecimal latest(Map<Pair<UUID, UUID>, LatestValue> values, Set<UUID> facilityIds,
+      Set<UUID> orderableIds) {
+    LatestValue latest = null;
+
+    for (UUID facilityId : facilityIds) {
+      for (UUID orderableId : orderableIds) {
+        LatestValue value = values.get(Pair.of(facilityId, orderableId));
+
+        if (null != value && (null == latest || value.getDate().isAfter(latest.getDate()))) {
+          latest = value;
+        }
+      }
+    }
+
+    return null == latest ? null : latest.getValue();
+  }
+
+}
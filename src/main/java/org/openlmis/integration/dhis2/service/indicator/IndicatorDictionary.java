@@ -0,0 +1,87 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.indicator;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.openlmis.integration.dhis2.repository.indicator.ReferenceKeyRepository;
+
+/**
+ * Run-scoped dictionary of facility and orderable IDs. Facility codes and orderable names are
+ * resolved in bulk the first time a batch needs them and are reused by all later batches of
+ * the same run, so indicator queries filter on indexed IDs instead of joined text columns.
+ * Keys that do not exist in referencedata are remembered as well and resolve to no IDs.
+ */
+public final class IndicatorDictionary {
+
+  private final ReferenceKeyRepository referenceKeyRepository;
+
+  private final Map<String, Set<UUID>> facilityIds = new HashMap<>();
+  private final Map<String, Set<UUID>> orderableIds = new HashMap<>();
+
+  public IndicatorDictionary(ReferenceKeyRepository referenceKeyRepository) {
+    this.referenceKeyRepository = referenceKeyRepository;
+  }
+
+  /**
+   * Looks up IDs of the given facility codes and orderable names that are not known yet, with
+   * at most one query for facilities and one for orderables.
+   */
+  synchronized void resolve(Collection<String> facilities, Collection<String> orderables) {
+    resolve(facilities, facilityIds, referenceKeyRepository::findFacilityIds);
+    resolve(orderables, orderableIds, referenceKeyRepository::findOrderableIds);
+  }
+
+  /**
+   * Looks up IDs of the given orderable names that are not known yet with a single query, so
+   * that the orderables of a whole run are resolved before its first batch.
+   */
+  public synchronized void resolveOrderables(Collection<String> orderables) {
+    resolve(orderables, orderableIds, referenceKeyRepository::findOrderableIds);
+  }
+
+  private static void resolve(Collection<String> keys, Map<String, Set<UUID>> ids,
+      Function<Collection<String>, Map<UUID, String>> lookup) {
+    List<String> missing = keys.stream()
+        .filter(key -> !ids.containsKey(key))
+        .collect(Collectors.toList());
+
+    if (missing.isEmpty()) {
+      return;
+    }
+
+    missing.forEach(key -> ids.put(key, new HashSet<>()));
+    lookup.apply(missing)
+        .forEach((id, key) -> ids.computeIfAbsent(key, k -> new HashSet<>()).add(id));
+  }
+
+  synchronized Set<UUID> getFacilityIds(String facility) {
+    return facilityIds.getOrDefault(facility, Collections.emptySet());
+  }
+
+  synchronized Set<UUID> getOrderableIds(String orderable) {
+    return orderableIds.getOrDefault(orderable, Collections.emptySet());
+  }
+
+}
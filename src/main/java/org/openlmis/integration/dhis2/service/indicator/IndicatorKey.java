@@ -0,0 +1,38 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.indicator;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.openlmis.integration.dhis2.domain.enumerator.IndicatorEnum;
+
+/**
+ * Identifies a single value calculated by the bulk indicator path: an indicator of an
+ * orderable in a facility.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+@ToString
+public final class IndicatorKey {
+
+  private final String facility;
+  private final String orderable;
+  private final IndicatorEnum indicator;
+
+}
@@ -0,0 +1,65 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.indicator;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import javax.annotation.PostConstruct;
+import org.openlmis.integration.dhis2.domain.enumerator.IndicatorEnum;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Registry of all {@link IndicatorSupplier} beans keyed by the indicator they calculate. A new
+ * indicator only needs a new supplier bean to be picked up.
+ */
+@Component
+public class IndicatorRegistry {
+
+  @Autowired
+  private List<IndicatorSupplier> suppliers;
+
+  private final Map<IndicatorEnum, IndicatorSupplier> registry =
+      new EnumMap<>(IndicatorEnum.class);
+
+  /**
+   * Registers the suppliers.
+   *
+   * @throws IllegalStateException if two suppliers calculate the same indicator.
+   */
+  @PostConstruct
+  public void init() {
+    for (IndicatorSupplier supplier : suppliers) {
+      IndicatorSupplier previous = registry.put(supplier.getIndicator(), supplier);
+
+      if (null != previous) {
+        throw new IllegalStateException(String.format(
+            "Indicator %s is supplied by both %s and %s", supplier.getIndicator(),
+            previous.getClass().getSimpleName(), supplier.getClass().getSimpleName()));
+      }
+    }
+  }
+
+  /**
+   * Finds the supplier of the given indicator.
+   */
+  public Optional<IndicatorSupplier> find(IndicatorEnum indicator) {
+    return Optional.ofNullable(registry.get(indicator));
+  }
+
+}
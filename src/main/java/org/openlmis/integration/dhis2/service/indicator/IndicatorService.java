@@ -16,87 +16,50 @@
 package org.openlmis.integration.dhis2.service.indicator;
 
 import java.math.BigDecimal;
-import java.math.MathContext;
-import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import org.openlmis.integration.dhis2.domain.enumerator.IndicatorEnum;
-import org.openlmis.integration.dhis2.exception.ValidationMessageException;
-import org.openlmis.integration.dhis2.i18n.MessageKeys;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.util.Pair;
 import org.springframework.stereotype.Service;
 
 @Service
 public class IndicatorService {
 
   @Autowired
-  OpeningBalance openingBalance;
+  private IndicatorRegistry indicatorRegistry;
 
   @Autowired
-  ClosingBalance closingBalance;
-
-  @Autowired
-  ReceivedBalance receivedBalance;
-
-  @Autowired
-  PositiveAdjustment positiveAdjustment;
-
-  @Autowired
-  NegativeAdjustment negativeAdjustment;
+  private StockDailyTotalService stockDailyTotalService;
 
   /**
-   * Counts quantity of items for a given indicator enumerator.
+   * Calculates the given indicators for all facilities and orderables of the batch, with one
+   * query per indicator instead of one query per value. Indicators without a supplier have no
+   * values, so they are not reported. Stockmanagement daily totals of a past period are
+   * refreshed until its end first, so that values pushed for it are not stale. Quantities of
+   * the current period add the line items processed after the last refresh instead.
    *
-   * @param indicatorEnum Enumerator used to calculate indicators
-   * @param period Pair containing starting date and end date
-   * @return BigDecimal with generated indicator value for a given period
+   * @param batch Facilities and orderables of a single source to calculate indicators for
+   * @param indicators Enumerators of indicators to calculate
+   * @return Map with generated indicator values, keyed by facility, orderable and indicator
    */
-  public BigDecimal generate(String source, IndicatorEnum indicatorEnum, Pair<ZonedDateTime,
-          ZonedDateTime> period, String orderable, String facility) {
-    BigDecimal calculatedIndicator = new BigDecimal("0", MathContext.DECIMAL64);
-    switch (indicatorEnum) {
-      case OPENING_BALANCE:
-        calculatedIndicator = openingBalance.calculateValue(
-                source, period, orderable, facility);
-        break;
-      case RECEIVED:
-        calculatedIndicator = receivedBalance.calculateValue(
-                source, period, orderable, facility);
-        break;
-      case CLOSING_BALANCE:
-        calculatedIndicator = closingBalance.calculateValue(
-                source, period, orderable, facility);
-        break;
-      case CCE_ALLOCATED:
-        break;
-      case CCE_OPERATIONAL:
-        break;
-      case NEGATIVE_ADJUSTMENTS:
-        calculatedIndicator = negativeAdjustment.calculateValue(
-                source, period, orderable, facility);
-        break;
-      case POSITIVE_ADJUSTMENTS:
-        calculatedIndicator = positiveAdjustment.calculateValue(
-                source, period, orderable, facility);
-        break;
-      case ADJUSTMENTS_BY_REASON:
-        break;
-      default:
-        throw new ValidationMessageException(MessageKeys.ERROR_ENUMERATOR_NOT_EXIST);
+  public Map<IndicatorKey, BigDecimal> calculateValues(IndicatorBatch batch,
+          Collection<IndicatorEnum> indicators) {
+    Map<IndicatorKey, BigDecimal> values = new HashMap<>();
+    if (batch.isEmpty()) {
+      return values;
     }
 
-    return calculatedIndicator;
-  }
+    if (IndicatorSupplier.STOCKMANAGEMENT.equals(batch.getSource())) {
+      stockDailyTotalService.refreshUntil(batch.getPeriod().getSecond());
+    }
 
-  /**
-   * Counts quantity of items for a given indicator enumerator.
-   *
-   * @param indicatorName Enumerator name used to calculate indicators
-   * @param period Pair containing starting date and end date
-   * @return BigDecimal with generated indicator value for a given period
-   */
-  public BigDecimal generate(String source, String indicatorName, Pair<ZonedDateTime,
-          ZonedDateTime> period, String orderable, String facility) {
-    return generate(source, fromString(indicatorName), period, orderable, facility);
+    for (IndicatorEnum indicatorEnum : indicators) {
+      indicatorRegistry.find(indicatorEnum)
+              .ifPresent(supplier -> values.putAll(supplier.calculateValues(batch)));
+    }
+
+    return values;
   }
 
   /**
@@ -104,7 +67,7 @@ public class IndicatorService {
    */
   public IndicatorEnum fromString(String name) {
     try {
-      return IndicatorEnum.valueOf(name.replaceAll(" ", "_").toUpperCase());
+      return IndicatorEnum.valueOf(name.replace(' ', '_').toUpperCase());
     } catch (IllegalArgumentException ex) {
       throw new IllegalArgumentException(String.format(
               "There is no enumerator with name '%s'", name), ex);
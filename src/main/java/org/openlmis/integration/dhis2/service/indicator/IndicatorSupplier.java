@@ -16,8 +16,8 @@
 package org.openlmis.integration.dhis2.service.indicator;
 
 import java.math.BigDecimal;
-import java.time.ZonedDateTime;
-import org.springframework.data.util.Pair;
+import java.util.Map;
+import org.openlmis.integration.dhis2.domain.enumerator.IndicatorEnum;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -26,9 +26,20 @@ public interface IndicatorSupplier {
   String STOCKMANAGEMENT = "Stock Management";
   String REQUISITION = "Requisition";
 
-  String getIndicatorName();
+  String TRANSFER = "TRANSFER";
+  String ADJUSTMENT = "ADJUSTMENT";
+  String CREDIT = "CREDIT";
+  String DEBIT = "DEBIT";
 
-  BigDecimal calculateValue(String source, Pair<ZonedDateTime, ZonedDateTime> period,
-                            String facility, String orderable);
+  /**
+   * Returns the indicator calculated by this supplier. Each indicator has at most one supplier.
+   */
+  IndicatorEnum getIndicator();
+
+  /**
+   * Calculates the indicator for all facilities and orderables of the batch at once. Values
+   * that cannot be determined (e.g. no balance was recorded yet) are not present in the result.
+   */
+  Map<IndicatorKey, BigDecimal> calculateValues(IndicatorBatch batch);
 
 }
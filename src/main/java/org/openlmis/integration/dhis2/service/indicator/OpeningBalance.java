@@ -18,10 +18,11 @@ package org.openlmis.integration.dhis2.service.indicator;
 import static org.openlmis.integration.dhis2.i18n.MessageKeys.ERROR_ENUMERATOR_NOT_EXIST;
 
 import java.math.BigDecimal;
-import java.math.MathContext;
-import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.UUID;
 import org.openlmis.integration.dhis2.domain.enumerator.IndicatorEnum;
 import org.openlmis.integration.dhis2.exception.ValidationMessageException;
+import org.openlmis.integration.dhis2.repository.indicator.LatestValue;
 import org.openlmis.integration.dhis2.repository.indicator.RequisitionRepository;
 import org.openlmis.integration.dhis2.repository.indicator.StockmanagementRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,7 +32,7 @@ import org.springframework.stereotype.Component;
 @Component
 public class OpeningBalance implements IndicatorSupplier {
 
-  public static final String NAME = IndicatorEnum.OPENING_BALANCE.toString();
+  public static final IndicatorEnum INDICATOR = IndicatorEnum.OPENING_BALANCE;
 
   @Autowired
   private RequisitionRepository requisitionRepository;
@@ -39,27 +40,26 @@ public class OpeningBalance implements IndicatorSupplier {
   @Autowired
   private StockmanagementRepository stockmanagementRepository;
 
-  public String getIndicatorName() {
-    return NAME;
+  public IndicatorEnum getIndicator() {
+    return INDICATOR;
   }
 
   /**
-   * Calculate opening balance.
+   * Calculate opening balances of all facilities and orderables of the batch.
    */
-  public BigDecimal calculateValue(String source, Pair<ZonedDateTime, ZonedDateTime> period,
-                                   String orderable, String facility) {
-    Long calculatedIndicator;
-    if (source.equals(STOCKMANAGEMENT)) {
-      calculatedIndicator = stockmanagementRepository.findOpeningBalance(
-              period.getFirst(), orderable, facility);
-    } else if (source.equals(REQUISITION)) {
-      calculatedIndicator = requisitionRepository.findOpeningBalance(
-              period.getFirst(), orderable, facility);
+  public Map<IndicatorKey, BigDecimal> calculateValues(IndicatorBatch batch) {
+    Map<Pair<UUID, UUID>, LatestValue> values;
+    if (batch.getSource().equals(STOCKMANAGEMENT)) {
+      values = stockmanagementRepository.findBalances(batch.getPeriod().getFirst(),
+          batch.getOrderableIds(), batch.getFacilityIds());
+    } else if (batch.getSource().equals(REQUISITION)) {
+      values = requisitionRepository.findOpeningBalances(batch.getPeriod().getFirst(),
+          batch.getOrderableIds(), batch.getFacilityIds());
     } else {
       throw new ValidationMessageException(ERROR_ENUMERATOR_NOT_EXIST);
     }
 
-    return new BigDecimal(calculatedIndicator.toString(), MathContext.DECIMAL64);
+    return batch.toLatestIndicatorValues(INDICATOR, values);
   }
 
 }
@@ -18,8 +18,8 @@ package org.openlmis.integration.dhis2.service.indicator;
 import static org.openlmis.integration.dhis2.i18n.MessageKeys.ERROR_ENUMERATOR_NOT_EXIST;
 
 import java.math.BigDecimal;
-import java.math.MathContext;
-import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.UUID;
 import org.openlmis.integration.dhis2.domain.enumerator.IndicatorEnum;
 import org.openlmis.integration.dhis2.exception.ValidationMessageException;
 import org.openlmis.integration.dhis2.repository.indicator.StockmanagementRepository;
@@ -30,29 +30,29 @@ import org.springframework.stereotype.Component;
 @Component
 public class PositiveAdjustment implements IndicatorSupplier {
 
-  public static final String NAME = IndicatorEnum.POSITIVE_ADJUSTMENTS.toString();
+  public static final IndicatorEnum INDICATOR = IndicatorEnum.POSITIVE_ADJUSTMENTS;
 
   @Autowired
   private StockmanagementRepository stockmanagementRepository;
 
-  public String getIndicatorName() {
-    return NAME;
+  public IndicatorEnum getIndicator() {
+    return INDICATOR;
   }
 
   /**
-   * Calculate positive adjustments.
+   * Calculate positive adjustments of all facilities and orderables of the batch.
    */
-  public BigDecimal calculateValue(String source, Pair<ZonedDateTime, ZonedDateTime> period,
-                                   String orderable, String facility) {
-    Double calculatedIndicator;
-    if (source.equals(STOCKMANAGEMENT)) {
-      calculatedIndicator = stockmanagementRepository.findPositiveAdjustments(
-              period.getFirst(), period.getSecond(), orderable, facility);
+  public Map<IndicatorKey, BigDecimal> calculateValues(IndicatorBatch batch) {
+    Map<Pair<UUID, UUID>, BigDecimal> values;
+    if (batch.getSource().equals(STOCKMANAGEMENT)) {
+      values = stockmanagementRepository.findQuantities(ADJUSTMENT, CREDIT,
+          batch.getPeriod().getFirst(), batch.getPeriod().getSecond(),
+          batch.getOrderableIds(), batch.getFacilityIds());
     } else {
       throw new ValidationMessageException(ERROR_ENUMERATOR_NOT_EXIST);
     }
 
-    return new BigDecimal(calculatedIndicator.toString(), MathContext.DECIMAL64);
+    return batch.toIndicatorValues(INDICATOR, values, BigDecimal.ZERO);
   }
 
 }
@@ -0,0 +1,136 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.indicator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import org.openlmis.integration.dhis2.domain.element.DataElement;
+import org.openlmis.integration.dhis2.dto.indicator.QueryPlanDto;
+import org.openlmis.integration.dhis2.dto.referencedata.MinimalFacilityDto;
+import org.openlmis.integration.dhis2.repository.element.DataElementRepository;
+import org.openlmis.integration.dhis2.repository.indicator.QueryPlanRepository;
+import org.openlmis.integration.dhis2.service.ReferenceDataService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.util.Pair;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Service;
+
+/**
+ * Explains the indicator queries with the orderables of the configured data elements and all
+ * facilities, for the last month. Sequential scans reading more rows than the configured
+ * threshold are reported as warnings.
+ */
+@Service
+public class QueryPlanService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(QueryPlanService.class);
+
+  private static final String SEQ_SCAN = "Seq Scan";
+
+  @Autowired
+  private QueryPlanRepository queryPlanRepository;
+
+  @Autowired
+  private DataElementRepository dataElementRepository;
+
+  @Autowired
+  private ReferenceDataService referenceDataService;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private Clock clock;
+
+  @Value("${reporting.queryPlans.seqScanRowsThreshold}")
+  private long seqScanRowsThreshold;
+
+  /**
+   * Runs all indicator queries with EXPLAIN ANALYZE. Queries that cannot be explained are
+   * returned with a warning instead of a plan.
+   */
+  public List<QueryPlanDto> explainQueries() {
+    ZonedDateTime now = ZonedDateTime.now(clock);
+
+    List<String> orderables = StreamSupport
+        .stream(dataElementRepository.findAll().spliterator(), false)
+        .map(DataElement::getOrderable)
+        .distinct()
+        .collect(Collectors.toList());
+    List<String> facilities = referenceDataService.findAllFacilities()
+        .map(MinimalFacilityDto::getCode)
+        .collect(Collectors.toList());
+
+    SqlParameterSource parameters = queryPlanRepository.createParameters(
+        Pair.of(now.minusMonths(1), now), orderables, facilities);
+
+    List<QueryPlanDto> plans = new ArrayList<>();
+    for (Map.Entry<String, String> query : queryPlanRepository.getQueries().entrySet()) {
+      plans.add(explain(query.getKey(), query.getValue(), parameters));
+    }
+
+    return plans;
+  }
+
+  private QueryPlanDto explain(String name, String sql, SqlParameterSource parameters) {
+    try {
+      JsonNode result = objectMapper.readTree(queryPlanRepository.explain(sql, parameters))
+          .path(0);
+      JsonNode plan = result.path("Plan");
+
+      List<String> warnings = new ArrayList<>();
+      collectWarnings(plan, warnings);
+
+      return new QueryPlanDto(name, result.path("Planning Time").asDouble(),
+          result.path("Execution Time").asDouble(), warnings, plan);
+    } catch (DataAccessException | IOException ex) {
+      LOGGER.warn("Could not explain query {}", name, ex);
+      return new QueryPlanDto(name, null, null,
+          Collections.singletonList("Query could not be explained: " + ex.getMessage()), null);
+    }
+  }
+
+  private void collectWarnings(JsonNode node, List<String> warnings) {
+    if (SEQ_SCAN.equals(node.path("Node Type").asText())) {
+      long loops = Math.max(1, node.path("Actual Loops").asLong());
+      long rows = (node.path("Actual Rows").asLong()
+          + node.path("Rows Removed by Filter").asLong()) * loops;
+
+      if (rows >= seqScanRowsThreshold) {
+        warnings.add(String.format("Sequential scan on %s read %d rows",
+            node.path("Relation Name").asText(), rows));
+      }
+    }
+
+    for (JsonNode child : node.path("Plans")) {
+      collectWarnings(child, warnings);
+    }
+  }
+
+}
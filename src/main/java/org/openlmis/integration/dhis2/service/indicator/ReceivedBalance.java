@@ -18,10 +18,11 @@ package org.openlmis.integration.dhis2.service.indicator;
 import static org.openlmis.integration.dhis2.i18n.MessageKeys.ERROR_ENUMERATOR_NOT_EXIST;
 
 import java.math.BigDecimal;
-import java.math.MathContext;
-import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.UUID;
 import org.openlmis.integration.dhis2.domain.enumerator.IndicatorEnum;
 import org.openlmis.integration.dhis2.exception.ValidationMessageException;
+import org.openlmis.integration.dhis2.repository.indicator.LatestValue;
 import org.openlmis.integration.dhis2.repository.indicator.RequisitionRepository;
 import org.openlmis.integration.dhis2.repository.indicator.StockmanagementRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,7 +32,7 @@ import org.springframework.stereotype.Component;
 @Component
 public class ReceivedBalance implements IndicatorSupplier {
 
-  public static final String NAME = IndicatorEnum.RECEIVED.toString();
+  public static final IndicatorEnum INDICATOR = IndicatorEnum.RECEIVED;
 
   @Autowired
   private RequisitionRepository requisitionRepository;
@@ -39,27 +40,27 @@ public class ReceivedBalance implements IndicatorSupplier {
   @Autowired
   private StockmanagementRepository stockmanagementRepository;
 
-  public String getIndicatorName() {
-    return NAME;
+  public IndicatorEnum getIndicator() {
+    return INDICATOR;
   }
 
   /**
-   * Calculate received balance.
+   * Calculate received balances of all facilities and orderables of the batch.
    */
-  public BigDecimal calculateValue(String source, Pair<ZonedDateTime, ZonedDateTime> period,
-                                   String orderable, String facility) {
-    Double calculatedIndicator;
-    if (source.equals(STOCKMANAGEMENT)) {
-      calculatedIndicator = stockmanagementRepository.findReceived(
-              period.getFirst(), period.getSecond(), orderable, facility);
-    } else if (source.equals(REQUISITION)) {
-      calculatedIndicator = requisitionRepository.findReceived(
-              period.getSecond(), orderable, facility);
+  public Map<IndicatorKey, BigDecimal> calculateValues(IndicatorBatch batch) {
+    if (batch.getSource().equals(STOCKMANAGEMENT)) {
+      Map<Pair<UUID, UUID>, BigDecimal> values = stockmanagementRepository.findQuantities(
+          TRANSFER, CREDIT, batch.getPeriod().getFirst(), batch.getPeriod().getSecond(),
+          batch.getOrderableIds(), batch.getFacilityIds());
+      return batch.toIndicatorValues(INDICATOR, values, BigDecimal.ZERO);
+    } else if (batch.getSource().equals(REQUISITION)) {
+      Map<Pair<UUID, UUID>, LatestValue> values = requisitionRepository
+          .findReceivedQuantities(batch.getPeriod().getSecond(), batch.getOrderableIds(),
+              batch.getFacilityIds());
+      return batch.toLatestIndicatorValues(INDICATOR, values);
     } else {
       throw new ValidationMessageException(ERROR_ENUMERATOR_NOT_EXIST);
     }
-
-    return new BigDecimal(calculatedIndicator.toString(), MathContext.DECIMAL64);
   }
 
 }
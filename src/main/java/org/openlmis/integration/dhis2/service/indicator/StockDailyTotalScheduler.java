@@ -0,0 +1,69 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.indicator;
+
+import javax.annotation.PostConstruct;
+import org.openlmis.integration.dhis2.ExecutionConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Refreshes the stock daily totals periodically, independently of dataset executions, so that
+ * a slow or failed refresh does not affect them. Refreshes run on their own scheduler, so a
+ * long refresh does not delay the other background tasks.
+ */
+@Component
+@ConditionalOnProperty(name = "reporting.stockDailyTotals.refreshEnabled", havingValue = "true")
+public class StockDailyTotalScheduler {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StockDailyTotalScheduler.class);
+
+  @Autowired
+  private StockDailyTotalService stockDailyTotalService;
+
+  @Autowired
+  @Qualifier(ExecutionConfig.STOCK_DAILY_TOTAL_TASK_SCHEDULER)
+  private TaskScheduler taskScheduler;
+
+  @Value("${reporting.stockDailyTotals.refreshInterval}")
+  private long refreshInterval;
+
+  /**
+   * Schedules the refresh with the configured delay between refreshes.
+   */
+  @PostConstruct
+  public void start() {
+    taskScheduler.scheduleWithFixedDelay(this::refresh, refreshInterval);
+  }
+
+  /**
+   * Adds line items processed since the previous refresh to the daily totals.
+   */
+  public void refresh() {
+    try {
+      stockDailyTotalService.refresh();
+    } catch (RuntimeException ex) {
+      LOGGER.error("Failed to refresh stock daily totals", ex);
+    }
+  }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.indicator;
+
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+import org.openlmis.integration.dhis2.repository.indicator.StockDailyTotalRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps the daily totals that stockmanagement quantity indicators are read from up to date.
+ * Line items are read in batches of processed dates, each stored in its own transaction. Every
+ * batch also rereads the late commit window before the watermark and recomputes the days it
+ * touches, so line items committed (or replicated) after a later processed date was already
+ * included are not lost.
+ */
+@Service
+public class StockDailyTotalService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StockDailyTotalService.class);
+
+  @Autowired
+  private StockDailyTotalRepository stockDailyTotalRepository;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private Clock clock;
+
+  @Value("${reporting.stockDailyTotals.lateCommitWindow}")
+  private long lateCommitWindow;
+
+  @Value("${reporting.stockDailyTotals.batchInterval}")
+  private long batchInterval;
+
+  /**
+   * Adds line items processed since the last refresh to the daily totals. Does nothing if a
+   * refresh is already running in another service instance.
+   */
+  public void refresh() {
+    refresh(ZonedDateTime.now(clock), false);
+  }
+
+  /**
+   * Adds line items processed until the end of a past period to the daily totals before they
+   * are read. The watermark is checked without a lock first, so only a sync that finds the
+   * totals behind waits for a refresh running elsewhere. Does nothing for a period that has not
+   * ended yet: its quantities are completed with the line items processed after the watermark
+   * instead, so syncs of the current period never wait for each other.
+   */
+  public void refreshUntil(ZonedDateTime date) {
+    if (date.isAfter(ZonedDateTime.now(clock))) {
+      return;
+    }
+
+    Optional<ZonedDateTime> watermark = stockDailyTotalRepository.findWatermark();
+    if (watermark.isPresent() && !watermark.get().isBefore(date)) {
+      return;
+    }
+
+    refresh(date, true);
+  }
+
+  private void refresh(ZonedDateTime until, boolean wait) {
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+    while (Boolean.TRUE.equals(transaction.execute(status -> refreshBatch(until, wait)))) {
+      LOGGER.debug("Refreshing next batch of stock daily totals");
+    }
+  }
+
+  /**
+   * Refreshes the daily totals with the next batch of line items processed until the given
+   * date.
+   *
+   * @param wait Whether to wait for a refresh running elsewhere instead of skipping the batch.
+   * @return true if there are line items left for another batch.
+   */
+  private boolean refreshBatch(ZonedDateTime until, boolean wait) {
+    if (wait) {
+      stockDailyTotalRepository.lockWatermark();
+    } else if (!stockDailyTotalRepository.tryLockWatermark()) {
+      LOGGER.debug("Stock daily totals are being refreshed by another instance");
+      return false;
+    }
+
+    Optional<ZonedDateTime> watermark = stockDailyTotalRepository.findWatermark();
+    if (watermark.isPresent() && !watermark.get().isBefore(until)) {
+      return false;
+    }
+
+    Optional<ZonedDateTime> start = watermark.isPresent()
+        ? watermark
+        : stockDailyTotalRepository.findFirstProcessedDate();
+
+    if (!start.isPresent()) {
+      return false;
+    }
+
+    ZonedDateTime fromDate = start.get().minus(lateCommitWindow, ChronoUnit.MILLIS);
+    ZonedDateTime toDate = start.get().plus(batchInterval, ChronoUnit.MILLIS);
+    if (toDate.isAfter(until)) {
+      toDate = until.isAfter(start.get()) ? until : start.get();
+    }
+
+    List<Object[]> totals = stockDailyTotalRepository.findTotals(fromDate, toDate);
+    int saved = stockDailyTotalRepository.saveTotals(totals, toDate);
+    LOGGER.debug("Updated {} stock daily totals of line items processed from {} until {}",
+        saved, fromDate, toDate);
+
+    return toDate.isBefore(until);
+  }
+
+}
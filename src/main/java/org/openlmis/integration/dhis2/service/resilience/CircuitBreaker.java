@@ -0,0 +1,73 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.resilience;
+
+/**
+ * Circuit breaker of a single DHIS2 server. The breaker opens after the given number of
+ * consecutive failures and rejects calls until the open duration has passed. Then a single
+ * trial call is let through, which closes the breaker on success or opens it again on failure.
+ */
+class CircuitBreaker {
+
+  enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final int failureThreshold;
+  private final long openDuration;
+
+  private State state = State.CLOSED;
+  private int failures;
+  private long openedAt;
+
+  CircuitBreaker(int failureThreshold, long openDuration) {
+    this.failureThreshold = failureThreshold;
+    this.openDuration = openDuration;
+  }
+
+  /**
+   * Checks whether a call is allowed at the given time.
+   */
+  synchronized boolean tryAcquire(long now) {
+    if (state == State.OPEN && now - openedAt >= openDuration) {
+      state = State.HALF_OPEN;
+      return true;
+    }
+
+    return state == State.CLOSED;
+  }
+
+  synchronized void recordSuccess() {
+    state = State.CLOSED;
+    failures = 0;
+  }
+
+  synchronized void recordFailure(long now) {
+    failures++;
+
+    if (state == State.HALF_OPEN || failures >= failureThreshold) {
+      state = State.OPEN;
+      openedAt = now;
+    }
+  }
+
+  synchronized State getState() {
+    return state;
+  }
+
+}
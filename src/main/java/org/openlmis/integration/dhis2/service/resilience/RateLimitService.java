@@ -0,0 +1,234 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.resilience;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.openlmis.integration.dhis2.domain.server.Server;
+import org.openlmis.integration.dhis2.exception.RestOperationException;
+import org.openlmis.integration.dhis2.i18n.MessageKeys;
+import org.openlmis.integration.dhis2.repository.server.ServerRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Limits the throughput of calls to DHIS2 servers. The limits are taken from the
+ * {@link Server} configuration and are shared by all calls to the server url, so the sync
+ * may run at full parallelism without overloading small instances. If several servers point
+ * to the same url, the most restrictive limits are used. The concurrency limit applies to data
+ * value imports, which stay in flight until the server finished importing them, and is the only
+ * limit of imports running at the same time.
+ */
+@Service
+public class RateLimitService {
+
+  @Autowired
+  private ServerRepository serverRepository;
+
+  @Value("${dhis2.client.maxConcurrentRequests}")
+  private int defaultMaxConcurrentRequests;
+
+  private final Map<String, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+
+  /**
+   * Executes the given call once the request and value rate limits of the server allow it.
+   *
+   * @param serverUrl Url of the dhis2 server.
+   * @param values    Number of data values sent by the call.
+   * @param call      Call to execute.
+   * @return result of the call.
+   */
+  public <T> T execute(String serverUrl, int values, Supplier<T> call) {
+    getRateLimiter(serverUrl).reserve(values);
+    return call.get();
+  }
+
+  /**
+   * Starts the given asynchronous call once fewer than the maximum number of concurrent
+   * requests are in flight to the server. The caller waits until a request finishes, and the
+   * started call counts as in flight until the returned future completes. Requests sent by the
+   * call itself are only subject to the rate limits.
+   *
+   * @param serverUrl Url of the dhis2 server.
+   * @param call      Call starting the asynchronous request.
+   * @return future result of the call.
+   */
+  public <T> CompletableFuture<T> executeAsync(String serverUrl,
+      Supplier<CompletableFuture<T>> call) {
+    ResizableSemaphore concurrentRequests = getRateLimiter(serverUrl).acquire();
+
+    try {
+      return call.get().whenComplete((result, ex) -> release(concurrentRequests));
+    } catch (RuntimeException ex) {
+      release(concurrentRequests);
+      throw ex;
+    }
+  }
+
+  /**
+   * Applies the current server configuration to the rate limiter of the given server url. The
+   * concurrency limit is resized in place, so requests in flight keep counting against the new
+   * limit. Rate limiters of other urls are not affected.
+   *
+   * @param serverUrl Url of the dhis2 server whose configuration changed.
+   */
+  public void reload(String serverUrl) {
+    if (null == serverUrl) {
+      return;
+    }
+
+    rateLimiters.computeIfPresent(serverUrl,
+        (url, rateLimiter) -> rateLimiter.reconfigure(createRateLimiter(url)));
+  }
+
+  private void release(ResizableSemaphore concurrentRequests) {
+    if (null != concurrentRequests) {
+      concurrentRequests.release();
+    }
+  }
+
+  private RateLimiter getRateLimiter(String serverUrl) {
+    return rateLimiters.computeIfAbsent(serverUrl, this::createRateLimiter);
+  }
+
+  private RateLimiter createRateLimiter(String serverUrl) {
+    Collection<Server> servers = serverRepository.findAllByUrl(serverUrl);
+    long now = System.nanoTime();
+
+    Integer requestsPerSecond = getMinimum(servers, Server::getMaxRequestsPerSecond);
+    Integer concurrentRequests = getMinimum(servers, Server::getMaxConcurrentRequests);
+
+    if (null == concurrentRequests && defaultMaxConcurrentRequests > 0) {
+      concurrentRequests = defaultMaxConcurrentRequests;
+    }
+    Integer valuesPerSecond = getMinimum(servers, Server::getMaxValuesPerSecond);
+
+    return new RateLimiter(
+        null == requestsPerSecond ? null : new TokenBucket(requestsPerSecond, now),
+        null == concurrentRequests ? null : new ResizableSemaphore(concurrentRequests),
+        null == valuesPerSecond ? null : new TokenBucket(valuesPerSecond, now));
+  }
+
+  private Integer getMinimum(Collection<Server> servers, Function<Server, Integer> limit) {
+    return servers
+        .stream()
+        .map(limit)
+        .filter(Objects::nonNull)
+        .filter(value -> value > 0)
+        .min(Integer::compare)
+        .orElse(null);
+  }
+
+  private static final class RateLimiter {
+
+    private final TokenBucket requests;
+    private final ResizableSemaphore concurrentRequests;
+    private final TokenBucket values;
+
+    private RateLimiter(TokenBucket requests, ResizableSemaphore concurrentRequests,
+        TokenBucket values) {
+      this.requests = requests;
+      this.concurrentRequests = concurrentRequests;
+      this.values = values;
+    }
+
+    /**
+     * Returns a rate limiter with the given limits that keeps the concurrency limit of this
+     * one, resized to the new limit, so the permits of requests in flight are not lost.
+     */
+    private RateLimiter reconfigure(RateLimiter limits) {
+      if (null == concurrentRequests || null == limits.concurrentRequests) {
+        return limits;
+      }
+
+      concurrentRequests.resize(limits.concurrentRequests.getLimit());
+      return new RateLimiter(limits.requests, concurrentRequests, limits.values);
+    }
+
+    private ResizableSemaphore acquire() {
+      if (null == concurrentRequests) {
+        return null;
+      }
+
+      try {
+        concurrentRequests.acquire();
+        return concurrentRequests;
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new RestOperationException(MessageKeys.ERROR_EXTERNAL_API_CONNECTION_FAILED, ex);
+      }
+    }
+
+    private void reserve(int valueCount) {
+      long wait = 0;
+
+      if (null != requests) {
+        wait = requests.reserve(1, System.nanoTime());
+      }
+
+      if (null != values && valueCount > 0) {
+        wait = Math.max(wait, values.reserve(valueCount, System.nanoTime()));
+      }
+
+      try {
+        TimeUnit.NANOSECONDS.sleep(wait);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new RestOperationException(MessageKeys.ERROR_EXTERNAL_API_CONNECTION_FAILED, ex);
+      }
+    }
+
+  }
+
+  /**
+   * Semaphore whose number of permits can be changed while permits are acquired. When the limit
+   * is lowered, the available permits may become negative, and new requests wait until enough
+   * requests in flight finished.
+   */
+  private static final class ResizableSemaphore extends Semaphore {
+
+    private int limit;
+
+    private ResizableSemaphore(int limit) {
+      super(limit);
+      this.limit = limit;
+    }
+
+    private synchronized int getLimit() {
+      return limit;
+    }
+
+    private synchronized void resize(int newLimit) {
+      if (newLimit > limit) {
+        release(newLimit - limit);
+      } else if (newLimit < limit) {
+        reducePermits(limit - newLimit);
+      }
+
+      limit = newLimit;
+    }
+
+  }
+
+}
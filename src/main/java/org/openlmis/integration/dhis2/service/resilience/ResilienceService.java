@@ -0,0 +1,216 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.resilience;
+
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.openlmis.integration.dhis2.exception.RestOperationException;
+import org.openlmis.integration.dhis2.i18n.MessageKeys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * Protects calls to DHIS2 servers. Calls failing with a transient error (server error,
+ * connection failure, timeout or too many requests) are retried with exponential backoff and
+ * jitter, but never sooner than the server asked for in the Retry-After header. Calls that are
+ * not idempotent are only retried if the server cannot have processed the request. Each server
+ * has its own circuit breaker, so calls to a server that keeps failing are rejected right away
+ * instead of waiting for the server.
+ */
+@Service
+public class ResilienceService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ResilienceService.class);
+
+  @Autowired
+  private Clock clock;
+
+  @Value("${dhis2.retry.maxAttempts}")
+  private int maxAttempts;
+
+  @Value("${dhis2.retry.initialDelay}")
+  private long initialDelay;
+
+  @Value("${dhis2.retry.maxDelay}")
+  private long maxDelay;
+
+  @Value("${dhis2.circuitBreaker.failureThreshold}")
+  private int failureThreshold;
+
+  @Value("${dhis2.circuitBreaker.openDuration}")
+  private long openDuration;
+
+  private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+  /**
+   * Executes the given idempotent call to the given server.
+   *
+   * @param serverUrl Url of the dhis2 server.
+   * @param call      Call to execute.
+   * @return result of the call.
+   * @throws RestOperationException if the circuit breaker of the server is open.
+   */
+  public <T> T execute(String serverUrl, Supplier<T> call) {
+    return execute(serverUrl, true, call);
+  }
+
+  /**
+   * Executes the given call to the given server. A call that is not idempotent is only retried
+   * when the server rejected it with too many requests, or no connection could be established,
+   * so a request that may have reached the server is never sent twice.
+   *
+   * @param serverUrl  Url of the dhis2 server.
+   * @param idempotent Whether the call may be repeated after the server received it.
+   * @param call       Call to execute.
+   * @return result of the call.
+   * @throws RestOperationException if the circuit breaker of the server is open.
+   */
+  public <T> T execute(String serverUrl, boolean idempotent, Supplier<T> call) {
+    CircuitBreaker circuitBreaker = circuitBreakers.computeIfAbsent(serverUrl,
+        url -> new CircuitBreaker(failureThreshold, openDuration));
+
+    if (!circuitBreaker.tryAcquire(clock.millis())) {
+      throw new RestOperationException(MessageKeys.ERROR_EXTERNAL_API_UNAVAILABLE);
+    }
+
+    try {
+      T result = executeWithRetry(serverUrl, idempotent, call);
+      circuitBreaker.recordSuccess();
+      return result;
+    } catch (RuntimeException ex) {
+      if (isTransient(ex)) {
+        circuitBreaker.recordFailure(clock.millis());
+      } else {
+        circuitBreaker.recordSuccess();
+      }
+      throw ex;
+    }
+  }
+
+  private <T> T executeWithRetry(String serverUrl, boolean idempotent, Supplier<T> call) {
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return call.get();
+      } catch (RuntimeException ex) {
+        if (attempt >= maxAttempts || !(idempotent ? isTransient(ex) : isNotReceived(ex))) {
+          throw ex;
+        }
+
+        long retryAfter = getRetryAfter(ex);
+        if (retryAfter > maxDelay) {
+          LOGGER.warn("Call to {} failed, server asks to retry after {} ms", serverUrl,
+              retryAfter, ex);
+          throw ex;
+        }
+
+        long delay = Math.max(getDelay(attempt), retryAfter);
+        LOGGER.warn("Call to {} failed, retrying in {} ms", serverUrl, delay, ex);
+        sleep(delay, ex);
+      }
+    }
+  }
+
+  private long getDelay(int attempt) {
+    long delay = Math.min(maxDelay, initialDelay << Math.min(attempt - 1, 30));
+    return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+  }
+
+  private long getRetryAfter(Throwable ex) {
+    for (Throwable cause = ex; null != cause; cause = cause.getCause()) {
+      if (cause instanceof HttpStatusCodeException) {
+        HttpHeaders headers = ((HttpStatusCodeException) cause).getResponseHeaders();
+        return null == headers ? 0 : parseRetryAfter(headers.getFirst(HttpHeaders.RETRY_AFTER));
+      }
+    }
+
+    return 0;
+  }
+
+  private long parseRetryAfter(String retryAfter) {
+    if (StringUtils.isBlank(retryAfter)) {
+      return 0;
+    }
+
+    if (StringUtils.isNumeric(retryAfter.trim())) {
+      return Long.parseLong(retryAfter.trim()) * 1000;
+    }
+
+    try {
+      long date = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)
+          .toInstant()
+          .toEpochMilli();
+      return Math.max(0, date - clock.millis());
+    } catch (DateTimeParseException ex) {
+      LOGGER.debug("Invalid Retry-After header: {}", retryAfter, ex);
+      return 0;
+    }
+  }
+
+  private void sleep(long delay, RuntimeException failure) {
+    try {
+      Thread.sleep(delay);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw failure;
+    }
+  }
+
+  private boolean isTransient(Throwable ex) {
+    for (Throwable cause = ex; null != cause; cause = cause.getCause()) {
+      if (cause instanceof HttpServerErrorException
+          || cause instanceof ResourceAccessException
+          || cause instanceof HttpClientErrorException.TooManyRequests) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private boolean isNotReceived(Throwable ex) {
+    for (Throwable cause = ex; null != cause; cause = cause.getCause()) {
+      if (cause instanceof HttpClientErrorException.TooManyRequests
+          || cause instanceof ConnectException
+          || cause instanceof ConnectTimeoutException
+          || cause instanceof ConnectionPoolTimeoutException
+          || cause instanceof UnknownHostException) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.resilience;
+
+/**
+ * Token bucket which refills at the given rate per second and holds at most one second worth
+ * of tokens. A reservation larger than the available tokens is always granted, and the caller
+ * is told how long to wait before it may proceed, so later reservations wait for the debt to
+ * be paid off.
+ */
+class TokenBucket {
+
+  private static final double NANOS_PER_SECOND = 1_000_000_000D;
+
+  private final double capacity;
+  private final double tokensPerNano;
+
+  private double tokens;
+  private long updatedAt;
+
+  TokenBucket(int tokensPerSecond, long now) {
+    this.capacity = tokensPerSecond;
+    this.tokensPerNano = tokensPerSecond / NANOS_PER_SECOND;
+    this.tokens = tokensPerSecond;
+    this.updatedAt = now;
+  }
+
+  /**
+   * Reserves the given number of tokens.
+   *
+   * @param permits Number of tokens to reserve.
+   * @param now     Current time in nanoseconds.
+   * @return time in nanoseconds the caller has to wait before using the tokens.
+   */
+  synchronized long reserve(int permits, long now) {
+    tokens = Math.min(capacity, tokens + (now - updatedAt) * tokensPerNano);
+    updatedAt = now;
+    tokens -= permits;
+
+    return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+  }
+
+}
@@ -22,7 +22,6 @@ import org.openlmis.integration.dhis2.exception.NotFoundException;
 import org.openlmis.integration.dhis2.i18n.MessageKeys;
 import org.openlmis.integration.dhis2.repository.server.ServerRepository;
 import org.openlmis.integration.dhis2.service.DhisDataService;
-import org.openlmis.integration.dhis2.util.Pagination;
 import org.openlmis.integration.dhis2.web.BaseController;
 import org.openlmis.integration.dhis2.web.server.ServerController;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -34,6 +33,7 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
@@ -55,18 +55,21 @@ public class DhisDatasetController extends BaseController {
   private DhisDataService dhisDataService;
 
   /**
-   * Retrieves the all dhis datasets for a given server.
+   * Retrieves a page of dhis datasets for a given server. The page is selected by the DHIS2
+   * server, optionally filtered by part of the dataset name.
    */
   @GetMapping
   @ResponseStatus(HttpStatus.OK)
   @ResponseBody
   public Page<DhisDataset> getAllDatasets(@PathVariable("serverId") UUID serverId,
+                                          @RequestParam(value = "name", required = false)
+                                              String name,
                                           Pageable pageable) {
     Server server = serverRepository.findById(serverId)
             .orElseThrow(() -> new NotFoundException(MessageKeys.ERROR_SERVER_NOT_FOUND));
 
-    return Pagination.getPage(dhisDataService.getDhisDatasets(server.getUrl(),
-            server.getUsername(), server.getPassword()), pageable);
+    return dhisDataService.getDhisDatasets(server.getUrl(), server.getUsername(),
+            server.getPassword(), name, pageable);
   }
 
 }
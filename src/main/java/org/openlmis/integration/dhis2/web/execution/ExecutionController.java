@@ -15,36 +15,25 @@
 
 package org.openlmis.integration.dhis2.web.execution;
 
-import java.math.BigDecimal;
-import java.time.ZonedDateTime;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.stream.Collectors;
-import org.openlmis.integration.dhis2.domain.dataset.Dataset;
-import org.openlmis.integration.dhis2.domain.element.DataElement;
-import org.openlmis.integration.dhis2.domain.server.Server;
-import org.openlmis.integration.dhis2.dto.dhis.DataValue;
-import org.openlmis.integration.dhis2.dto.dhis.DataValueSet;
-import org.openlmis.integration.dhis2.dto.dhis.DhisDataset;
-import org.openlmis.integration.dhis2.dto.dhis.OrganisationUnit;
-import org.openlmis.integration.dhis2.dto.referencedata.MinimalFacilityDto;
-import org.openlmis.integration.dhis2.repository.dataset.DatasetRepository;
-import org.openlmis.integration.dhis2.repository.element.DataElementRepository;
-import org.openlmis.integration.dhis2.repository.server.ServerRepository;
-import org.openlmis.integration.dhis2.service.DhisDataService;
-import org.openlmis.integration.dhis2.service.PeriodGeneratorService;
-import org.openlmis.integration.dhis2.service.ReferenceDataService;
-import org.openlmis.integration.dhis2.service.indicator.IndicatorService;
+import java.util.UUID;
+import org.openlmis.integration.dhis2.domain.execution.ExecutionJob;
+import org.openlmis.integration.dhis2.dto.execution.BackfillRequestDto;
+import org.openlmis.integration.dhis2.dto.execution.ExecutionJobDto;
+import org.openlmis.integration.dhis2.exception.NotFoundException;
+import org.openlmis.integration.dhis2.i18n.MessageKeys;
+import org.openlmis.integration.dhis2.service.execution.ExecutionService;
 import org.openlmis.integration.dhis2.web.BaseController;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.util.Pair;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 /**
@@ -52,7 +41,6 @@ import org.springframework.web.bind.annotation.ResponseStatus;
  */
 @Controller
 @RequestMapping(ExecutionController.RESOURCE_PATH)
-@Transactional
 public class ExecutionController extends BaseController {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ExecutionController.class);
@@ -60,97 +48,45 @@ public class ExecutionController extends BaseController {
   public static final String RESOURCE_PATH = API_PATH + "/execute";
 
   @Autowired
-  private ServerRepository serverRepository;
-
-  @Autowired
-  private DatasetRepository datasetRepository;
-
-  @Autowired
-  private DataElementRepository dataElementRepository;
-
-  @Autowired
-  private DhisDataService dhisDataService;
-
-  @Autowired
-  private PeriodGeneratorService periodGeneratorService;
-
-  @Autowired
-  private ReferenceDataService referenceDataService;
-
-  @Autowired
-  private IndicatorService indicatorService;
+  private ExecutionService executionService;
 
   /**
-   * Run manual execution.
+   * Submits manual execution. The execution runs in the background, its state can be
+   * retrieved with the returned job ID.
    */
   @PostMapping
-  @ResponseStatus(HttpStatus.OK)
-  public void runExecution() {
-    LOGGER.debug("Running manual execution");
-    final Long offset = 0L;
-
-    List<Server> serverList = serverRepository.findAll();
-    for (Server server: serverList) {
-      List<Dataset> datasetList = datasetRepository.findAll();
-
-      for (Dataset dataset: datasetList) {
-        DataValueSet dataValueSet = new DataValueSet();
-
-        dataValueSet.setDataSet(dataset.getDhisDatasetId());
-
-        Pair<ZonedDateTime, ZonedDateTime> periodRange =
-                periodGeneratorService.generateRange(dataset.getCronExpression(), offset);
-        String formattedStartDate = periodGeneratorService.formatDate(
-                periodRange.getFirst(), dataset.getCronExpression());
-
-        dataValueSet.setPeriod(formattedStartDate);
-
-        List<DataElement> dataElementList = dataElementRepository.findAll();
-
-        DhisDataset dhisDataset = dhisDataService.getDhisDataSetById(dataset.getDhisDatasetId(),
-                server.getUrl(), server.getUsername(), server.getPassword());
-
-        List<String> dhisOrgUnitCodes = dhisDataset.getOrganisationUnits().stream()
-                .map(OrganisationUnit::getCode).collect(Collectors.toList());
-
-        List<String> refDataFacilityCodes = referenceDataService.findAllFacilities()
-                .getContent().stream()
-                .map(MinimalFacilityDto::getCode).collect(Collectors.toList());
-
-        List<String> orgUnits = dhisOrgUnitCodes.stream()
-                .filter(refDataFacilityCodes::contains)
-                .collect(Collectors.toList());
-
-        for (String orgUnit: orgUnits) {
-
-          dataValueSet.setOrgUnit(orgUnit);
-
-          List<DataValue> dataValues = new ArrayList<>();
-
-          for (DataElement dataElement: dataElementList) {
-            DataValue dataValue = new DataValue();
-            String orderable = dataElement.getOrderable();
-
-            dataValue.setDataElement(orderable);
-
-            BigDecimal calculatedIndicator = indicatorService.generate(dataElement.getSource(),
-                    dataElement.getIndicator(), periodRange, orderable, orgUnit);
-
-            dataValue.setValue(calculatedIndicator);
-
-            dataValues.add(dataValue);
-
-            dataValueSet.setDataValues(dataValues);
-          }
-
-          dhisDataService.createDataValueSet(dataValueSet, server.getUrl(),
-                  server.getUsername(), server.getPassword());
-        }
+  @ResponseStatus(HttpStatus.ACCEPTED)
+  @ResponseBody
+  public ExecutionJobDto runExecution() {
+    LOGGER.debug("Submitting manual execution");
+    return ExecutionJobDto.newInstance(executionService.submit());
+  }
 
-      }
+  /**
+   * Submits backfill of all periods between the given dates. The backfill runs in the
+   * background, its state can be retrieved with the returned job ID.
+   */
+  @PostMapping(value = "/backfill")
+  @ResponseStatus(HttpStatus.ACCEPTED)
+  @ResponseBody
+  public ExecutionJobDto runBackfill(@RequestBody BackfillRequestDto request) {
+    LOGGER.debug("Submitting backfill from {} to {}", request.getStartDate(),
+            request.getEndDate());
+    return ExecutionJobDto.newInstance(executionService.submitBackfill(
+            request.getDatasetIds(), request.getStartDate(), request.getEndDate()));
+  }
 
-    }
+  /**
+   * Retrieves the state of the specified execution.
+   */
+  @GetMapping(value = "/{jobId}")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public ExecutionJobDto getExecution(@PathVariable("jobId") UUID jobId) {
+    ExecutionJob job = executionService.findJob(jobId)
+            .orElseThrow(() -> new NotFoundException(MessageKeys.ERROR_EXECUTION_JOB_NOT_FOUND));
 
+    return ExecutionJobDto.newInstance(job);
   }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,63 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.web.httpclient;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.openlmis.integration.dhis2.dto.httpclient.ConnectionPoolDto;
+import org.openlmis.integration.dhis2.dto.httpclient.ConnectionPoolStatsDto;
+import org.openlmis.integration.dhis2.web.BaseController;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Controller used to expose the state of the connection pool of outgoing requests.
+ */
+@Controller
+@RequestMapping(HttpClientController.RESOURCE_PATH)
+public class HttpClientController extends BaseController {
+
+  public static final String RESOURCE_PATH = API_PATH + "/httpClient";
+
+  @Autowired
+  private PoolingHttpClientConnectionManager connectionManager;
+
+  /**
+   * Retrieves the number of leased, pending and available connections in total and for each
+   * route that has been used.
+   */
+  @GetMapping(value = "/pool")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public ConnectionPoolDto getConnectionPool() {
+    List<ConnectionPoolStatsDto> routes = connectionManager.getRoutes().stream()
+        .map(route -> ConnectionPoolStatsDto.newInstance(route.getTargetHost().toURI(),
+            connectionManager.getStats(route)))
+        .sorted(Comparator.comparing(ConnectionPoolStatsDto::getRoute))
+        .collect(Collectors.toList());
+
+    return new ConnectionPoolDto(
+        ConnectionPoolStatsDto.newInstance(null, connectionManager.getTotalStats()), routes);
+  }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.web.indicator;
+
+import java.util.List;
+import org.openlmis.integration.dhis2.dto.indicator.QueryPlanDto;
+import org.openlmis.integration.dhis2.service.indicator.QueryPlanService;
+import org.openlmis.integration.dhis2.web.BaseController;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Controller used to diagnose the execution plans of the indicator queries.
+ */
+@Controller
+@RequestMapping(QueryPlanController.RESOURCE_PATH)
+public class QueryPlanController extends BaseController {
+
+  public static final String RESOURCE_PATH = API_PATH + "/queryPlans";
+
+  @Autowired
+  private QueryPlanService queryPlanService;
+
+  /**
+   * Runs every indicator query with EXPLAIN ANALYZE and retrieves the plans, timings and
+   * warnings, such as sequential scans of large tables.
+   */
+  @GetMapping
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public List<QueryPlanDto> getQueryPlans() {
+    return queryPlanService.explainQueries();
+  }
+
+}
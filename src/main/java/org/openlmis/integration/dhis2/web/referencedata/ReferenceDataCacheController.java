@@ -0,0 +1,54 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.web.referencedata;
+
+import org.openlmis.integration.dhis2.service.ReferenceDataService;
+import org.openlmis.integration.dhis2.web.BaseController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Controller used to manage the cache of referencedata resources.
+ */
+@Controller
+@RequestMapping(ReferenceDataCacheController.RESOURCE_PATH)
+public class ReferenceDataCacheController extends BaseController {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(
+      ReferenceDataCacheController.class);
+
+  public static final String RESOURCE_PATH = API_PATH + "/referenceDataCache";
+
+  @Autowired
+  private ReferenceDataService referenceDataService;
+
+  /**
+   * Evicts the cached facilities and orderables, so they are retrieved again from referencedata.
+   */
+  @DeleteMapping
+  @ResponseStatus(HttpStatus.NO_CONTENT)
+  public void evictCache() {
+    LOGGER.debug("Evicting referencedata cache");
+    referenceDataService.evictCache();
+  }
+
+}
@@ -25,6 +25,7 @@ import org.openlmis.integration.dhis2.exception.NotFoundException;
 import org.openlmis.integration.dhis2.exception.ValidationMessageException;
 import org.openlmis.integration.dhis2.i18n.MessageKeys;
 import org.openlmis.integration.dhis2.repository.server.ServerRepository;
+import org.openlmis.integration.dhis2.service.resilience.RateLimitService;
 import org.openlmis.integration.dhis2.util.Pagination;
 import org.openlmis.integration.dhis2.web.BaseController;
 import org.slf4j.Logger;
@@ -61,6 +62,9 @@ public class ServerController extends BaseController {
   @Autowired
   private ServerRepository serverRepository;
 
+  @Autowired
+  private RateLimitService rateLimitService;
+
   /**
    * Retrieves the specified server.
    */
@@ -103,6 +107,7 @@ public class ServerController extends BaseController {
     Server newServer = Server.newInstance(serverDto);
     newServer.setId(null);
     newServer = serverRepository.saveAndFlush(newServer);
+    rateLimitService.reload(newServer.getUrl());
 
     return ServerDto.newInstance(newServer);
   }
@@ -119,12 +124,16 @@ public class ServerController extends BaseController {
     }
 
     LOGGER.debug("Updating server");
-    Server serverToSave = serverRepository.findById(id).map(server -> {
-      server.updateFrom(serverDto);
-      return server;
-    }).orElseThrow(() -> new NotFoundException(MessageKeys.ERROR_SERVER_NOT_FOUND));
+    Server serverToSave = serverRepository.findById(id)
+        .orElseThrow(() -> new NotFoundException(MessageKeys.ERROR_SERVER_NOT_FOUND));
+    String previousUrl = serverToSave.getUrl();
+    serverToSave.updateFrom(serverDto);
 
     serverRepository.saveAndFlush(serverToSave);
+    rateLimitService.reload(serverToSave.getUrl());
+    if (!Objects.equals(previousUrl, serverToSave.getUrl())) {
+      rateLimitService.reload(previousUrl);
+    }
     return ServerDto.newInstance(serverToSave);
   }
 
@@ -134,11 +143,11 @@ public class ServerController extends BaseController {
   @DeleteMapping(value = "/{id}")
   @ResponseStatus(HttpStatus.NO_CONTENT)
   public void deleteServer(@PathVariable("id") UUID id) {
-    if (!serverRepository.existsById(id)) {
-      throw new NotFoundException(MessageKeys.ERROR_SERVER_NOT_FOUND);
-    }
+    Server server = serverRepository.findById(id)
+        .orElseThrow(() -> new NotFoundException(MessageKeys.ERROR_SERVER_NOT_FOUND));
 
     serverRepository.deleteById(id);
+    rateLimitService.reload(server.getUrl());
   }
 
   /**
@@ -0,0 +1,13 @@
+CREATE TABLE execution_lease (
+    datasetId UUID NOT NULL,
+    scheduledDate TIMESTAMP WITH TIME ZONE NOT NULL,
+    owner TEXT NOT NULL,
+    acquiredDate TIMESTAMP WITH TIME ZONE NOT NULL,
+
+    CONSTRAINT execution_lease_pkey PRIMARY KEY (datasetId, scheduledDate),
+    CONSTRAINT dataset_fkey FOREIGN KEY (datasetId) REFERENCES dataset(id) ON DELETE CASCADE
+);
+
+COMMENT ON TABLE execution_lease IS 'Scheduled dataset executions claimed by service instances.';
+COMMENT ON COLUMN execution_lease.scheduledDate IS 'Fire time of the dataset schedule.';
+COMMENT ON COLUMN execution_lease.owner IS 'Identifier of the service instance running the execution.';
@@ -0,0 +1,19 @@
+CREATE TABLE pushed_data_value (
+    serverId UUID NOT NULL,
+    datasetId UUID NOT NULL,
+    period TEXT NOT NULL,
+    orgUnit TEXT NOT NULL,
+    dataElement TEXT NOT NULL,
+    value NUMERIC NOT NULL,
+    pushedDate TIMESTAMP WITH TIME ZONE NOT NULL,
+
+    CONSTRAINT pushed_data_value_pkey
+        PRIMARY KEY (serverId, datasetId, period, orgUnit, dataElement),
+    CONSTRAINT server_fkey FOREIGN KEY (serverId) REFERENCES server(id) ON DELETE CASCADE,
+    CONSTRAINT dataset_fkey FOREIGN KEY (datasetId) REFERENCES dataset(id) ON DELETE CASCADE
+);
+
+COMMENT ON TABLE pushed_data_value IS 'Last data values successfully sent to DHIS2 servers.';
+COMMENT ON COLUMN pushed_data_value.period IS 'DHIS2 ISO period of the data value.';
+COMMENT ON COLUMN pushed_data_value.orgUnit IS 'Code of the DHIS2 organisation unit.';
+COMMENT ON COLUMN pushed_data_value.dataElement IS 'DHIS2 data element of the data value.';
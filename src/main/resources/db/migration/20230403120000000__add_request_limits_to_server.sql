@@ -0,0 +1,5 @@
+ALTER TABLE server ADD COLUMN maxValuesPerRequest INTEGER;
+ALTER TABLE server ADD COLUMN maxBytesPerRequest INTEGER;
+
+COMMENT ON COLUMN server.maxValuesPerRequest IS 'Maximum number of data values sent in a single request. Service default is used if empty.';
+COMMENT ON COLUMN server.maxBytesPerRequest IS 'Maximum size in bytes of data values sent in a single request. Service default is used if empty.';
@@ -0,0 +1,3 @@
+ALTER TABLE server ADD COLUMN compressRequests BOOLEAN NOT NULL DEFAULT FALSE;
+
+COMMENT ON COLUMN server.compressRequests IS 'Whether data values are sent to the server compressed with gzip.';
@@ -0,0 +1,3 @@
+ALTER TABLE server ADD COLUMN asyncImport BOOLEAN NOT NULL DEFAULT FALSE;
+
+COMMENT ON COLUMN server.asyncImport IS 'Whether data values are imported by the server as asynchronous tasks.';
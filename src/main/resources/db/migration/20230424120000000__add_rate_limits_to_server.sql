@@ -0,0 +1,7 @@
+ALTER TABLE server ADD COLUMN maxRequestsPerSecond INTEGER;
+ALTER TABLE server ADD COLUMN maxConcurrentRequests INTEGER;
+ALTER TABLE server ADD COLUMN maxValuesPerSecond INTEGER;
+
+COMMENT ON COLUMN server.maxRequestsPerSecond IS 'Maximum number of requests sent to the server per second. Not limited if empty.';
+COMMENT ON COLUMN server.maxConcurrentRequests IS 'Maximum number of data value imports running on the server at the same time. The service default is used if empty.';
+COMMENT ON COLUMN server.maxValuesPerSecond IS 'Maximum number of data values sent to the server per second. Not limited if empty.';
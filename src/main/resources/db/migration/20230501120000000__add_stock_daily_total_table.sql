@@ -0,0 +1,27 @@
+CREATE TABLE stock_daily_total (
+    facilityId UUID NOT NULL,
+    orderableId UUID NOT NULL,
+    reasonCategory TEXT NOT NULL,
+    reasonType TEXT NOT NULL,
+    occurredDate DATE NOT NULL,
+    quantity BIGINT NOT NULL,
+
+    CONSTRAINT stock_daily_total_pkey
+        PRIMARY KEY (reasonCategory, reasonType, facilityId, orderableId, occurredDate)
+);
+
+COMMENT ON TABLE stock_daily_total IS 'Daily totals of stockmanagement line item quantities.';
+COMMENT ON COLUMN stock_daily_total.occurredDate IS 'Occurred date of the line items.';
+
+CREATE TABLE aggregate_watermark (
+    name TEXT NOT NULL,
+    processedDate TIMESTAMP WITH TIME ZONE NOT NULL,
+
+    CONSTRAINT aggregate_watermark_pkey PRIMARY KEY (name)
+);
+
+COMMENT ON TABLE aggregate_watermark IS 'Source rows already added to aggregate tables.';
+COMMENT ON COLUMN aggregate_watermark.processedDate
+    IS 'Processed date of the last source row added to the aggregate table.';
+
+INSERT INTO aggregate_watermark (name, processedDate) VALUES ('stock_daily_total', '-infinity');
@@ -0,0 +1,21 @@
+CREATE TABLE execution_job (
+    id UUID NOT NULL,
+    createdDate TIMESTAMP WITH TIME ZONE NOT NULL,
+    status TEXT NOT NULL,
+    startDate TIMESTAMP WITH TIME ZONE,
+    finishDate TIMESTAMP WITH TIME ZONE,
+    totalUnits INTEGER NOT NULL,
+    completedUnits INTEGER NOT NULL,
+    failedUnits INTEGER NOT NULL,
+    errorMessage TEXT,
+    heartbeatDate TIMESTAMP WITH TIME ZONE NOT NULL,
+
+    CONSTRAINT execution_job_pkey PRIMARY KEY (id)
+);
+
+CREATE INDEX execution_job_createddate_idx ON execution_job (createdDate);
+
+COMMENT ON TABLE execution_job IS 'Sync executions submitted to any of the service instances.';
+COMMENT ON COLUMN execution_job.status IS 'One of QUEUED, RUNNING, COMPLETED or FAILED.';
+COMMENT ON COLUMN execution_job.errorMessage IS 'Message of the last failure of the execution.';
+COMMENT ON COLUMN execution_job.heartbeatDate IS 'Last time the service instance running the execution reported it was alive. Unfinished executions without a recent heartbeat are failed.';
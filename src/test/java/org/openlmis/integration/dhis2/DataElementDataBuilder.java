@@ -34,6 +34,26 @@ public class DataElementDataBuilder {
     return this;
   }
 
+  public DataElementDataBuilder withName(String name) {
+    this.name = name;
+    return this;
+  }
+
+  public DataElementDataBuilder withElement(String element) {
+    this.element = element;
+    return this;
+  }
+
+  public DataElementDataBuilder withOrderable(String orderable) {
+    this.orderable = orderable;
+    return this;
+  }
+
+  public DataElementDataBuilder withIndicator(String indicator) {
+    this.indicator = indicator;
+    return this;
+  }
+
   /**
    * Builds new instance of Dataset (with id field).
    */
@@ -0,0 +1,80 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class RestTemplateConfigTest {
+
+  private RestTemplateConfig config = new RestTemplateConfig();
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(config, "maxTotal", 50);
+    ReflectionTestUtils.setField(config, "maxPerRoute", 10);
+    ReflectionTestUtils.setField(config, "maxPerHost",
+        "https://dhis2.example.org=20, http://dhis2.local:8080=5");
+    ReflectionTestUtils.setField(config, "validateAfterInactivity", 2000);
+  }
+
+  @Test
+  public void shouldConfigureConnectionLimits() throws Exception {
+    PoolingHttpClientConnectionManager connectionManager = config.connectionManager();
+
+    assertThat(connectionManager.getMaxTotal(), is(50));
+    assertThat(connectionManager.getDefaultMaxPerRoute(), is(10));
+    assertThat(connectionManager.getMaxPerRoute(new HttpRoute(
+        new HttpHost("dhis2.example.org", 443, "https"), null, true)), is(20));
+    assertThat(connectionManager.getMaxPerRoute(new HttpRoute(
+        new HttpHost("dhis2.local", 8080, "http"), null, false)), is(5));
+    assertThat(connectionManager.getMaxPerRoute(new HttpRoute(
+        new HttpHost("other.example.org", 443, "https"), null, true)), is(10));
+  }
+
+  @Test
+  public void shouldAllowNoHostLimits() throws Exception {
+    ReflectionTestUtils.setField(config, "maxPerHost", "");
+
+    assertThat(config.connectionManager().getDefaultMaxPerRoute(), is(10));
+  }
+
+  @Test
+  public void shouldNameInvalidHostLimitEntry() throws Exception {
+    for (String entry : new String[]{"https://dhis2.example.org", "https://dhis2.example.org=x",
+        "dhis2.example.org=20", "https://dhis2.example.org=0"}) {
+      ReflectionTestUtils.setField(config, "maxPerHost", entry);
+
+      try {
+        config.connectionManager();
+        fail("Expected invalid entry to be rejected: " + entry);
+      } catch (IllegalStateException ex) {
+        assertThat(ex.getMessage(), containsString("http.client.maxPerHost"));
+        assertThat(ex.getMessage(), containsString(entry));
+      }
+    }
+  }
+
+}
@@ -28,6 +28,13 @@ public class ServerDataBuilder {
   private String url = "http://test.configuration";
   private String username = "test-username";
   private String password = "$2a$12$/MRrjNIDYgba/9K6i.zNAOSMJFkWWwJHVYXGp/s3OfSbWL1fsiMWG";
+  private Integer maxValuesPerRequest = 1000;
+  private Integer maxBytesPerRequest = 1048576;
+  private boolean compressRequests = false;
+  private boolean asyncImport = false;
+  private Integer maxRequestsPerSecond;
+  private Integer maxConcurrentRequests;
+  private Integer maxValuesPerSecond;
   private List<Dataset> datasets = Collections.emptyList();
 
   public ServerDataBuilder withDatasets(List<Dataset> datasets) {
@@ -35,6 +42,22 @@ public class ServerDataBuilder {
     return this;
   }
 
+  /**
+   * Sets throughput limits of the server.
+   */
+  public ServerDataBuilder withRateLimits(Integer maxRequestsPerSecond,
+      Integer maxConcurrentRequests, Integer maxValuesPerSecond) {
+    this.maxRequestsPerSecond = maxRequestsPerSecond;
+    this.maxConcurrentRequests = maxConcurrentRequests;
+    this.maxValuesPerSecond = maxValuesPerSecond;
+    return this;
+  }
+
+  public ServerDataBuilder withAsyncImport() {
+    this.asyncImport = true;
+    return this;
+  }
+
   /**
    * Builds new instance of Server (with id field).
    */
@@ -48,7 +71,9 @@ public class ServerDataBuilder {
    * Builds new instance of Server as a new object (without id field).
    */
   public Server buildAsNew() {
-    return new Server(name, url, username, password, datasets);
+    return new Server(name, url, username, password, maxValuesPerRequest, maxBytesPerRequest,
+        compressRequests, asyncImport, maxRequestsPerSecond, maxConcurrentRequests,
+        maxValuesPerSecond, datasets);
   }
 
 }
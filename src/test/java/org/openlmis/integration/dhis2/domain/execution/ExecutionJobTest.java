@@ -0,0 +1,88 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.domain.execution;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import nl.jqno.equalsverifier.EqualsVerifier;
+import nl.jqno.equalsverifier.Warning;
+import org.junit.Test;
+import org.openlmis.integration.dhis2.ToStringTestUtils;
+import org.openlmis.integration.dhis2.dto.execution.ExecutionJobDto;
+
+public class ExecutionJobTest {
+
+  private static final ZonedDateTime DATE = ZonedDateTime.parse("2023-01-17T00:00:00Z");
+
+  @Test
+  public void equalsContract() {
+    EqualsVerifier
+        .forClass(ExecutionJob.class)
+        .withRedefinedSuperclass()
+        .suppress(Warning.NONFINAL_FIELDS)
+        .verify();
+  }
+
+  @Test
+  public void shouldImplementToString() {
+    ExecutionJob job = new ExecutionJob(UUID.randomUUID(), DATE);
+    ToStringTestUtils.verify(ExecutionJob.class, job, "TEXT");
+  }
+
+  @Test
+  public void shouldCompleteJobWithoutFailedUnits() {
+    ExecutionJob job = new ExecutionJob(UUID.randomUUID(), DATE);
+    job.start(DATE, 2);
+    job.unitCompleted();
+    job.unitCompleted();
+
+    job.finish(DATE.plusMinutes(1));
+
+    assertThat(job.getStatus()).isEqualTo(ExecutionJob.Status.COMPLETED);
+    assertThat(job.isFinished()).isTrue();
+  }
+
+  @Test
+  public void shouldFailJobWithFailedUnits() {
+    ExecutionJob job = new ExecutionJob(UUID.randomUUID(), DATE);
+    job.start(DATE, 2);
+    job.unitCompleted();
+    job.unitFailed("timeout");
+
+    job.finish(DATE.plusMinutes(1));
+
+    assertThat(job.getStatus()).isEqualTo(ExecutionJob.Status.FAILED);
+    assertThat(job.getErrorMessage()).isEqualTo("timeout");
+  }
+
+  @Test
+  public void shouldExportData() {
+    ExecutionJob job = new ExecutionJob(UUID.randomUUID(), DATE);
+    job.start(DATE, 3);
+    job.unitCompleted();
+    ExecutionJobDto dto = new ExecutionJobDto();
+
+    job.export(dto);
+
+    assertThat(dto.getId()).isEqualTo(job.getId());
+    assertThat(dto.getStatus()).isEqualTo(ExecutionJob.Status.RUNNING);
+    assertThat(dto.getTotalUnits()).isEqualTo(3);
+    assertThat(dto.getCompletedUnits()).isEqualTo(1);
+  }
+
+}
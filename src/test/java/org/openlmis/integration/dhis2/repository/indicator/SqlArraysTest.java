@@ -0,0 +1,48 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.repository.indicator;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+import org.junit.Test;
+
+public class SqlArraysTest {
+
+  @Test
+  public void shouldConvertIdsToArrayLiteral() {
+    UUID first = UUID.fromString("e6a2f5b8-2b3c-4b1e-9a0c-7d3f1c2b4a5e");
+    UUID second = UUID.fromString("0a1b2c3d-4e5f-4a6b-8c7d-9e0f1a2b3c4d");
+
+    assertThat(SqlArrays.toUuidArray(Arrays.asList(first, second)),
+        is("{e6a2f5b8-2b3c-4b1e-9a0c-7d3f1c2b4a5e,0a1b2c3d-4e5f-4a6b-8c7d-9e0f1a2b3c4d}"));
+  }
+
+  @Test
+  public void shouldConvertEmptyIdsToEmptyArrayLiteral() {
+    assertThat(SqlArrays.toUuidArray(Collections.emptyList()), is("{}"));
+  }
+
+  @Test
+  public void shouldQuoteAndEscapeKeys() {
+    assertThat(SqlArrays.toTextArray(Arrays.asList("BCG, 20 doses", "Say \"hi\" \\ {x}")),
+        is("{\"BCG, 20 doses\",\"Say \\\"hi\\\" \\\\ {x}\"}"));
+  }
+
+}
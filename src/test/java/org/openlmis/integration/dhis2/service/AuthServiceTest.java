@@ -22,11 +22,16 @@ import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.common.collect.ImmutableMap;
 import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.util.Map;
 import org.junit.Before;
 import org.junit.Test;
@@ -35,6 +40,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.core.task.SyncTaskExecutor;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
@@ -44,6 +50,8 @@ import org.springframework.web.client.RestTemplate;
 @RunWith(MockitoJUnitRunner.class)
 public class AuthServiceTest {
   private static final String TOKEN = "random-token";
+  private static final String OTHER_TOKEN = "other-token";
+  private static final int EXPIRES_IN = 3600;
   private static final String AUTHORIZATION_URL = "http://localhost/auth/oauth/token";
   private static final URI AUTHORIZATION_URI = URI.create(
           AUTHORIZATION_URL + "?grant_type=client_credentials"
@@ -57,6 +65,8 @@ public class AuthServiceTest {
 
   private ReferenceDataAuthService authService;
 
+  private Clock clock = Clock.fixed(Instant.parse("2023-01-17T00:00:00.00Z"), ZoneId.of("UTC"));
+
   @Before
   public void setUp() throws Exception {
     authService = new ReferenceDataAuthService();
@@ -65,18 +75,14 @@ public class AuthServiceTest {
     ReflectionTestUtils.setField(authService, "clientId", "trusted-client");
     ReflectionTestUtils.setField(authService, "clientSecret", "secret");
     ReflectionTestUtils.setField(authService, "authorizationUrl", AUTHORIZATION_URL);
+    ReflectionTestUtils.setField(authService, "refreshMargin", 60000L);
+    ReflectionTestUtils.setField(authService, "clock", clock);
+    ReflectionTestUtils.setField(authService, "taskExecutor", new SyncTaskExecutor());
   }
 
   @Test
   public void shouldObtainAccessToken() throws Exception {
-    ResponseEntity<Object> response = mock(ResponseEntity.class);
-    Map<String, String> body = ImmutableMap.of("access_token", TOKEN);
-
-    when(restTemplate.exchange(
-            eq(AUTHORIZATION_URI), eq(HttpMethod.POST), any(HttpEntity.class), eq(Object.class)
-    )).thenReturn(response);
-
-    when(response.getBody()).thenReturn(body);
+    mockTokenResponse(TOKEN);
 
     String token = authService.obtainAccessToken();
     assertThat(token, is(equalTo(TOKEN)));
@@ -92,4 +98,68 @@ public class AuthServiceTest {
             contains("Basic dHJ1c3RlZC1jbGllbnQ6c2VjcmV0")
     );
   }
+
+  @Test
+  public void shouldReuseCachedAccessToken() {
+    mockTokenResponse(TOKEN, OTHER_TOKEN);
+
+    authService.obtainAccessToken();
+
+    assertThat(authService.obtainAccessToken(), is(TOKEN));
+    verify(restTemplate, times(1)).exchange(
+            eq(AUTHORIZATION_URI), eq(HttpMethod.POST), any(HttpEntity.class), eq(Object.class)
+    );
+  }
+
+  @Test
+  public void shouldRefreshAccessTokenInBackgroundBeforeItExpires() {
+    mockTokenResponse(TOKEN, OTHER_TOKEN);
+
+    authService.obtainAccessToken();
+    ReflectionTestUtils.setField(authService, "clock",
+            Clock.offset(clock, Duration.ofSeconds(EXPIRES_IN - 30)));
+
+    assertThat(authService.obtainAccessToken(), is(TOKEN));
+    assertThat(authService.obtainAccessToken(), is(OTHER_TOKEN));
+  }
+
+  @Test
+  public void shouldObtainNewAccessTokenAfterItExpires() {
+    mockTokenResponse(TOKEN, OTHER_TOKEN);
+
+    authService.obtainAccessToken();
+    ReflectionTestUtils.setField(authService, "clock",
+            Clock.offset(clock, Duration.ofSeconds(EXPIRES_IN)));
+
+    assertThat(authService.obtainAccessToken(), is(OTHER_TOKEN));
+  }
+
+  @Test
+  public void shouldObtainNewAccessTokenAfterInvalidation() {
+    mockTokenResponse(TOKEN, OTHER_TOKEN);
+
+    authService.obtainAccessToken();
+    authService.invalidateAccessToken(TOKEN);
+
+    assertThat(authService.obtainAccessToken(), is(OTHER_TOKEN));
+  }
+
+  private void mockTokenResponse(String token, String... nextTokens) {
+    ResponseEntity<Object> response = mock(ResponseEntity.class);
+    ResponseEntity<Object>[] nextResponses = new ResponseEntity[nextTokens.length];
+    for (int i = 0; i < nextTokens.length; ++i) {
+      nextResponses[i] = mock(ResponseEntity.class);
+      when(nextResponses[i].getBody()).thenReturn(toBody(nextTokens[i]));
+    }
+
+    when(restTemplate.exchange(
+            eq(AUTHORIZATION_URI), eq(HttpMethod.POST), any(HttpEntity.class), eq(Object.class)
+    )).thenReturn(response, nextResponses);
+
+    when(response.getBody()).thenReturn(toBody(token));
+  }
+
+  private Map<String, Object> toBody(String token) {
+    return ImmutableMap.of("access_token", token, "expires_in", EXPIRES_IN);
+  }
 }
@@ -0,0 +1,91 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlmis.integration.dhis2.dto.dhis.DataValue;
+import org.openlmis.integration.dhis2.dto.dhis.DataValueSet;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+
+public class DataValueSetRequestCallbackTest {
+
+  private static final String AUTHORIZATION = "ApiToken r4nd0m70k3n";
+
+  private ObjectMapper objectMapper = new ObjectMapper();
+  private DataValueSet dataValueSet;
+  private MockClientHttpRequest request;
+
+  @Before
+  public void setUp() {
+    dataValueSet = new DataValueSet();
+    dataValueSet.setDataSet("dataset-id");
+    dataValueSet.setPeriod("202301");
+    dataValueSet.setDataValues(Arrays.asList(
+        new DataValue("element-1", "org-unit-1", BigDecimal.TEN),
+        new DataValue("element-2", "org-unit-2", BigDecimal.ONE)));
+
+    request = new MockClientHttpRequest(HttpMethod.POST, URI.create("/api/dataValueSets"));
+  }
+
+  @Test
+  public void shouldWriteDataValueSetAsJson() throws IOException {
+    new DataValueSetRequestCallback(objectMapper, dataValueSet, AUTHORIZATION, false)
+        .doWithRequest(request);
+
+    HttpHeaders headers = request.getHeaders();
+    assertThat(headers.getFirst(HttpHeaders.AUTHORIZATION), is(AUTHORIZATION));
+    assertThat(headers.getFirst(HttpHeaders.CONTENT_ENCODING), is(nullValue()));
+
+    assertBody(objectMapper.readTree(request.getBodyAsBytes()));
+  }
+
+  @Test
+  public void shouldWriteDataValueSetCompressedWithGzip() throws IOException {
+    new DataValueSetRequestCallback(objectMapper, dataValueSet, AUTHORIZATION, true)
+        .doWithRequest(request);
+
+    assertThat(request.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING),
+        is(DataValueSetRequestCallback.GZIP));
+
+    assertBody(objectMapper.readTree(
+        new GZIPInputStream(new ByteArrayInputStream(request.getBodyAsBytes()))));
+  }
+
+  private void assertBody(JsonNode body) {
+    assertThat(body.get("dataSet").asText(), is("dataset-id"));
+    assertThat(body.get("period").asText(), is("202301"));
+    assertThat(body.has("orgUnit"), is(false));
+    assertThat(body.get("dataValues").size(), is(2));
+    assertThat(body.get("dataValues").get(0).get("dataElement").asText(), is("element-1"));
+    assertThat(body.get("dataValues").get(1).get("orgUnit").asText(), is("org-unit-2"));
+  }
+
+}
@@ -24,24 +24,34 @@ import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.common.collect.ImmutableMap;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.util.Map;
 import java.util.regex.Pattern;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.openlmis.integration.dhis2.exception.RestOperationException;
+import org.openlmis.integration.dhis2.repository.server.ServerRepository;
+import org.openlmis.integration.dhis2.service.resilience.RateLimitService;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
@@ -52,45 +62,104 @@ public class DhisAuthServiceTest {
   private static final String AUTHORIZATION_URL = SERVER_URL + DhisAuthService.API_AUTH_URL;
   private static final String USERNAME = "username";
   private static final String PASSWORD = "p@ssw0rd";
+  private static final String TOKEN = "r4nd0m70k3n";
+  private static final String OTHER_TOKEN = "07h3r70k3n";
+
+  private static final Clock clock =
+          Clock.fixed(Instant.parse("2023-01-17T00:00:00.00Z"), ZoneId.of("UTC"));
 
   @Mock
   private RestTemplate restTemplate;
 
+  @Mock
+  private ServerRepository serverRepository;
+
+  @Spy
+  private RateLimitService rateLimitService = new RateLimitService();
+
   @Captor
-  private ArgumentCaptor<HttpEntity<String>> entityStringCaptor;
+  private ArgumentCaptor<HttpEntity<Map<String, Object>>> entityCaptor;
 
   @InjectMocks
   private DhisAuthService authService;
 
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(authService, "clock", clock);
+    ReflectionTestUtils.setField(authService, "timeToLive", 3600000L);
+    ReflectionTestUtils.setField(authService, "refreshMargin", 60000L);
+    ReflectionTestUtils.setField(rateLimitService, "serverRepository", serverRepository);
+  }
+
   @Test
   public void shouldObtainAccessToken() {
     final String token = "r4nd0m70k3n";
-
-    ResponseEntity<Object> response = mock(ResponseEntity.class);
-    Map<String, String> tokenBody = ImmutableMap.of(DhisAuthService.API_KEY, token);
-    Map<String, Map> body = ImmutableMap.of(DhisAuthService.API_RESPONSE_DETAILS, tokenBody);
-
-    when(restTemplate.exchange(
-            eq(AUTHORIZATION_URL), eq(HttpMethod.POST),
-            any(HttpEntity.class), eq(Object.class)
-    )).thenReturn(response);
-
-    when(response.getBody()).thenReturn(body);
+    mockTokenResponse(token);
 
     String obtainedToken = authService.obtainAccessToken(USERNAME, PASSWORD, SERVER_URL);
     assertThat(obtainedToken, is(equalTo(token)));
 
     verify(restTemplate).exchange(
             eq(AUTHORIZATION_URL), eq(HttpMethod.POST),
-            entityStringCaptor.capture(), eq(Object.class)
+            entityCaptor.capture(), eq(Object.class)
     );
 
-    HttpEntity<String> entity = entityStringCaptor.getValue();
+    HttpEntity<Map<String, Object>> entity = entityCaptor.getValue();
     Pattern pattern = Pattern.compile("^Basic (.*)");
     assertThat(
             entity.getHeaders().get(HttpHeaders.AUTHORIZATION),
             hasItem(matchesPattern(pattern))
     );
+    assertThat(entity.getBody().get(DhisAuthService.API_EXPIRE),
+            is(clock.millis() + 3600000L));
+  }
+
+  @Test
+  public void shouldReuseCachedAccessToken() {
+    mockTokenResponse(TOKEN, OTHER_TOKEN);
+
+    authService.obtainAccessToken(USERNAME, PASSWORD, SERVER_URL);
+    String obtainedToken = authService.obtainAccessToken(USERNAME, PASSWORD, SERVER_URL);
+
+    assertThat(obtainedToken, is(TOKEN));
+    verify(restTemplate, times(1)).exchange(
+            eq(AUTHORIZATION_URL), eq(HttpMethod.POST),
+            any(HttpEntity.class), eq(Object.class)
+    );
+  }
+
+  @Test
+  public void shouldObtainNewAccessTokenBeforeCachedTokenExpires() {
+    mockTokenResponse(TOKEN, OTHER_TOKEN);
+
+    authService.obtainAccessToken(USERNAME, PASSWORD, SERVER_URL);
+    ReflectionTestUtils.setField(authService, "clock",
+            Clock.offset(clock, Duration.ofMillis(3600000L - 60000L)));
+    String obtainedToken = authService.obtainAccessToken(USERNAME, PASSWORD, SERVER_URL);
+
+    assertThat(obtainedToken, is(OTHER_TOKEN));
+  }
+
+  @Test
+  public void shouldObtainNewAccessTokenAfterInvalidation() {
+    mockTokenResponse(TOKEN, OTHER_TOKEN);
+
+    authService.obtainAccessToken(USERNAME, PASSWORD, SERVER_URL);
+    authService.invalidateAccessToken(USERNAME, SERVER_URL, TOKEN);
+    String obtainedToken = authService.obtainAccessToken(USERNAME, PASSWORD, SERVER_URL);
+
+    assertThat(obtainedToken, is(OTHER_TOKEN));
+  }
+
+  @Test
+  public void shouldKeepNewerAccessTokenOnInvalidationOfStaleToken() {
+    mockTokenResponse(TOKEN, OTHER_TOKEN);
+
+    authService.obtainAccessToken(USERNAME, PASSWORD, SERVER_URL);
+    authService.invalidateAccessToken(USERNAME, SERVER_URL, "57al370k3n");
+    String obtainedToken = authService.obtainAccessToken(USERNAME, PASSWORD, SERVER_URL);
+
+    assertThat(obtainedToken, is(TOKEN));
   }
 
   @Test(expected = RestOperationException.class)
@@ -104,4 +173,25 @@ public class DhisAuthServiceTest {
     assertNull(obtainedToken);
   }
 
+  private void mockTokenResponse(String token, String... nextTokens) {
+    ResponseEntity<Object> response = mock(ResponseEntity.class);
+    ResponseEntity<Object>[] nextResponses = new ResponseEntity[nextTokens.length];
+    for (int i = 0; i < nextTokens.length; ++i) {
+      nextResponses[i] = mock(ResponseEntity.class);
+      when(nextResponses[i].getBody()).thenReturn(toBody(nextTokens[i]));
+    }
+
+    when(restTemplate.exchange(
+            eq(AUTHORIZATION_URL), eq(HttpMethod.POST),
+            any(HttpEntity.class), eq(Object.class)
+    )).thenReturn(response, nextResponses);
+
+    when(response.getBody()).thenReturn(toBody(token));
+  }
+
+  private Map<String, Map> toBody(String token) {
+    Map<String, String> tokenBody = ImmutableMap.of(DhisAuthService.API_KEY, token);
+    return ImmutableMap.of(DhisAuthService.API_RESPONSE_DETAILS, tokenBody);
+  }
+
 }
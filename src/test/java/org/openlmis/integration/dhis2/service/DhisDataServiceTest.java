@@ -15,35 +15,61 @@
 
 package org.openlmis.integration.dhis2.service;
 
+import static java.util.Collections.singletonList;
+import static org.hamcrest.Matchers.allOf;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import java.net.URI;
-import java.util.ArrayList;
+import java.time.Clock;
 import java.util.Arrays;
-import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.openlmis.integration.dhis2.dto.dhis.DataValueSet;
 import org.openlmis.integration.dhis2.dto.dhis.DhisDataset;
+import org.openlmis.integration.dhis2.dto.dhis.DhisDatasetPage;
+import org.openlmis.integration.dhis2.dto.dhis.DhisImportSummary;
+import org.openlmis.integration.dhis2.dto.dhis.DhisPager;
 import org.openlmis.integration.dhis2.dto.dhis.DhisResponseBody;
+import org.openlmis.integration.dhis2.dto.dhis.DhisTaskNotification;
 import org.openlmis.integration.dhis2.exception.RestOperationException;
-import org.springframework.core.ParameterizedTypeReference;
+import org.openlmis.integration.dhis2.repository.server.ServerRepository;
+import org.openlmis.integration.dhis2.service.resilience.RateLimitService;
+import org.openlmis.integration.dhis2.service.resilience.ResilienceService;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpMessageConverterExtractor;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
 
 @RunWith(MockitoJUnitRunner.class)
 public class DhisDataServiceTest {
@@ -52,6 +78,7 @@ public class DhisDataServiceTest {
   private static final String USERNAME = "username";
   private static final String PASSWORD = "p@ssw0rd";
   private static final String DATASET_ID = "dataset-id";
+  private static final String TOKEN = "r4nd0m70k3n";
   private DataValueSet dataValueSet;
 
   @Mock
@@ -60,14 +87,38 @@ public class DhisDataServiceTest {
   @Mock
   private DhisAuthService authService;
 
+  @Spy
+  private ResilienceService resilienceService = new ResilienceService();
+
+  @Spy
+  private RateLimitService rateLimitService = new RateLimitService();
+
+  @Spy
+  private DhisDatasetCache datasetCache = new DhisDatasetCache();
+
+  @Mock
+  private ServerRepository serverRepository;
+
   @InjectMocks
   private DhisDataService dhisDataService;
 
+  @Captor
+  private ArgumentCaptor<URI> uriCaptor;
+
   @Before
   public void setUp() {
-    final String token = "r4nd0m70k3n";
     dataValueSet = mock(DataValueSet.class);
-    when(authService.obtainAccessToken(anyString(), anyString(), anyString())).thenReturn(token);
+    when(authService.obtainAccessToken(anyString(), anyString(), anyString())).thenReturn(TOKEN);
+    when(restTemplate.getMessageConverters())
+            .thenReturn(singletonList(new MappingJackson2HttpMessageConverter()));
+    ReflectionTestUtils.setField(dhisDataService, "requestExecutor", new SyncTaskExecutor());
+    ReflectionTestUtils.setField(dhisDataService, "objectMapper", new ObjectMapper());
+    ReflectionTestUtils.setField(resilienceService, "clock", Clock.systemUTC());
+    ReflectionTestUtils.setField(resilienceService, "maxAttempts", 1);
+    ReflectionTestUtils.setField(resilienceService, "failureThreshold", 5);
+    ReflectionTestUtils.setField(rateLimitService, "serverRepository", serverRepository);
+    ReflectionTestUtils.setField(rateLimitService, "defaultMaxConcurrentRequests", 1);
+    ReflectionTestUtils.setField(datasetCache, "maxWeight", 1000L);
   }
 
   @Test
@@ -86,6 +137,41 @@ public class DhisDataServiceTest {
     assertThat(newDhisDataset, is(equalTo(dhisDataset)));
   }
 
+  @Test
+  public void getDhisDataSetByIdShouldReturnCachedDatasetWhenNotUpdated() {
+    DhisDataset dhisDataset = newDhisDataset("2023-01-10T12:00:00.000");
+    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class),
+            eq(DhisDataset.class))
+    ).thenReturn(new ResponseEntity<>(dhisDataset, HttpStatus.OK),
+        new ResponseEntity<>(newDhisDataset("2023-01-10T12:00:00.000"), HttpStatus.OK));
+
+    dhisDataService.getDhisDataSetById(DATASET_ID, SERVER_URL, USERNAME, PASSWORD);
+    DhisDataset result = dhisDataService.getDhisDataSetById(DATASET_ID, SERVER_URL,
+            USERNAME, PASSWORD);
+
+    assertThat(result, is(dhisDataset));
+    verify(restTemplate, times(2)).exchange(uriCaptor.capture(), eq(HttpMethod.GET),
+        any(HttpEntity.class), eq(DhisDataset.class));
+    assertThat(uriCaptor.getValue().getQuery(), is("fields=lastUpdated"));
+  }
+
+  @Test
+  public void getDhisDataSetByIdShouldRetrieveDatasetAgainWhenUpdated() {
+    DhisDataset updated = newDhisDataset("2023-02-10T12:00:00.000");
+    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class),
+            eq(DhisDataset.class))
+    ).thenReturn(new ResponseEntity<>(newDhisDataset("2023-01-10T12:00:00.000"), HttpStatus.OK),
+        new ResponseEntity<>(newDhisDataset("2023-02-10T12:00:00.000"), HttpStatus.OK),
+        new ResponseEntity<>(updated, HttpStatus.OK));
+
+    dhisDataService.getDhisDataSetById(DATASET_ID, SERVER_URL, USERNAME, PASSWORD);
+    DhisDataset result = dhisDataService.getDhisDataSetById(DATASET_ID, SERVER_URL,
+            USERNAME, PASSWORD);
+
+    assertThat(result, is(updated));
+    assertThat(datasetCache.get(SERVER_URL, DATASET_ID), is(updated));
+  }
+
   @Test(expected = RestOperationException.class)
   public void getDhisDataSetByIdShouldThrowNotFoundException() {
     when(restTemplate.exchange(any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class),
@@ -96,46 +182,47 @@ public class DhisDataServiceTest {
   }
 
   @Test
-  public void getDhisDataElementsShouldReturnDhisDatasetList() {
-    final ResponseEntity<LinkedHashMap<String, ArrayList<Object>>> response =
-            mock(ResponseEntity.class);
-    final LinkedHashMap<String, ArrayList<Object>> extractedResponse =
-            mock(LinkedHashMap.class);
-    final ArrayList<Object> dhisDataset = new ArrayList<>(
-            Arrays.asList(mock(DhisDataset.class), mock(DhisDataset.class)));
+  public void getDhisDatasetsShouldReturnPageOfDhisDatasets() {
+    DhisPager pager = new DhisPager();
+    pager.setTotal(12L);
+    DhisDatasetPage datasetPage = new DhisDatasetPage();
+    datasetPage.setPager(pager);
+    datasetPage.setDataSets(Arrays.asList(new DhisDataset(), new DhisDataset()));
 
     when(restTemplate.exchange(any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class),
-            any(ParameterizedTypeReference.class))
-    ).thenReturn(response);
+            eq(DhisDatasetPage.class))
+    ).thenReturn(new ResponseEntity<>(datasetPage, HttpStatus.OK));
 
-    when(response.getBody()).thenReturn(extractedResponse);
-    when(extractedResponse.get("dataSets")).thenReturn(dhisDataset);
+    Page<DhisDataset> result = dhisDataService.getDhisDatasets(SERVER_URL, USERNAME,
+            PASSWORD, "malaria", PageRequest.of(1, 2, Sort.by("displayName")));
 
-    ArrayList<DhisDataset> newDhisDatasets = dhisDataService.getDhisDatasets(SERVER_URL,
-            USERNAME, PASSWORD);
-    assertThat(newDhisDatasets, is(equalTo(dhisDataset)));
+    assertThat(result.getContent(), is(equalTo(datasetPage.getDataSets())));
+    assertThat(result.getTotalElements(), is(12L));
+    verify(restTemplate).exchange(uriCaptor.capture(), eq(HttpMethod.GET),
+            any(HttpEntity.class), eq(DhisDatasetPage.class));
+    assertThat(UriComponentsBuilder.fromUri(uriCaptor.getValue()).build().getQueryParams(),
+            allOf(hasEntry("page", singletonList("2")),
+                hasEntry("pageSize", singletonList("2")),
+                hasEntry("order", singletonList("displayName:asc")),
+                hasEntry("filter", singletonList("displayName:ilike:malaria"))));
   }
 
   @Test(expected = RestOperationException.class)
   public void getDhisDatasetsShouldThrowNotFoundException() {
     when(restTemplate.exchange(any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class),
-            eq(new ParameterizedTypeReference
-                    <LinkedHashMap<String, ArrayList<Object>>>() {}))
+            eq(DhisDatasetPage.class))
     ).thenThrow(HttpClientErrorException.class);
 
-    dhisDataService.getDhisDatasets(SERVER_URL, USERNAME, PASSWORD);
+    dhisDataService.getDhisDatasets(SERVER_URL, USERNAME, PASSWORD, null, PageRequest.of(0, 10));
   }
 
   @Test
   public void createDataValueSetShouldReturnDhisResponseBody() {
-    final ResponseEntity<DhisResponseBody> response = mock(ResponseEntity.class);
     final DhisResponseBody dhisResponseBody = mock(DhisResponseBody.class);
 
-    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
-            eq(DhisResponseBody.class))
-    ).thenReturn(response);
-
-    when(response.getBody()).thenReturn(dhisResponseBody);
+    when(restTemplate.execute(any(URI.class), eq(HttpMethod.POST),
+            any(DataValueSetRequestCallback.class), any(HttpMessageConverterExtractor.class))
+    ).thenReturn(dhisResponseBody);
 
     DhisResponseBody newDhisResponseBody = dhisDataService.createDataValueSet(dataValueSet,
             SERVER_URL, USERNAME, PASSWORD);
@@ -144,11 +231,135 @@ public class DhisDataServiceTest {
 
   @Test(expected = RestOperationException.class)
   public void createDataValueSetShouldThrowNotFoundException() {
-    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
-            eq(DhisResponseBody.class))
+    when(restTemplate.execute(any(URI.class), eq(HttpMethod.POST),
+            any(DataValueSetRequestCallback.class), any(HttpMessageConverterExtractor.class))
     ).thenThrow(HttpClientErrorException.class);
 
     dhisDataService.createDataValueSet(dataValueSet, SERVER_URL, USERNAME, PASSWORD);
   }
 
+  @Test
+  public void createDataValueSetAsyncShouldReturnDhisResponseBody() throws Exception {
+    final DhisResponseBody dhisResponseBody = mock(DhisResponseBody.class);
+
+    when(restTemplate.execute(any(URI.class), eq(HttpMethod.POST),
+            any(DataValueSetRequestCallback.class), any(HttpMessageConverterExtractor.class))
+    ).thenReturn(dhisResponseBody);
+
+    CompletableFuture<DhisResponseBody> result = dhisDataService.createDataValueSetAsync(
+            dataValueSet, SERVER_URL, USERNAME, PASSWORD, false, false,
+            CompletableFuture::completedFuture);
+    assertThat(result.get(), is(equalTo(dhisResponseBody)));
+  }
+
+  @Test
+  public void createDataValueSetAsyncShouldReleaseLimitWhenRequestFails() throws Exception {
+    final DhisResponseBody dhisResponseBody = mock(DhisResponseBody.class);
+
+    when(restTemplate.execute(any(URI.class), eq(HttpMethod.POST),
+            any(DataValueSetRequestCallback.class), any(HttpMessageConverterExtractor.class))
+    ).thenThrow(HttpClientErrorException.class).thenReturn(dhisResponseBody);
+
+    CompletableFuture<DhisResponseBody> failed = dhisDataService.createDataValueSetAsync(
+            dataValueSet, SERVER_URL, USERNAME, PASSWORD, false, false,
+            CompletableFuture::completedFuture);
+    CompletableFuture<DhisResponseBody> result = dhisDataService.createDataValueSetAsync(
+            dataValueSet, SERVER_URL, USERNAME, PASSWORD, false, false,
+            CompletableFuture::completedFuture);
+
+    assertThat(failed.isCompletedExceptionally(), is(true));
+    assertThat(result.get(), is(equalTo(dhisResponseBody)));
+  }
+
+  @Test
+  public void createDataValueSetAsyncShouldHoldLimitUntilImportIsFinished() throws Exception {
+    final DhisResponseBody dhisResponseBody = mock(DhisResponseBody.class);
+    final CompletableFuture<DhisResponseBody> importTask = new CompletableFuture<>();
+
+    when(restTemplate.execute(any(URI.class), eq(HttpMethod.POST),
+            any(DataValueSetRequestCallback.class), any(HttpMessageConverterExtractor.class))
+    ).thenReturn(dhisResponseBody);
+
+    CompletableFuture<DhisResponseBody> result = dhisDataService.createDataValueSetAsync(
+            dataValueSet, SERVER_URL, USERNAME, PASSWORD, false, true, response -> importTask);
+
+    assertThat(result.isDone(), is(false));
+    assertThat(getInFlightLimit().availablePermits(), is(0));
+
+    importTask.complete(dhisResponseBody);
+
+    assertThat(result.get(), is(equalTo(dhisResponseBody)));
+    assertThat(getInFlightLimit().availablePermits(), is(1));
+  }
+
+  @Test
+  public void isTaskCompletedShouldReturnTrueIfAnyNotificationIsCompleted() {
+    final ResponseEntity<DhisTaskNotification[]> response = mock(ResponseEntity.class);
+    final DhisTaskNotification running = new DhisTaskNotification();
+    final DhisTaskNotification completed = new DhisTaskNotification();
+    completed.setCompleted(true);
+
+    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class),
+            eq(DhisTaskNotification[].class))
+    ).thenReturn(response);
+
+    when(response.getBody()).thenReturn(new DhisTaskNotification[] {completed, running});
+
+    assertThat(dhisDataService.isTaskCompleted("DATAVALUE_IMPORT", "task-id", SERVER_URL,
+            USERNAME, PASSWORD), is(true));
+  }
+
+  @Test
+  public void getTaskSummaryShouldReturnDhisResponseBody() {
+    final ResponseEntity<DhisImportSummary> response = mock(ResponseEntity.class);
+    final DhisImportSummary summary = new DhisImportSummary();
+    summary.setStatus("WARNING");
+    summary.setDescription("Import process completed successfully");
+
+    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class),
+            eq(DhisImportSummary.class))
+    ).thenReturn(response);
+
+    when(response.getBody()).thenReturn(summary);
+
+    DhisResponseBody body = dhisDataService.getTaskSummary("DATAVALUE_IMPORT", "task-id",
+            SERVER_URL, USERNAME, PASSWORD);
+    assertThat(body.getStatus(), is("WARNING"));
+    assertThat(body.getResponse().getDescription(), is(summary.getDescription()));
+  }
+
+  @Test
+  public void shouldRetryWithNewTokenWhenTokenIsRejected() {
+    final ResponseEntity<DhisDataset> response = mock(ResponseEntity.class);
+    final DhisDataset dhisDataset = mock(DhisDataset.class);
+
+    when(authService.obtainAccessToken(USERNAME, PASSWORD, SERVER_URL))
+            .thenReturn(TOKEN, "n3w70k3n");
+    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class),
+            eq(DhisDataset.class))
+    ).thenThrow(HttpClientErrorException.create(HttpStatus.UNAUTHORIZED, "Unauthorized",
+            null, null, null)).thenReturn(response);
+    when(response.getBody()).thenReturn(dhisDataset);
+
+    DhisDataset newDhisDataset = dhisDataService.getDhisDataSetById(DATASET_ID, SERVER_URL,
+            USERNAME, PASSWORD);
+
+    assertThat(newDhisDataset, is(equalTo(dhisDataset)));
+    verify(authService).invalidateAccessToken(USERNAME, SERVER_URL, TOKEN);
+  }
+
+  private DhisDataset newDhisDataset(String lastUpdated) {
+    DhisDataset dhisDataset = new DhisDataset();
+    dhisDataset.setLastUpdated(lastUpdated);
+    return dhisDataset;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Semaphore getInFlightLimit() {
+    Map<String, Object> rateLimiters = (Map<String, Object>) ReflectionTestUtils
+        .getField(rateLimitService, "rateLimiters");
+    return (Semaphore) ReflectionTestUtils
+        .getField(rateLimiters.get(SERVER_URL), "concurrentRequests");
+  }
+
 }
@@ -0,0 +1,99 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlmis.integration.dhis2.dto.dhis.DhisDataset;
+import org.openlmis.integration.dhis2.dto.dhis.OrganisationUnit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class DhisDatasetCacheTest {
+
+  private static final String SERVER_URL = "https://play.dhis2.org/2.39.0.1";
+  private static final String DATASET_NAME = "dataset";
+
+  private DhisDatasetCache datasetCache = new DhisDatasetCache();
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(datasetCache, "maxWeight", 10L);
+  }
+
+  @Test
+  public void shouldReturnCachedDataset() {
+    DhisDataset dataset = newDataset(2);
+    datasetCache.put(SERVER_URL, DATASET_NAME, dataset);
+
+    assertThat(datasetCache.get(SERVER_URL, DATASET_NAME), is(dataset));
+    assertThat(datasetCache.get("https://other.dhis2.org", DATASET_NAME), is(nullValue()));
+    assertThat(datasetCache.getTotalWeight(), is(3L));
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedDatasetsWhenWeightIsExceeded() {
+    DhisDataset first = newDataset(3);
+    DhisDataset second = newDataset(3);
+    datasetCache.put(SERVER_URL, "first", first);
+    datasetCache.put(SERVER_URL, "second", second);
+    datasetCache.get(SERVER_URL, "first");
+
+    datasetCache.put(SERVER_URL, "third", newDataset(3));
+
+    assertThat(datasetCache.get(SERVER_URL, "first"), is(first));
+    assertThat(datasetCache.get(SERVER_URL, "second"), is(nullValue()));
+    assertThat(datasetCache.getTotalWeight(), is(8L));
+  }
+
+  @Test
+  public void shouldReplaceCachedDataset() {
+    DhisDataset dataset = newDataset(1);
+    datasetCache.put(SERVER_URL, DATASET_NAME, newDataset(5));
+
+    datasetCache.put(SERVER_URL, DATASET_NAME, dataset);
+
+    assertThat(datasetCache.get(SERVER_URL, DATASET_NAME), is(dataset));
+    assertThat(datasetCache.getTotalWeight(), is(2L));
+  }
+
+  @Test
+  public void shouldNotCacheDatasetHeavierThanCache() {
+    datasetCache.put(SERVER_URL, DATASET_NAME, newDataset(10));
+
+    assertThat(datasetCache.get(SERVER_URL, DATASET_NAME), is(nullValue()));
+    assertThat(datasetCache.getTotalWeight(), is(0L));
+  }
+
+  private DhisDataset newDataset(int organisationUnits) {
+    List<OrganisationUnit> units = IntStream.range(0, organisationUnits)
+        .mapToObj(i -> new OrganisationUnit())
+        .collect(Collectors.toList());
+
+    DhisDataset dataset = new DhisDataset();
+    dataset.setOrganisationUnits(units);
+    dataset.setDataSetElements(Collections.emptyList());
+    return dataset;
+  }
+
+}
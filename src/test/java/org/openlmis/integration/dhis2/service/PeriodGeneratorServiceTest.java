@@ -20,14 +20,17 @@ import static org.junit.Assert.assertThat;
 
 import java.time.Clock;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.openlmis.integration.dhis2.domain.enumerator.DhisPeriod;
+import org.openlmis.integration.dhis2.exception.ValidationMessageException;
 import org.springframework.data.util.Pair;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -94,4 +97,43 @@ public class PeriodGeneratorServiceTest {
     assertThat(range.getSecond(), is(februaryFirst));
   }
 
+  @Test
+  public void shouldGenerateRangesOfAllPeriodsBetweenDates() {
+    List<Pair<ZonedDateTime, ZonedDateTime>> ranges = periodGeneratorService.generateRanges(
+            DhisPeriod.MONTHLY, LocalDate.of(2022, 11, 15), LocalDate.of(2023, 1, 1));
+
+    assertThat(ranges.size(), is(3));
+    assertThat(ranges.get(0).getFirst(), is(januaryFirst.minusMonths(2)));
+    assertThat(ranges.get(2).getFirst(), is(januaryFirst));
+    assertThat(ranges.get(2).getSecond(), is(februaryFirst));
+  }
+
+  @Test
+  public void shouldGenerateWeeklyRangesStartingOnPeriodDay() {
+    List<Pair<ZonedDateTime, ZonedDateTime>> ranges = periodGeneratorService.generateRanges(
+            DhisPeriod.WEEKLY_MONDAY, LocalDate.of(2023, 1, 9), LocalDate.of(2023, 1, 16));
+
+    assertThat(ranges.size(), is(2));
+    assertThat(ranges.get(0).getFirst(), is(mondayMidnight.minusDays(7)));
+    assertThat(ranges.get(0).getSecond(), is(mondayMidnight));
+    assertThat(ranges.get(1).getSecond(), is(mondayMidnight.plusDays(7)));
+  }
+
+  @Test
+  public void shouldResolvePeriodFromPeriodName() {
+    assertThat(periodGeneratorService.resolvePeriod("Weekly Friday", "Monthly"),
+            is(DhisPeriod.WEEKLY_FRIDAY));
+  }
+
+  @Test
+  public void shouldResolvePeriodFromDhisPeriodTypeForCronExpression() {
+    assertThat(periodGeneratorService.resolvePeriod("0 5 * * *", "WeeklyWednesday"),
+            is(DhisPeriod.WEEKLY_WEDNESDAY));
+  }
+
+  @Test(expected = ValidationMessageException.class)
+  public void shouldThrowExceptionWhenPeriodCannotBeResolved() {
+    periodGeneratorService.resolvePeriod("0 5 * * *", "FinancialApril");
+  }
+
 }
@@ -15,22 +15,28 @@
 
 package org.openlmis.integration.dhis2.service;
 
-import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.openlmis.integration.dhis2.service.ReferenceDataService.API_URL;
 import static org.openlmis.integration.dhis2.service.ReferenceDataService.FACILITIES_RESOUCE_PATH;
 import static org.openlmis.integration.dhis2.service.ReferenceDataService.ORDERABLES_RESOUCE_PATH;
 
 import java.net.URI;
+import java.time.Clock;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -38,9 +44,13 @@ import org.openlmis.integration.dhis2.dto.referencedata.MinimalFacilityDto;
 import org.openlmis.integration.dhis2.dto.referencedata.OrderableDto;
 import org.openlmis.integration.dhis2.dto.referencedata.PageDto;
 import org.openlmis.integration.dhis2.exception.RestOperationException;
+import org.openlmis.integration.dhis2.util.RequestHelper;
+import org.openlmis.integration.dhis2.util.RequestParameters;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.task.SyncTaskExecutor;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -48,11 +58,15 @@ import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+@SuppressWarnings("PMD.TooManyMethods")
 @RunWith(MockitoJUnitRunner.class)
 public class ReferenceDataServiceTest {
 
   private static final String TOKEN = "4u7h-70k3n";
   private static final String SERVICE_URL = "http://localhost";
+  private static final int PAGE_SIZE = 2;
+  private static final long TIME_TO_LIVE = 300000L;
+  private static final String ETAG = "\"v1\"";
 
   @Mock
   private RestTemplate restTemplate;
@@ -60,48 +74,192 @@ public class ReferenceDataServiceTest {
   @Mock
   private ReferenceDataAuthService authService;
 
+  @Mock
+  private Clock clock;
+
+  @Captor
+  private ArgumentCaptor<HttpEntity<?>> entityCaptor;
+
   @InjectMocks
   private ReferenceDataService referenceDataService;
 
   @Before
   public void setUp() throws Exception {
     ReflectionTestUtils.setField(referenceDataService, "serviceUrl", SERVICE_URL);
+    ReflectionTestUtils.setField(referenceDataService, "pageSize", PAGE_SIZE);
+    ReflectionTestUtils.setField(referenceDataService, "requestExecutor",
+        new SyncTaskExecutor());
+    ReflectionTestUtils.setField(referenceDataService, "cacheTimeToLive", TIME_TO_LIVE);
+    when(clock.millis()).thenReturn(0L);
   }
 
   @Test
-  public void shouldReturnPageOfMinimalFacilityDtos() {
-    final List<MinimalFacilityDto> dtos = (List<MinimalFacilityDto>) mock(List.class);
-    final PageDto<MinimalFacilityDto> minimalFacilityDtos = createPageDto(dtos);
-    ResponseEntity<PageDto<MinimalFacilityDto>> response =
-            new ResponseEntity<>(minimalFacilityDtos, HttpStatus.OK);
-    URI uri = URI.create(SERVICE_URL + API_URL + FACILITIES_RESOUCE_PATH);
-
-    when(restTemplate.exchange(eq(uri),
-            eq(HttpMethod.GET), any(HttpEntity.class),
-            any(ParameterizedTypeReference.class)
-    )).thenReturn(response);
+  public void shouldReturnAllFacilities() {
+    MinimalFacilityDto facility = new MinimalFacilityDto();
+    facility.setCode("facility-code");
+    mockPage(FACILITIES_RESOUCE_PATH, 0, createPageDto(1, Collections.singletonList(facility)));
     when(authService.obtainAccessToken()).thenReturn(TOKEN);
-    PageDto<MinimalFacilityDto> result = referenceDataService.findAllFacilities();
 
-    assertThat(result, is(equalTo(minimalFacilityDtos)));
+    List<MinimalFacilityDto> result = referenceDataService.findAllFacilities()
+        .collect(Collectors.toList());
+
+    assertThat(result, contains(facility));
   }
 
   @Test
-  public void shouldReturnPageOfOrderableDtos() {
-    final List<OrderableDto> dtos = (List<OrderableDto>) mock(List.class);
-    final PageDto<OrderableDto> orderableDtos = createPageDto(dtos);
-    ResponseEntity<PageDto<OrderableDto>> response =
-            new ResponseEntity<>(orderableDtos, HttpStatus.OK);
-    URI uri = URI.create(SERVICE_URL + API_URL + ORDERABLES_RESOUCE_PATH);
-
-    when(restTemplate.exchange(eq(uri),
-            eq(HttpMethod.GET), any(HttpEntity.class),
-            any(ParameterizedTypeReference.class)
-    )).thenReturn(response);
+  public void shouldReturnOrderablesFromAllPages() {
+    OrderableDto first = newOrderable("first");
+    OrderableDto second = newOrderable("second");
+    OrderableDto third = newOrderable("third");
+    mockPage(ORDERABLES_RESOUCE_PATH, 0, createPageDto(3, Collections.singletonList(first)));
+    mockPage(ORDERABLES_RESOUCE_PATH, 1, createPageDto(3, Collections.singletonList(second)));
+    mockPage(ORDERABLES_RESOUCE_PATH, 2, createPageDto(3, Collections.singletonList(third)));
+    when(authService.obtainAccessToken()).thenReturn(TOKEN);
+
+    List<OrderableDto> result = referenceDataService.findAllOrderables()
+        .collect(Collectors.toList());
+
+    assertThat(result, contains(first, second, third));
+  }
+
+  @Test
+  public void shouldReturnCachedFacilitiesWithinTimeToLive() {
+    mockPage(FACILITIES_RESOUCE_PATH, 0,
+        createPageDto(1, Collections.singletonList(new MinimalFacilityDto())));
+    when(authService.obtainAccessToken()).thenReturn(TOKEN);
+
+    referenceDataService.findAllFacilities().collect(Collectors.toList());
+    when(clock.millis()).thenReturn(TIME_TO_LIVE - 1);
+    List<MinimalFacilityDto> result = referenceDataService.findAllFacilities()
+        .collect(Collectors.toList());
+
+    assertThat(result.size(), is(1));
+    verify(restTemplate).exchange(any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class),
+        any(ParameterizedTypeReference.class));
+  }
+
+  @Test
+  public void shouldRevalidateCachedOrderablesWithEtag() {
+    final OrderableDto first = newOrderable("first");
+    final OrderableDto second = newOrderable("second");
+    HttpHeaders headers = new HttpHeaders();
+    headers.setETag(ETAG);
+    when(restTemplate.exchange(eq(getPageUri(ORDERABLES_RESOUCE_PATH, 0)), eq(HttpMethod.GET),
+        entityCaptor.capture(), any(ParameterizedTypeReference.class)
+    )).thenReturn(new ResponseEntity<>(createPageDto(2, Collections.singletonList(first)),
+        headers, HttpStatus.OK), new ResponseEntity<>(HttpStatus.NOT_MODIFIED));
+    mockPage(ORDERABLES_RESOUCE_PATH, 1, createPageDto(2, Collections.singletonList(second)));
+    when(authService.obtainAccessToken()).thenReturn(TOKEN);
+
+    referenceDataService.findAllOrderables().collect(Collectors.toList());
+    when(clock.millis()).thenReturn(TIME_TO_LIVE);
+    List<OrderableDto> result = referenceDataService.findAllOrderables()
+        .collect(Collectors.toList());
+
+    assertThat(result, contains(first, second));
+    assertThat(entityCaptor.getAllValues().get(1).getHeaders().getIfNoneMatch(),
+        contains(ETAG));
+  }
+
+  @Test
+  public void shouldRevalidateEveryPageOfCachedOrderables() {
+    final OrderableDto first = newOrderable("first");
+    final OrderableDto second = newOrderable("second");
+    final OrderableDto changed = newOrderable("changed");
+    final OrderableDto third = newOrderable("third");
+    HttpHeaders headers = new HttpHeaders();
+    headers.setETag(ETAG);
+    HttpHeaders changedHeaders = new HttpHeaders();
+    changedHeaders.setETag("\"v2\"");
+    when(restTemplate.exchange(eq(getPageUri(ORDERABLES_RESOUCE_PATH, 0)), eq(HttpMethod.GET),
+        any(HttpEntity.class), any(ParameterizedTypeReference.class)
+    )).thenReturn(new ResponseEntity<>(createPageDto(3, Collections.singletonList(first)),
+        headers, HttpStatus.OK), new ResponseEntity<>(HttpStatus.NOT_MODIFIED));
+    when(restTemplate.exchange(eq(getPageUri(ORDERABLES_RESOUCE_PATH, 1)), eq(HttpMethod.GET),
+        entityCaptor.capture(), any(ParameterizedTypeReference.class)
+    )).thenReturn(new ResponseEntity<>(createPageDto(3, Collections.singletonList(second)),
+        headers, HttpStatus.OK), new ResponseEntity<>(
+        createPageDto(3, Collections.singletonList(changed)), changedHeaders, HttpStatus.OK));
+    mockPage(ORDERABLES_RESOUCE_PATH, 2, createPageDto(3, Collections.singletonList(third)));
+    when(authService.obtainAccessToken()).thenReturn(TOKEN);
+
+    referenceDataService.findAllOrderables().collect(Collectors.toList());
+    when(clock.millis()).thenReturn(TIME_TO_LIVE);
+    List<OrderableDto> result = referenceDataService.findAllOrderables()
+        .collect(Collectors.toList());
+
+    assertThat(result, contains(first, changed, third));
+    assertThat(entityCaptor.getAllValues().get(1).getHeaders().getIfNoneMatch(),
+        contains(ETAG));
+  }
+
+  @Test
+  public void shouldRetrieveAddedPagesWhenFirstPageIsNotModified() {
+    final OrderableDto first = newOrderable("first");
+    final OrderableDto second = newOrderable("second");
+    final OrderableDto third = newOrderable("third");
+    HttpHeaders headers = new HttpHeaders();
+    headers.setETag(ETAG);
+    when(restTemplate.exchange(eq(getPageUri(ORDERABLES_RESOUCE_PATH, 0)), eq(HttpMethod.GET),
+        any(HttpEntity.class), any(ParameterizedTypeReference.class)
+    )).thenReturn(new ResponseEntity<>(createPageDto(2, Collections.singletonList(first)),
+        headers, HttpStatus.OK), new ResponseEntity<>(HttpStatus.NOT_MODIFIED));
+    when(restTemplate.exchange(eq(getPageUri(ORDERABLES_RESOUCE_PATH, 1)), eq(HttpMethod.GET),
+        entityCaptor.capture(), any(ParameterizedTypeReference.class)
+    )).thenReturn(new ResponseEntity<>(createPageDto(2, Collections.singletonList(second)),
+        headers, HttpStatus.OK), new ResponseEntity<>(
+        createPageDto(3, Collections.singletonList(second)), headers, HttpStatus.OK));
+    mockPage(ORDERABLES_RESOUCE_PATH, 2, createPageDto(3, Collections.singletonList(third)));
+    when(authService.obtainAccessToken()).thenReturn(TOKEN);
+
+    referenceDataService.findAllOrderables().collect(Collectors.toList());
+    when(clock.millis()).thenReturn(TIME_TO_LIVE);
+    List<OrderableDto> result = referenceDataService.findAllOrderables()
+        .collect(Collectors.toList());
+
+    assertThat(result, contains(first, second, third));
+    assertThat(entityCaptor.getAllValues().get(1).getHeaders().getIfNoneMatch().isEmpty(),
+        is(true));
+  }
+
+  @Test
+  public void shouldDropRemovedPagesWhenFirstPageIsNotModified() {
+    final OrderableDto first = newOrderable("first");
+    final OrderableDto second = newOrderable("second");
+    HttpHeaders headers = new HttpHeaders();
+    headers.setETag(ETAG);
+    when(restTemplate.exchange(eq(getPageUri(ORDERABLES_RESOUCE_PATH, 0)), eq(HttpMethod.GET),
+        any(HttpEntity.class), any(ParameterizedTypeReference.class)
+    )).thenReturn(new ResponseEntity<>(createPageDto(3, Collections.singletonList(first)),
+        headers, HttpStatus.OK), new ResponseEntity<>(HttpStatus.NOT_MODIFIED));
+    mockPage(ORDERABLES_RESOUCE_PATH, 1, createPageDto(3, Collections.singletonList(second)));
+    when(restTemplate.exchange(eq(getPageUri(ORDERABLES_RESOUCE_PATH, 2)), eq(HttpMethod.GET),
+        any(HttpEntity.class), any(ParameterizedTypeReference.class)
+    )).thenReturn(new ResponseEntity<>(createPageDto(3,
+        Collections.singletonList(newOrderable("third"))), headers, HttpStatus.OK),
+        new ResponseEntity<>(createPageDto(2, Collections.emptyList()), HttpStatus.OK));
+    when(authService.obtainAccessToken()).thenReturn(TOKEN);
+
+    referenceDataService.findAllOrderables().collect(Collectors.toList());
+    when(clock.millis()).thenReturn(TIME_TO_LIVE);
+    List<OrderableDto> result = referenceDataService.findAllOrderables()
+        .collect(Collectors.toList());
+
+    assertThat(result, contains(first, second));
+  }
+
+  @Test
+  public void shouldRetrieveFacilitiesAgainAfterCacheEviction() {
+    mockPage(FACILITIES_RESOUCE_PATH, 0,
+        createPageDto(1, Collections.singletonList(new MinimalFacilityDto())));
     when(authService.obtainAccessToken()).thenReturn(TOKEN);
-    PageDto<OrderableDto> result = referenceDataService.findAllOrderables();
 
-    assertThat(result, is(equalTo(orderableDtos)));
+    referenceDataService.findAllFacilities().collect(Collectors.toList());
+    referenceDataService.evictCache();
+    referenceDataService.findAllFacilities().collect(Collectors.toList());
+
+    verify(restTemplate, times(2)).exchange(any(URI.class), eq(HttpMethod.GET),
+        any(HttpEntity.class), any(ParameterizedTypeReference.class));
   }
 
   @Test(expected = RestOperationException.class)
@@ -113,8 +271,56 @@ public class ReferenceDataServiceTest {
     referenceDataService.findAllOrderables();
   }
 
-  private <T> PageDto<T> createPageDto(List<T> content) {
-    return new PageDto<T>(false, false, 1, 1L, 1, 1, 1, Sort.by("sort-order"), content);
+  @Test(expected = RestOperationException.class)
+  public void shouldThrowExceptionWhenRemainingPageCannotBeRetrieved() {
+    mockPage(ORDERABLES_RESOUCE_PATH, 0,
+        createPageDto(2, Collections.singletonList(newOrderable("first"))));
+    when(restTemplate.exchange(eq(getPageUri(ORDERABLES_RESOUCE_PATH, 1)), eq(HttpMethod.GET),
+        any(HttpEntity.class), any(ParameterizedTypeReference.class)
+    )).thenThrow(HttpClientErrorException.class);
+
+    referenceDataService.findAllOrderables().collect(Collectors.toList());
+  }
+
+  @Test
+  public void shouldRetryWithNewTokenWhenTokenIsRejected() {
+    OrderableDto orderable = newOrderable("orderable");
+    ResponseEntity<PageDto<OrderableDto>> response = new ResponseEntity<>(
+        createPageDto(1, Collections.singletonList(orderable)), HttpStatus.OK);
+
+    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class),
+            any(ParameterizedTypeReference.class)
+    )).thenThrow(HttpClientErrorException.create(HttpStatus.UNAUTHORIZED, "Unauthorized",
+            null, null, null)).thenReturn(response);
+    when(authService.obtainAccessToken()).thenReturn(TOKEN, "n3w-70k3n");
+
+    List<OrderableDto> result = referenceDataService.findAllOrderables()
+        .collect(Collectors.toList());
+
+    assertThat(result.size(), is(1));
+    verify(authService).invalidateAccessToken(TOKEN);
+  }
+
+  private <T> void mockPage(String resourcePath, int page, PageDto<T> content) {
+    when(restTemplate.exchange(eq(getPageUri(resourcePath, page)), eq(HttpMethod.GET),
+        any(HttpEntity.class), any(ParameterizedTypeReference.class)
+    )).thenReturn(new ResponseEntity<>(content, HttpStatus.OK));
+  }
+
+  private URI getPageUri(String resourcePath, int page) {
+    return RequestHelper.createUri(SERVICE_URL + API_URL + resourcePath,
+        RequestParameters.init().set("page", page).set("size", PAGE_SIZE));
+  }
+
+  private OrderableDto newOrderable(String productCode) {
+    OrderableDto orderable = new OrderableDto();
+    orderable.setProductCode(productCode);
+    return orderable;
+  }
+
+  private <T> PageDto<T> createPageDto(int totalPages, List<T> content) {
+    return new PageDto<T>(false, false, totalPages, totalPages, PAGE_SIZE, 0, content.size(),
+        Sort.by("sort-order"), content);
   }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,114 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.execution;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlmis.integration.dhis2.ServerDataBuilder;
+import org.openlmis.integration.dhis2.domain.server.Server;
+import org.openlmis.integration.dhis2.dto.dhis.DataValue;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class DataValueChunkerTest {
+
+  private DataValueChunker dataValueChunker;
+  private Server server;
+
+  @Before
+  public void setUp() {
+    dataValueChunker = new DataValueChunker();
+    ReflectionTestUtils.setField(dataValueChunker, "defaultMaxValues", 1000);
+    ReflectionTestUtils.setField(dataValueChunker, "defaultMaxBytes", 1048576);
+
+    server = new ServerDataBuilder().build();
+    server.setMaxValuesPerRequest(null);
+    server.setMaxBytesPerRequest(null);
+  }
+
+  @Test
+  public void shouldSplitByValueCount() {
+    server.setMaxValuesPerRequest(2);
+
+    List<List<DataValue>> chunks = dataValueChunker.split(dataValues(5), server);
+
+    assertThat(chunks.size(), is(3));
+    assertThat(chunks.get(0).size(), is(2));
+    assertThat(chunks.get(2).size(), is(1));
+  }
+
+  @Test
+  public void shouldSplitByByteSize() {
+    int valueBytes = sizeOf(dataValues(1).get(0)) + 1;
+    server.setMaxBytesPerRequest(valueBytes * 3);
+
+    List<List<DataValue>> chunks = dataValueChunker.split(dataValues(7), server);
+
+    assertThat(chunks.size(), is(3));
+    assertThat(chunks.get(0).size(), is(3));
+  }
+
+  @Test
+  public void shouldUseDefaultLimitsIfServerHasNone() {
+    assertThat(dataValueChunker.split(dataValues(5), server).size(), is(1));
+  }
+
+  @Test
+  public void shouldEstimateSerializedSizeOfValue() {
+    DataValue dataValue = new DataValue("element", "FAC01", new BigDecimal("12.50"));
+
+    assertThat(DataValueChunker.sizeOf(dataValue), is(sizeOf(dataValue)));
+  }
+
+  @Test
+  public void shouldNotUnderestimateSizeOfEscapedAndNonAsciiText() {
+    String dataElement = "\"Dose\" " + (char) 0xE9 + "l" + (char) 0xE9 + "ment "
+        + (char) 0x20AC + "\n";
+    DataValue dataValue = new DataValue(dataElement, null, BigDecimal.ONE);
+
+    assertThat(DataValueChunker.sizeOf(dataValue) >= sizeOf(dataValue), is(true));
+  }
+
+  @Test
+  public void shouldPutValueLargerThanLimitIntoOwnChunk() {
+    server.setMaxBytesPerRequest(1);
+
+    assertThat(dataValueChunker.split(dataValues(2), server).size(), is(2));
+  }
+
+  private List<DataValue> dataValues(int count) {
+    List<DataValue> dataValues = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      dataValues.add(new DataValue("element", "FAC0" + i, BigDecimal.ONE));
+    }
+    return dataValues;
+  }
+
+  private int sizeOf(DataValue dataValue) {
+    try {
+      return new ObjectMapper().writeValueAsBytes(dataValue).length;
+    } catch (Exception ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.execution;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import org.junit.Test;
+
+public class DatasetScheduleTest {
+
+  private static final ZoneId ZONE_ID = ZoneId.of("UTC");
+  private static final ZonedDateTime DATE = ZonedDateTime.of(2023, 1, 17, 10, 0, 0, 0, ZONE_ID);
+
+  @Test
+  public void shouldSupportUnixCronExpression() {
+    DatasetSchedule schedule = DatasetSchedule.of("0 5 * * *", ZONE_ID);
+
+    assertThat(schedule.next(DATE), is(DATE.plusDays(1).withHour(5)));
+  }
+
+  @Test
+  public void shouldSupportSpringCronExpression() {
+    DatasetSchedule schedule = DatasetSchedule.of("0 30 * * * *", ZONE_ID);
+
+    assertThat(schedule.next(DATE), is(DATE.withMinute(30)));
+  }
+
+  @Test
+  public void shouldUseDefaultScheduleForPeriodName() {
+    DatasetSchedule schedule = DatasetSchedule.of("Weekly Monday", ZONE_ID);
+
+    assertThat(schedule.getExpression(), is(DatasetSchedule.PERIOD_SCHEDULE));
+    assertThat(schedule.next(DATE), is(DATE.withHour(23).withMinute(55)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectInvalidExpression() {
+    DatasetSchedule.of("every day", ZONE_ID);
+  }
+
+}
@@ -0,0 +1,356 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.execution;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.openlmis.integration.dhis2.DataElementDataBuilder;
+import org.openlmis.integration.dhis2.DatasetDataBuilder;
+import org.openlmis.integration.dhis2.ServerDataBuilder;
+import org.openlmis.integration.dhis2.domain.dataset.Dataset;
+import org.openlmis.integration.dhis2.domain.element.DataElement;
+import org.openlmis.integration.dhis2.domain.enumerator.IndicatorEnum;
+import org.openlmis.integration.dhis2.domain.server.Server;
+import org.openlmis.integration.dhis2.dto.dhis.DataValueSet;
+import org.openlmis.integration.dhis2.dto.dhis.DhisDataset;
+import org.openlmis.integration.dhis2.dto.dhis.DhisImportConflict;
+import org.openlmis.integration.dhis2.dto.dhis.DhisImportCount;
+import org.openlmis.integration.dhis2.dto.dhis.DhisResponseBody;
+import org.openlmis.integration.dhis2.dto.dhis.DhisResponseBodyDetails;
+import org.openlmis.integration.dhis2.dto.dhis.OrganisationUnit;
+import org.openlmis.integration.dhis2.dto.referencedata.MinimalFacilityDto;
+import org.openlmis.integration.dhis2.exception.RestOperationException;
+import org.openlmis.integration.dhis2.i18n.MessageKeys;
+import org.openlmis.integration.dhis2.repository.execution.PushedDataValueRepository;
+import org.openlmis.integration.dhis2.repository.indicator.ReferenceKeyRepository;
+import org.openlmis.integration.dhis2.service.DhisDataService;
+import org.openlmis.integration.dhis2.service.PeriodGeneratorService;
+import org.openlmis.integration.dhis2.service.ReferenceDataService;
+import org.openlmis.integration.dhis2.service.indicator.IndicatorDictionary;
+import org.openlmis.integration.dhis2.service.indicator.IndicatorKey;
+import org.openlmis.integration.dhis2.service.indicator.IndicatorService;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.data.util.Pair;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DatasetSyncServiceTest {
+
+  private static final Clock clock =
+      Clock.fixed(Instant.parse("2023-01-17T00:00:00.00Z"), ZoneId.of("UTC"));
+
+  private static final String ORG_UNIT = "FAC01";
+  private static final String PERIOD = "202301";
+
+  @Mock
+  private DhisDataService dhisDataService;
+
+  @Mock
+  private ReferenceDataService referenceDataService;
+
+  @Mock
+  private IndicatorService indicatorService;
+
+  @Mock
+  private PushedDataValueRepository pushedDataValueRepository;
+
+  @Mock
+  private ImportTaskPoller importTaskPoller;
+
+  @InjectMocks
+  private DatasetSyncService datasetSyncService;
+
+  private Server server;
+  private Dataset dataset;
+  private ExecutionUnit unit;
+  private Map<IndicatorKey, BigDecimal> calculatedValues;
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(datasetSyncService, "periodGeneratorService",
+        new PeriodGeneratorService(clock));
+    ReflectionTestUtils.setField(datasetSyncService, "transactionManager",
+        mock(PlatformTransactionManager.class));
+    ReflectionTestUtils.setField(datasetSyncService, "backfillTaskExecutor",
+        new SyncTaskExecutor());
+
+    DataValueChunker dataValueChunker = new DataValueChunker();
+    ReflectionTestUtils.setField(datasetSyncService, "dataValueChunker", dataValueChunker);
+
+    ImportedValueRecorder importedValueRecorder = new ImportedValueRecorder();
+    ReflectionTestUtils.setField(importedValueRecorder, "pushedDataValueRepository",
+        pushedDataValueRepository);
+    ReflectionTestUtils.setField(importedValueRecorder, "clock", clock);
+    ReflectionTestUtils.setField(datasetSyncService, "importedValueRecorder",
+        importedValueRecorder);
+
+    server = new ServerDataBuilder().build();
+    dataset = new DatasetDataBuilder().withServer(server).build();
+    DataElement dataElement = new DataElementDataBuilder().withDataset(dataset).build();
+    unit = new ExecutionUnit(server, dataset, Collections.singletonList(dataElement),
+        Collections.singletonMap(dataElement, IndicatorEnum.OPENING_BALANCE),
+        new IndicatorDictionary(mock(ReferenceKeyRepository.class)));
+
+    OrganisationUnit organisationUnit = new OrganisationUnit();
+    organisationUnit.setCode(ORG_UNIT);
+    DhisDataset dhisDataset = new DhisDataset();
+    dhisDataset.setPeriodType("Monthly");
+    dhisDataset.setOrganisationUnits(Collections.singletonList(organisationUnit));
+    when(dhisDataService.getDhisDataSetById(dataset.getDhisDatasetId(), server.getUrl(),
+        server.getUsername(), server.getPassword())).thenReturn(dhisDataset);
+
+    MinimalFacilityDto facility = new MinimalFacilityDto();
+    facility.setCode(ORG_UNIT);
+    when(referenceDataService.findAllFacilities()).thenAnswer(invocation -> Stream.of(facility));
+
+    calculatedValues = new HashMap<>();
+    calculatedValues.put(
+        new IndicatorKey(ORG_UNIT, dataElement.getOrderable(), IndicatorEnum.OPENING_BALANCE),
+        BigDecimal.TEN);
+    when(indicatorService.calculateValues(any(), any())).thenReturn(calculatedValues);
+  }
+
+  @Test
+  public void shouldSendAndRecordChangedValues() {
+    when(pushedDataValueRepository.findValues(server.getId(), dataset.getId(), PERIOD))
+        .thenReturn(Collections.emptyMap());
+    when(dhisDataService.createDataValueSetAsync(any(), anyString(), anyString(), anyString(),
+        anyBoolean(), anyBoolean(), any()))
+        .thenAnswer(completeImport(new DhisResponseBody()));
+
+    datasetSyncService.synchronize(unit, 0L);
+
+    ArgumentCaptor<DataValueSet> captor = ArgumentCaptor.forClass(DataValueSet.class);
+    verify(dhisDataService).createDataValueSetAsync(captor.capture(), eq(server.getUrl()),
+        eq(server.getUsername()), eq(server.getPassword()), eq(false),
+        eq(false), any());
+    assertThat(captor.getValue().getPeriod(), is(PERIOD));
+    assertThat(captor.getValue().getDataValues().size(), is(1));
+    assertThat(captor.getValue().getDataValues().get(0).getOrgUnit(), is(ORG_UNIT));
+    assertThat(captor.getValue().getDataValues().get(0).getDataElement(),
+        is(unit.getDataElements().get(0).getElement()));
+    verify(pushedDataValueRepository).saveValues(eq(server.getId()), eq(dataset.getId()),
+        eq(PERIOD), anyMap(), any());
+  }
+
+  @Test
+  public void shouldNotSendUnchangedValues() {
+    Map<Pair<String, String>, BigDecimal> pushedValues = Collections.singletonMap(
+        Pair.of(ORG_UNIT, unit.getDataElements().get(0).getElement()),
+        new BigDecimal("10.00"));
+    when(pushedDataValueRepository.findValues(server.getId(), dataset.getId(), PERIOD))
+        .thenReturn(pushedValues);
+
+    datasetSyncService.synchronize(unit, 0L);
+
+    verify(dhisDataService, never())
+        .createDataValueSetAsync(any(), anyString(), anyString(), anyString(),
+        anyBoolean(), anyBoolean(), any());
+  }
+
+  @Test
+  public void shouldNotSendValuesOfDataElementsOfSameOrderableAgain() {
+    DataElement openingBalance = unit.getDataElements().get(0);
+    DataElement closingBalance = new DataElementDataBuilder()
+        .withName("closing-balance")
+        .withElement("closing-balance-element")
+        .withDataset(dataset)
+        .build();
+    Map<DataElement, IndicatorEnum> indicators = new IdentityHashMap<>();
+    indicators.put(openingBalance, IndicatorEnum.OPENING_BALANCE);
+    indicators.put(closingBalance, IndicatorEnum.CLOSING_BALANCE);
+    unit = new ExecutionUnit(server, dataset, Arrays.asList(openingBalance, closingBalance),
+        indicators, unit.getDictionary());
+
+    calculatedValues.put(new IndicatorKey(ORG_UNIT, closingBalance.getOrderable(),
+        IndicatorEnum.CLOSING_BALANCE), BigDecimal.ONE);
+
+    Map<Pair<String, String>, BigDecimal> pushedValues = new HashMap<>();
+    when(pushedDataValueRepository.findValues(server.getId(), dataset.getId(), PERIOD))
+        .thenAnswer(invocation -> new HashMap<>(pushedValues));
+    doAnswer(invocation -> {
+      pushedValues.putAll(invocation.getArgument(3));
+      return null;
+    }).when(pushedDataValueRepository).saveValues(any(), any(), any(), anyMap(), any());
+    when(dhisDataService.createDataValueSetAsync(any(), anyString(), anyString(), anyString(),
+        anyBoolean(), anyBoolean(), any()))
+        .thenAnswer(completeImport(new DhisResponseBody()));
+
+    datasetSyncService.synchronize(unit, 0L);
+    datasetSyncService.synchronize(unit, 0L);
+
+    ArgumentCaptor<DataValueSet> captor = ArgumentCaptor.forClass(DataValueSet.class);
+    verify(dhisDataService).createDataValueSetAsync(captor.capture(), anyString(), anyString(),
+        anyString(), anyBoolean(), anyBoolean(), any());
+    assertThat(captor.getValue().getDataValues().size(), is(2));
+    assertThat(pushedValues.size(), is(2));
+  }
+
+  @Test
+  public void shouldFailWithoutRecordingValuesWhenImportFails() {
+    DhisResponseBody response = new DhisResponseBody();
+    response.setStatus("ERROR");
+
+    synchronizeRejected(response, MessageKeys.ERROR_EXTERNAL_API_IMPORT_FAILED);
+  }
+
+  @Test
+  public void shouldFailWithoutRecordingValuesWhenImportHasConflicts() {
+    DhisImportConflict conflict = new DhisImportConflict();
+    conflict.setObject(ORG_UNIT);
+    conflict.setValue("Period is locked");
+    DhisResponseBodyDetails details = new DhisResponseBodyDetails();
+    details.setStatus("WARNING");
+    details.setConflicts(Collections.singletonList(conflict));
+    DhisResponseBody response = new DhisResponseBody();
+    response.setStatus("WARNING");
+    response.setResponse(details);
+
+    synchronizeRejected(response, MessageKeys.ERROR_EXTERNAL_API_IMPORT_REJECTED);
+  }
+
+  @Test
+  public void shouldFailWithoutRecordingRejectedValues() {
+    DhisImportCount importCount = new DhisImportCount();
+    importCount.setIgnored(1);
+    DhisResponseBodyDetails details = new DhisResponseBodyDetails();
+    details.setImportCount(importCount);
+    details.setRejectedIndexes(Collections.singletonList(0));
+    DhisResponseBody response = new DhisResponseBody();
+    response.setStatus("WARNING");
+    response.setResponse(details);
+
+    synchronizeRejected(response, MessageKeys.ERROR_EXTERNAL_API_IMPORT_REJECTED);
+  }
+
+  @Test
+  public void shouldBackfillAllPeriodsBetweenDates() {
+    when(dhisDataService.createDataValueSetAsync(any(), anyString(), anyString(), anyString(),
+        anyBoolean(), anyBoolean(), any()))
+        .thenAnswer(completeImport(new DhisResponseBody()));
+
+    datasetSyncService.backfill(unit, LocalDate.of(2022, 11, 1), LocalDate.of(2023, 1, 31));
+
+    ArgumentCaptor<DataValueSet> captor = ArgumentCaptor.forClass(DataValueSet.class);
+    verify(dhisDataService, times(3)).createDataValueSetAsync(captor.capture(), anyString(),
+        anyString(), anyString(), anyBoolean(), anyBoolean(), any());
+    assertThat(captor.getAllValues().get(0).getPeriod(), is("202211"));
+    assertThat(captor.getAllValues().get(2).getPeriod(), is(PERIOD));
+    verify(dhisDataService).getDhisDataSetById(dataset.getDhisDatasetId(), server.getUrl(),
+        server.getUsername(), server.getPassword());
+  }
+
+  @Test
+  public void shouldRecordValuesOnceAsyncImportIsFinished() {
+    server.setAsyncImport(true);
+    when(pushedDataValueRepository.findValues(server.getId(), dataset.getId(), PERIOD))
+        .thenReturn(Collections.emptyMap());
+    DhisResponseBody response = new DhisResponseBody();
+    when(dhisDataService.createDataValueSetAsync(any(), anyString(), anyString(), anyString(),
+        anyBoolean(), eq(true), any()))
+        .thenAnswer(completeImport(response));
+    DhisResponseBody summary = new DhisResponseBody();
+    summary.setStatus("SUCCESS");
+    when(importTaskPoller.track(response, server))
+        .thenReturn(CompletableFuture.completedFuture(summary));
+
+    datasetSyncService.synchronize(unit, 0L);
+
+    verify(pushedDataValueRepository).saveValues(eq(server.getId()), eq(dataset.getId()),
+        eq(PERIOD), anyMap(), any());
+  }
+
+  @Test(expected = RestOperationException.class)
+  public void shouldFailWhenAsyncImportFails() {
+    server.setAsyncImport(true);
+    when(pushedDataValueRepository.findValues(server.getId(), dataset.getId(), PERIOD))
+        .thenReturn(Collections.emptyMap());
+    DhisResponseBody response = new DhisResponseBody();
+    when(dhisDataService.createDataValueSetAsync(any(), anyString(), anyString(), anyString(),
+        anyBoolean(), eq(true), any()))
+        .thenAnswer(completeImport(response));
+    CompletableFuture<DhisResponseBody> result = new CompletableFuture<>();
+    result.completeExceptionally(
+        new RestOperationException(MessageKeys.ERROR_EXTERNAL_API_IMPORT_TIMEOUT));
+    when(importTaskPoller.track(response, server)).thenReturn(result);
+
+    datasetSyncService.synchronize(unit, 0L);
+  }
+
+  private void synchronizeRejected(DhisResponseBody response, String messageKey) {
+    when(pushedDataValueRepository.findValues(server.getId(), dataset.getId(), PERIOD))
+        .thenReturn(Collections.emptyMap());
+    when(dhisDataService.createDataValueSetAsync(any(), anyString(), anyString(), anyString(),
+        anyBoolean(), anyBoolean(), any()))
+        .thenAnswer(completeImport(response));
+
+    try {
+      datasetSyncService.synchronize(unit, 0L);
+      fail("Expected the import to be rejected");
+    } catch (RestOperationException ex) {
+      assertThat(ex.getMessage(), startsWith(messageKey));
+    }
+
+    verify(pushedDataValueRepository, never())
+        .saveValues(any(), any(), any(), any(), any());
+  }
+
+  private Answer<CompletableFuture<DhisResponseBody>> completeImport(
+      DhisResponseBody response) {
+    return invocation -> invocation
+        .<Function<DhisResponseBody, CompletionStage<DhisResponseBody>>>getArgument(6)
+        .apply(response)
+        .toCompletableFuture();
+  }
+
+}
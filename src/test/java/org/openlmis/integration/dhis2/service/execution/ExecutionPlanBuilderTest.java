@@ -0,0 +1,185 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.execution;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Optional;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openlmis.integration.dhis2.DataElementDataBuilder;
+import org.openlmis.integration.dhis2.DatasetDataBuilder;
+import org.openlmis.integration.dhis2.ServerDataBuilder;
+import org.openlmis.integration.dhis2.domain.dataset.Dataset;
+import org.openlmis.integration.dhis2.domain.element.DataElement;
+import org.openlmis.integration.dhis2.domain.enumerator.IndicatorEnum;
+import org.openlmis.integration.dhis2.domain.server.Server;
+import org.openlmis.integration.dhis2.repository.dataset.DatasetRepository;
+import org.openlmis.integration.dhis2.repository.indicator.ReferenceKeyRepository;
+import org.openlmis.integration.dhis2.service.indicator.IndicatorRegistry;
+import org.openlmis.integration.dhis2.service.indicator.IndicatorService;
+import org.openlmis.integration.dhis2.service.indicator.IndicatorSupplier;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ExecutionPlanBuilderTest {
+
+  @Mock
+  private DatasetRepository datasetRepository;
+
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
+  @Mock
+  private IndicatorRegistry indicatorRegistry;
+
+  @Mock
+  private ReferenceKeyRepository referenceKeyRepository;
+
+  @Captor
+  private ArgumentCaptor<Collection<String>> captor;
+
+  @InjectMocks
+  private ExecutionPlanBuilder executionPlanBuilder;
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(executionPlanBuilder, "indicatorService",
+        new IndicatorService());
+  }
+
+  @Test
+  public void shouldScopeUnitsToOwnServerAndDataElements() {
+    Server server = new ServerDataBuilder().build();
+    Dataset dataset = new DatasetDataBuilder().withServer(server).build();
+    DataElement dataElement = new DataElementDataBuilder().withDataset(dataset)
+        .withIndicator("Opening balance").build();
+    dataset.setDataElementList(Collections.singletonList(dataElement));
+
+    Server otherServer = new ServerDataBuilder().build();
+    Dataset emptyDataset = new DatasetDataBuilder().withServer(otherServer).build();
+
+    when(datasetRepository.findAllWithServerAndDataElements())
+        .thenReturn(Arrays.asList(dataset, emptyDataset));
+    when(indicatorRegistry.find(IndicatorEnum.OPENING_BALANCE))
+        .thenReturn(Optional.of(mock(IndicatorSupplier.class)));
+
+    ExecutionPlan plan = executionPlanBuilder.build();
+
+    assertThat(plan.size(), is(1));
+    ExecutionUnit unit = plan.getUnits().get(0);
+    assertThat(unit.getServer(), is(server));
+    assertThat(unit.getDataset(), is(dataset));
+    assertThat(unit.getDataElements(), contains(dataElement));
+    assertThat(unit.getIndicator(dataElement), is(IndicatorEnum.OPENING_BALANCE));
+  }
+
+  @Test
+  public void shouldSkipDataElementsWithUnknownIndicator() {
+    Dataset dataset = new DatasetDataBuilder().build();
+    DataElement dataElement = new DataElementDataBuilder().withDataset(dataset)
+        .withIndicator("Closing balance").build();
+    DataElement unknownElement = new DataElementDataBuilder().withDataset(dataset)
+        .withIndicator("unknown").build();
+    dataset.setDataElementList(Arrays.asList(dataElement, unknownElement));
+
+    Dataset unknownDataset = new DatasetDataBuilder().build();
+    unknownDataset.setDataElementList(Collections.singletonList(
+        new DataElementDataBuilder().withDataset(unknownDataset).withIndicator("unknown")
+            .build()));
+
+    when(datasetRepository.findAllWithServerAndDataElements())
+        .thenReturn(Arrays.asList(dataset, unknownDataset));
+    when(indicatorRegistry.find(IndicatorEnum.CLOSING_BALANCE))
+        .thenReturn(Optional.of(mock(IndicatorSupplier.class)));
+
+    ExecutionPlan plan = executionPlanBuilder.build();
+
+    assertThat(plan.size(), is(1));
+    assertThat(plan.getUnits().get(0).getDataElements(), contains(dataElement));
+  }
+
+  @Test
+  public void shouldSkipDataElementsWithoutSupplier() {
+    Dataset dataset = new DatasetDataBuilder().build();
+    DataElement dataElement = new DataElementDataBuilder().withDataset(dataset)
+        .withIndicator("Closing balance").build();
+    DataElement cceElement = new DataElementDataBuilder().withDataset(dataset)
+        .withIndicator("CCE allocated").build();
+    dataset.setDataElementList(Arrays.asList(dataElement, cceElement));
+
+    when(datasetRepository.findAllWithServerAndDataElements())
+        .thenReturn(Collections.singletonList(dataset));
+    when(indicatorRegistry.find(IndicatorEnum.CLOSING_BALANCE))
+        .thenReturn(Optional.of(mock(IndicatorSupplier.class)));
+    when(indicatorRegistry.find(IndicatorEnum.CCE_ALLOCATED)).thenReturn(Optional.empty());
+
+    ExecutionPlan plan = executionPlanBuilder.build();
+
+    assertThat(plan.size(), is(1));
+    assertThat(plan.getUnits().get(0).getDataElements(), contains(dataElement));
+  }
+
+  @Test
+  public void shouldResolveOrderablesOfAllUnitsWithSingleQuery() {
+    Dataset dataset = new DatasetDataBuilder().build();
+    dataset.setDataElementList(Collections.singletonList(new DataElementDataBuilder()
+        .withDataset(dataset).withIndicator("Closing balance").withOrderable("BCG").build()));
+    Dataset otherDataset = new DatasetDataBuilder().build();
+    otherDataset.setDataElementList(Collections.singletonList(new DataElementDataBuilder()
+        .withDataset(otherDataset).withIndicator("Closing balance").withOrderable("Polio")
+        .build()));
+
+    when(datasetRepository.findAllWithServerAndDataElements())
+        .thenReturn(Arrays.asList(dataset, otherDataset));
+    when(indicatorRegistry.find(IndicatorEnum.CLOSING_BALANCE))
+        .thenReturn(Optional.of(mock(IndicatorSupplier.class)));
+
+    executionPlanBuilder.build();
+
+    verify(referenceKeyRepository).findOrderableIds(captor.capture());
+    assertThat(captor.getValue(), containsInAnyOrder("BCG", "Polio"));
+  }
+
+  @Test
+  public void shouldLoadDatasetsInReadOnlyTransaction() {
+    when(datasetRepository.findAllWithServerAndDataElements())
+        .thenReturn(Collections.emptyList());
+
+    executionPlanBuilder.build();
+
+    verify(transactionManager).getTransaction(argThat(TransactionDefinition::isReadOnly));
+  }
+
+}
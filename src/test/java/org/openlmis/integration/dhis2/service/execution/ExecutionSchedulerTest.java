@@ -0,0 +1,154 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.execution;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openlmis.integration.dhis2.DatasetDataBuilder;
+import org.openlmis.integration.dhis2.domain.dataset.Dataset;
+import org.openlmis.integration.dhis2.domain.execution.ExecutionJob;
+import org.openlmis.integration.dhis2.repository.dataset.DatasetRepository;
+import org.openlmis.integration.dhis2.repository.execution.ExecutionLeaseRepository;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ExecutionSchedulerTest {
+
+  private static final ZoneId ZONE_ID = ZoneId.of("UTC");
+  private static final ZonedDateTime FIRE_DATE =
+      ZonedDateTime.of(2023, 1, 17, 5, 0, 0, 0, ZONE_ID);
+
+  @Mock
+  private DatasetRepository datasetRepository;
+
+  @Mock
+  private ExecutionLeaseRepository executionLeaseRepository;
+
+  @Mock
+  private ExecutionService executionService;
+
+  @InjectMocks
+  private ExecutionScheduler executionScheduler;
+
+  private Dataset dataset;
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(executionScheduler, "transactionManager",
+        mock(PlatformTransactionManager.class));
+    ReflectionTestUtils.setField(executionScheduler, "leaseRetentionDays", 30L);
+
+    dataset = new DatasetDataBuilder().build();
+    when(datasetRepository.findAll()).thenReturn(Collections.singletonList(dataset));
+  }
+
+  @Test
+  public void shouldSubmitDatasetWhenScheduleFiredAndLeaseWasAcquired() {
+    when(executionLeaseRepository.tryAcquire(eq(dataset.getId()), eq(FIRE_DATE), anyString(),
+        any())).thenReturn(true);
+    when(executionService.submit(Collections.singleton(dataset.getId())))
+        .thenReturn(new ExecutionJob(dataset.getId(), FIRE_DATE));
+
+    checkAround(FIRE_DATE);
+
+    verify(executionService).submit(Collections.singleton(dataset.getId()));
+  }
+
+  @Test
+  public void shouldNotSubmitDatasetWhenLeaseIsTakenByOtherInstance() {
+    when(executionLeaseRepository.tryAcquire(eq(dataset.getId()), eq(FIRE_DATE), anyString(),
+        any())).thenReturn(false);
+
+    checkAround(FIRE_DATE);
+
+    verify(executionService, never()).submit(anyCollection());
+  }
+
+  @Test
+  public void shouldNotSubmitDatasetBeforeScheduleFires() {
+    checkAround(FIRE_DATE.minusMinutes(10));
+
+    verify(executionLeaseRepository, never()).tryAcquire(any(), any(), any(), any());
+    verify(executionService, never()).submit(anyCollection());
+  }
+
+  @Test
+  public void shouldReleaseLeaseAndRetryWhenSubmitIsRejected() {
+    when(executionLeaseRepository.tryAcquire(eq(dataset.getId()), eq(FIRE_DATE), anyString(),
+        any())).thenReturn(true);
+    ExecutionJob rejected = new ExecutionJob(dataset.getId(), FIRE_DATE);
+    rejected.fail(FIRE_DATE, "rejected");
+    when(executionService.submit(Collections.singleton(dataset.getId())))
+        .thenReturn(rejected)
+        .thenReturn(new ExecutionJob(dataset.getId(), FIRE_DATE));
+
+    checkAround(FIRE_DATE);
+    verify(executionLeaseRepository).release(eq(dataset.getId()), eq(FIRE_DATE), anyString());
+
+    setClock(FIRE_DATE.plusMinutes(1));
+    executionScheduler.checkSchedules();
+
+    verify(executionService, times(2)).submit(Collections.singleton(dataset.getId()));
+    verify(executionLeaseRepository, times(1)).release(any(), any(), any());
+  }
+
+  @Test
+  public void shouldReleaseLeaseWhenSubmitFails() {
+    when(executionLeaseRepository.tryAcquire(eq(dataset.getId()), eq(FIRE_DATE), anyString(),
+        any())).thenReturn(true);
+    when(executionService.submit(Collections.singleton(dataset.getId())))
+        .thenThrow(new TaskRejectedException("queue full"));
+
+    checkAround(FIRE_DATE);
+
+    verify(executionLeaseRepository).release(eq(dataset.getId()), eq(FIRE_DATE), anyString());
+  }
+
+  private void checkAround(ZonedDateTime date) {
+    setClock(date.minusMinutes(1));
+    executionScheduler.checkSchedules();
+
+    setClock(date.plusSeconds(30));
+    executionScheduler.checkSchedules();
+  }
+
+  private void setClock(ZonedDateTime date) {
+    ReflectionTestUtils.setField(executionScheduler, "clock",
+        Clock.fixed(Instant.from(date), ZONE_ID));
+  }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.execution;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openlmis.integration.dhis2.DataElementDataBuilder;
+import org.openlmis.integration.dhis2.DatasetDataBuilder;
+import org.openlmis.integration.dhis2.ServerDataBuilder;
+import org.openlmis.integration.dhis2.domain.dataset.Dataset;
+import org.openlmis.integration.dhis2.domain.element.DataElement;
+import org.openlmis.integration.dhis2.domain.enumerator.IndicatorEnum;
+import org.openlmis.integration.dhis2.domain.execution.ExecutionJob;
+import org.openlmis.integration.dhis2.domain.server.Server;
+import org.openlmis.integration.dhis2.exception.RestOperationException;
+import org.openlmis.integration.dhis2.exception.ValidationMessageException;
+import org.openlmis.integration.dhis2.i18n.MessageKeys;
+import org.openlmis.integration.dhis2.repository.execution.ExecutionJobRepository;
+import org.openlmis.integration.dhis2.repository.indicator.ReferenceKeyRepository;
+import org.openlmis.integration.dhis2.service.indicator.IndicatorDictionary;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ExecutionServiceTest {
+
+  private static final Clock clock =
+      Clock.fixed(Instant.parse("2023-01-17T00:00:00.00Z"), ZoneId.of("UTC"));
+
+  @Mock
+  private ExecutionPlanBuilder executionPlanBuilder;
+
+  @Mock
+  private DatasetSyncService datasetSyncService;
+
+  @Mock
+  private ExecutionJobRepository executionJobRepository;
+
+  @InjectMocks
+  private ExecutionService executionService;
+
+  private ExecutionUnit unit;
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(executionService, "taskExecutor", new SyncTaskExecutor());
+    ReflectionTestUtils.setField(executionService, "clock", clock);
+    ReflectionTestUtils.setField(executionService, "maxRetainedJobs", 10);
+    ReflectionTestUtils.setField(executionService, "heartbeatTimeout", 600000L);
+
+    unit = newUnit();
+
+    when(executionPlanBuilder.build()).thenReturn(new ExecutionPlan(Arrays.asList(unit)));
+  }
+
+  @Test
+  public void shouldCompleteJobAfterAllUnitsAreSynchronized() {
+    ExecutionJob job = executionService.submit();
+
+    verify(datasetSyncService).synchronize(unit, 0L);
+    assertThat(job.getStatus(), is(ExecutionJob.Status.COMPLETED));
+    assertThat(job.getTotalUnits(), is(1));
+    assertThat(job.getCompletedUnits(), is(1));
+  }
+
+  @Test
+  public void shouldStoreJobState() {
+    ExecutionJob job = executionService.submit();
+
+    verify(executionJobRepository, atLeastOnce()).save(job);
+    verify(executionJobRepository).deleteFinishedExceptLatest(10);
+  }
+
+  @Test
+  public void shouldSynchronizeRemainingUnitsWhenUnitCannotBeSynchronized() {
+    ExecutionUnit otherUnit = newUnit();
+    when(executionPlanBuilder.build())
+        .thenReturn(new ExecutionPlan(Arrays.asList(unit, otherUnit)));
+    doThrow(new RestOperationException(MessageKeys.ERROR_EXTERNAL_API_CONNECTION_FAILED))
+        .when(datasetSyncService).synchronize(unit, 0L);
+
+    ExecutionJob job = executionService.submit();
+
+    verify(datasetSyncService).synchronize(otherUnit, 0L);
+    assertThat(job.getStatus(), is(ExecutionJob.Status.FAILED));
+    assertThat(job.getCompletedUnits(), is(1));
+    assertThat(job.getFailedUnits(), is(1));
+  }
+
+  @Test
+  public void shouldFindStoredJob() {
+    ExecutionJob job = executionService.submit();
+    when(executionJobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+
+    assertThat(executionService.findJob(job.getId()).get(), is(job));
+  }
+
+  @Test
+  public void shouldNotFindUnknownJob() {
+    assertFalse(executionService.findJob(UUID.randomUUID()).isPresent());
+  }
+
+  @Test
+  public void shouldBackfillAllUnitsBetweenDates() {
+    LocalDate startDate = LocalDate.of(2022, 1, 1);
+    LocalDate endDate = LocalDate.of(2022, 12, 31);
+
+    ExecutionJob job = executionService.submitBackfill(Collections.emptyList(), startDate,
+        endDate);
+
+    verify(datasetSyncService).backfill(unit, startDate, endDate);
+    assertThat(job.getStatus(), is(ExecutionJob.Status.COMPLETED));
+  }
+
+  @Test(expected = ValidationMessageException.class)
+  public void shouldRejectBackfillWithStartDateAfterEndDate() {
+    executionService.submitBackfill(null, LocalDate.of(2022, 2, 1), LocalDate.of(2022, 1, 1));
+  }
+
+  @Test(expected = ValidationMessageException.class)
+  public void shouldRejectBackfillEndingInFuture() {
+    executionService.submitBackfill(null, LocalDate.of(2022, 1, 1), LocalDate.of(2023, 2, 1));
+  }
+
+  @Test
+  public void shouldRecordHeartbeatOfQueuedJobs() {
+    ReflectionTestUtils.setField(executionService, "taskExecutor", (TaskExecutor) task -> {});
+    ExecutionJob job = executionService.submit();
+    ZonedDateTime now = ZonedDateTime.now(clock);
+    when(executionJobRepository.findByFinishDateIsNullAndHeartbeatDateBefore(
+        now.minusMinutes(10))).thenReturn(Collections.singletonList(job));
+
+    executionService.heartbeat();
+
+    verify(executionJobRepository).updateHeartbeat(Collections.singleton(job.getId()), now);
+    assertThat(job.getStatus(), is(ExecutionJob.Status.QUEUED));
+  }
+
+  @Test
+  public void shouldFailUnfinishedJobsWithoutRecentHeartbeat() {
+    ZonedDateTime now = ZonedDateTime.now(clock);
+    ExecutionJob job = new ExecutionJob(UUID.randomUUID(), now.minusHours(1));
+    job.start(now.minusHours(1), 1);
+    when(executionJobRepository.findByFinishDateIsNullAndHeartbeatDateBefore(
+        now.minusMinutes(10))).thenReturn(Collections.singletonList(job));
+
+    executionService.heartbeat();
+
+    verify(executionJobRepository).save(job);
+    verify(executionJobRepository, never()).updateHeartbeat(anyCollection(), any());
+    assertThat(job.getStatus(), is(ExecutionJob.Status.FAILED));
+    assertThat(job.getErrorMessage(), is(ExecutionService.ABANDONED_MESSAGE));
+  }
+
+  private ExecutionUnit newUnit() {
+    Server server = new ServerDataBuilder().build();
+    Dataset dataset = new DatasetDataBuilder().withServer(server).build();
+    DataElement dataElement = new DataElementDataBuilder().withDataset(dataset).build();
+    return new ExecutionUnit(server, dataset, Collections.singletonList(dataElement),
+        Collections.singletonMap(dataElement, IndicatorEnum.OPENING_BALANCE),
+        new IndicatorDictionary(mock(ReferenceKeyRepository.class)));
+  }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.execution;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openlmis.integration.dhis2.ServerDataBuilder;
+import org.openlmis.integration.dhis2.domain.server.Server;
+import org.openlmis.integration.dhis2.dto.dhis.DhisResponseBody;
+import org.openlmis.integration.dhis2.dto.dhis.DhisResponseBodyDetails;
+import org.openlmis.integration.dhis2.exception.RestOperationException;
+import org.openlmis.integration.dhis2.service.DhisDataService;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ImportTaskPollerTest {
+
+  private static final String JOB_TYPE = "DATAVALUE_IMPORT";
+  private static final String TASK_ID = "task-id";
+
+  private static final Clock clock =
+      Clock.fixed(Instant.parse("2023-01-17T00:00:00.00Z"), ZoneId.of("UTC"));
+
+  @Mock
+  private DhisDataService dhisDataService;
+
+  @Mock
+  private TaskScheduler taskScheduler;
+
+  @InjectMocks
+  private ImportTaskPoller importTaskPoller;
+
+  private Server server;
+  private DhisResponseBody response;
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(importTaskPoller, "clock", clock);
+    ReflectionTestUtils.setField(importTaskPoller, "pollInterval", 1000L);
+    ReflectionTestUtils.setField(importTaskPoller, "timeout", 60000L);
+
+    when(taskScheduler.schedule(any(Runnable.class), any(Date.class))).then(invocation -> {
+      ((Runnable) invocation.getArgument(0)).run();
+      return null;
+    });
+
+    server = new ServerDataBuilder().withAsyncImport().build();
+
+    DhisResponseBodyDetails task = new DhisResponseBodyDetails();
+    task.setId(TASK_ID);
+    task.setJobType(JOB_TYPE);
+    response = new DhisResponseBody();
+    response.setResponse(task);
+  }
+
+  @Test
+  public void shouldCompleteWithTaskSummaryOnceTaskIsCompleted() throws Exception {
+    DhisResponseBody summary = new DhisResponseBody();
+    when(dhisDataService.isTaskCompleted(JOB_TYPE, TASK_ID, server.getUrl(),
+        server.getUsername(), server.getPassword())).thenReturn(false, false, true);
+    when(dhisDataService.getTaskSummary(JOB_TYPE, TASK_ID, server.getUrl(),
+        server.getUsername(), server.getPassword())).thenReturn(summary);
+
+    CompletableFuture<DhisResponseBody> result = importTaskPoller.track(response, server);
+
+    assertThat(result.get(), is(summary));
+    verify(taskScheduler, times(3)).schedule(any(Runnable.class), any(Date.class));
+  }
+
+  @Test
+  public void shouldFailWhenTaskIsNotCompletedInTime() throws Exception {
+    ReflectionTestUtils.setField(importTaskPoller, "timeout", -1L);
+    when(dhisDataService.isTaskCompleted(JOB_TYPE, TASK_ID, server.getUrl(),
+        server.getUsername(), server.getPassword())).thenReturn(false);
+
+    CompletableFuture<DhisResponseBody> result = importTaskPoller.track(response, server);
+
+    assertThat(result.isCompletedExceptionally(), is(true));
+    try {
+      result.get();
+    } catch (ExecutionException ex) {
+      assertThat(ex.getCause(), is(instanceOf(RestOperationException.class)));
+    }
+  }
+
+  @Test
+  public void shouldReturnResponseWithoutTaskReference() throws Exception {
+    DhisResponseBody syncResponse = new DhisResponseBody();
+
+    CompletableFuture<DhisResponseBody> result = importTaskPoller.track(syncResponse, server);
+
+    assertThat(result.get(), is(syncResponse));
+    verify(dhisDataService, never()).isTaskCompleted(any(), any(), any(), any(), any());
+  }
+
+}
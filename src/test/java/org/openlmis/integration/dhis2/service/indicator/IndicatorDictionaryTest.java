@@ -0,0 +1,139 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.indicator;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openlmis.integration.dhis2.domain.enumerator.IndicatorEnum;
+import org.openlmis.integration.dhis2.repository.indicator.LatestValue;
+import org.openlmis.integration.dhis2.repository.indicator.ReferenceKeyRepository;
+import org.springframework.data.util.Pair;
+
+@RunWith(MockitoJUnitRunner.class)
+public class IndicatorDictionaryTest {
+
+  private static final String FACILITY = "facility";
+  private static final String OTHER_FACILITY = "other-facility";
+  private static final String ORDERABLE = "orderable";
+
+  private final UUID facilityId = UUID.randomUUID();
+  private final UUID orderableId = UUID.randomUUID();
+  private final UUID otherOrderableId = UUID.randomUUID();
+
+  @Mock
+  private ReferenceKeyRepository referenceKeyRepository;
+
+  private IndicatorDictionary dictionary;
+
+  @Before
+  public void setUp() {
+    dictionary = new IndicatorDictionary(referenceKeyRepository);
+
+    when(referenceKeyRepository.findFacilityIds(anyCollection()))
+        .thenReturn(Collections.singletonMap(facilityId, FACILITY));
+
+    Map<UUID, String> orderableIds = new HashMap<>();
+    orderableIds.put(orderableId, ORDERABLE);
+    orderableIds.put(otherOrderableId, ORDERABLE);
+    when(referenceKeyRepository.findOrderableIds(anyCollection())).thenReturn(orderableIds);
+  }
+
+  @Test
+  public void shouldResolveKeysOncePerRun() {
+    final IndicatorBatch batch = createBatch();
+    createBatch();
+
+    verify(referenceKeyRepository).findFacilityIds(argThat(codes -> codes.size() == 2
+        && codes.containsAll(Arrays.asList(FACILITY, OTHER_FACILITY))));
+    verify(referenceKeyRepository).findOrderableIds(Collections.singletonList(ORDERABLE));
+    assertThat(batch.getFacilityIds(), is(Collections.singleton(facilityId)));
+    assertThat(batch.getOrderableIds(),
+        is(new HashSet<>(Arrays.asList(orderableId, otherOrderableId))));
+  }
+
+  @Test
+  public void shouldNotResolveKeysOfEmptyBatch() {
+    new IndicatorBatch(IndicatorSupplier.STOCKMANAGEMENT,
+        Pair.of(ZonedDateTime.now(), ZonedDateTime.now()), Collections.emptySet(),
+        Collections.singleton(ORDERABLE), dictionary);
+
+    verify(referenceKeyRepository, never()).findFacilityIds(anyCollection());
+    verify(referenceKeyRepository, never()).findOrderableIds(anyCollection());
+  }
+
+  @Test
+  public void shouldTranslateValuesByIdsToIndicatorValues() {
+    IndicatorBatch batch = createBatch();
+
+    Map<Pair<UUID, UUID>, BigDecimal> values = new HashMap<>();
+    values.put(Pair.of(facilityId, orderableId), BigDecimal.ONE);
+    values.put(Pair.of(facilityId, otherOrderableId), BigDecimal.TEN);
+
+    Map<IndicatorKey, BigDecimal> result = batch.toIndicatorValues(
+        IndicatorEnum.RECEIVED, values, BigDecimal.ZERO);
+
+    assertThat(result.size(), is(2));
+    assertThat(result.get(new IndicatorKey(FACILITY, ORDERABLE, IndicatorEnum.RECEIVED)),
+        is(new BigDecimal("11")));
+    assertThat(result.get(new IndicatorKey(OTHER_FACILITY, ORDERABLE,
+        IndicatorEnum.RECEIVED)), is(BigDecimal.ZERO));
+  }
+
+  @Test
+  public void shouldTakeBalanceOfLatestRecordOfOrderablesSharingName() {
+    IndicatorBatch batch = createBatch();
+    Instant date = Instant.parse("2023-01-17T00:00:00Z");
+
+    Map<Pair<UUID, UUID>, LatestValue> values = new HashMap<>();
+    values.put(Pair.of(facilityId, orderableId), new LatestValue(BigDecimal.ONE, date));
+    values.put(Pair.of(facilityId, otherOrderableId),
+        new LatestValue(BigDecimal.TEN, date.minusSeconds(60)));
+
+    Map<IndicatorKey, BigDecimal> result = batch.toLatestIndicatorValues(
+        IndicatorEnum.CLOSING_BALANCE, values);
+
+    assertThat(result, is(Collections.singletonMap(
+        new IndicatorKey(FACILITY, ORDERABLE, IndicatorEnum.CLOSING_BALANCE), BigDecimal.ONE)));
+  }
+
+  private IndicatorBatch createBatch() {
+    return new IndicatorBatch(IndicatorSupplier.STOCKMANAGEMENT,
+        Pair.of(ZonedDateTime.now(), ZonedDateTime.now()),
+        new HashSet<>(Arrays.asList(FACILITY, OTHER_FACILITY)),
+        Collections.singleton(ORDERABLE), dictionary);
+  }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.indicator;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Optional;
+import org.junit.Test;
+import org.openlmis.integration.dhis2.domain.enumerator.IndicatorEnum;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class IndicatorRegistryTest {
+
+  private final IndicatorRegistry registry = new IndicatorRegistry();
+
+  @Test
+  public void shouldFindSupplierByIndicator() {
+    IndicatorSupplier openingBalance = supplierOf(IndicatorEnum.OPENING_BALANCE);
+    init(openingBalance, supplierOf(IndicatorEnum.CLOSING_BALANCE));
+
+    assertThat(registry.find(IndicatorEnum.OPENING_BALANCE), is(Optional.of(openingBalance)));
+    assertFalse(registry.find(IndicatorEnum.CCE_ALLOCATED).isPresent());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldRejectDuplicatedSuppliers() {
+    init(supplierOf(IndicatorEnum.OPENING_BALANCE), supplierOf(IndicatorEnum.OPENING_BALANCE));
+  }
+
+  private void init(IndicatorSupplier... suppliers) {
+    ReflectionTestUtils.setField(registry, "suppliers", Arrays.asList(suppliers));
+    registry.init();
+  }
+
+  private IndicatorSupplier supplierOf(IndicatorEnum indicator) {
+    IndicatorSupplier supplier = mock(IndicatorSupplier.class);
+    when(supplier.getIndicator()).thenReturn(indicator);
+    return supplier;
+  }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.indicator;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openlmis.integration.dhis2.domain.enumerator.IndicatorEnum;
+import org.openlmis.integration.dhis2.repository.indicator.ReferenceKeyRepository;
+import org.springframework.data.util.Pair;
+
+@RunWith(MockitoJUnitRunner.class)
+public class IndicatorServiceTest {
+
+  private static final String FACILITY = "facility";
+  private static final String OTHER_FACILITY = "other-facility";
+  private static final String ORDERABLE = "orderable";
+
+  @Mock
+  private OpeningBalance openingBalance;
+
+  @Mock
+  private ClosingBalance closingBalance;
+
+  @Mock
+  private IndicatorRegistry indicatorRegistry;
+
+  @Mock
+  private StockDailyTotalService stockDailyTotalService;
+
+  @InjectMocks
+  private IndicatorService indicatorService;
+
+  private final ReferenceKeyRepository referenceKeyRepository =
+      mock(ReferenceKeyRepository.class);
+
+  private final IndicatorBatch batch = new IndicatorBatch(IndicatorSupplier.STOCKMANAGEMENT,
+      Pair.of(ZonedDateTime.now(), ZonedDateTime.now()),
+      new HashSet<>(Arrays.asList(FACILITY, OTHER_FACILITY)),
+      Collections.singleton(ORDERABLE), new IndicatorDictionary(referenceKeyRepository));
+
+  @Test
+  public void shouldCalculateEachIndicatorOnceForWholeBatch() {
+    IndicatorKey key = new IndicatorKey(FACILITY, ORDERABLE, IndicatorEnum.OPENING_BALANCE);
+    when(indicatorRegistry.find(IndicatorEnum.OPENING_BALANCE))
+        .thenReturn(Optional.of(openingBalance));
+    when(openingBalance.calculateValues(batch))
+        .thenReturn(Collections.singletonMap(key, BigDecimal.TEN));
+
+    Map<IndicatorKey, BigDecimal> values = indicatorService.calculateValues(batch,
+        Collections.singleton(IndicatorEnum.OPENING_BALANCE));
+
+    verify(openingBalance).calculateValues(batch);
+    verify(closingBalance, never()).calculateValues(any());
+    assertThat(values.size(), is(1));
+    assertThat(values.get(key), is(BigDecimal.TEN));
+  }
+
+  @Test
+  public void shouldRefreshDailyTotalsUntilEndOfPeriodOfStockmanagementBatch() {
+    when(indicatorRegistry.find(IndicatorEnum.RECEIVED)).thenReturn(Optional.empty());
+
+    indicatorService.calculateValues(batch, Collections.singleton(IndicatorEnum.RECEIVED));
+
+    verify(stockDailyTotalService).refreshUntil(batch.getPeriod().getSecond());
+  }
+
+  @Test
+  public void shouldNotRefreshDailyTotalsForRequisitionBatch() {
+    IndicatorBatch requisitionBatch = new IndicatorBatch(IndicatorSupplier.REQUISITION,
+        batch.getPeriod(), Collections.singleton(FACILITY), Collections.singleton(ORDERABLE),
+        new IndicatorDictionary(referenceKeyRepository));
+    when(indicatorRegistry.find(IndicatorEnum.RECEIVED)).thenReturn(Optional.empty());
+
+    indicatorService.calculateValues(requisitionBatch,
+        Collections.singleton(IndicatorEnum.RECEIVED));
+
+    verify(stockDailyTotalService, never()).refreshUntil(any());
+  }
+
+  @Test
+  public void shouldReturnNoValuesForUnsupportedIndicators() {
+    when(indicatorRegistry.find(IndicatorEnum.CCE_ALLOCATED)).thenReturn(Optional.empty());
+
+    Map<IndicatorKey, BigDecimal> values = indicatorService.calculateValues(batch,
+        Collections.singleton(IndicatorEnum.CCE_ALLOCATED));
+
+    assertThat(values.isEmpty(), is(true));
+  }
+
+  @Test
+  public void shouldReturnNoValuesForEmptyBatch() {
+    IndicatorBatch emptyBatch = new IndicatorBatch(IndicatorSupplier.STOCKMANAGEMENT,
+        batch.getPeriod(), Collections.emptySet(), Collections.singleton(ORDERABLE),
+        new IndicatorDictionary(referenceKeyRepository));
+
+    assertTrue(indicatorService.calculateValues(emptyBatch,
+        Collections.singleton(IndicatorEnum.OPENING_BALANCE)).isEmpty());
+  }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.indicator;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openlmis.integration.dhis2.DataElementDataBuilder;
+import org.openlmis.integration.dhis2.dto.indicator.QueryPlanDto;
+import org.openlmis.integration.dhis2.dto.referencedata.MinimalFacilityDto;
+import org.openlmis.integration.dhis2.repository.element.DataElementRepository;
+import org.openlmis.integration.dhis2.repository.indicator.QueryPlanRepository;
+import org.openlmis.integration.dhis2.service.ReferenceDataService;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class QueryPlanServiceTest {
+
+  private static final Clock clock =
+      Clock.fixed(Instant.parse("2023-05-01T00:00:00.00Z"), ZoneId.of("UTC"));
+
+  private static final String BALANCES = "balances";
+  private static final String QUANTITIES = "quantities";
+
+  @Mock
+  private QueryPlanRepository queryPlanRepository;
+
+  @Mock
+  private DataElementRepository dataElementRepository;
+
+  @Mock
+  private ReferenceDataService referenceDataService;
+
+  @InjectMocks
+  private QueryPlanService queryPlanService;
+
+  private final SqlParameterSource parameters = new MapSqlParameterSource();
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(queryPlanService, "objectMapper", new ObjectMapper());
+    ReflectionTestUtils.setField(queryPlanService, "clock", clock);
+    ReflectionTestUtils.setField(queryPlanService, "seqScanRowsThreshold", 1000L);
+
+    MinimalFacilityDto facility = new MinimalFacilityDto();
+    facility.setCode("facility");
+
+    when(dataElementRepository.findAll()).thenReturn(Collections.singletonList(
+        new DataElementDataBuilder().build()));
+    when(referenceDataService.findAllFacilities()).thenReturn(Stream.of(facility));
+    when(queryPlanRepository.createParameters(any(), any(), any())).thenReturn(parameters);
+
+    Map<String, String> queries = new LinkedHashMap<>();
+    queries.put(BALANCES, "SELECT 1");
+    queries.put(QUANTITIES, "SELECT 2");
+    when(queryPlanRepository.getQueries()).thenReturn(queries);
+  }
+
+  @Test
+  public void shouldReportSequentialScansOfLargeTables() {
+    when(queryPlanRepository.explain("SELECT 1", parameters)).thenReturn(
+        "[{\"Plan\": {\"Node Type\": \"Hash Join\", \"Plans\": ["
+            + "{\"Node Type\": \"Seq Scan\", \"Relation Name\": \"stock_card_line_items\", "
+            + "\"Actual Rows\": 500, \"Rows Removed by Filter\": 1500, \"Actual Loops\": 1}, "
+            + "{\"Node Type\": \"Seq Scan\", \"Relation Name\": \"stock_cards\", "
+            + "\"Actual Rows\": 10, \"Actual Loops\": 1}]}, "
+            + "\"Planning Time\": 0.5, \"Execution Time\": 12.5}]");
+    when(queryPlanRepository.explain("SELECT 2", parameters)).thenReturn(
+        "[{\"Plan\": {\"Node Type\": \"Index Scan\"}, "
+            + "\"Planning Time\": 0.1, \"Execution Time\": 0.2}]");
+
+    List<QueryPlanDto> plans = queryPlanService.explainQueries();
+
+    assertThat(plans.size(), is(2));
+    assertThat(plans.get(0).getQuery(), is(BALANCES));
+    assertThat(plans.get(0).getExecutionTime(), is(12.5));
+    assertThat(plans.get(0).getWarnings(),
+        contains("Sequential scan on stock_card_line_items read 2000 rows"));
+    assertThat(plans.get(1).getWarnings(), is(empty()));
+  }
+
+  @Test
+  public void shouldReturnWarningWhenQueryCannotBeExplained() {
+    when(queryPlanRepository.explain("SELECT 1", parameters))
+        .thenThrow(new QueryTimeoutException("canceling statement due to statement timeout"));
+    when(queryPlanRepository.explain(eq("SELECT 2"), any()))
+        .thenReturn("[{\"Plan\": {\"Node Type\": \"Result\"}}]");
+
+    List<QueryPlanDto> plans = queryPlanService.explainQueries();
+
+    assertThat(plans.get(0).getPlan(), is(nullValue()));
+    assertThat(plans.get(0).getWarnings(), contains(
+        "Query could not be explained: canceling statement due to statement timeout"));
+    assertThat(plans.get(1).getWarnings(), is(empty()));
+  }
+
+}
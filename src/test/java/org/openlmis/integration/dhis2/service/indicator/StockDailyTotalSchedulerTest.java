@@ -0,0 +1,69 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.indicator;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StockDailyTotalSchedulerTest {
+
+  @Mock
+  private StockDailyTotalService stockDailyTotalService;
+
+  @Mock
+  private TaskScheduler taskScheduler;
+
+  @InjectMocks
+  private StockDailyTotalScheduler stockDailyTotalScheduler;
+
+  @Test
+  public void shouldScheduleRefreshWithFixedDelay() {
+    ReflectionTestUtils.setField(stockDailyTotalScheduler, "refreshInterval", 300000L);
+
+    stockDailyTotalScheduler.start();
+
+    verify(taskScheduler).scheduleWithFixedDelay(any(Runnable.class), eq(300000L));
+  }
+
+  @Test
+  public void shouldRefreshDailyTotals() {
+    stockDailyTotalScheduler.refresh();
+
+    verify(stockDailyTotalService).refresh();
+  }
+
+  @Test
+  public void shouldNotPropagateRefreshFailure() {
+    doThrow(new IllegalStateException("statement timeout")).when(stockDailyTotalService)
+        .refresh();
+
+    stockDailyTotalScheduler.refresh();
+
+    verify(stockDailyTotalService).refresh();
+  }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.indicator;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openlmis.integration.dhis2.repository.indicator.StockDailyTotalRepository;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StockDailyTotalServiceTest {
+
+  private static final Clock clock =
+      Clock.fixed(Instant.parse("2023-05-01T12:00:00.00Z"), ZoneId.of("UTC"));
+  private static final ZonedDateTime NOW = ZonedDateTime.now(clock);
+
+  @Mock
+  private StockDailyTotalRepository stockDailyTotalRepository;
+
+  @InjectMocks
+  private StockDailyTotalService stockDailyTotalService;
+
+  private final List<Object[]> totals = Collections.singletonList(new Object[0]);
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(stockDailyTotalService, "transactionManager",
+        mock(PlatformTransactionManager.class));
+    ReflectionTestUtils.setField(stockDailyTotalService, "clock", clock);
+    ReflectionTestUtils.setField(stockDailyTotalService, "lateCommitWindow", 3600000L);
+    ReflectionTestUtils.setField(stockDailyTotalService, "batchInterval", 86400000L);
+
+    lenient().when(stockDailyTotalRepository.tryLockWatermark()).thenReturn(true);
+  }
+
+  @Test
+  public void shouldRecomputeLateCommitWindowUntilNow() {
+    when(stockDailyTotalRepository.findWatermark())
+        .thenReturn(Optional.of(NOW.minusMinutes(5)));
+    when(stockDailyTotalRepository.findTotals(NOW.minusMinutes(65), NOW)).thenReturn(totals);
+
+    stockDailyTotalService.refresh();
+
+    verify(stockDailyTotalRepository).saveTotals(totals, NOW);
+  }
+
+  @Test
+  public void shouldRefreshInBatchesUntilNow() {
+    when(stockDailyTotalRepository.findWatermark())
+        .thenReturn(Optional.of(NOW.minusDays(1).minusHours(1)))
+        .thenReturn(Optional.of(NOW.minusHours(1)));
+    when(stockDailyTotalRepository.findTotals(any(), any())).thenReturn(totals);
+
+    stockDailyTotalService.refresh();
+
+    verify(stockDailyTotalRepository).findTotals(NOW.minusDays(1).minusHours(2),
+        NOW.minusHours(1));
+    verify(stockDailyTotalRepository).saveTotals(totals, NOW.minusHours(1));
+    verify(stockDailyTotalRepository).findTotals(NOW.minusHours(2), NOW);
+    verify(stockDailyTotalRepository).saveTotals(totals, NOW);
+  }
+
+  @Test
+  public void shouldStartFromFirstLineItemWhenNoneWereIncluded() {
+    when(stockDailyTotalRepository.findWatermark()).thenReturn(Optional.empty());
+    when(stockDailyTotalRepository.findFirstProcessedDate())
+        .thenReturn(Optional.of(NOW.minusHours(3)));
+    when(stockDailyTotalRepository.findTotals(NOW.minusHours(4), NOW)).thenReturn(totals);
+
+    stockDailyTotalService.refresh();
+
+    verify(stockDailyTotalRepository).saveTotals(totals, NOW);
+  }
+
+  @Test
+  public void shouldNotRefreshWhenThereAreNoLineItems() {
+    when(stockDailyTotalRepository.findWatermark()).thenReturn(Optional.empty());
+    when(stockDailyTotalRepository.findFirstProcessedDate()).thenReturn(Optional.empty());
+
+    stockDailyTotalService.refresh();
+
+    verify(stockDailyTotalRepository, never()).saveTotals(any(), any());
+  }
+
+  @Test
+  public void shouldNotRefreshWhenWatermarkIsLockedElsewhere() {
+    when(stockDailyTotalRepository.tryLockWatermark()).thenReturn(false);
+
+    stockDailyTotalService.refresh();
+
+    verify(stockDailyTotalRepository, never()).findTotals(any(), any());
+    verify(stockDailyTotalRepository, never()).saveTotals(any(), any());
+  }
+
+  @Test
+  public void shouldRefreshUntilEndOfPastPeriodAfterWaitingForLock() {
+    when(stockDailyTotalRepository.findWatermark())
+        .thenReturn(Optional.of(NOW.minusDays(1).minusMinutes(5)));
+    when(stockDailyTotalRepository.findTotals(any(), any())).thenReturn(totals);
+
+    stockDailyTotalService.refreshUntil(NOW.minusDays(1));
+
+    verify(stockDailyTotalRepository).lockWatermark();
+    verify(stockDailyTotalRepository, never()).tryLockWatermark();
+    verify(stockDailyTotalRepository).findTotals(NOW.minusDays(1).minusMinutes(65),
+        NOW.minusDays(1));
+    verify(stockDailyTotalRepository).saveTotals(totals, NOW.minusDays(1));
+  }
+
+  @Test
+  public void shouldNotRefreshForPeriodEndingInFuture() {
+    stockDailyTotalService.refreshUntil(NOW.plusDays(10));
+
+    verify(stockDailyTotalRepository, never()).lockWatermark();
+    verify(stockDailyTotalRepository, never()).findTotals(any(), any());
+    verify(stockDailyTotalRepository, never()).saveTotals(any(), any());
+  }
+
+  @Test
+  public void shouldNotLockWatermarkWhenTotalsIncludeDate() {
+    when(stockDailyTotalRepository.findWatermark()).thenReturn(Optional.of(NOW));
+
+    stockDailyTotalService.refreshUntil(NOW.minusDays(1));
+
+    verify(stockDailyTotalRepository, never()).lockWatermark();
+    verify(stockDailyTotalRepository, never()).findTotals(any(), any());
+    verify(stockDailyTotalRepository, never()).saveTotals(any(), any());
+  }
+
+}
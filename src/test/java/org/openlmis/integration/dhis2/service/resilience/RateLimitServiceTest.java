@@ -0,0 +1,169 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.resilience;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openlmis.integration.dhis2.ServerDataBuilder;
+import org.openlmis.integration.dhis2.repository.server.ServerRepository;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RateLimitServiceTest {
+
+  private static final String SERVER_URL = "https://play.dhis2.org/2.39.0.1";
+  private static final String OTHER_SERVER_URL = "https://play.dhis2.org/2.40.0";
+
+  @Mock
+  private ServerRepository serverRepository;
+
+  @InjectMocks
+  private RateLimitService rateLimitService;
+
+  @Test
+  public void shouldExecuteCallWithoutLimits() {
+    when(serverRepository.findAllByUrl(SERVER_URL)).thenReturn(Collections.emptyList());
+
+    assertThat(rateLimitService.execute(SERVER_URL, 100, () -> "ok"), is("ok"));
+  }
+
+  @Test
+  public void shouldUseMostRestrictiveConcurrencyLimit() {
+    when(serverRepository.findAllByUrl(SERVER_URL)).thenReturn(Arrays.asList(
+        new ServerDataBuilder().withRateLimits(null, 4, null).build(),
+        new ServerDataBuilder().withRateLimits(null, 2, null).build()));
+
+    rateLimitService.execute(SERVER_URL, 0, () -> "ok");
+
+    assertThat(getConcurrentRequests().availablePermits(), is(2));
+  }
+
+  @Test
+  public void shouldUseDefaultConcurrencyLimitIfServerHasNone() {
+    ReflectionTestUtils.setField(rateLimitService, "defaultMaxConcurrentRequests", 3);
+    when(serverRepository.findAllByUrl(SERVER_URL)).thenReturn(Collections.singletonList(
+        new ServerDataBuilder().withRateLimits(null, null, null).build()));
+
+    rateLimitService.execute(SERVER_URL, 0, () -> "ok");
+
+    assertThat(getConcurrentRequests().availablePermits(), is(3));
+  }
+
+  @Test
+  public void shouldHoldConcurrencyPermitUntilAsyncCallCompletes() {
+    when(serverRepository.findAllByUrl(SERVER_URL)).thenReturn(Collections.singletonList(
+        new ServerDataBuilder().withRateLimits(null, 1, null).build()));
+    CompletableFuture<String> call = new CompletableFuture<>();
+
+    CompletableFuture<String> result = rateLimitService.executeAsync(SERVER_URL, () -> call);
+    int available = getConcurrentRequests().availablePermits();
+    call.complete("ok");
+
+    assertThat(available, is(0));
+    assertThat(result.join(), is("ok"));
+    assertThat(getConcurrentRequests().availablePermits(), is(1));
+  }
+
+  @Test
+  public void shouldReleaseConcurrencyPermitWhenAsyncCallCannotStart() {
+    when(serverRepository.findAllByUrl(SERVER_URL)).thenReturn(Collections.singletonList(
+        new ServerDataBuilder().withRateLimits(null, 1, null).build()));
+
+    try {
+      rateLimitService.executeAsync(SERVER_URL, () -> {
+        throw new IllegalStateException("rejected");
+      });
+      fail();
+    } catch (IllegalStateException ex) {
+      assertThat(ex.getMessage(), is("rejected"));
+    }
+
+    assertThat(getConcurrentRequests().availablePermits(), is(1));
+  }
+
+  @Test
+  public void shouldReloadLimitsOfChangedUrlOnly() {
+    when(serverRepository.findAllByUrl(SERVER_URL)).thenReturn(Collections.emptyList());
+    when(serverRepository.findAllByUrl(OTHER_SERVER_URL)).thenReturn(Collections.emptyList());
+
+    rateLimitService.execute(SERVER_URL, 0, () -> "ok");
+    rateLimitService.execute(OTHER_SERVER_URL, 0, () -> "ok");
+    rateLimitService.reload(SERVER_URL);
+    rateLimitService.execute(SERVER_URL, 0, () -> "ok");
+    rateLimitService.execute(OTHER_SERVER_URL, 0, () -> "ok");
+
+    verify(serverRepository, times(2)).findAllByUrl(SERVER_URL);
+    verify(serverRepository, times(1)).findAllByUrl(OTHER_SERVER_URL);
+  }
+
+  @Test
+  public void shouldKeepRequestsInFlightWhenConcurrencyLimitIsRaised() {
+    when(serverRepository.findAllByUrl(SERVER_URL)).thenReturn(
+        Collections.singletonList(new ServerDataBuilder().withRateLimits(null, 1, null).build()),
+        Collections.singletonList(new ServerDataBuilder().withRateLimits(null, 2, null).build()));
+    CompletableFuture<String> call = new CompletableFuture<>();
+
+    rateLimitService.executeAsync(SERVER_URL, () -> call);
+    rateLimitService.reload(SERVER_URL);
+    int available = getConcurrentRequests().availablePermits();
+    call.complete("ok");
+
+    assertThat(available, is(1));
+    assertThat(getConcurrentRequests().availablePermits(), is(2));
+  }
+
+  @Test
+  public void shouldKeepRequestsInFlightWhenConcurrencyLimitIsLowered() {
+    when(serverRepository.findAllByUrl(SERVER_URL)).thenReturn(
+        Collections.singletonList(new ServerDataBuilder().withRateLimits(null, 2, null).build()),
+        Collections.singletonList(new ServerDataBuilder().withRateLimits(null, 1, null).build()));
+    CompletableFuture<String> call = new CompletableFuture<>();
+    CompletableFuture<String> otherCall = new CompletableFuture<>();
+
+    rateLimitService.executeAsync(SERVER_URL, () -> call);
+    rateLimitService.executeAsync(SERVER_URL, () -> otherCall);
+    rateLimitService.reload(SERVER_URL);
+    int available = getConcurrentRequests().availablePermits();
+    call.complete("ok");
+    otherCall.complete("ok");
+
+    assertThat(available, is(-1));
+    assertThat(getConcurrentRequests().availablePermits(), is(1));
+  }
+
+  private Semaphore getConcurrentRequests() {
+    Map<String, Object> rateLimiters = (Map<String, Object>) ReflectionTestUtils
+        .getField(rateLimitService, "rateLimiters");
+    return (Semaphore) ReflectionTestUtils
+        .getField(rateLimiters.get(SERVER_URL), "concurrentRequests");
+  }
+
+}
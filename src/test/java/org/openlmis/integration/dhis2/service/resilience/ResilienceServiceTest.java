@@ -0,0 +1,204 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.resilience;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.when;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.time.Clock;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openlmis.integration.dhis2.exception.RestOperationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ResilienceServiceTest {
+
+  private static final String SERVER_URL = "https://play.dhis2.org/2.39.0.1";
+  private static final long OPEN_DURATION = 60000L;
+
+  @Mock
+  private Clock clock;
+
+  @InjectMocks
+  private ResilienceService resilienceService;
+
+  private final AtomicInteger calls = new AtomicInteger();
+
+  @Before
+  public void setUp() {
+    when(clock.millis()).thenReturn(0L);
+    ReflectionTestUtils.setField(resilienceService, "maxAttempts", 3);
+    ReflectionTestUtils.setField(resilienceService, "initialDelay", 0L);
+    ReflectionTestUtils.setField(resilienceService, "maxDelay", 0L);
+    ReflectionTestUtils.setField(resilienceService, "failureThreshold", 2);
+    ReflectionTestUtils.setField(resilienceService, "openDuration", OPEN_DURATION);
+  }
+
+  @Test
+  public void shouldRetryTransientFailure() {
+    String result = resilienceService.execute(SERVER_URL, failing(2));
+
+    assertThat(result, is("ok"));
+    assertThat(calls.get(), is(3));
+  }
+
+  @Test
+  public void shouldNotRetryClientError() {
+    try {
+      resilienceService.execute(SERVER_URL, () -> {
+        calls.incrementAndGet();
+        throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+      });
+      fail();
+    } catch (HttpClientErrorException ex) {
+      assertThat(calls.get(), is(1));
+    }
+  }
+
+  @Test
+  public void shouldFailFastWhenCircuitBreakerIsOpen() {
+    openCircuitBreaker();
+    calls.set(0);
+
+    try {
+      resilienceService.execute(SERVER_URL, failing(0));
+      fail();
+    } catch (RestOperationException ex) {
+      assertThat(calls.get(), is(0));
+    }
+  }
+
+  @Test
+  public void shouldNotAffectOtherServersWhenCircuitBreakerIsOpen() {
+    openCircuitBreaker();
+
+    assertThat(resilienceService.execute("https://other.dhis2.org", failing(0)), is("ok"));
+  }
+
+  @Test
+  public void shouldCloseCircuitBreakerAfterSuccessfulTrialCall() {
+    openCircuitBreaker();
+    when(clock.millis()).thenReturn(OPEN_DURATION);
+
+    assertThat(resilienceService.execute(SERVER_URL, failing(0)), is("ok"));
+    assertThat(resilienceService.execute(SERVER_URL, failing(0)), is("ok"));
+  }
+
+  @Test
+  public void shouldRetryTooManyRequestsAfterRetryAfterDelay() {
+    ReflectionTestUtils.setField(resilienceService, "maxDelay", 1000L);
+
+    String result = resilienceService.execute(SERVER_URL, () -> {
+      if (calls.incrementAndGet() == 1) {
+        throw tooManyRequests("0");
+      }
+      return "ok";
+    });
+
+    assertThat(result, is("ok"));
+    assertThat(calls.get(), is(2));
+  }
+
+  @Test
+  public void shouldNotRetryWhenRetryAfterExceedsMaxDelay() {
+    ReflectionTestUtils.setField(resilienceService, "maxDelay", 1000L);
+
+    try {
+      resilienceService.execute(SERVER_URL, () -> {
+        calls.incrementAndGet();
+        throw tooManyRequests("120");
+      });
+      fail();
+    } catch (HttpClientErrorException ex) {
+      assertThat(calls.get(), is(1));
+    }
+  }
+
+  @Test
+  public void shouldNotRetryNonIdempotentCallAfterServerReceivedIt() {
+    try {
+      resilienceService.execute(SERVER_URL, false, () -> {
+        calls.incrementAndGet();
+        throw new ResourceAccessException("Read timed out", new SocketTimeoutException());
+      });
+      fail();
+    } catch (ResourceAccessException ex) {
+      assertThat(calls.get(), is(1));
+    }
+  }
+
+  @Test
+  public void shouldRetryNonIdempotentCallWhenServerDidNotReceiveIt() {
+    String result = resilienceService.execute(SERVER_URL, false, () -> {
+      if (calls.incrementAndGet() == 1) {
+        throw new ResourceAccessException("Connection refused", new ConnectException());
+      }
+      return "ok";
+    });
+
+    assertThat(result, is("ok"));
+    assertThat(calls.get(), is(2));
+  }
+
+  private void openCircuitBreaker() {
+    for (int i = 0; i < 2; i++) {
+      try {
+        resilienceService.execute(SERVER_URL, failing(Integer.MAX_VALUE));
+        fail();
+      } catch (HttpServerErrorException ex) {
+        assertThat(ex.getStatusCode(), is(HttpStatus.SERVICE_UNAVAILABLE));
+      }
+    }
+  }
+
+  private HttpClientErrorException tooManyRequests(String retryAfter) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(HttpHeaders.RETRY_AFTER, retryAfter);
+    return HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests",
+        headers, null, null);
+  }
+
+  private Supplier<String> failing(int failures) {
+    AtomicInteger remaining = new AtomicInteger(failures);
+
+    return () -> {
+      calls.incrementAndGet();
+
+      if (remaining.getAndDecrement() > 0) {
+        throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+      }
+
+      return "ok";
+    };
+  }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.integration.dhis2.service.resilience;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class TokenBucketTest {
+
+  private static final long SECOND = 1_000_000_000L;
+
+  private final TokenBucket tokenBucket = new TokenBucket(10, 0);
+
+  @Test
+  public void shouldNotWaitWhenTokensAreAvailable() {
+    assertThat(tokenBucket.reserve(10, 0), is(0L));
+  }
+
+  @Test
+  public void shouldWaitForMissingTokens() {
+    tokenBucket.reserve(10, 0);
+
+    assertThat(tokenBucket.reserve(5, 0), is(SECOND / 2));
+  }
+
+  @Test
+  public void shouldRefillTokensOverTime() {
+    tokenBucket.reserve(10, 0);
+
+    assertThat(tokenBucket.reserve(5, SECOND / 2), is(0L));
+  }
+
+  @Test
+  public void shouldNotRefillAboveCapacity() {
+    assertThat(tokenBucket.reserve(20, 10 * SECOND), is(SECOND));
+  }
+
+}